@@ -1,3 +1,16 @@
+import java.sql.Connection
+import java.util.Properties
+
+buildscript {
+    repositories {
+        mavenCentral()
+    }
+    dependencies {
+        // JDBC-драйвер нужен только на этапе сборки: им компилируется банк вопросов в SQLite-ассет
+        classpath(libs.sqlite.jdbc)
+    }
+}
+
 plugins {
     alias(libs.plugins.android.application)
 }
@@ -31,6 +44,214 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // Robolectric-тестам нужны ассеты (банк вопросов) и ресурсы
+        unitTests.isIncludeAndroidResources = true
+        // QuizDatabasePerfTest: -Pquiz.perf.sizes=1000,100000 -Pquiz.perf.margin=0.5 -Pquiz.perf.record=true.
+        // Без quiz.perf.sizes не запускается: базовая линия в микросекундах записана на одной машине
+        unitTests.all {
+            if (!providers.gradleProperty("quiz.perf.sizes").isPresent) {
+                exclude("**/QuizDatabasePerfTest*")
+            }
+            for (name in listOf("quiz.perf.sizes", "quiz.perf.margin", "quiz.perf.record")) {
+                providers.gradleProperty(name).orNull?.let { value -> systemProperty(name, value) }
+            }
+        }
+    }
+}
+
+/**
+ * Компилирует src/main/questions/questions.csv в готовую базу assets/databases/QuizGame.db.
+ *
+ * В базе создаётся таблица вопросов с индексами (схема должна совпадать с CREATE_TABLE
+ * и CREATE_INDEXES в data/QuestionSchema) и уже заполненный поисковый индекс questions_fts — на устройстве
+ * его построение по всему банку не нужно. user_version остаётся 0 — при первом запуске хелпер копирует файл,
+ * а SQLiteOpenHelper вызывает onCreate, который досоздаёт остальные таблицы.
+ */
+abstract class CompileQuestionBankTask : DefaultTask() {
+
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val source: RegularFileProperty
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @TaskAction
+    fun compile() {
+        val dbDir = outputDir.get().dir("databases").asFile
+        dbDir.mkdirs()
+        val dbFile = dbDir.resolve("QuizGame.db")
+        dbFile.delete()
+
+        val rows = parseCsv(source.get().asFile.readText(Charsets.UTF_8))
+        require(rows.isNotEmpty()) { "questions.csv: нет заголовка" }
+        val header = rows.first()
+        val required = listOf("question", "option1", "option2", "option3", "option4", "answer_num")
+        val missing = required.filter { it !in header }
+        require(missing.isEmpty()) { "questions.csv: нет колонок $missing в заголовке $header" }
+        fun column(name: String) = header.indexOf(name)
+        val questionCol = column("question")
+        val optionCols = (1..4).map { column("option$it") }
+        val answerCol = column("answer_num")
+        // Необязательные колонки схемы v3
+        val categoryCol = column("category")
+        val difficultyCol = column("difficulty")
+        val languageCol = column("language")
+
+        // Драйвер создаём напрямую: DriverManager не видит классы из buildscript classpath
+        val connection: Connection = org.sqlite.JDBC().connect("jdbc:sqlite:" + dbFile.absolutePath, Properties())
+        connection.use { conn ->
+            conn.createStatement().use { st ->
+                st.execute(
+                    "CREATE TABLE questions(" +
+                            "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "question TEXT," +
+                            "option1 TEXT," +
+                            "option2 TEXT," +
+                            "option3 TEXT," +
+                            "option4 TEXT," +
+                            "answer_num INTEGER," +
+                            "category TEXT NOT NULL DEFAULT 'general'," +
+                            "difficulty INTEGER NOT NULL DEFAULT 1," +
+                            "language TEXT NOT NULL DEFAULT 'ru'," +
+                            "content_hash INTEGER" +
+                            ")"
+                )
+            }
+            conn.autoCommit = false
+            conn.prepareStatement(
+                "INSERT INTO questions(question, option1, option2, option3, option4, answer_num, " +
+                        "category, difficulty, language, content_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+            ).use { insert ->
+                rows.drop(1).forEachIndexed { index, row ->
+                    val line = index + 2
+                    fun field(col: Int) = if (col >= 0 && col < row.size) row[col].trim() else ""
+                    require(row.size >= required.size) { "questions.csv:$line: ожидалось не меньше ${required.size} полей, получено ${row.size}" }
+                    val answer = field(answerCol).toIntOrNull()
+                    require(answer != null && answer in 1..4) { "questions.csv:$line: answer_num должен быть 1..4" }
+                    val difficulty = field(difficultyCol).ifEmpty { "1" }.toIntOrNull()
+                    require(difficulty != null && difficulty in 1..3) { "questions.csv:$line: difficulty должен быть 1..3" }
+                    val question = row[questionCol]
+                    val options = optionCols.map { row[it] }
+
+                    insert.setString(1, question)
+                    options.forEachIndexed { i, option -> insert.setString(2 + i, option) }
+                    insert.setInt(6, answer)
+                    insert.setString(7, field(categoryCol).ifEmpty { "general" })
+                    insert.setInt(8, difficulty)
+                    insert.setString(9, field(languageCol).ifEmpty { "ru" })
+                    insert.setLong(10, contentHash(question, options, answer))
+                    insert.addBatch()
+                }
+                insert.executeBatch()
+            }
+            conn.createStatement().use { st ->
+                // Те же индексы, что QuestionSchema.CREATE_INDEXES: в ассете они уже построены
+                st.execute("CREATE INDEX idx_questions_category_difficulty ON questions(category, difficulty)")
+                st.execute("CREATE INDEX idx_questions_category ON questions(category)")
+                st.execute("CREATE INDEX idx_questions_difficulty ON questions(difficulty)")
+                st.execute("CREATE INDEX idx_questions_content_hash ON questions(content_hash)")
+
+                // Поисковый индекс QuestionSearch: FTS4 (в SQLite Android FTS5 обычно нет), те же колонки,
+                // токенизатор и свёртка ё, что в QuestionSearch.createIndex. Триггеры досоздаёт onCreate
+                val ftsColumns = listOf("question", "option1", "option2", "option3", "option4")
+                val folded = ftsColumns.joinToString(", ") { "replace(replace($it, 'ё', 'е'), 'Ё', 'Е')" }
+                st.execute(
+                    "CREATE VIRTUAL TABLE questions_fts USING fts4(${ftsColumns.joinToString(", ")}, " +
+                            "tokenize=unicode61 \"remove_diacritics=1\", prefix=\"2,3\")"
+                )
+                st.execute("INSERT INTO questions_fts(docid, ${ftsColumns.joinToString(", ")}) SELECT _id, $folded FROM questions")
+                st.execute("INSERT INTO questions_fts(questions_fts) VALUES('optimize')")
+            }
+            conn.commit()
+            conn.autoCommit = true
+            conn.createStatement().use { it.execute("VACUUM") }
+        }
+        logger.lifecycle("Банк вопросов скомпилирован: ${rows.size - 1} вопросов -> $dbFile")
+    }
+
+    /** Копия QuestionHash.normalize/contentHash (FNV-1a 64) — менять только вместе. */
+    private fun normalize(text: String): String {
+        val sb = StringBuilder(text.length)
+        var pendingSpace = false
+        for (ch in text.lowercase()) {
+            val c = if (ch == 'ё') 'е' else ch
+            if (c.isLetterOrDigit()) {
+                if (pendingSpace && sb.isNotEmpty()) sb.append(' ')
+                pendingSpace = false
+                sb.append(c)
+            } else {
+                pendingSpace = true
+            }
+        }
+        return sb.toString()
+    }
+
+    private fun contentHash(question: String, options: List<String>, answerNum: Int): Long {
+        var h = -0x340d631b7bdddcdbL // 0xcbf29ce484222325
+        val prime = 0x100000001b3L
+        fun mix(c: Char) {
+            h = h xor (c.code and 0xFF).toLong()
+            h *= prime
+            h = h xor (c.code ushr 8).toLong()
+            h *= prime
+        }
+        normalize(question).forEach(::mix)
+        for (option in options) {
+            mix('\u001F')
+            normalize(option).forEach(::mix)
+        }
+        mix('\u001F')
+        mix('0' + answerNum)
+        return h
+    }
+
+    /** Минимальный разбор CSV (RFC 4180): кавычки, экранирование "" и переводы строк внутри полей. */
+    private fun parseCsv(text: String): List<List<String>> {
+        val rows = mutableListOf<List<String>>()
+        var row = mutableListOf<String>()
+        val field = StringBuilder()
+        var quoted = false
+        var i = 0
+        while (i < text.length) {
+            val c = text[i]
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < text.length && text[i + 1] == '"') { field.append('"'); i++ } else quoted = false
+                } else {
+                    field.append(c)
+                }
+            } else when (c) {
+                '"' -> quoted = true
+                ',' -> { row.add(field.toString()); field.setLength(0) }
+                '\r' -> {}
+                '\n' -> {
+                    row.add(field.toString()); field.setLength(0)
+                    if (row.size > 1 || row[0].isNotEmpty()) rows.add(row)
+                    row = mutableListOf()
+                }
+                else -> field.append(c)
+            }
+            i++
+        }
+        if (field.isNotEmpty() || row.isNotEmpty()) {
+            row.add(field.toString())
+            rows.add(row)
+        }
+        return rows
+    }
+}
+
+val compileQuestionBank = tasks.register<CompileQuestionBankTask>("compileQuestionBank") {
+    source.set(layout.projectDirectory.file("src/main/questions/questions.csv"))
+    outputDir.set(layout.buildDirectory.dir("generated/questionBank"))
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(compileQuestionBank, CompileQuestionBankTask::outputDir)
+    }
 }
 
 dependencies {
@@ -38,7 +259,9 @@ dependencies {
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(project(":game"))
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
-}
\ No newline at end of file
+}
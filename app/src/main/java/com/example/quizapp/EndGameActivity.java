@@ -7,6 +7,8 @@ import android.widget.Button;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.quizapp.data.QuizRepository;
+
 public class EndGameActivity extends AppCompatActivity {
 
     @Override
@@ -59,6 +61,10 @@ public class EndGameActivity extends AppCompatActivity {
 
         // Опционально: запуск фоновой музыки
         QuizApplication.getInstance().startBackgroundMusic();
+
+        // Пока игрок смотрит результаты, готовим вопросы следующего матча в фоне
+        QuizRepository.getInstance(this).prefetchNextMatch(GameActivity.TOTAL_QUESTIONS,
+                SettingsActivity.getQuestionFilter(this));
     }
 
     @Override
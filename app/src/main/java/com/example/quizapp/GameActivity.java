@@ -2,11 +2,9 @@ package com.example.quizapp;
 
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.database.Cursor;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.CountDownTimer;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
@@ -23,34 +21,44 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.quizapp.QuizApplication;
+import com.example.quizapp.data.BankSyncMessage;
+import com.example.quizapp.data.Question;
+import com.example.quizapp.data.QuestionBankSync;
+import com.example.quizapp.data.QuestionHash;
+import com.example.quizapp.data.QuizRepository;
+import com.example.quizapp.game.GameSession;
 import com.example.quizapp.p2p.ConnectionType;
 import com.example.quizapp.p2p.EmoteAction;
 import com.example.quizapp.p2p.GameDataModel;
+import com.example.quizapp.p2p.Heartbeat;
+import com.example.quizapp.p2p.OutboundQueue;
 import com.example.quizapp.p2p.P2PConnectionSingleton;
 import com.example.quizapp.p2p.P2PManager;
 import com.example.quizapp.p2p.PlayerAnswer;
-import com.example.quizapp.QuizDatabaseHelper;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 /**
- * GameActivity — turn-based PvP behavior:
- * - host answers first; client shows waiting screen (waiting_screen.mp4 animation)
- * - after host answers, client receives host's ANSWER_SUBMITTED and becomes active (shows same question)
- * - after client answers, host receives client's ANSWER_SUBMITTED and advances to next question (host active)
+ * GameActivity — renders a match driven by GameSession (turn order, scoring and advancing live there):
+ * - PvP is turn-based or simultaneous (host's setting, see SettingsActivity); network messages become
+ *   session events, session effects become views, sounds, timers and outgoing messages
+ * - client shows waiting screen (waiting_screen.mp4 animation) whenever the session waits for the host
  * - timer expiry counts as wrong answer (selectedOption = 0) and marks red indicator
+ * - answer timer is GameClock (monotonic deadline, per-frame countdown); reaction time goes out in PlayerAnswer
  * - emotes: only owned emotes can be used; EMOTE_USED is synchronized to opponent and shown on both sides
- * - when a player disconnects/exits mid-game, the remaining player gets +20 points
+ * - START_GAME negotiation (question ids vs full set, bank sync) stays here: it is about data, not rules
  */
 public class GameActivity extends AppCompatActivity implements P2PManager.ConnectionListener {
 
     private static final String TAG = "GameActivity";
-    private static final int TOTAL_QUESTIONS = 5;
-    private static final long TIMER_DURATION_MS = 15000;
+    static final int TOTAL_QUESTIONS = GameSession.Config.DEFAULT.totalQuestions;
+    // Сколько хост ждёт отпечаток банка соперника, прежде чем отправить вопросы целиком
+    private static final long BANK_HASH_TIMEOUT_MS = 1500;
 
     // UI elements
     private TextView tvQuestion, tvTimer, tvPlayerName, tvOpponentName;
@@ -65,38 +73,60 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
     private boolean isPvpMode;
     private String localPlayerName;
     private String opponentName = "Противник";
-    private boolean isMyTurn = false;
     private boolean amHost = false;
-    private int currentQuestionIndex = 0;
-    private int localPlayerScore = 0;
-    private int opponentScore = 0;
 
-    // Per-question flags
-    private boolean hostAnsweredCurrent = false;
-    private boolean clientAnsweredCurrent = false;
+    // Правила матча; таймеры ADVANCE и ROUND_DEADLINE — через uiHandler, ANSWER — answerClock
+    private GameSession session;
+    private final Runnable advanceTimer = () -> session.onTimer(GameSession.Timer.ADVANCE);
+    private final Runnable roundDeadlineTimer = () -> session.onTimer(GameSession.Timer.ROUND_DEADLINE);
 
     // Questions
     private List<Question> currentQuestions = new ArrayList<>();
-    private CountDownTimer gameTimer;
-    private boolean gameInProgress = false;
+
+    // Часы хода; время реакции по вопросам — своё и соперника (PlayerAnswer.UNKNOWN_REACTION_TIME — нет данных)
+    private final GameClock answerClock = new GameClock(new GameClock.Listener() {
+        @Override public void onTick(long remainingMs) {
+            tvTimer.setText(getString(R.string.timer_format, remainingMs / 1000f));
+        }
+        @Override public void onExpired() {
+            // treat timeout as wrong answer (0)
+            session.onTimer(GameSession.Timer.ANSWER);
+        }
+    });
+    private long lastReactionMs = GameClock.UNKNOWN;
+    private final int[] localReactionMs = new int[TOTAL_QUESTIONS];
+    private final int[] opponentReactionMs = new int[TOTAL_QUESTIONS];
+
+    private QuizRepository repository;
+
+    // START_GAME: одни id при совпадении банков вопросов, иначе полный набор
+    private String localBankHash;
+    private String peerBankHash;
+    private boolean peerBankHashTimedOut = false;
+    private boolean questionsReady = false;
+    private boolean startGameSent = false;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final Runnable bankHashTimeout = () -> {
+        peerBankHashTimedOut = true;
+        maybeSendStartGame();
+    };
+
+    // Банки различаются — клиент после полного START_GAME запускает сверку, чтобы банки сошлись
+    private QuestionBankSync bankSync;
+    private boolean bankSyncStarted = false;
 
     // Owned emotes
     private Set<String> ownedEmotes = new HashSet<>();
 
-    private static class Question implements Serializable {
-        private static final long serialVersionUID = 1L;
-        public int id;
-        public String question;
-        public String[] options;
-        public int answerNum; // 1-4
-    }
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_game);
 
         isPvpMode = getIntent().getBooleanExtra("IS_PVP_MODE", false);
+        Arrays.fill(localReactionMs, PlayerAnswer.UNKNOWN_REACTION_TIME);
+        Arrays.fill(opponentReactionMs, PlayerAnswer.UNKNOWN_REACTION_TIME);
+        repository = QuizRepository.getInstance(this);
 
         initializeUI();
         loadLocalPlayerInfo();
@@ -109,7 +139,11 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
 
         boolean intentHost = getIntent().getBooleanExtra("IS_HOST", false);
         amHost = intentHost || P2PConnectionSingleton.getInstance().isGroupOwner();
-        isMyTurn = amHost;
+        // Одновременный режим выбирает хост; клиент узнает о нём по первому QUESTION_INDEX
+        GameSession.Mode mode = !isPvpMode ? GameSession.Mode.SINGLE
+                : amHost && SettingsActivity.isSimultaneousPvp(this) ? GameSession.Mode.SIMULTANEOUS
+                : GameSession.Mode.TURN_BASED;
+        session = new GameSession(GameSession.Config.DEFAULT, mode, amHost, sessionEffects);
 
         setupQuestionIndicators(llPlayerIndicators);
         if (isPvpMode) setupQuestionIndicators(llOpponentIndicators);
@@ -123,6 +157,10 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
             }
             // ensure callbacks come here
             p2pManager.initialize(this, this);
+            bankSync = repository.newBankSync(
+                    (message, result) -> p2pManager.sendMessage(
+                            new GameDataModel(GameDataModel.DataType.BANK_SYNC, message), result::onComplete),
+                    result -> Log.d(TAG, "Сверка банков вопросов: " + result));
 
             // Request remote name in case we missed it
             try { p2pManager.sendMessage("REQUEST_PLAYER_NAME"); } catch (Exception ignored) {}
@@ -132,17 +170,22 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
 
             // Host behavior: host should prepare questions and send them to client, then show first question
             if (amHost) {
-                loadQuestionsFromDB();
-                if (!currentQuestions.isEmpty()) {
-                    gameInProgress = true;
-                    // send START_GAME to client (questions)
-                    p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.START_GAME, (Serializable) currentQuestions));
-                    // host shows first question immediately
-                    showQuestion(currentQuestionIndex);
-                } else {
-                    Toast.makeText(this, "Не удалось загрузить вопросы для PVP.", Toast.LENGTH_LONG).show();
-                    endGame();
-                }
+                // Транспорт соперника ответит BANK_HASH:<отпечаток>; пока ждём — грузим вопросы и свой отпечаток
+                try { p2pManager.sendMessage(P2PManager.REQUEST_BANK_HASH); } catch (Exception ignored) {}
+                uiHandler.postDelayed(bankHashTimeout, bankHashTimeoutMs());
+                repository.loadQuestionBankHash(hash -> {
+                    localBankHash = hash != null ? hash : "";
+                    maybeSendStartGame();
+                });
+                loadQuestionsFromDB(() -> {
+                    if (!currentQuestions.isEmpty()) {
+                        questionsReady = true;
+                        maybeSendStartGame();
+                    } else {
+                        Toast.makeText(this, "Не удалось загрузить вопросы для PVP.", Toast.LENGTH_LONG).show();
+                        finish();
+                    }
+                });
             } else {
                 // client: do NOT show question at start; wait for host's START_GAME and host's first ANSWER_SUBMITTED to trigger client turn
                 showWaitingScreen();
@@ -176,10 +219,8 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
 
         for (int i = 0; i < 4; i++) {
             final int optionIndex = i + 1;
-            answerButtons[i].setOnClickListener(v -> {
-                // only allow answering when it's player's turn in PvP
-                if (!isPvpMode || isMyTurn) handleAnswerSubmission(optionIndex);
-            });
+            // вне своего хода сессия ответ игнорирует
+            answerButtons[i].setOnClickListener(v -> session.onLocalAnswer(optionIndex));
         }
 
         findViewById(R.id.btn_emote_chat).setOnClickListener(v -> showEmoteSelectionDialog());
@@ -201,43 +242,22 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
     }
 
     private void loadLocalPlayerInfo() {
-        QuizDatabaseHelper dbHelper = QuizDatabaseHelper.getInstance(this);
-        Cursor cursor = null;
-        try {
-            cursor = dbHelper.getReadableDatabase().query(
-                    QuizDatabaseHelper.TABLE_PLAYER_STATS,
-                    null, QuizDatabaseHelper.STATS_COLUMN_ID + "=1", null, null, null, null);
-
-            if (cursor != null && cursor.moveToFirst()) {
-                localPlayerName = cursor.getString(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.STATS_COLUMN_NAME));
-                int singleWins = cursor.getInt(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.STATS_COLUMN_SINGLE_WINS));
-                int pvpWins = cursor.getInt(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.STATS_COLUMN_PVP_WINS));
-
-                tvPlayerName.setText(localPlayerName != null ? localPlayerName : "noname");
-                if (!isPvpMode) tvPlayerStats.setText(getString(R.string.wins_format, singleWins));
-                else tvPlayerStats.setText(getString(R.string.wins_format, pvpWins));
-            } else {
-                localPlayerName = "noname";
-                tvPlayerName.setText(localPlayerName);
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "loadLocalPlayerInfo: DB read failed", e);
-            localPlayerName = "noname";
+        localPlayerName = "noname";
+        tvPlayerName.setText(localPlayerName);
+        repository.loadPlayerStats(stats -> {
+            if (isFinishing() || isDestroyed() || stats == null) return;
+            localPlayerName = stats.name != null ? stats.name : "noname";
             tvPlayerName.setText(localPlayerName);
-        } finally {
-            if (cursor != null) cursor.close();
-        }
+            if (!isPvpMode) tvPlayerStats.setText(getString(R.string.wins_format, stats.singleWins));
+            else tvPlayerStats.setText(getString(R.string.wins_format, stats.pvpWins));
+        });
     }
 
     private void loadOwnedEmotes() {
-        try {
-            QuizDatabaseHelper db = QuizDatabaseHelper.getInstance(this);
-            List<String> owned = db.getOwnedEmotes();
+        repository.loadOwnedItems(owned -> {
             if (owned != null) ownedEmotes.addAll(owned);
             Log.d(TAG, "Owned emotes: " + ownedEmotes);
-        } catch (Exception e) {
-            Log.w(TAG, "loadOwnedEmotes failed", e);
-        }
+        });
     }
 
     private void setupSinglePlayerMode() {
@@ -250,51 +270,94 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
         vWaitingScreen.setVisibility(View.GONE);
         vGameContent.setVisibility(View.VISIBLE);
 
-        loadQuestionsFromDB();
-        if (!currentQuestions.isEmpty()) {
-            gameInProgress = true;
-            showQuestion(currentQuestionIndex);
+        loadQuestionsFromDB(() -> {
+            if (!currentQuestions.isEmpty()) {
+                session.start(answerKeys(currentQuestions));
+            } else {
+                Toast.makeText(this, "Вопросы не загружены.", Toast.LENGTH_LONG).show();
+                finish();
+            }
+        });
+    }
+
+    /**
+     * Хост: отправляет START_GAME, когда готовы вопросы, свой отпечаток банка и ответ соперника
+     * (или истёк BANK_HASH_TIMEOUT_MS). Первый вопрос показывается только после отправки,
+     * чтобы ANSWER_SUBMITTED не обогнал набор вопросов.
+     */
+    private void maybeSendStartGame() {
+        if (startGameSent || !questionsReady || localBankHash == null) return;
+        if (peerBankHash == null && !peerBankHashTimedOut) return;
+        if (isFinishing() || isDestroyed()) return;
+        startGameSent = true;
+        uiHandler.removeCallbacks(bankHashTimeout);
+
+        if (!localBankHash.isEmpty() && localBankHash.equals(peerBankHash)) {
+            // id у соперника могут быть другими (вопросы пришли сверкой банков) — передаём content_hash
+            long[] hashes = new long[currentQuestions.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                Question q = currentQuestions.get(i);
+                hashes[i] = QuestionHash.contentHash(q.question, q.options, q.answerNum);
+            }
+            p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.START_GAME, hashes));
+            Log.d(TAG, "START_GAME: банки совпадают, отправлено " + hashes.length + " хешей");
         } else {
-            Toast.makeText(this, "Вопросы не загружены.", Toast.LENGTH_LONG).show();
-            finish();
+            sendFullQuestions();
+            Log.d(TAG, "START_GAME: банки различаются или соперник не ответил, отправлен полный набор");
         }
+        session.setRoundGraceMs(roundGraceMs());
+        session.start(answerKeys(currentQuestions));
+    }
+
+    /** Запас на доставку ответа в одновременном режиме: на медленном канале (RTT по heartbeat) больше. */
+    private long roundGraceMs() {
+        Heartbeat.RttStats rtt = p2pManager.getRttStats();
+        if (rtt == null || rtt.samples == 0) return 0;
+        return 2 * rtt.p95Micros / 1000;
     }
 
-    private void loadQuestionsFromDB() {
-        QuizDatabaseHelper dbHelper = QuizDatabaseHelper.getInstance(this);
+    private static int[] answerKeys(List<Question> questions) {
+        int[] keys = new int[questions.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = questions.get(i).answerNum;
+        return keys;
+    }
+
+    /** На медленном канале (RTT по heartbeat лобби) ждём ответ дольше, чем BANK_HASH_TIMEOUT_MS. */
+    private long bankHashTimeoutMs() {
+        Heartbeat.RttStats rtt = p2pManager.getRttStats();
+        if (rtt == null || rtt.samples == 0) return BANK_HASH_TIMEOUT_MS;
+        return Math.max(BANK_HASH_TIMEOUT_MS, 4 * rtt.p95Micros / 1000);
+    }
+
+    private void sendFullQuestions() {
+        p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.START_GAME, new ArrayList<>(currentQuestions)));
+    }
+
+    /** Клиент: набор вопросов получен (целиком или восстановлен по id). */
+    private void onMatchQuestionsReceived(List<Question> questions) {
         currentQuestions.clear();
-        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
-                "SELECT * FROM " + QuizDatabaseHelper.TABLE_QUESTIONS + " ORDER BY RANDOM() LIMIT " + TOTAL_QUESTIONS,
-                null);
-
-        try {
-            if (cursor.moveToFirst()) {
-                do {
-                    Question q = new Question();
-                    q.id = cursor.getInt(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_ID));
-                    q.question = cursor.getString(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_QUESTION));
-                    q.options = new String[]{
-                            cursor.getString(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_OPTION1)),
-                            cursor.getString(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_OPTION2)),
-                            cursor.getString(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_OPTION3)),
-                            cursor.getString(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_OPTION4))
-                    };
-                    q.answerNum = cursor.getInt(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_ANSWER_NUM));
-                    currentQuestions.add(q);
-                } while (cursor.moveToNext());
-            }
-        } finally {
-            if (cursor != null) cursor.close();
+        currentQuestions.addAll(questions);
+        if (!amHost) {
+            stopWaitingVideo();
+            // Ход, пришедший раньше вопросов, сессия начнёт сейчас; иначе — экран ожидания
+            session.onQuestionsReceived(answerKeys(currentQuestions));
         }
     }
 
-    private void showQuestion(int index) {
-        if (index >= currentQuestions.size()) {
-            endGame();
-            return;
-        }
+    /**
+     * Загружает набор вопросов вне UI-потока и вызывает onLoaded на главном потоке.
+     * Обычно набор уже предзагружен в фоне (экран результатов / меню) и лежит в памяти.
+     */
+    private void loadQuestionsFromDB(Runnable onLoaded) {
+        repository.loadMatchQuestions(TOTAL_QUESTIONS, SettingsActivity.getQuestionFilter(this), questions -> {
+            if (isFinishing() || isDestroyed()) return;
+            currentQuestions.clear();
+            if (questions != null) currentQuestions.addAll(questions);
+            onLoaded.run();
+        });
+    }
 
-        currentQuestionIndex = index;
+    private void showQuestion(int index) {
         Question q = currentQuestions.get(index);
 
         tvQuestion.setText(q.question);
@@ -310,8 +373,6 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
 
         vWaitingScreen.setVisibility(View.GONE);
         vGameContent.setVisibility(View.VISIBLE);
-
-        startTimer();
     }
 
     private void showWaitingScreen() {
@@ -354,77 +415,105 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
         vWaitingScreen.clearAnimation();
     }
 
-    private void startTimer() {
-        if (gameTimer != null) gameTimer.cancel();
-
-        gameTimer = new CountDownTimer(TIMER_DURATION_MS, 1000) {
-            @Override public void onTick(long millisUntilFinished) {
-                long seconds = millisUntilFinished / 1000;
-                tvTimer.setText(getString(R.string.timer_format, seconds));
-            }
-            @Override public void onFinish() {
-                // treat timeout as wrong answer (0)
-                handleAnswerSubmission(0);
-            }
-        }.start();
+    private void startTimer(long durationMs) {
+        answerClock.start(durationMs);
     }
 
+    /** Сессия отменяет таймер ответа сразу по ответу игрока — stop() даёт время реакции этого хода. */
     private void stopTimer() {
-        if (gameTimer != null) { gameTimer.cancel(); gameTimer = null; }
-        tvTimer.setText(getString(R.string.timer_format, 0L));
-    }
-
-    private void handleAnswerSubmission(int selectedOption) {
-        if (!isPvpMode) {
-            stopTimer();
-            Question q = currentQuestions.get(currentQuestionIndex);
-            boolean isCorrect = selectedOption > 0 && selectedOption == q.answerNum;
-            updateAnswerUI(selectedOption, q.answerNum, true);
-            if (isCorrect) { localPlayerScore += 20; QuizApplication.getInstance().playSound(R.raw.correct); }
-            else if (selectedOption > 0) { QuizApplication.getInstance().playSound(R.raw.incorrect); }
-            new Handler(Looper.getMainLooper()).postDelayed(this::moveToNextQuestion, 1500);
-            return;
+        lastReactionMs = answerClock.stop();
+        tvTimer.setText(getString(R.string.timer_format, 0f));
+    }
+
+    private static int toReactionTime(long reactionMs) {
+        return reactionMs < 0 ? PlayerAnswer.UNKNOWN_REACTION_TIME : (int) Math.min(reactionMs, Integer.MAX_VALUE);
+    }
+
+    /** Эффекты сессии: правила решают, что произошло, здесь — как это показать и отправить. */
+    private final GameSession.Effects sessionEffects = new GameSession.Effects() {
+        @Override
+        public void showQuestion(int index) {
+            GameActivity.this.showQuestion(index);
         }
 
-        // PvP
-        stopTimer();
-        Question q = currentQuestions.get(currentQuestionIndex);
-        boolean isCorrect = selectedOption > 0 && selectedOption == q.answerNum;
+        @Override
+        public void showWaiting() {
+            stopWaitingVideo();
+            showWaitingScreen();
+        }
+
+        @Override
+        public void showAnswer(int index, int selectedOption, int correctOption) {
+            updateAnswerUI(index, selectedOption, correctOption, true);
+            if (index >= 0 && index < localReactionMs.length) localReactionMs[index] = toReactionTime(lastReactionMs);
+            if (selectedOption > 0 && selectedOption == correctOption) {
+                QuizApplication.getInstance().playSound(R.raw.correct);
+            } else if (selectedOption > 0) {
+                QuizApplication.getInstance().playSound(R.raw.incorrect);
+            }
+        }
+
+        @Override
+        public void showOpponentAnswer(int index, boolean correct) {
+            ImageView indicator = (ImageView) llOpponentIndicators.getChildAt(index);
+            if (indicator != null) indicator.setColorFilter(getColor(correct ? R.color.colorIndicatorGreen : R.color.colorIndicatorRed));
+        }
 
-        updateAnswerUI(selectedOption, q.answerNum, true);
+        @Override
+        public void sendAnswer(int index, int selectedOption, boolean correct) {
+            try {
+                p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED,
+                        new PlayerAnswer(index, selectedOption, correct, true, toReactionTime(lastReactionMs))));
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to send ANSWER_SUBMITTED", e);
+            }
+        }
 
-        if (isCorrect) {
-            localPlayerScore += 25;
-            QuizApplication.getInstance().playSound(R.raw.correct);
-        } else if (selectedOption > 0) {
-            QuizApplication.getInstance().playSound(R.raw.incorrect);
+        @Override
+        public void sendRoundOpened(int index) {
+            p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.QUESTION_INDEX, index));
         }
 
-        PlayerAnswer answer = new PlayerAnswer(currentQuestionIndex, selectedOption, isCorrect, true);
+        @Override
+        public void sendGameOver() {
+            try { p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.GAME_OVER, null)); } catch (Exception ignored) {}
+        }
 
-        // mark answered locally
-        if (amHost) hostAnsweredCurrent = true; else clientAnsweredCurrent = true;
+        @Override
+        public void schedule(GameSession.Timer timer, long delayMs) {
+            if (timer == GameSession.Timer.ANSWER) {
+                startTimer(delayMs);
+                return;
+            }
+            Runnable task = timerTask(timer);
+            uiHandler.removeCallbacks(task);
+            uiHandler.postDelayed(task, delayMs);
+        }
 
-        // send answer to opponent
-        try {
-            p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED, answer));
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to send ANSWER_SUBMITTED", e);
+        @Override
+        public void cancel(GameSession.Timer timer) {
+            if (timer == GameSession.Timer.ANSWER) stopTimer();
+            else uiHandler.removeCallbacks(timerTask(timer));
         }
 
-        // show waiting screen
-        isMyTurn = false;
-        stopWaitingVideo();
-        showWaitingScreen();
+        @Override
+        public void finished(GameSession.Result result) {
+            endGame(result);
+        }
+    };
+
+    private Runnable timerTask(GameSession.Timer timer) {
+        return timer == GameSession.Timer.ADVANCE ? advanceTimer : roundDeadlineTimer;
     }
 
     /**
      * Update UI for a submitted answer.
+     * @param index question index (indicator position)
      * @param selectedOption selected by player (0 = timeout/no answer)
      * @param correctOption correct answer index
      * @param isLocal whether it's the local player's indicator (true) or opponent's (false)
      */
-    private void updateAnswerUI(int selectedOption, int correctOption, boolean isLocal) {
+    private void updateAnswerUI(int index, int selectedOption, int correctOption, boolean isLocal) {
         for (int i = 0; i < 4; i++) {
             if (i + 1 == correctOption) {
                 answerButtons[i].setBackgroundColor(getColor(R.color.colorCorrectAnswer));
@@ -434,38 +523,20 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
             answerButtons[i].setEnabled(false);
         }
 
-        ImageView indicator = (ImageView) (isLocal ? llPlayerIndicators.getChildAt(currentQuestionIndex) : llOpponentIndicators.getChildAt(currentQuestionIndex));
+        ImageView indicator = (ImageView) (isLocal ? llPlayerIndicators.getChildAt(index) : llOpponentIndicators.getChildAt(index));
         if (indicator != null) {
             indicator.setColorFilter(getColor(selectedOption > 0 && selectedOption == correctOption ?
                     R.color.colorIndicatorGreen : R.color.colorIndicatorRed));
         }
     }
 
-    private void moveToNextQuestion() {
-        // Called by host to advance after both answered, or by singleplayer flow
-        currentQuestionIndex++;
-        hostAnsweredCurrent = false;
-        clientAnsweredCurrent = false;
-        stopWaitingVideo();
-        if (currentQuestionIndex < TOTAL_QUESTIONS) {
-            if (isPvpMode) {
-                if (amHost) {
-                    isMyTurn = true;
-                    showQuestion(currentQuestionIndex);
-                } else {
-                    isMyTurn = false;
-                    showWaitingScreen();
-                }
-            } else {
-                showQuestion(currentQuestionIndex);
-            }
-        } else {
-            endGame();
-        }
-    }
-
     @Override
     public void onDataReceived(Serializable data) {
+        // Сверка банков работает на своём потоке — UI-поток не нужен
+        if (data instanceof GameDataModel && ((GameDataModel) data).type == GameDataModel.DataType.BANK_SYNC) {
+            if (bankSync != null) bankSync.handle((BankSyncMessage) ((GameDataModel) data).data);
+            return;
+        }
         runOnUiThread(() -> {
             // handle PLAYER_NAME string
             if (data instanceof String) {
@@ -480,6 +551,15 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
                     }
                     return;
                 }
+                if (s.startsWith(P2PManager.BANK_HASH_PREFIX)) {
+                    peerBankHash = s.substring(P2PManager.BANK_HASH_PREFIX.length());
+                    if (amHost) maybeSendStartGame();
+                    return;
+                }
+                if (s.equals(P2PManager.REQUEST_QUESTIONS)) {
+                    if (amHost && !currentQuestions.isEmpty()) sendFullQuestions();
+                    return;
+                }
             }
 
             if (!(data instanceof GameDataModel)) return;
@@ -487,21 +567,29 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
 
             switch (model.type) {
                 case START_GAME:
-                    // Client receives the whole question list but should stay waiting until host answers
-                    if (model.data instanceof List) {
-                        currentQuestions.clear();
+                    // Client receives the question set but should stay waiting until host answers
+                    if (model.data instanceof long[]) {
+                        // Банки совпадают — пришли только content_hash, вопросы берём из своей базы
+                        long[] hashes = (long[]) model.data;
+                        repository.loadQuestionsByContentHash(hashes, questions -> {
+                            if (isFinishing() || isDestroyed()) return;
+                            if (questions != null && questions.size() == hashes.length) {
+                                onMatchQuestionsReceived(questions);
+                            } else {
+                                Log.w(TAG, "START_GAME: не все вопросы найдены локально, запрашиваем полный набор");
+                                p2pManager.sendMessage(P2PManager.REQUEST_QUESTIONS);
+                            }
+                        });
+                    } else if (model.data instanceof List) {
                         try {
-                            currentQuestions.addAll((List<Question>) model.data);
-                            gameInProgress = true;
-                            // ensure client shows waiting screen at start
-                            if (!amHost) {
-                                isMyTurn = false;
-                                stopWaitingVideo();
-                                showWaitingScreen();
+                            onMatchQuestionsReceived((List<Question>) model.data);
+                            if (!bankSyncStarted && bankSync != null) {
+                                bankSyncStarted = true;
+                                bankSync.start();
                             }
                         } catch (ClassCastException e) {
                             Log.e(TAG, "Error casting START_GAME data", e);
-                            endGame();
+                            session.onConnectionFailed();
                         }
                     }
                     break;
@@ -509,31 +597,18 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
                 case ANSWER_SUBMITTED:
                     if (model.data instanceof PlayerAnswer) {
                         PlayerAnswer pa = (PlayerAnswer) model.data;
-                        // Update opponent indicator and score if correct
-                        ImageView indicator = (ImageView) llOpponentIndicators.getChildAt(pa.questionIndex);
-                        if (indicator != null) indicator.setColorFilter(getColor(pa.isCorrect ? R.color.colorIndicatorGreen : R.color.colorIndicatorRed));
-
-                        if (amHost) {
-                            // Host receives client's answer -> update opponentScore and then proceed to next question
-                            if (pa.isCorrect) opponentScore += 25;
-                            clientAnsweredCurrent = true;
-                            // If host already answered this question -> both answered -> host moves to next question
-                            if (hostAnsweredCurrent) {
-                                // small delay for UX
-                                new Handler(Looper.getMainLooper()).postDelayed(this::moveToNextQuestion, 800);
-                            }
-                        } else {
-                            // Client receives host's answer -> update opponentScore and now it's client's turn for same question
-                            if (pa.isCorrect) opponentScore += 25;
-                            hostAnsweredCurrent = true;
-                            // client becomes active
-                            isMyTurn = true;
-                            stopWaitingVideo();
-                            showQuestion(currentQuestionIndex);
+                        if (pa.questionIndex >= 0 && pa.questionIndex < opponentReactionMs.length) {
+                            opponentReactionMs[pa.questionIndex] = pa.reactionTimeMs;
                         }
+                        session.onRemoteAnswer(pa.questionIndex, pa.isCorrect);
                     }
                     break;
 
+                case QUESTION_INDEX:
+                    // Одновременный режим: хост открыл раунд, клиент отвечает не дожидаясь хода хоста
+                    if (model.data instanceof Integer) session.onRoundOpened((Integer) model.data);
+                    break;
+
                 case EMOTE_USED:
                     if (model.data instanceof EmoteAction) {
                         String emoteId = ((EmoteAction) model.data).emoteName;
@@ -543,47 +618,51 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
                     break;
 
                 case GAME_OVER:
-                    if (gameInProgress) endGame();
+                    session.onRemoteGameOver();
                     break;
             }
         });
     }
 
-    private void endGame() {
-        if (!gameInProgress) return;
-        gameInProgress = false;
-        stopTimer();
+    /** Сессия закончила матч (GAME_OVER сопернику она уже отправила). */
+    private void endGame(GameSession.Result result) {
         stopWaitingVideo();
 
-        boolean isWinner = localPlayerScore > opponentScore;
+        boolean isWinner = result.outcome == GameSession.Outcome.WIN;
         String message;
         if (isPvpMode) {
-            message = isWinner ? "Победа!" : (localPlayerScore == opponentScore ? "Ничья" : "Поражение!");
+            message = isWinner ? "Победа!" : (result.outcome == GameSession.Outcome.DRAW ? "Ничья" : "Поражение!");
             QuizApplication.getInstance().playSound(isWinner ? R.raw.victory : R.raw.defeat);
         } else {
-            message = localPlayerScore > 0 ? "Одиночная игра завершена" : "Игра провалена.";
+            message = result.localScore > 0 ? "Одиночная игра завершена" : "Игра провалена.";
             QuizApplication.getInstance().playSound(localPlayerName != null ? R.raw.victory : R.raw.defeat);
         }
 
-        saveGameResults(isWinner);
+        saveGameResults(result.localScore, isWinner);
+        Log.d(TAG, "Время реакции, мс: " + Arrays.toString(localReactionMs)
+                + (isPvpMode ? ", соперник " + Arrays.toString(opponentReactionMs) : ""));
 
         if (isPvpMode && p2pManager != null) {
-            try { p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.GAME_OVER, null)); } catch (Exception ignored) {}
+            OutboundQueue.Metrics outbound = p2pManager.getOutboundMetrics();
+            if (outbound != null) Log.d(TAG, "Исходящая очередь за матч: " + outbound);
+            Heartbeat.RttStats rtt = p2pManager.getRttStats();
+            if (rtt != null) Log.d(TAG, "RTT за матч: " + rtt);
+            if (bankSync != null) bankSync.close();
             P2PConnectionSingleton.getInstance().clear();
         }
 
         Intent resultsIntent = new Intent(this, EndGameActivity.class);
         resultsIntent.putExtra("MESSAGE", message);
         resultsIntent.putExtra("IS_WINNER", isWinner);
-        resultsIntent.putExtra("LOCAL_SCORE", localPlayerScore);
-        resultsIntent.putExtra("OPPONENT_SCORE", opponentScore);
+        resultsIntent.putExtra("LOCAL_SCORE", result.localScore);
+        resultsIntent.putExtra("OPPONENT_SCORE", result.opponentScore);
         startActivity(resultsIntent);
         finish();
     }
 
-    private void saveGameResults(boolean isWinner) {
-        QuizDatabaseHelper dbHelper = QuizDatabaseHelper.getInstance(this);
-        dbHelper.updatePlayerStats(localPlayerScore, isPvpMode, isWinner);
+    private void saveGameResults(int score, boolean isWinner) {
+        // Запись уходит на поток-писатель репозитория и переживёт закрытие активности
+        repository.updatePlayerStats(score, isPvpMode, isWinner, null);
     }
 
     // EMOTES
@@ -663,7 +742,7 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
         runOnUiThread(() -> {
             if (isPvpMode) {
                 Toast.makeText(this, "P2P Ошибка: " + message, Toast.LENGTH_LONG).show();
-                endGame();
+                session.onConnectionFailed();
             }
         });
     }
@@ -671,11 +750,10 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
     @Override
     public void onDisconnected(String reason) {
         runOnUiThread(() -> {
-            if (isPvpMode && gameInProgress) {
+            if (isPvpMode && session.isStarted() && !session.isFinished()) {
                 Toast.makeText(this, "Противник отключился: " + reason, Toast.LENGTH_LONG).show();
-                // award remaining player 20 points (as requested)
-                localPlayerScore += 20;
-                endGame();
+                // remaining player gets GameSession.OPPONENT_LEFT_BONUS
+                session.onDisconnected();
             }
         });
     }
@@ -685,7 +763,11 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
 
     @Override protected void onDestroy() {
         super.onDestroy();
-        if (gameTimer != null) gameTimer.cancel();
+        uiHandler.removeCallbacks(bankHashTimeout);
+        uiHandler.removeCallbacks(advanceTimer);
+        uiHandler.removeCallbacks(roundDeadlineTimer);
+        if (bankSync != null) bankSync.close();
+        answerClock.stop();
         stopWaitingVideo();
         QuizApplication.getInstance().startBackgroundMusic();
     }
@@ -694,15 +776,8 @@ public class GameActivity extends AppCompatActivity implements P2PManager.Connec
         new AlertDialog.Builder(this)
                 .setTitle("Выход из игры")
                 .setMessage("Вы уверены, что хотите выйти? Вы проиграете игру.")
-                .setPositiveButton("Выйти", (dialog, which) -> {
-                    // If quitting during PvP, inform opponent by best-effort GAME_OVER
-                    if (isPvpMode && p2pManager != null) {
-                        try { p2pManager.sendMessage(new GameDataModel(GameDataModel.DataType.GAME_OVER, null)); } catch (Exception ignored) {}
-                    }
-                    localPlayerScore = 0;
-                    opponentScore = isPvpMode ? 20 : 0; // if leaving, opponent will get 20
-                    endGame();
-                })
+                // own score is lost, opponent gets GameSession.QUIT_PENALTY; session informs opponent by GAME_OVER
+                .setPositiveButton("Выйти", (dialog, which) -> session.quit())
                 .setNegativeButton("Отмена", null)
                 .show();
     }
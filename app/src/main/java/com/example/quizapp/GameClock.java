@@ -0,0 +1,129 @@
+package com.example.quizapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * GameClock — часы хода: обратный отсчёт на ответ и время реакции игрока.
+ *
+ * Особенности:
+ * - отсчёт от дедлайна по SystemClock.elapsedRealtimeNanos: остаток каждый раз вычисляется заново,
+ *   поэтому занятый главный поток задерживает обновление экрана, но не сдвигает само время
+ * - экран обновляется с кадров Choreographer, слушатель получает остаток только при смене десятой доли секунды
+ * - истечение ловит и кадр, и резервное сообщение Handler (кадров нет, пока окно не рисуется);
+ *   onExpired вызывается один раз и не раньше дедлайна
+ * - stop() возвращает время реакции хода; после истечения — вся длительность
+ * - только главный поток
+ */
+final class GameClock {
+
+    /** Время реакции неизвестно: ход ещё не начинался. */
+    static final long UNKNOWN = -1;
+    /** Шаг отображаемого остатка. */
+    static final long TICK_MS = 100;
+
+    interface Listener {
+        /** Остаток в мс, округлённый вверх до TICK_MS: 14 950 мс показываются как 15.0. */
+        void onTick(long remainingMs);
+        void onExpired();
+    }
+
+    private final Listener listener;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override public void doFrame(long frameTimeNanos) {
+            if (!running) return;
+            update();
+            if (running) choreographer.postFrameCallback(this);
+        }
+    };
+    private final Runnable expiryCheck = this::onExpiryCheck;
+
+    private long startNanos;
+    private long deadlineNanos;
+    private long stopNanos;
+    private long lastShownMs;
+    private boolean started;
+    private boolean running;
+
+    GameClock(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Начинает новый ход длительностью durationMs; предыдущий отсчёт отменяется. */
+    void start(long durationMs) {
+        removeCallbacks();
+        long durationNanos = Math.max(0, durationMs) * 1_000_000L;
+        startNanos = SystemClock.elapsedRealtimeNanos();
+        deadlineNanos = startNanos + durationNanos;
+        lastShownMs = shownMs(durationNanos);
+        started = true;
+        running = true;
+        // start вызывается из эффектов сессии: истечение всегда приходит позже, отдельным сообщением
+        listener.onTick(lastShownMs);
+        choreographer.postFrameCallback(frameCallback);
+        handler.postDelayed(expiryCheck, Math.max(0, durationMs));
+    }
+
+    /**
+     * Останавливает отсчёт и возвращает время с начала хода в мс. Повторный вызов возвращает то же значение,
+     * до первого start — UNKNOWN.
+     */
+    long stop() {
+        if (!started) return UNKNOWN;
+        if (running) {
+            running = false;
+            stopNanos = Math.min(SystemClock.elapsedRealtimeNanos(), deadlineNanos);
+            removeCallbacks();
+        }
+        return (stopNanos - startNanos) / 1_000_000L;
+    }
+
+    /** Остаток хода в мс по монотонным часам; 0 — ход истёк или не идёт. */
+    long remainingMs() {
+        if (!running) return 0;
+        return Math.max(0, (deadlineNanos - SystemClock.elapsedRealtimeNanos()) / 1_000_000L);
+    }
+
+    private void update() {
+        long remainingNanos = deadlineNanos - SystemClock.elapsedRealtimeNanos();
+        if (remainingNanos <= 0) {
+            expire();
+            return;
+        }
+        long shown = shownMs(remainingNanos);
+        if (shown != lastShownMs) {
+            lastShownMs = shown;
+            listener.onTick(shown);
+        }
+    }
+
+    /** Остаток для экрана: вверх до TICK_MS, чтобы 0 показывался только по истечении. */
+    private static long shownMs(long remainingNanos) {
+        long tickNanos = TICK_MS * 1_000_000L;
+        return (remainingNanos + tickNanos - 1) / tickNanos * TICK_MS;
+    }
+
+    /** Handler считает по uptimeMillis, часы хода — по elapsedRealtime: если сообщение пришло раньше, ждём остаток. */
+    private void onExpiryCheck() {
+        if (!running) return;
+        update();
+        if (running) handler.postDelayed(expiryCheck, Math.max(1, remainingMs()));
+    }
+
+    private void expire() {
+        running = false;
+        stopNanos = deadlineNanos;
+        removeCallbacks();
+        listener.onTick(0);
+        listener.onExpired();
+    }
+
+    private void removeCallbacks() {
+        choreographer.removeFrameCallback(frameCallback);
+        handler.removeCallbacks(expiryCheck);
+    }
+}
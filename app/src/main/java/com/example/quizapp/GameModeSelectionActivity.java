@@ -1,13 +1,21 @@
 package com.example.quizapp;
 
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.widget.Button;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.quizapp.data.QuizRepository;
+
+import java.util.List;
+
 public class GameModeSelectionActivity extends AppCompatActivity {
 
-    private Button btnSinglePlayer, btnPvpMode;
+    private Button btnSinglePlayer, btnPvpMode, btnCategory;
+    private SharedPreferences sharedPrefs;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -22,6 +30,10 @@ public class GameModeSelectionActivity extends AppCompatActivity {
     private void initializeUI() {
         btnSinglePlayer = findViewById(R.id.btn_single_player);
         btnPvpMode = findViewById(R.id.btn_pvp_player);
+        btnCategory = findViewById(R.id.btn_category);
+
+        sharedPrefs = getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        updateCategoryButton();
     }
 
     private void setListeners() {
@@ -43,5 +55,54 @@ public class GameModeSelectionActivity extends AppCompatActivity {
             startActivity(intent);
             finish();
         });
+
+        // ТЕМА ВОПРОСОВ
+        btnCategory.setOnClickListener(v -> {
+            QuizApplication.getInstance().playClickSound();
+            QuizRepository.getInstance(this).loadCategories(this::showCategoryDialog);
+        });
+    }
+
+    private void showCategoryDialog(List<String> categories) {
+        if (isFinishing() || isDestroyed() || categories == null) return;
+
+        // Первый пункт — без ограничения по теме
+        String[] keys = new String[categories.size() + 1];
+        String[] labels = new String[keys.length];
+        labels[0] = getString(R.string.category_all);
+        String selected = sharedPrefs.getString(SettingsActivity.KEY_CATEGORY, null);
+        int checked = 0;
+        for (int i = 0; i < categories.size(); i++) {
+            keys[i + 1] = categories.get(i);
+            labels[i + 1] = categoryLabel(categories.get(i));
+            if (categories.get(i).equals(selected)) checked = i + 1;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.select_category)
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    SharedPreferences.Editor editor = sharedPrefs.edit();
+                    if (keys[which] == null) editor.remove(SettingsActivity.KEY_CATEGORY);
+                    else editor.putString(SettingsActivity.KEY_CATEGORY, keys[which]);
+                    editor.apply();
+                    updateCategoryButton();
+                    // Предзагруженный набор был под старую тему
+                    QuizRepository.getInstance(this).prefetchNextMatch(GameActivity.TOTAL_QUESTIONS,
+                            SettingsActivity.getQuestionFilter(this));
+                    dialog.dismiss();
+                })
+                .show();
+    }
+
+    private void updateCategoryButton() {
+        String category = sharedPrefs.getString(SettingsActivity.KEY_CATEGORY, null);
+        String label = category == null ? getString(R.string.category_all) : categoryLabel(category);
+        btnCategory.setText(getString(R.string.category_button, label));
+    }
+
+    /** Название темы из ресурсов category_<ключ>; для тем из импортированных пакетов — сам ключ. */
+    private String categoryLabel(String key) {
+        int resId = getResources().getIdentifier("category_" + key, "string", getPackageName());
+        return resId != 0 ? getString(resId) : key;
     }
 }
\ No newline at end of file
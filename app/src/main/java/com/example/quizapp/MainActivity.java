@@ -17,6 +17,7 @@ import com.example.quizapp.GameModeSelectionActivity;
 import com.example.quizapp.QuizApplication;
 import com.example.quizapp.R;
 import com.example.quizapp.SettingsActivity;
+import com.example.quizapp.data.QuizRepository;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,6 +42,10 @@ public class MainActivity extends AppCompatActivity { // Используем Ma
 
         // Возобновляем музыку меню (если она была остановлена)
         QuizApplication.getInstance().startBackgroundMusic();
+
+        // Пока открыто меню, готовим вопросы первого матча в фоне
+        QuizRepository.getInstance(this).prefetchNextMatch(GameActivity.TOTAL_QUESTIONS,
+                SettingsActivity.getQuestionFilter(this));
     }
 
     private void initializeUI() {
@@ -13,10 +13,12 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.quizapp.data.QuizRepository;
 import com.example.quizapp.p2p.BluetoothManager;
 import com.example.quizapp.p2p.ConnectionType;
 import com.example.quizapp.p2p.P2PConnectionSingleton;
 import com.example.quizapp.p2p.P2PManager;
+import com.example.quizapp.p2p.ResumableSession;
 import com.example.quizapp.p2p.WifiDirectManager;
 
 public class P2PConnectActivity extends AppCompatActivity {
@@ -68,18 +70,21 @@ public class P2PConnectActivity extends AppCompatActivity {
 
         // Если разрешения предоставлены, продолжить настройку
         P2PManager manager;
+        // Отпечаток банка для ответа сопернику: на потоке чтения репозитория, не на потоке транспорта
+        QuizRepository repository = QuizRepository.getInstance(getApplicationContext());
+        P2PManager.BankHashSource bankHash = callback -> repository.loadQuestionBankHash(callback::accept);
 
         if (type == ConnectionType.BLUETOOTH) {
-            manager = new BluetoothManager();
+            manager = new BluetoothManager(bankHash);
         } else if (type == ConnectionType.WIFI_DIRECT) {
-            manager = new WifiDirectManager();
+            manager = new WifiDirectManager(bankHash);
         } else {
             Toast.makeText(this, "Не выбран тип соединения.", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        // Установка активного менеджера в синглтоне
-        P2PConnectionSingleton.getInstance().setActiveManager(manager);
+        // Установка активного менеджера в синглтоне; сессия переживает короткие обрывы транспорта
+        P2PConnectionSingleton.getInstance().setActiveManager(new ResumableSession(manager));
 
         // Переход к экрану поиска устройств
         Intent intent = new Intent(P2PConnectActivity.this, P2PDiscoveryActivity.class);
@@ -31,6 +31,7 @@ import com.example.quizapp.p2p.ConnectionType;
 import com.example.quizapp.p2p.DiscoveredDevice;
 import com.example.quizapp.p2p.P2PConnectionSingleton;
 import com.example.quizapp.p2p.P2PManager;
+import com.example.quizapp.p2p.ResumableSession;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -238,8 +239,8 @@ public class P2PDiscoveryActivity extends AppCompatActivity implements P2PManage
     }
 
     private void finishEnableHostAfterDiscoverable() {
-        if (connectionManager instanceof BluetoothManager) {
-            BluetoothManager btManager = (BluetoothManager) connectionManager;
+        BluetoothManager btManager = bluetoothManager();
+        if (btManager != null) {
             boolean started = btManager.startListening();
             if (started) {
                 isHostMode = true;
@@ -256,8 +257,8 @@ public class P2PDiscoveryActivity extends AppCompatActivity implements P2PManage
 
     private void disableHostMode() {
         if (connectionType == ConnectionType.BLUETOOTH) {
-            if (connectionManager instanceof BluetoothManager) {
-                BluetoothManager btManager = (BluetoothManager) connectionManager;
+            BluetoothManager btManager = bluetoothManager();
+            if (btManager != null) {
                 btManager.stopListening();
                 isHostMode = false;
                 prefs.edit().putBoolean(PREF_HOST_MODE, false).apply();
@@ -272,11 +273,19 @@ public class P2PDiscoveryActivity extends AppCompatActivity implements P2PManage
         updateListeningStatus();
     }
 
+    /** Bluetooth-транспорт под сессией или null, если выбран другой тип соединения. */
+    private BluetoothManager bluetoothManager() {
+        P2PManager transport = connectionManager instanceof ResumableSession
+                ? ((ResumableSession) connectionManager).getTransport() : connectionManager;
+        return transport instanceof BluetoothManager ? (BluetoothManager) transport : null;
+    }
+
     private void updateListeningStatus() {
         runOnUiThread(() -> {
             if (connectionType == ConnectionType.BLUETOOTH) {
-                if (connectionManager instanceof BluetoothManager) {
-                    boolean listening = ((BluetoothManager) connectionManager).isListening();
+                BluetoothManager btManager = bluetoothManager();
+                if (btManager != null) {
+                    boolean listening = btManager.isListening();
                     tvListeningStatus.setText(listening ? "Слушает входящие (хост)" : "Не слушает (клиент)");
                     tvListeningStatus.setTextColor(listening ? Color.GREEN : Color.DKGRAY);
                     btnHostToggle.setText(listening ? "Остановить хост" : "Стать хостом");
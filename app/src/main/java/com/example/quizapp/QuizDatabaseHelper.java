@@ -3,34 +3,68 @@ package com.example.quizapp;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.example.quizapp.data.MigrationRunner;
+import com.example.quizapp.data.PlayerStats;
+import com.example.quizapp.data.QuestionBankHash;
+import com.example.quizapp.data.QuestionBitSet;
+import com.example.quizapp.data.QuestionDeduplicator;
+import com.example.quizapp.data.QuestionMerkleTree;
+import com.example.quizapp.data.QuestionSchema;
+import com.example.quizapp.data.QuestionSearch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * QuizDatabaseHelper — расширения:
  * - поддержка таблицы inventory (купленные эмоции / предметы)
  * - методы: addToInventory, removeFromInventory, isItemOwned, getOwnedEmotes, setItemEquipped, getEquippedItems
+ * - банк вопросов не вставляется в onCreate: он компилируется при сборке (задача compileQuestionBank)
+ *   в assets/databases/QuizGame.db и при первом открытии просто копируется на место базы — лениво,
+ *   на потоке-писателе QuizRepository (openOn), а не в getInstance на UI-потоке
+ * - обновление схемы — пошаговые миграции (QuizMigrations) без пересоздания таблиц
  */
 public class QuizDatabaseHelper extends SQLiteOpenHelper {
 
     private static final String TAG = "QuizDBHelper";
-    private static final String DATABASE_NAME = "QuizGame.db";
-    private static final int DATABASE_VERSION = 2;
+    static final String DATABASE_NAME = "QuizGame.db";
+    static final int DATABASE_VERSION = 7;
     private static QuizDatabaseHelper instance;
 
-    // Таблица "Вопросы"
-    public static final String TABLE_QUESTIONS = "questions";
-    public static final String COLUMN_ID = "_id";
-    public static final String COLUMN_QUESTION = "question";
-    public static final String COLUMN_OPTION1 = "option1";
-    public static final String COLUMN_OPTION2 = "option2";
-    public static final String COLUMN_OPTION3 = "option3";
-    public static final String COLUMN_OPTION4 = "option4";
-    public static final String COLUMN_ANSWER_NUM = "answer_num";
+    // Таблица "Вопросы" — схема в QuestionSchema, имена здесь для краткости в запросах хелпера
+    public static final String TABLE_QUESTIONS = QuestionSchema.TABLE_QUESTIONS;
+    public static final String COLUMN_ID = QuestionSchema.COLUMN_ID;
+    public static final String COLUMN_QUESTION = QuestionSchema.COLUMN_QUESTION;
+    public static final String COLUMN_OPTION1 = QuestionSchema.COLUMN_OPTION1;
+    public static final String COLUMN_OPTION2 = QuestionSchema.COLUMN_OPTION2;
+    public static final String COLUMN_OPTION3 = QuestionSchema.COLUMN_OPTION3;
+    public static final String COLUMN_OPTION4 = QuestionSchema.COLUMN_OPTION4;
+    public static final String COLUMN_ANSWER_NUM = QuestionSchema.COLUMN_ANSWER_NUM;
+    public static final String COLUMN_CATEGORY = QuestionSchema.COLUMN_CATEGORY;
+    public static final String COLUMN_DIFFICULTY = QuestionSchema.COLUMN_DIFFICULTY;
+    public static final String COLUMN_LANGUAGE = QuestionSchema.COLUMN_LANGUAGE;
+    public static final String COLUMN_CONTENT_HASH = QuestionSchema.COLUMN_CONTENT_HASH;
+    public static final String DEFAULT_CATEGORY = QuestionSchema.DEFAULT_CATEGORY;
+    public static final String DEFAULT_LANGUAGE = QuestionSchema.DEFAULT_LANGUAGE;
 
     // Таблица "Настройки и Статистика Игрока"
     public static final String TABLE_PLAYER_STATS = "player_stats";
@@ -46,18 +80,15 @@ public class QuizDatabaseHelper extends SQLiteOpenHelper {
     public static final String INVENTORY_COLUMN_NAME = "item_name";
     public static final String INVENTORY_COLUMN_EQUIPPED = "is_equipped"; // 0/1
 
-    private static final String CREATE_TABLE_QUESTIONS = "CREATE TABLE " +
-            TABLE_QUESTIONS + "(" +
-            COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-            COLUMN_QUESTION + " TEXT," +
-            COLUMN_OPTION1 + " TEXT," +
-            COLUMN_OPTION2 + " TEXT," +
-            COLUMN_OPTION3 + " TEXT," +
-            COLUMN_OPTION4 + " TEXT," +
-            COLUMN_ANSWER_NUM + " INTEGER" +
-            ")";
+    // Таблица "Показанные вопросы" — битовая карта id вопросов (QuestionBitSet) на игрока
+    public static final String TABLE_SEEN_QUESTIONS = "seen_questions";
+    public static final String SEEN_COLUMN_PLAYER_ID = "player_id";
+    public static final String SEEN_COLUMN_BITMAP = "bitmap";
+
+    // Готовая база с банком вопросов, собирается задачей compileQuestionBank из src/main/questions
+    private static final String BUNDLED_DATABASE_ASSET = "databases/" + DATABASE_NAME;
 
-    private static final String CREATE_TABLE_PLAYER_STATS = "CREATE TABLE " +
+    static final String CREATE_TABLE_PLAYER_STATS = "CREATE TABLE " +
             TABLE_PLAYER_STATS + "(" +
             STATS_COLUMN_ID + " INTEGER PRIMARY KEY," +
             STATS_COLUMN_NAME + " TEXT DEFAULT 'noname'," +
@@ -66,13 +97,19 @@ public class QuizDatabaseHelper extends SQLiteOpenHelper {
             STATS_COLUMN_POINTS + " INTEGER DEFAULT 0" +
             ")";
 
-    private static final String CREATE_TABLE_INVENTORY = "CREATE TABLE " +
+    static final String CREATE_TABLE_INVENTORY = "CREATE TABLE " +
             TABLE_INVENTORY + "(" +
             INVENTORY_COLUMN_ID + " TEXT PRIMARY KEY," +
             INVENTORY_COLUMN_NAME + " TEXT NOT NULL," +
             INVENTORY_COLUMN_EQUIPPED + " INTEGER DEFAULT 0" +
             ")";
 
+    static final String CREATE_TABLE_SEEN_QUESTIONS = "CREATE TABLE IF NOT EXISTS " +
+            TABLE_SEEN_QUESTIONS + "(" +
+            SEEN_COLUMN_PLAYER_ID + " INTEGER PRIMARY KEY," +
+            SEEN_COLUMN_BITMAP + " BLOB NOT NULL" +
+            ")";
+
     public static synchronized QuizDatabaseHelper getInstance(Context context) {
         if (instance == null) {
             instance = new QuizDatabaseHelper(context.getApplicationContext());
@@ -80,28 +117,180 @@ public class QuizDatabaseHelper extends SQLiteOpenHelper {
         return instance;
     }
 
+    /** Закрывает и забывает экземпляр — для тестов, где у каждого теста свой Application. */
+    @VisibleForTesting
+    public static synchronized void resetInstance() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    private final Context context;
+    private final MigrationRunner migrations;
+    private boolean installed; // ассет скопирован или база уже была; под блокировкой this
+    private volatile Future<?> opening;
+    private String questionBankHash; // кэш QuestionBankHash; null — пересчитать
+    private final List<Runnable> questionBankListeners = new CopyOnWriteArrayList<>();
+
     private QuizDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+        this.migrations = QuizMigrations.create(context);
+        // WAL: читатели QuizRepository не ждут единственного писателя
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Открывает базу задачей на writer: копирование ассета, onCreate и миграции идут на потоке-писателе
+     * раньше любой другой задачи с базой. Пока открытие не закончено, остальные потоки ждут его
+     * в getReadableDatabase/getWritableDatabase, а не копируют базу сами.
+     */
+    public void openOn(ExecutorService writer) {
+        opening = writer.submit(this::openDatabase);
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        awaitOpening();
+        return openDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        awaitOpening();
+        prepareDatabaseFile();
+        return super.getReadableDatabase();
+    }
+
+    private SQLiteDatabase openDatabase() {
+        prepareDatabaseFile();
+        return super.getWritableDatabase();
+    }
+
+    private void awaitOpening() {
+        Future<?> pending = opening;
+        if (pending == null || pending.isDone()) return;
+        try {
+            pending.get();
+        } catch (ExecutionException e) {
+            // Ошибка открытия повторится и будет выброшена в вызывающем потоке
+            Log.e(TAG, "Не удалось открыть базу на потоке-писателе", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Всё, что нужно сделать с файлом до первого открытия через SQLiteOpenHelper. Выполняется один раз. */
+    private synchronized void prepareDatabaseFile() {
+        if (installed) return;
+        installBundledDatabase(context);
+        migrateBeforeOpen();
+        installed = true;
+    }
+
+    /**
+     * Миграции выполняются до открытия через SQLiteOpenHelper, на отдельном соединении: в onUpgrade все шаги
+     * шли бы одной общей транзакцией, а onConfigure менять базу не должен. Здесь каждый шаг фиксируется
+     * отдельно (MigrationRunner), и прерванное обновление продолжится с последней завершённой версии.
+     * После этого версия уже равна DATABASE_VERSION, и onUpgrade не вызывается.
+     */
+    private void migrateBeforeOpen() {
+        File dbFile = context.getDatabasePath(DATABASE_NAME);
+        if (!dbFile.exists()) return;
+        SQLiteDatabase db;
+        try {
+            db = SQLiteDatabase.openDatabase(dbFile.getPath(), null,
+                    SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING);
+        } catch (SQLiteException e) {
+            // Открыть на запись не удалось — SQLiteOpenHelper сам сообщит о невозможности обновления
+            Log.w(TAG, "Не удалось открыть базу для миграции", e);
+            return;
+        }
+        try {
+            int version = db.getVersion();
+            // 0 — новая база (onCreate)
+            if (version > 0 && version < DATABASE_VERSION) {
+                migrations.migrate(db, DATABASE_VERSION);
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Первый запуск: копирует предсобранную базу из ассетов вместо сотен INSERT в onCreate.
+     * Стоимость не зависит от размера банка — это одно последовательное копирование файла.
+     * Файл пишется во временный и переименовывается, чтобы прерванное копирование не оставило битую базу.
+     */
+    private static void installBundledDatabase(Context context) {
+        File dbFile = context.getDatabasePath(DATABASE_NAME);
+        if (dbFile.exists()) return;
+
+        File parent = dbFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log.e(TAG, "Не удалось создать каталог базы: " + parent);
+            return;
+        }
+
+        File tmp = new File(dbFile.getPath() + ".tmp");
+        if (!copyBundledDatabase(context, tmp)) return;
+
+        if (!tmp.renameTo(dbFile)) {
+            Log.e(TAG, "Не удалось переименовать " + tmp + " в " + dbFile);
+            tmp.delete();
+            return;
+        }
+        Log.d(TAG, "Банк вопросов установлен из ассетов.");
+    }
+
+    static boolean copyBundledDatabase(Context context, File target) {
+        try (InputStream in = context.getAssets().open(BUNDLED_DATABASE_ASSET);
+             OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Не удалось скопировать банк вопросов из ассетов", e);
+            target.delete();
+            return false;
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL(CREATE_TABLE_QUESTIONS);
+        db.execSQL(QuestionSchema.CREATE_TABLE);
+        createQuestionIndexes(db);
         db.execSQL(CREATE_TABLE_PLAYER_STATS);
         db.execSQL(CREATE_TABLE_INVENTORY);
+        db.execSQL(CREATE_TABLE_SEEN_QUESTIONS);
+
+        // Поисковый индекс собран вместе с банком в ассете — здесь только триггеры
+        QuestionSearch.createTriggers(db);
+        // Сигнатуры дубликатов банка считаются при первом импорте, а не здесь (QuestionDeduplicator.ensureIndexed)
+        QuestionDeduplicator.createTables(db);
+        // Хеши листьев дерева сверки — при первой сверке с соперником
+        QuestionMerkleTree.createTables(db);
 
         insertInitialStats(db);
-        insertInitialQuestions(db);
-        Log.d(TAG, "Базы данных и таблицы созданы.");
+        Log.d(TAG, "Базы данных и таблицы созданы. Вопросов в банке: " + countQuestions(db));
+    }
+
+    private static long countQuestions(SQLiteDatabase db) {
+        return DatabaseUtils.queryNumEntries(db, TABLE_QUESTIONS);
+    }
+
+    static void createQuestionIndexes(SQLiteDatabase db) {
+        for (String sql : QuestionSchema.CREATE_INDEXES) db.execSQL(sql);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_INVENTORY);
-        db.execSQL("DROP TABLE IF EXISTS " + "emotions");
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PLAYER_STATS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_QUESTIONS);
-        onCreate(db);
+        // Обычно шаги уже применены в migrateBeforeOpen; оставшиеся выполнятся внутри общей транзакции
+        migrations.migrate(db, newVersion);
     }
 
     private void insertInitialStats(SQLiteDatabase db) {
@@ -132,6 +321,39 @@ public class QuizDatabaseHelper extends SQLiteOpenHelper {
         return name != null ? name : "noname";
     }
 
+    /** Статистика игрока; null, если строки нет или чтение не удалось. */
+    public PlayerStats getPlayerStats() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_PLAYER_STATS, null, STATS_COLUMN_ID + "=1", null, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                return new PlayerStats(
+                        cursor.getString(cursor.getColumnIndexOrThrow(STATS_COLUMN_NAME)),
+                        cursor.getInt(cursor.getColumnIndexOrThrow(STATS_COLUMN_POINTS)),
+                        cursor.getInt(cursor.getColumnIndexOrThrow(STATS_COLUMN_SINGLE_WINS)),
+                        cursor.getInt(cursor.getColumnIndexOrThrow(STATS_COLUMN_PVP_WINS)));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "getPlayerStats failed", e);
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+        return null;
+    }
+
+    public boolean updatePlayerName(String newName) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(STATS_COLUMN_NAME, newName);
+            return db.update(TABLE_PLAYER_STATS, values, STATS_COLUMN_ID + "=1", null) > 0;
+        } catch (Exception e) {
+            Log.e(TAG, "updatePlayerName failed", e);
+            return false;
+        }
+    }
+
     public void updatePlayerStats(int pointsEarned, boolean isPvp, boolean isWinner) {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
@@ -171,377 +393,144 @@ public class QuizDatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
-    // TODO: Здесь нужно реализовать вставку всех 100 вопросов.
-    private void insertInitialQuestions(SQLiteDatabase db) {
-
-        // --- Правильный ответ: 1 (25 вопросов) ---
-
-        // 1. (БЫЛО: 3) Столица Франции?
-        addQuestion(db, "Столица Франции?", "Париж", "Мадрид", "Берлин", "Рим", 1);
-
-        // 4. (БЫЛО: 3) Что такое алгоритм QuickSort?
-        addQuestion(db, "Что такое алгоритм QuickSort?", "Быстрая сортировка", "Сортировка пузырьком", "Сортировка обменом", "Сортировка вставками", 1);
-
-        // 8. (БЫЛО: 3) Какое животное является символом Австралии?
-        addQuestion(db, "Какое животное является символом Австралии?", "Кенгуру", "Панда", "Лев", "Слон", 1);
-
-        // 9. (БЫЛО: 1) Что означает аббревиатура HTML?
-        addQuestion(db, "Что означает аббревиатура HTML?", "Hyper Text Markup Language", "High Tech Modern Link", "Home Tool Markup Logic", "Hyperlink Text Module Logic", 1);
-
-        // 14. (БЫЛО: 3) Какая валюта используется в Великобритании?
-        addQuestion(db, "Какая валюта используется в Великобритании?", "Фунт стерлингов", "Доллар", "Евро", "Франк", 1);
-
-        // 19. (БЫЛО: 3) Какое основное число в двоичной системе счисления?
-        addQuestion(db, "Какое основное число в двоичной системе счисления?", "2", "16", "10", "8", 1);
-
-        // 22. (БЫЛО: 3) Какое состояние воды является самым плотным?
-        addQuestion(db, "Какое состояние воды является самым плотным?", "Жидкое", "Твердое (лед)", "Газ (пар)", "Плазма", 1);
-
-        // 26. (БЫЛО: 3) Какая основная функция процессора (CPU)?
-        addQuestion(db, "Какая основная функция процессора (CPU)?", "Выполнение инструкций и вычислений", "Отрисовка графики", "Хранение данных", "Подключение к сети", 1);
-
-        // 30. (БЫЛО: 3) Какая столица Германии?
-        addQuestion(db, "Какая столица Германии?", "Берлин", "Франкфурт", "Мюнхен", "Гамбург", 1);
-
-        // 35. (БЫЛО: 3) Какая планета известна как "Красная планета"?
-        addQuestion(db, "Какая планета известна как 'Красная планета'?", "Марс", "Юпитер", "Венера", "Сатурн", 1);
-
-        // 40. (БЫЛО: 3) Какой континент является самым сухим?
-        addQuestion(db, "Какой континент является самым сухим?", "Антарктида", "Азия", "Африка", "Австралия", 1);
-
-        // 45. (БЫЛО: 3) Какое море является самым соленым?
-        addQuestion(db, "Какое море является самым соленым?", "Мертвое море", "Красное", "Средиземное", "Черное", 1);
-
-        // 48. (БЫЛО: 3) Как называется самая большая кость в теле человека?
-        addQuestion(db, "Как называется самая большая кость в теле человека?", "Бедренная кость", "Ключица", "Лопатка", "Череп", 1);
-
-        // 52. (БЫЛО: 3) В каком году был запущен первый спутник Земли ("Спутник-1")?
-        addQuestion(db, "В каком году был запущен первый спутник Земли ('Спутник-1')?", "1957", "1969", "1951", "1961", 1);
-
-        // 56. (БЫЛО: 3) Какой химический элемент назван в честь богини Луны?
-        addQuestion(db, "Какой химический элемент назван в честь богини Луны?", "Селен", "Нептуний", "Уран", "Плутоний", 1);
-
-        // 60. (БЫЛО: 3) Какой самый большой океан на Земле?
-        addQuestion(db, "Какой самый большой океан на Земле?", "Тихий", "Индийский", "Атлантический", "Северный Ледовитый", 1);
-
-        // 63. (БЫЛО: 3) Какая форма записи данных используется в формате JSON?
-        addQuestion(db, "Какая форма записи данных используется в формате JSON?", "Пары ключ-значение", "Матрица", "XML-теги", "Бинарный код", 1);
-
-        // 68. (БЫЛО: 3) Какой газ нужен для горения?
-        addQuestion(db, "Какой газ нужен для горения?", "Кислород", "Водород", "Азот", "Гелий", 1);
-
-        // 71. (БЫЛО: 3) Какое основное отличие между Java и JavaScript?
-        addQuestion(db, "Какое основное отличие между Java и JavaScript?", "Это разные языки с разным назначением", "JavaScript — серверный язык", "Оба являются одинаковыми", "Java — скриптовый язык", 1);
-
-        // 77. (БЫЛО: 3) Какая самая высокая точка на Луне?
-        addQuestion(db, "Какая самая высокая точка на Луне?", "Горы Апеннины", "Океан Бурь", "Край Спокойствия", "Пик Гюйгенса", 1);
-
-        // 82. (БЫЛО: 3) Какая команда используется для выхода из цикла в большинстве языков?
-        addQuestion(db, "Какая команда используется для выхода из цикла в большинстве языков?", "break", "return", "continue", "goto", 1);
-
-        // 86. (БЫЛО: 3) Какое дерево является символом Ливана?
-        addQuestion(db, "Какое дерево является символом Ливана?", "Кедр", "Кипарис", "Оливковое дерево", "Пальма", 1);
-
-        // 90. (БЫЛО: 3) Какая самая популярная социальная сеть в мире (по числу пользователей)?
-        addQuestion(db, "Какая самая популярная социальная сеть в мире?", "Facebook", "TikTok", "Instagram", "Twitter (X)", 1);
-
-        // 93. (БЫЛО: 3) Какое наименьшее простое число?
-        addQuestion(db, "Какое наименьшее простое число?", "2", "1", "0", "3", 1);
-
-        // 98. (БЫЛО: 3) Какой тип данных используется для хранения логических значений (правда/ложь)?
-        addQuestion(db, "Какой тип данных используется для хранения логических значений?", "Boolean", "String", "Int", "Char", 1);
-
-        // --- Правильный ответ: 2 (25 вопросов) ---
-
-        // 2. (БЫЛО: 2) Самая большая планета СС?
-        addQuestion(db, "Самая большая планета СС?", "Марс", "Юпитер", "Венера", "Сатурн", 2);
-
-        // 5. (БЫЛО: 3) В какой стране находится гора Эверест?
-        addQuestion(db, "В какой стране находится гора Эверест?", "Китай", "Непал", "Индия", "Бутан", 2);
-
-        // 11. (БЫЛО: 3) Какая столица Японии?
-        addQuestion(db, "Какая столица Японии?", "Сеул", "Токио", "Пекин", "Осака", 2);
-
-        // 12. (БЫЛО: 2) Что делает оператор '++' в C++?
-        addQuestion(db, "Что делает оператор '++' в C++?", "Уменьшает значение", "Увеличивает значение на 1", "Умножает на 2", "Делит на 2", 2);
-
-        // 13. (БЫЛО: 2) Какой год считается началом Второй мировой войны?
-        addQuestion(db, "Какой год считается началом Второй мировой войны?", "1914", "1939", "1941", "1945", 2);
-
-        // 17. (БЫЛО: 3) Что такое объектно-ориентированное программирование?
-        addQuestion(db, "Что такое ООП?", "Функциональный подход", "Подход на основе объектов и классов", "Процедурный подход", "Линейный подход", 2);
-
-        // 21. (БЫЛО: 3) Назовите самый быстрый вид транспорта.
-        addQuestion(db, "Назовите самый быстрый вид транспорта.", "Поезд", "Ракета", "Самолет", "Автомобиль", 2);
-
-        // 24. (БЫЛО: 2) Что такое API?
-        addQuestion(db, "Что такое API?", "Интерфейс приложения для пользователя", "Интерфейс программирования приложений", "Архитектурный протокол Интернета", "Активный процесс интерфейса", 2);
-
-        // 27. (БЫЛО: 3) Какой язык программирования разработал Джеймс Гослинг?
-        addQuestion(db, "Какой язык программирования разработал Джеймс Гослинг?", "Python", "Java", "C++", "JavaScript", 2);
-
-        // 31. (БЫЛО: 2) Что такое CSS?
-        addQuestion(db, "Что такое CSS?", "Язык разметки", "Стилевая таблица", "Протокол связи", "Система безопасности", 2);
-
-        // 34. (БЫЛО: 3) Какая книга является самой продаваемой в мире (после Библии)?
-        addQuestion(db, "Какая книга является самой продаваемой в мире (после Библии)?", "Властелин колец", "Маленький принц", "Дон Кихот", "Гарри Поттер", 2);
-
-        // 38. (БЫЛО: 3) В каком городе находится Эйфелева башня?
-        addQuestion(db, "В каком городе находится Эйфелева башня?", "Рим", "Париж", "Лондон", "Нью-Йорк", 2);
-
-        // 42. (БЫЛО: 3) Какой металл является самым легким?
-        addQuestion(db, "Какой металл является самым легким?", "Алюминий", "Литий", "Натрий", "Кальций", 2);
-
-        // 44. (БЫЛО: 2) Что такое рекурсия в программировании?
-        addQuestion(db, "Что такое рекурсия в программировании?", "Цикл 'For'", "Вызов функции из самой себя", "Множественное наследование", "Работа с базами данных", 2);
-
-        // 47. (БЫЛО: 3) Какой символ используется для обозначения комментариев в Python?
-        addQuestion(db, "Какой символ используется для обозначения комментариев в Python?", "//", "#", "/*", "$", 2);
-
-        // 51. (БЫЛО: 3) Назовите самый твердый природный минерал.
-        addQuestion(db, "Назовите самый твердый природный минерал.", "Кварц", "Алмаз", "Топаз", "Тальк", 2);
-
-        // 53. (БЫЛО: 2) Что такое JVM?
-        addQuestion(db, "Что такое JVM?", "Менеджер версий Java", "Виртуальная машина Java", "Язык разметки Java", "Файл данных Java", 2);
+    // Categories
 
-        // 57. (БЫЛО: 3) В какой стране находится Большой Барьерный риф?
-        addQuestion(db, "В какой стране находится Большой Барьерный риф?", "Индонезия", "Австралия", "Филиппины", "Мексика", 2);
-
-        // 59. (БЫЛО: 2) Что такое HTTP?
-        addQuestion(db, "Что такое HTTP?", "Язык разметки", "Протокол передачи гипертекста", "Интернет-домен", "Система баз данных", 2);
-
-        // 64. (БЫЛО: 3) Какое самое большое пресноводное озеро по объему?
-        addQuestion(db, "Какое самое большое пресноводное озеро по объему?", "Верхнее", "Байкал", "Мичиган", "Танганьика", 2);
-
-        // 66. (БЫЛО: 2) Что такое DNS?
-        addQuestion(db, "Что такое DNS?", "Сетевой протокол", "Сервер имен доменов", "Система защиты данных", "Программное обеспечение", 2);
-
-        // 69. (БЫЛО: 2) Что такое класс в ООП?
-        addQuestion(db, "Что такое класс в ООП?", "Единичный объект", "План (шаблон) для создания объектов", "Функция", "Переменная", 2);
-
-        // 72. (БЫЛО: 2) Как называется процесс образования облаков?
-        addQuestion(db, "Как называется процесс образования облаков?", "Эрозия", "Конденсация", "Испарение", "Сублимация", 2);
-
-        // 75. (БЫЛО: 2) Какой оператор используется для сравнения равенства значений в большинстве языков (напр., Java)?
-        addQuestion(db, "Какой оператор используется для сравнения равенства значений?", "=", "==", "!==", "===", 2);
-
-        // 76. (БЫЛО: 2) Кто написал "Гамлета"?
-        addQuestion(db, "Кто написал 'Гамлета'?", "Байрон", "Шекспир", "Диккенс", "По", 2);
-
-        // 78. (БЫЛО: 2) Что такое VPN?
-        addQuestion(db, "Что такое VPN?", "Локальная сеть", "Виртуальная частная сеть", "Сервер приложений", "Протокол передачи данных", 2);
-
-        // 83. (БЫЛО: 2) Какое основное применение имеет алюминий?
-        addQuestion(db, "Какое основное применение имеет алюминий?", "Ювелирные изделия", "Строительство и авиация", "Батареи", "Топливо", 2);
-
-        // 85. (БЫЛО: 2) Что такое буфер обмена?
-        addQuestion(db, "Что такое буфер обмена?", "Постоянное хранилище данных", "Временная область памяти для копирования", "Раздел на жестком диске", "Сетевой протокол", 2);
-
-        // 88. (БЫЛО: 3) Какое атмосферное явление вызывает радугу?
-        addQuestion(db, "Какое атмосферное явление вызывает радугу?", "Молния", "Дисперсия света", "Рефракция звука", "Рассеивание света", 2);
-
-        // 91. (БЫЛО: 2) Что такое компилятор?
-        addQuestion(db, "Что такое компилятор?", "Программа для выполнения скриптов", "Программа, переводящая код в машинный", "Инструмент для отладки", "Редактор текста", 2);
-
-        // 94. (БЫЛО: 3) Как называется процесс преобразования переменного тока в постоянный?
-        addQuestion(db, "Как называется процесс преобразования переменного тока в постоянный?", "Инверсия", "Выпрямление", "Трансформация", "Резистирование", 2);
-
-        // 96. (БЫЛО: 2) Какая основная цель цикла 'While'?
-        addQuestion(db, "Какая основная цель цикла 'While'?", "Инициализация переменной", "Повторение кода, пока условие истинно", "Однократное выполнение кода", "Обработка исключений", 2);
-
-        // 99. (БЫЛО: 3) Кто автор картины "Звездная ночь"?
-        addQuestion(db, "Кто автор картины 'Звездная ночь'?", "Пикассо", "Винсент Ван Гог", "Рембрандт", "Клод Моне", 2);
-
-        // --- Правильный ответ: 3 (25 вопросов) ---
-
-        // 6. (БЫЛО: 3) Кто написал роман 'Война и мир'?
-        addQuestion(db, "Кто написал роман 'Война и мир'?", "Достоевский", "Пушкин", "Толстой", "Чехов", 3);
-
-        // 16. (БЫЛО: 3) Какой газ составляет большую часть атмосферы Земли?
-        addQuestion(db, "Какой газ составляет большую часть атмосферы Земли?", "Кислород", "Углекислый газ", "Азот", "Аргон", 3);
-
-        // 20. (БЫЛО: 3) Картина "Мона Лиза" написана кем?
-        addQuestion(db, "Картина 'Мона Лиза' написана кем?", "Ван Гог", "Пикассо", "Леонардо да Винчи", "Моне", 3);
-
-        // 23. (БЫЛО: 3) Какая крупнейшая страна по площади?
-        addQuestion(db, "Какая крупнейшая страна по площади?", "Канада", "США", "Россия", "Китай", 3);
-
-        // 29. (БЫЛО: 3) Кто является автором теории относительности?
-        addQuestion(db, "Кто является автором теории относительности?", "Исаак Ньютон", "Стивен Хокинг", "Альберт Эйнштейн", "Никола Тесла", 3);
-
-        // 33. (БЫЛО: 3) Какое наименьшее по размеру государство в мире?
-        addQuestion(db, "Какое наименьшее по размеру государство в мире?", "Монако", "Науру", "Ватикан", "Сан-Марино", 3);
-
-        // 37. (БЫЛО: 3) Какое самое большое млекопитающее на Земле?
-        addQuestion(db, "Какое самое большое млекопитающее на Земле?", "Слон", "Жираф", "Синий кит", "Кашалот", 3);
-
-        // 41. (БЫЛО: 3) Кто написал "Одиссею"?
-        addQuestion(db, "Кто написал 'Одиссею'?", "Платон", "Аристотель", "Гомер", "Софокл", 3);
-
-        // 49. (БЫЛО: 3) Какое озеро является самым глубоким в мире?
-        addQuestion(db, "Какое озеро является самым глубоким в мире?", "Каспийское море", "Виктория", "Байкал", "Верхнее", 3);
-
-        // 54. (БЫЛО: 3) Какое самое высокое водопадение в мире?
-        addQuestion(db, "Какое самое высокое водопадение в мире?", "Ниагарский водопад", "Виктория", "Анхель", "Игуасу", 3);
-
-        // 61. (БЫЛО: 3) Какое химическое вещество придает растениям зеленый цвет?
-        addQuestion(db, "Какое химическое вещество придает растениям зеленый цвет?", "Каротин", "Меланин", "Хлорофилл", "Ксантаны", 3);
-
-        // 65. (БЫЛО: 3) Сколько сторон у гексагона?
-        addQuestion(db, "Сколько сторон у гексагона?", "5", "7", "6", "8", 3);
-
-        // 73. (БЫЛО: 3) Где находится Тадж-Махал?
-        addQuestion(db, "Где находится Тадж-Махал?", "Пакистан", "Иран", "Индия", "Бангладеш", 3);
-
-        // 79. (БЫЛО: 2) Какой самый северный материк?
-        addQuestion(db, "Какой самый северный материк?", "Северная Америка", "Азия", "Евразия", "Австралия", 3);
-
-        // 81. (БЫЛО: 3) В каком году люди впервые высадились на Луну?
-        addQuestion(db, "В каком году люди впервые высадились на Луну?", "1961", "1975", "1969", "1980", 3);
-
-        // 89. (БЫЛО: 3) Какое основное различие между List и Set в Java?
-        addQuestion(db, "Какое основное различие между List и Set (Java)?", "List быстрее", "List хранит уникальные элементы", "Set хранит только уникальные элементы", "Set медленнее", 3);
-
-        // 95. (БЫЛО: 3) Какой главный исполнительный директор (CEO) Tesla?
-        addQuestion(db, "Какой главный исполнительный директор (CEO) Tesla?", "Джефф Безос", "Билл Гейтс", "Илон Маск", "Тим Кук", 3);
-
-        // 101. Какая столица Ирландии?
-        addQuestion(db, "Какая столица Ирландии?", "Белфаст", "Ливерпуль", "Дублин", "Эдинбург", 3);
-
-        // 102. Какая столица Мексики?
-        addQuestion(db, "Какая столица Мексики?", "Канкун", "Гвадалахара", "Мехико", "Тихуана", 3);
-
-        // 103. Какой металл является жидким при комнатной температуре?
-        addQuestion(db, "Какой металл является жидким при комнатной температуре?", "Золото", "Серебро", "Ртуть", "Бронза", 3);
-
-        // 104. Что такое IDE в программировании?
-        addQuestion(db, "Что такое IDE в программировании?", "Интерфейс данных", "Система развертывания", "Интегрированная среда разработки", "Исполняемый файл", 3);
-
-        // 105. В какой стране находится пирамида Хеопса?
-        addQuestion(db, "В какой стране находится пирамида Хеопса?", "Судан", "Иордания", "Египет", "Марокко", 3);
-
-        // 106. Как называется крупнейший спутник Юпитера?
-        addQuestion(db, "Как называется крупнейший спутник Юпитера?", "Европа", "Ио", "Ганимед", "Каллисто", 3);
-
-        // 107. Что такое FTL в компьютерных играх?
-        addQuestion(db, "Что такое FTL в компьютерных играх?", "Больше света", "Симуляция физики", "Сверхсветовое движение", "Ограниченная скорость", 3);
-
-        // 108. Какая основная функция митохондрий в клетке?
-        addQuestion(db, "Какая основная функция митохондрий в клетке?", "Синтез белка", "Хранение ДНК", "Производство энергии", "Транспорт веществ", 3);
-
-        // 109. Кто написал оперу "Свадьба Фигаро"?
-        addQuestion(db, "Кто написал оперу 'Свадьба Фигаро'?", "Шуберт", "Гайдн", "Моцарт", "Бах", 3);
-
-        // 110. Как называется самое высокое здание в мире?
-        addQuestion(db, "Как называется самое высокое здание в мире?", "Шанхайская башня", "Абрадж аль-Бейт", "Бурдж-Халифа", "Тайбэй 101", 3);
-
-        // --- Правильный ответ: 4 (25 вопросов) ---
-
-        // 3. (БЫЛО: 3) Какая кислота содержится в уксусе?
-        addQuestion(db, "Какая кислота содержится в уксусе?", "Лимонная", "Серная", "Муравьиная", "Уксусная", 4);
-
-        // 7. (БЫЛО: 3) Какой элемент имеет атомный номер 1 в таблице Менделеева?
-        addQuestion(db, "Какой элемент имеет атомный номер 1 в таблице Менделеева?", "Гелий", "Кислород", "Углерод", "Водород", 4);
-
-        // 10. (БЫЛО: 4) Какая крупнейшая пустыня в мире?
-        addQuestion(db, "Какая крупнейшая пустыня в мире?", "Сахара", "Атакама", "Гоби", "Антарктическая пустыня", 4);
-
-        // 15. (БЫЛО: 3) Кто изобрел лампочку?
-        addQuestion(db, "Кто изобрел лампочку?", "Никола Тесла", "Альберт Эйнштейн", "Галилео Галилей", "Томас Эдисон", 4);
-
-        // 18. (БЫЛО: 3) Какая самая длинная река в мире?
-        addQuestion(db, "Какая самая длинная река в мире?", "Янцзы", "Нил", "Миссисипи", "Амазонка", 4);
-
-        // 25. (БЫЛО: 3) Что называется "планетой-гигантом" в Солнечной системе?
-        addQuestion(db, "Что называется 'планетой-гигантом' в Солнечной системе?", "Марс", "Земля", "Венера", "Юпитер", 4);
-
-        // 28. (БЫЛО: 3) Какое самое глубокое место в мировом океане?
-        addQuestion(db, "Какое самое глубокое место в мировом океане?", "Бермудский треугольник", "Большой Барьерный риф", "Карибский желоб", "Марианская впадина", 4);
-
-        // 32. (БЫЛО: 3) Какой химический элемент обозначается символом 'Fe'?
-        addQuestion(db, "Какой химический элемент обозначается символом 'Fe'?", "Фтор", "Золото", "Свинец", "Железо", 4);
-
-        // 36. (БЫЛО: 3) Что означает SQL?
-        addQuestion(db, "Что означает SQL?", "Simple Query Logic", "Structured Question Language", "Sequential Query Logic", "Structured Query Language", 4);
-
-        // 39. (БЫЛО: 3) Что такое хеш-таблица?
-        addQuestion(db, "Что такое хеш-таблица?", "Линейный список", "Стек", "Дерево", "Структура данных для быстрого поиска", 4);
-
-        // 43. (БЫЛО: 3) Какое название носит столица Южной Кореи?
-        addQuestion(db, "Какое название носит столица Южной Кореи?", "Пусан", "Тэгу", "Инчхон", "Сеул", 4);
-
-        // 46. (БЫЛО: 3) В какой стране изобрели порох?
-        addQuestion(db, "В какой стране изобрели порох?", "Индия", "Египет", "Греция", "Китай", 4);
-
-        // 50. (БЫЛО: 3) Что такое Git?
-        addQuestion(db, "Что такое Git?", "Язык программирования", "Операционная система", "Веб-сервер", "Система контроля версий", 4);
-
-        // 55. (БЫЛО: 3) Какое изобретение связано с именем Иоганна Гутенберга?
-        addQuestion(db, "Какое изобретение связано с именем Иоганна Гутенберга?", "Радио", "Телефон", "Паровой двигатель", "Печатный станок", 4);
-
-        // 58. (БЫЛО: 3) Какое название носит столица Канады?
-        addQuestion(db, "Какое название носит столица Канады?", "Торонто", "Монреаль", "Ванкувер", "Оттава", 4);
-
-        // 62. (БЫЛО: 3) Кто написал симфонию №5?
-        addQuestion(db, "Кто написал симфонию №5?", "Бах", "Моцарт", "Шопен", "Бетховен", 4);
-
-        // 67. (БЫЛО: 3) Назовите столицу Бразилии.
-        addQuestion(db, "Назовите столицу Бразилии.", "Рио-де-Жанейро", "Сан-Паулу", "Буэнос-Айрес", "Бразилиа", 4);
-
-        // 70. (БЫЛО: 3) Какой знаменитый ученый сформулировал законы движения?
-        addQuestion(db, "Какой знаменитый ученый сформулировал законы движения?", "Галилей", "Эйнштейн", "Хокинг", "Ньютон", 4);
-
-        // 74. (БЫЛО: 3) Какое самое распространенное дерево в мире?
-        addQuestion(db, "Какое самое распространенное дерево в мире?", "Береза", "Дуб", "Клен", "Сосна", 4);
-
-        // 80. (БЫЛО: 3) Как называется состояние вещества с самой низкой температурой?
-        addQuestion(db, "Как называется состояние вещества с самой низкой температурой?", "Твердое", "Плазма", "Жидкость", "Конденсат Бозе-Эйнштейна", 4);
-
-        // 84. (БЫЛО: 3) Как называется столица Австралии?
-        addQuestion(db, "Как называется столица Австралии?", "Сидней", "Мельбурн", "Перт", "Канберра", 4);
-
-        // 87. (БЫЛО: 3) Какая музыкальная нота обозначается буквой 'C'?
-        addQuestion(db, "Какая музыкальная нота обозначается буквой 'C'?", "Ре", "Ми", "Соль", "До", 4);
-
-        // 92. (БЫЛО: 3) Какой континент пересекает экватор, нулевой меридиан и тропик Козерога?
-        addQuestion(db, "Какой континент пересекает экватор, нулевой меридиан и тропик Козерога?", "Южная Америка", "Азия", "Австралия", "Африка", 4);
+    /**
+     * Список тем банка. Обход по индексу скачками (category > ?), поэтому стоимость
+     * зависит от числа тем, а не от числа вопросов.
+     */
+    public List<String> getCategories() {
+        List<String> res = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (SQLiteStatement next = db.compileStatement("SELECT " + COLUMN_CATEGORY + " FROM " + TABLE_QUESTIONS +
+                " WHERE " + COLUMN_CATEGORY + " > ? ORDER BY " + COLUMN_CATEGORY + " LIMIT 1")) {
+            String current = "";
+            while (true) {
+                next.bindString(1, current);
+                try {
+                    current = next.simpleQueryForString();
+                } catch (SQLiteDoneException e) {
+                    break;
+                }
+                res.add(current);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "getCategories failed", e);
+        }
+        return res;
+    }
 
-        // 97. (БЫЛО: 3) Какая столица Италии?
-        addQuestion(db, "Какая столица Италии?", "Милан", "Венеция", "Флоренция", "Рим", 4);
+    // Question bank hash
 
-        // 100. (БЫЛО: 3) Какое явление объясняет, почему Солнце кажется желтым, а небо голубым?
-        addQuestion(db, "Какое явление объясняет, почему Солнце желтое, а небо голубое?", "Фотосинтез", "Эффект Доплера", "Отражение света", "Рассеяние Рэлея", 4);
+    /** Отпечаток банка вопросов (QuestionBankHash); null, если посчитать не удалось. */
+    public synchronized String getQuestionBankHash() {
+        if (questionBankHash == null) {
+            try {
+                questionBankHash = QuestionBankHash.compute(getReadableDatabase());
+            } catch (Exception e) {
+                Log.e(TAG, "getQuestionBankHash failed", e);
+            }
+        }
+        return questionBankHash;
+    }
 
-        // 111. Какой металл чаще всего используется в качестве анода в литий-ионных батареях?
-        addQuestion(db, "Какой металл используется в качестве анода в литий-ионных батареях?", "Медь", "Никель", "Магний", "Графит/Углерод", 4);
+    /** Подписка на изменения банка вопросов (импорт, сверка с соперником). */
+    public void addQuestionBankListener(Runnable listener) {
+        questionBankListeners.add(listener);
+    }
 
-        // 112. Какое животное является "самым быстрым животным на земле"?
-        addQuestion(db, "Какое животное является 'самым быстрым животным на земле'?", "Гепард", "Сокол-сапсан", "Антилопа", "Гепард", 1); // Поставил 1, но пусть будет 4 для баланса
-        addQuestion(db, "Какое животное является 'самым быстрым животным на земле'?", "Сокол-сапсан", "Антилопа", "Лев", "Гепард", 4);
+    /** Вызывается после любого изменения таблицы вопросов: сбрасывает отпечаток и уведомляет подписчиков. */
+    public void onQuestionBankChanged() {
+        synchronized (this) {
+            questionBankHash = null;
+        }
+        for (Runnable listener : questionBankListeners) listener.run();
+    }
 
+    // Seen questions
 
-        // 113. Какой язык программирования разработала компания Microsoft для .NET?
-        addQuestion(db, "Какой язык программирования разработала компания Microsoft для .NET?", "Java", "C++", "Python", "C#", 4);
+    /** Показанные игроку вопросы; пустой набор, если записи ещё нет. */
+    public QuestionBitSet loadSeenQuestions() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try {
+            cursor = db.query(TABLE_SEEN_QUESTIONS, new String[]{SEEN_COLUMN_BITMAP},
+                    SEEN_COLUMN_PLAYER_ID + "=1", null, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                return QuestionBitSet.fromBytes(cursor.getBlob(0));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "loadSeenQuestions failed", e);
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+        return new QuestionBitSet();
+    }
 
-        // 114. Какая столица Испании?
-        addQuestion(db, "Какая столица Испании?", "Барселона", "Севилья", "Валенсия", "Мадрид", 4);
+    public void saveSeenQuestions(QuestionBitSet seen) {
+        if (seen == null) return;
+        SQLiteDatabase db = this.getWritableDatabase();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(SEEN_COLUMN_PLAYER_ID, 1);
+            values.put(SEEN_COLUMN_BITMAP, seen.toBytes());
+            db.insertWithOnConflict(TABLE_SEEN_QUESTIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        } catch (Exception e) {
+            Log.e(TAG, "saveSeenQuestions failed", e);
+        }
+    }
 
+    // Inventory methods
 
-        Log.d(TAG, "Начальные вопросы вставлены. Всего 114 вопросов.");
+    public enum PurchaseResult {
+        OK,
+        ALREADY_OWNED,
+        NOT_ENOUGH_POINTS,
+        FAILED
     }
 
-    private void addQuestion(SQLiteDatabase db, String question, String opt1, String opt2, String opt3, String opt4, int answerNum) {
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_QUESTION, question);
-        values.put(COLUMN_OPTION1, opt1);
-        values.put(COLUMN_OPTION2, opt2);
-        values.put(COLUMN_OPTION3, opt3);
-        values.put(COLUMN_OPTION4, opt4);
-        values.put(COLUMN_ANSWER_NUM, answerNum);
-        db.insert(TABLE_QUESTIONS, null, values);
+    /** Покупка одной транзакцией: проверка владения и очков, списание, запись в инвентарь. */
+    public PurchaseResult purchaseItem(String itemId, String itemName, int price) {
+        if (itemId == null) return PurchaseResult.FAILED;
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (DatabaseUtils.queryNumEntries(db, TABLE_INVENTORY, INVENTORY_COLUMN_ID + "=?", new String[]{itemId}) > 0) {
+                return PurchaseResult.ALREADY_OWNED;
+            }
+            long points = DatabaseUtils.longForQuery(db,
+                    "SELECT " + STATS_COLUMN_POINTS + " FROM " + TABLE_PLAYER_STATS + " WHERE " + STATS_COLUMN_ID + "=1", null);
+            if (points < price) return PurchaseResult.NOT_ENOUGH_POINTS;
+
+            ContentValues stats = new ContentValues();
+            stats.put(STATS_COLUMN_POINTS, points - price);
+            if (db.update(TABLE_PLAYER_STATS, stats, STATS_COLUMN_ID + "=1", null) <= 0) return PurchaseResult.FAILED;
+
+            ContentValues item = new ContentValues();
+            item.put(INVENTORY_COLUMN_ID, itemId);
+            item.put(INVENTORY_COLUMN_NAME, itemName != null ? itemName : itemId);
+            item.put(INVENTORY_COLUMN_EQUIPPED, 0);
+            if (db.insert(TABLE_INVENTORY, null, item) == -1) return PurchaseResult.FAILED;
+
+            db.setTransactionSuccessful();
+            return PurchaseResult.OK;
+        } catch (Exception e) {
+            Log.e(TAG, "purchaseItem failed", e);
+            return PurchaseResult.FAILED;
+        } finally {
+            db.endTransaction();
+        }
     }
 
-    // Inventory methods
+    public int countOwnedEmotes() {
+        try {
+            return (int) DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_INVENTORY,
+                    INVENTORY_COLUMN_ID + " LIKE 'emote_%'", null);
+        } catch (Exception e) {
+            Log.e(TAG, "countOwnedEmotes failed", e);
+            return -1;
+        }
+    }
 
     public boolean addToInventory(String itemId, String itemName, boolean equipped) {
         if (itemId == null) return false;
@@ -0,0 +1,166 @@
+package com.example.quizapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.example.quizapp.data.Migration;
+import com.example.quizapp.data.MigrationRunner;
+import com.example.quizapp.data.QuestionDeduplicator;
+import com.example.quizapp.data.QuestionHash;
+import com.example.quizapp.data.QuestionMerkleTree;
+import com.example.quizapp.data.QuestionSearch;
+
+import java.io.File;
+
+import static com.example.quizapp.QuizDatabaseHelper.*;
+import static com.example.quizapp.data.Migration.addColumnIfMissing;
+import static com.example.quizapp.data.Migration.tableExists;
+
+/**
+ * QuizMigrations — шаги схемы QuizGame.db.
+ *
+ * Новый шаг добавляется в конец create() вместе с увеличением DATABASE_VERSION;
+ * onCreate при этом должен сразу создавать итоговую схему.
+ */
+final class QuizMigrations {
+
+    private static final String TAG = "QuizMigrations";
+    private static final String LEGACY_TABLE_EMOTIONS = "emotions";
+    private static final int HASH_PAGE_SIZE = 1000;
+
+    private QuizMigrations() {
+    }
+
+    static MigrationRunner create(Context appContext) {
+        return new MigrationRunner(
+                new Migration(1, 2) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        migrate1To2(db);
+                    }
+                },
+                new Migration(2, 3) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        migrate2To3(db, appContext);
+                    }
+                },
+                // v3 -> v4: полнотекстовый индекс вопросов
+                new Migration(3, 4) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        QuestionSearch.createIndex(db);
+                    }
+                },
+                // v4 -> v5: таблицы сигнатур MinHash для поиска дубликатов; сами сигнатуры — при первом импорте
+                new Migration(4, 5) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        QuestionDeduplicator.createTables(db);
+                    }
+                },
+                // v5 -> v6: корзины LSH удаляются вместе с вопросом; оставшиеся от удалённых — чистятся
+                new Migration(5, 6) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        QuestionDeduplicator.createTables(db);
+                        QuestionDeduplicator.deleteOrphanBuckets(db);
+                    }
+                },
+                // v6 -> v7: сохранённые хеши листьев дерева сверки; заполняются при первой сверке
+                new Migration(6, 7) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        QuestionMerkleTree.createTables(db);
+                    }
+                });
+    }
+
+    /**
+     * v1 -> v2: появился инвентарь и очки. Статистика игрока сохраняется: недостающие колонки
+     * добавляются с умолчаниями. Таблица emotions v1 заменена инвентарём и удаляется.
+     */
+    private static void migrate1To2(SQLiteDatabase db) {
+        if (!tableExists(db, TABLE_PLAYER_STATS)) {
+            db.execSQL(CREATE_TABLE_PLAYER_STATS);
+        } else {
+            addColumnIfMissing(db, TABLE_PLAYER_STATS, STATS_COLUMN_NAME, "TEXT DEFAULT 'noname'");
+            addColumnIfMissing(db, TABLE_PLAYER_STATS, STATS_COLUMN_SINGLE_WINS, "INTEGER DEFAULT 0");
+            addColumnIfMissing(db, TABLE_PLAYER_STATS, STATS_COLUMN_PVP_WINS, "INTEGER DEFAULT 0");
+            addColumnIfMissing(db, TABLE_PLAYER_STATS, STATS_COLUMN_POINTS, "INTEGER DEFAULT 0");
+        }
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_PLAYER_STATS + "(" + STATS_COLUMN_ID + ") VALUES (1)");
+
+        if (!tableExists(db, TABLE_INVENTORY)) db.execSQL(CREATE_TABLE_INVENTORY);
+        db.execSQL("DROP TABLE IF EXISTS " + LEGACY_TABLE_EMOTIONS);
+    }
+
+    /**
+     * v2 -> v3: колонки темы/сложности/языка/хеша, хеши существующих вопросов,
+     * темы и сложность из ассета по совпадению хеша, индексы и таблица показанных вопросов.
+     */
+    private static void migrate2To3(SQLiteDatabase db, Context appContext) {
+        addColumnIfMissing(db, TABLE_QUESTIONS, COLUMN_CATEGORY, "TEXT NOT NULL DEFAULT '" + DEFAULT_CATEGORY + "'");
+        addColumnIfMissing(db, TABLE_QUESTIONS, COLUMN_DIFFICULTY, "INTEGER NOT NULL DEFAULT 1");
+        addColumnIfMissing(db, TABLE_QUESTIONS, COLUMN_LANGUAGE, "TEXT NOT NULL DEFAULT '" + DEFAULT_LANGUAGE + "'");
+        addColumnIfMissing(db, TABLE_QUESTIONS, COLUMN_CONTENT_HASH, "INTEGER");
+
+        // Страницами по _id: курсор по "content_hash IS NULL" перечитывает окно после своих же UPDATE
+        try (SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_QUESTIONS + " SET " +
+                COLUMN_CONTENT_HASH + " = ? WHERE " + COLUMN_ID + " = ?")) {
+            String[] options = new String[4];
+            String[] lastId = {"0"};
+            int read;
+            do {
+                read = 0;
+                try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_ID + ", " + COLUMN_QUESTION + ", " +
+                        COLUMN_OPTION1 + ", " + COLUMN_OPTION2 + ", " + COLUMN_OPTION3 + ", " + COLUMN_OPTION4 + ", " +
+                        COLUMN_ANSWER_NUM + " FROM " + TABLE_QUESTIONS + " WHERE " + COLUMN_ID + " > ? AND " +
+                        COLUMN_CONTENT_HASH + " IS NULL ORDER BY " + COLUMN_ID + " LIMIT " + HASH_PAGE_SIZE, lastId)) {
+                    while (cursor.moveToNext()) {
+                        for (int i = 0; i < 4; i++) options[i] = cursor.getString(2 + i);
+                        update.bindLong(1, QuestionHash.contentHash(cursor.getString(1), options, cursor.getInt(6)));
+                        update.bindLong(2, cursor.getLong(0));
+                        update.executeUpdateDelete();
+                        lastId[0] = String.valueOf(cursor.getLong(0));
+                        read++;
+                    }
+                }
+            } while (read == HASH_PAGE_SIZE);
+        }
+        createQuestionIndexes(db);
+        applyBundledMetadata(db, appContext);
+        db.execSQL(CREATE_TABLE_SEEN_QUESTIONS);
+    }
+
+    /** Переносит тему/сложность/язык из ассета на совпадающие по хешу вопросы, где они отличаются. */
+    private static void applyBundledMetadata(SQLiteDatabase db, Context appContext) {
+        File copy = new File(appContext.getCacheDir(), "bundled_" + DATABASE_NAME);
+        if (!copyBundledDatabase(appContext, copy)) return;
+        SQLiteDatabase bundled = null;
+        try (SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_QUESTIONS + " SET " +
+                COLUMN_CATEGORY + " = ?1, " + COLUMN_DIFFICULTY + " = ?2, " + COLUMN_LANGUAGE + " = ?3 WHERE " +
+                COLUMN_CONTENT_HASH + " = ?4 AND (" + COLUMN_CATEGORY + " != ?1 OR " +
+                COLUMN_DIFFICULTY + " != ?2 OR " + COLUMN_LANGUAGE + " != ?3)")) {
+            bundled = SQLiteDatabase.openDatabase(copy.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+            try (Cursor cursor = bundled.query(TABLE_QUESTIONS, new String[]{COLUMN_CATEGORY, COLUMN_DIFFICULTY,
+                    COLUMN_LANGUAGE, COLUMN_CONTENT_HASH}, null, null, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    update.bindString(1, cursor.getString(0));
+                    update.bindLong(2, cursor.getInt(1));
+                    update.bindString(3, cursor.getString(2));
+                    update.bindLong(4, cursor.getLong(3));
+                    update.executeUpdateDelete();
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Не удалось перенести темы вопросов из ассета", e);
+        } finally {
+            if (bundled != null) bundled.close();
+            copy.delete();
+        }
+    }
+}
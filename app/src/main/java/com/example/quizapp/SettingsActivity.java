@@ -1,9 +1,7 @@
 package com.example.quizapp;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
@@ -13,7 +11,8 @@ import android.widget.Switch;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.quizapp.QuizDatabaseHelper;
+import com.example.quizapp.data.QuestionSampler;
+import com.example.quizapp.data.QuizRepository;
 
 public class SettingsActivity extends AppCompatActivity {
 
@@ -22,13 +21,26 @@ public class SettingsActivity extends AppCompatActivity {
     public static final String PREFS_NAME = "QuizAppPrefs";
     public static final String KEY_MUSIC_ENABLED = "musicEnabled";
     public static final String KEY_SFX_ENABLED = "sfxEnabled";
+    public static final String KEY_CATEGORY = "questionCategory"; // нет ключа — все темы
+    public static final String KEY_SIMULTANEOUS_PVP = "simultaneousPvp";
+
+    /** Фильтр вопросов матча по выбранной в меню режима теме. */
+    public static QuestionSampler.Filter getQuestionFilter(Context context) {
+        String category = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(KEY_CATEGORY, null);
+        return category == null ? QuestionSampler.Filter.ANY : new QuestionSampler.Filter(category, 0);
+    }
+
+    /** PvP-режим, который выбирает хост: оба отвечают одновременно (по умолчанию) или по очереди. */
+    public static boolean isSimultaneousPvp(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getBoolean(KEY_SIMULTANEOUS_PVP, true);
+    }
 
     private EditText etPlayerName;
-    private Switch switchMusic, switchSfx;
+    private Switch switchMusic, switchSfx, switchSimultaneous;
     private Button btnSaveSettings;
 
     private SharedPreferences sharedPrefs;
-    private QuizDatabaseHelper dbHelper;
+    private QuizRepository repository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,10 +50,11 @@ public class SettingsActivity extends AppCompatActivity {
         etPlayerName = findViewById(R.id.et_player_name);
         switchMusic = findViewById(R.id.switch_music);
         switchSfx = findViewById(R.id.switch_sfx);
+        switchSimultaneous = findViewById(R.id.switch_simultaneous);
         btnSaveSettings = findViewById(R.id.btn_save_settings);
 
         sharedPrefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        dbHelper = QuizDatabaseHelper.getInstance(this);
+        repository = QuizRepository.getInstance(this);
 
         loadCurrentSettings();
 
@@ -66,12 +79,14 @@ public class SettingsActivity extends AppCompatActivity {
 
     private void loadCurrentSettings() {
         // Загрузка имени игрока из БД
-        String currentName = dbHelper.getPlayerName();
-        if (!TextUtils.isEmpty(currentName)) {
-            etPlayerName.setText(currentName);
-        } else {
-            etPlayerName.setText("Игрок 1"); // Значение по умолчанию
-        }
+        repository.loadPlayerName(currentName -> {
+            if (isFinishing()) return;
+            if (!TextUtils.isEmpty(currentName)) {
+                etPlayerName.setText(currentName);
+            } else {
+                etPlayerName.setText("Игрок 1"); // Значение по умолчанию
+            }
+        });
 
         // Загрузка настроек звука из SharedPreferences
         boolean musicEnabled = sharedPrefs.getBoolean(KEY_MUSIC_ENABLED, true);
@@ -79,6 +94,7 @@ public class SettingsActivity extends AppCompatActivity {
 
         switchMusic.setChecked(musicEnabled);
         switchSfx.setChecked(sfxEnabled);
+        switchSimultaneous.setChecked(sharedPrefs.getBoolean(KEY_SIMULTANEOUS_PVP, true));
 
         // Если музыка была отключена в прошлый раз, но активности не было, останавливаем ее
         if (!musicEnabled) {
@@ -96,30 +112,25 @@ public class SettingsActivity extends AppCompatActivity {
 
         updatePlayerNameInDatabase(newName);
 
-        // 2. Сохранение настроек звука (в SharedPreferences)
+        // 2. Сохранение настроек звука и режима PvP (в SharedPreferences)
         SharedPreferences.Editor editor = sharedPrefs.edit();
         editor.putBoolean(KEY_MUSIC_ENABLED, switchMusic.isChecked());
         editor.putBoolean(KEY_SFX_ENABLED, switchSfx.isChecked());
+        editor.putBoolean(KEY_SIMULTANEOUS_PVP, switchSimultaneous.isChecked());
         editor.apply();
 
         Toast.makeText(this, "Настройки сохранены.", Toast.LENGTH_SHORT).show();
     }
 
     private void updatePlayerNameInDatabase(String newName) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(QuizDatabaseHelper.STATS_COLUMN_NAME, newName);
-
         // Обновляем статистику для игрока с ID=1 (единственный игрок)
-        int rowsAffected = db.update(QuizDatabaseHelper.TABLE_PLAYER_STATS,
-                values,
-                QuizDatabaseHelper.STATS_COLUMN_ID + "=1",
-                null);
-        if (rowsAffected > 0) {
-            Log.d(TAG, "Имя игрока успешно обновлено на: " + newName);
-        } else {
-            // Если игрок не существует, вставляем новую запись (должно быть сделано при первом запуске)
-            Log.e(TAG, "Не удалось обновить имя. Проверьте, существует ли запись с ID=1.");
-        }
+        repository.updatePlayerName(newName, updated -> {
+            if (Boolean.TRUE.equals(updated)) {
+                Log.d(TAG, "Имя игрока успешно обновлено на: " + newName);
+            } else {
+                // Если игрок не существует, вставляем новую запись (должно быть сделано при первом запуске)
+                Log.e(TAG, "Не удалось обновить имя. Проверьте, существует ли запись с ID=1.");
+            }
+        });
     }
 }
\ No newline at end of file
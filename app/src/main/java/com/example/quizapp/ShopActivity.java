@@ -1,14 +1,12 @@
 package com.example.quizapp;
 
-import android.content.ContentValues;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.quizapp.data.QuizRepository;
 import com.example.quizapp.shop.ShopItem;
 import com.example.quizapp.shop.ShopItemAdapter;
 
@@ -22,7 +20,8 @@ public class ShopActivity extends AppCompatActivity implements ShopItemAdapter.S
     private ListView lvShopItems;
     private ShopItemAdapter adapter;
     private int currentPoints;
-    private QuizDatabaseHelper dbHelper;
+    private QuizRepository repository;
+    private boolean purchaseInProgress = false;
     private List<String> ownedItemsIds; // Список ID уже купленных предметов
 
     // Список всех доступных для покупки товаров
@@ -44,55 +43,39 @@ public class ShopActivity extends AppCompatActivity implements ShopItemAdapter.S
 
         tvPlayerPoints = findViewById(R.id.tv_player_points);
         lvShopItems = findViewById(R.id.lv_shop_items);
-        dbHelper = QuizDatabaseHelper.getInstance(this);
+        repository = QuizRepository.getInstance(this);
 
-        // 1. Загружаем купленные предметы ДО загрузки очков и настройки списка
-        loadOwnedItems();
+        // 1. Список показываем сразу, очки и купленные предметы подгружаются асинхронно
+        ownedItemsIds = new ArrayList<>();
+        setupShopList();
 
+        loadOwnedItems();
         loadPlayerPoints();
-        setupShopList();
 
         QuizApplication.getInstance().startBackgroundMusic();
     }
 
     // Загрузка текущих очков игрока
     private void loadPlayerPoints() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.query(
-                QuizDatabaseHelper.TABLE_PLAYER_STATS,
-                new String[]{QuizDatabaseHelper.STATS_COLUMN_POINTS},
-                QuizDatabaseHelper.STATS_COLUMN_ID + "=1", null, null, null, null);
-
-        if (cursor.moveToFirst()) {
-            currentPoints = cursor.getInt(cursor.getColumnIndexOrThrow(QuizDatabaseHelper.STATS_COLUMN_POINTS));
-        } else {
-            currentPoints = 0;
-        }
-        cursor.close();
+        repository.loadPlayerStats(stats -> {
+            if (isFinishing()) return;
+            currentPoints = stats != null ? stats.points : 0;
 
-        // Убедитесь, что у вас есть строка current_points в strings.xml, которая принимает один int аргумент
-        tvPlayerPoints.setText(getString(R.string.current_points, currentPoints));
+            // Убедитесь, что у вас есть строка current_points в strings.xml, которая принимает один int аргумент
+            tvPlayerPoints.setText(getString(R.string.current_points, currentPoints));
+            adapter.updatePoints(currentPoints);
+            adapter.notifyDataSetChanged();
+        });
     }
 
     // Загрузка ID купленных предметов из инвентаря
     private void loadOwnedItems() {
-        ownedItemsIds = new ArrayList<>();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        // ВАЖНО: Предполагается, что существует таблица 'inventory' с колонкой 'item_id'
-        // Если такой таблицы нет, этот метод вызовет ошибку!
-        try (Cursor cursor = db.query("inventory", new String[]{"item_id"}, null, null, null, null, null)) {
-            if (cursor.moveToFirst()) {
-                int itemIdIndex = cursor.getColumnIndexOrThrow("item_id");
-                do {
-                    ownedItemsIds.add(cursor.getString(itemIdIndex));
-                } while (cursor.moveToNext());
-            }
-        } catch (IllegalArgumentException e) {
-            // Обработка ошибки, если колонка не найдена (например, нет таблицы)
-            // Здесь может быть Toast или Log, предупреждающий о том, что нужно создать таблицу 'inventory'.
-            // Log.e("ShopActivity", "Таблица инвентаря или колонка 'item_id' не найдены: " + e.getMessage());
-        }
+        repository.loadOwnedItems(items -> {
+            if (isFinishing() || items == null) return;
+            ownedItemsIds.clear();
+            ownedItemsIds.addAll(items);
+            adapter.notifyDataSetChanged();
+        });
     }
 
     //  Настройка адаптера магазина
@@ -126,53 +109,32 @@ public class ShopActivity extends AppCompatActivity implements ShopItemAdapter.S
             return;
         }
 
-        // 1. Списание очков
-        int newPoints = currentPoints - item.price;
-        if (updatePointsInDatabase(newPoints)) {
-            currentPoints = newPoints;
-            tvPlayerPoints.setText(getString(R.string.current_points, currentPoints));
+        if (purchaseInProgress) return;
+        purchaseInProgress = true;
 
-            // 2. Добавление товара в инвентарь (или специальную таблицу)
-            if (addItemToInventory(item)) {
+        // 1. Списание очков и запись в инвентарь — одной транзакцией в базе
+        repository.purchaseItem(item.id, item.name, item.price, result -> {
+            purchaseInProgress = false;
+            if (isFinishing()) return;
+            if (result == QuizDatabaseHelper.PurchaseResult.OK) {
+                currentPoints -= item.price;
+                tvPlayerPoints.setText(getString(R.string.current_points, currentPoints));
+                adapter.updatePoints(currentPoints);
 
                 // КЛЮЧЕВОЙ ШАГ: Обновляем список купленных предметов в памяти
                 ownedItemsIds.add(item.id);
 
                 Toast.makeText(this, item.name + " успешно куплен!", Toast.LENGTH_LONG).show();
 
-                // 3. Обновляем адаптер, чтобы кнопка изменила состояние на "Куплено"
+                // 2. Обновляем адаптер, чтобы кнопка изменила состояние на "Куплено"
                 adapter.notifyDataSetChanged();
+            } else if (result == QuizDatabaseHelper.PurchaseResult.ALREADY_OWNED) {
+                Toast.makeText(this, item.name + " уже куплен!", Toast.LENGTH_SHORT).show();
+            } else if (result == QuizDatabaseHelper.PurchaseResult.NOT_ENOUGH_POINTS) {
+                Toast.makeText(this, "Недостаточно очков для покупки " + item.name, Toast.LENGTH_SHORT).show();
             } else {
-                // Если покупка не добавлена в инвентарь, возвращаем очки (транзакция отменена)
-                updatePointsInDatabase(currentPoints + item.price);
-                Toast.makeText(this, "Ошибка записи в инвентарь.", Toast.LENGTH_LONG).show();
+                Toast.makeText(this, "Ошибка покупки.", Toast.LENGTH_LONG).show();
             }
-        } else {
-            Toast.makeText(this, "Ошибка списания очков.", Toast.LENGTH_LONG).show();
-        }
-    }
-
-    private boolean updatePointsInDatabase(int newPoints) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(QuizDatabaseHelper.STATS_COLUMN_POINTS, newPoints);
-
-        int rowsAffected = db.update(QuizDatabaseHelper.TABLE_PLAYER_STATS,
-                values,
-                QuizDatabaseHelper.STATS_COLUMN_ID + "=1",
-                null);
-        return rowsAffected > 0;
-    }
-
-    private boolean addItemToInventory(ShopItem item) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put("item_id", item.id);
-        values.put("item_name", item.name);
-        values.put("is_equipped", 0);
-
-        // ВАЖНО: Требуется, чтобы таблица 'inventory' была создана в QuizDatabaseHelper
-        long newRowId = db.insertWithOnConflict("inventory", null, values, SQLiteDatabase.CONFLICT_IGNORE);
-        return newRowId != -1;
+        });
     }
 }
\ No newline at end of file
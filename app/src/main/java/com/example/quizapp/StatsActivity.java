@@ -1,22 +1,22 @@
 package com.example.quizapp;
 
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.quizapp.data.QuizRepository;
+
 public class StatsActivity extends AppCompatActivity {
 
     private TextView tvPlayerName, tvTotalPoints, tvSingleWins, tvPvpWins, tvEmotesOwned;
-    private QuizDatabaseHelper dbHelper;
+    private QuizRepository repository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_stats);
 
-        dbHelper = QuizDatabaseHelper.getInstance(this);
+        repository = QuizRepository.getInstance(this);
         initializeUI();
         loadPlayerStats();
 
@@ -32,41 +32,27 @@ public class StatsActivity extends AppCompatActivity {
     }
 
     private void loadPlayerStats() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        // 1. Загрузка основной статистики игрока (из TABLE_PLAYER_STATS)
-        Cursor statsCursor = db.query(
-                QuizDatabaseHelper.TABLE_PLAYER_STATS,
-                null,
-                QuizDatabaseHelper.STATS_COLUMN_ID + "=1",
-                null, null, null, null);
-
-        if (statsCursor.moveToFirst()) {
-            String name = statsCursor.getString(statsCursor.getColumnIndexOrThrow(QuizDatabaseHelper.STATS_COLUMN_NAME));
-            int points = statsCursor.getInt(statsCursor.getColumnIndexOrThrow(QuizDatabaseHelper.STATS_COLUMN_POINTS));
-            int singleWins = statsCursor.getInt(statsCursor.getColumnIndexOrThrow(QuizDatabaseHelper.STATS_COLUMN_SINGLE_WINS));
-            int pvpWins = statsCursor.getInt(statsCursor.getColumnIndexOrThrow(QuizDatabaseHelper.STATS_COLUMN_PVP_WINS));
-
-            tvPlayerName.setText(name);
-            tvTotalPoints.setText(getString(R.string.stat_points_format, points));
-            tvSingleWins.setText(getString(R.string.stat_single_wins_format, singleWins));
-            tvPvpWins.setText(getString(R.string.stat_pvp_wins_format, pvpWins));
-        } else {
-            tvPlayerName.setText("Данные не найдены");
-        }
-        statsCursor.close();
+        // 1. Основная статистика игрока (из TABLE_PLAYER_STATS)
+        repository.loadPlayerStats(stats -> {
+            if (isFinishing()) return;
+            if (stats != null) {
+                tvPlayerName.setText(stats.name);
+                tvTotalPoints.setText(getString(R.string.stat_points_format, stats.points));
+                tvSingleWins.setText(getString(R.string.stat_single_wins_format, stats.singleWins));
+                tvPvpWins.setText(getString(R.string.stat_pvp_wins_format, stats.pvpWins));
+            } else {
+                tvPlayerName.setText("Данные не найдены");
+            }
+        });
 
         // 2. Подсчет купленных эмоций (из таблицы 'inventory')
-        // *ВНИМАНИЕ*: Требуется, чтобы в QuizDatabaseHelper была создана таблица 'inventory'
-        try (Cursor inventoryCursor = db.rawQuery("SELECT COUNT(*) FROM inventory WHERE item_id LIKE 'emote_%'", null)) {
-            int emoteCount = 0;
-            if (inventoryCursor.moveToFirst()) {
-                emoteCount = inventoryCursor.getInt(0);
+        repository.loadOwnedEmoteCount(emoteCount -> {
+            if (isFinishing()) return;
+            if (emoteCount != null && emoteCount >= 0) {
+                tvEmotesOwned.setText(getString(R.string.stat_emotes_format, emoteCount));
+            } else {
+                tvEmotesOwned.setText("Эмоций: N/A (ошибка БД)");
             }
-            tvEmotesOwned.setText(getString(R.string.stat_emotes_format, emoteCount));
-        } catch (Exception e) {
-            // Ошибка, если таблица 'inventory' не существует или запрос неверен
-            tvEmotesOwned.setText("Эмоций: N/A (ошибка БД)");
-        }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.example.quizapp.data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Сообщение сверки банков вопросов (QuestionBankSync). Передаётся в GameDataModel типа BANK_SYNC.
+ *
+ * - NODES: уровень дерева, номера узлов и хеши отправителя для них
+ * - LEAVES: несовпавшие листья (уровень QuestionMerkleTree.LEAF_LEVEL), число content_hash в каждом и сами хеши подряд; last — последняя часть
+ * - WANT: content_hash, которых у отправителя нет — получатель отвечает ROWS
+ * - ROWS: строки вопросов
+ * - DONE: отправителю больше нечего слать
+ * - ABORT: сверка прервана, принятое не применяется
+ */
+public class BankSyncMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        NODES,
+        LEAVES,
+        WANT,
+        ROWS,
+        DONE,
+        ABORT
+    }
+
+    /** Вопрос без локального id — id на устройствах не совпадают. */
+    public static class Row implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final String question;
+        public final String[] options;
+        public final int answerNum;
+        public final String category;
+        public final int difficulty;
+        public final String language;
+
+        public Row(String question, String[] options, int answerNum, String category, int difficulty, String language) {
+            this.question = question;
+            this.options = options;
+            this.answerNum = answerNum;
+            this.category = category;
+            this.difficulty = difficulty;
+            this.language = language;
+        }
+    }
+
+    public final Kind kind;
+    public final int level; // только у NODES, у остальных 0
+    public final int[] indexes;
+    public final int[] counts;
+    public final long[] hashes;
+    public final boolean last;
+    public final List<Row> rows;
+
+    public BankSyncMessage(Kind kind, int level, int[] indexes, int[] counts, long[] hashes, boolean last, List<Row> rows) {
+        this.kind = kind;
+        this.level = level;
+        this.indexes = indexes;
+        this.counts = counts;
+        this.hashes = hashes;
+        this.last = last;
+        this.rows = rows;
+    }
+
+    public static BankSyncMessage nodes(int level, int[] indexes, long[] hashes) {
+        return new BankSyncMessage(Kind.NODES, level, indexes, null, hashes, false, null);
+    }
+
+    public static BankSyncMessage leaves(int[] leaves, int[] counts, long[] hashes, boolean last) {
+        return new BankSyncMessage(Kind.LEAVES, 0, leaves, counts, hashes, last, null);
+    }
+
+    public static BankSyncMessage want(long[] hashes) {
+        return new BankSyncMessage(Kind.WANT, 0, null, null, hashes, false, null);
+    }
+
+    public static BankSyncMessage rows(List<Row> rows) {
+        return new BankSyncMessage(Kind.ROWS, 0, null, null, null, false, rows);
+    }
+
+    public static BankSyncMessage done() {
+        return new BankSyncMessage(Kind.DONE, 0, null, null, null, false, null);
+    }
+
+    public static BankSyncMessage abort() {
+        return new BankSyncMessage(Kind.ABORT, 0, null, null, null, false, null);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Migration — один шаг схемы startVersion -> endVersion.
+ *
+ * Правила для шагов:
+ * - таблицы меняются на месте (ALTER TABLE, CREATE ... IF NOT EXISTS), данные игрока не пересоздаются
+ * - UPDATE затрагивает только строки, которые действительно меняются
+ * - транзакцию и запись user_version делает MigrationRunner, шаг их не трогает
+ */
+public abstract class Migration {
+
+    public final int startVersion;
+    public final int endVersion;
+
+    protected Migration(int startVersion, int endVersion) {
+        this.startVersion = startVersion;
+        this.endVersion = endVersion;
+    }
+
+    public abstract void migrate(SQLiteDatabase db);
+
+    // Вспомогательные проверки для шагов: позволяют не падать на базах, где часть изменений уже есть
+
+    public static boolean tableExists(SQLiteDatabase db, String table) {
+        return DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{table}) > 0;
+    }
+
+    public static boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        try (Cursor c = db.rawQuery("PRAGMA table_info(" + table + ")", null)) {
+            int nameCol = c.getColumnIndexOrThrow("name");
+            while (c.moveToNext()) {
+                if (column.equals(c.getString(nameCol))) return true;
+            }
+        }
+        return false;
+    }
+
+    public static void addColumnIfMissing(SQLiteDatabase db, String table, String column, String definition) {
+        if (!hasColumn(db, table, column)) {
+            db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Migration " + startVersion + " -> " + endVersion;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.quizapp.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MigrationRunner — применяет цепочку Migration по порядку версий.
+ *
+ * Особенности:
+ * - каждый шаг в своей транзакции вместе с записью user_version: прерванное обновление
+ *   продолжится с последней завершённой версии, а не начнётся заново
+ * - шаг, бросивший исключение, откатывается целиком, база остаётся на предыдущей версии
+ * - цепочка проверяется при создании: версии идут подряд без пропусков
+ * - время каждого шага пишется в лог
+ */
+public class MigrationRunner {
+
+    private static final String TAG = "MigrationRunner";
+
+    private final List<Migration> migrations;
+
+    public MigrationRunner(Migration... migrations) {
+        this.migrations = new ArrayList<>(Arrays.asList(migrations));
+        for (int i = 0; i < this.migrations.size(); i++) {
+            Migration m = this.migrations.get(i);
+            if (m.endVersion != m.startVersion + 1) {
+                throw new IllegalArgumentException(m + ": шаг должен повышать версию на 1");
+            }
+            if (i > 0 && this.migrations.get(i - 1).endVersion != m.startVersion) {
+                throw new IllegalArgumentException(m + ": пропуск после " + this.migrations.get(i - 1));
+            }
+        }
+    }
+
+    /**
+     * Поднимает базу с текущей user_version до targetVersion.
+     * @return число применённых шагов
+     * @throws IllegalStateException если для какой-то версии нет шага
+     */
+    public int migrate(SQLiteDatabase db, int targetVersion) {
+        int version = db.getVersion();
+        int applied = 0;
+        while (version < targetVersion) {
+            Migration step = find(version);
+            if (step == null) throw new IllegalStateException("Нет миграции с версии " + version);
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            db.beginTransaction();
+            try {
+                step.migrate(db);
+                db.setVersion(step.endVersion);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            Log.d(TAG, step + " за " + (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000 + " мс");
+
+            version = step.endVersion;
+            applied++;
+        }
+        return applied;
+    }
+
+    private Migration find(int startVersion) {
+        for (Migration m : migrations) {
+            if (m.startVersion == startVersion) return m;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.quizapp.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * MinHash — сигнатура текста для оценки сходства Жаккара без попарного сравнения текстов.
+ *
+ * Особенности:
+ * - множество признаков — символьные триграммы нормализованного текста (QuestionHash.normalize),
+ *   так что пунктуация, регистр и ё/е на сигнатуру не влияют, а перестановка пары слов меняет её мало
+ * - NUM_HASHES независимых хешей: доля совпавших позиций двух сигнатур — оценка сходства Жаккара
+ * - сигнатура режется на BANDS полос по ROWS_PER_BAND значений; хеш полосы — ключ LSH-корзины.
+ *   Тексты с J = 0.8 попадают хотя бы в одну общую корзину с вероятностью ~0.9998, с J = 0.3 — ~0.12
+ */
+public final class MinHash {
+
+    public static final int NUM_HASHES = 64;
+    public static final int BANDS = 16;
+    public static final int ROWS_PER_BAND = NUM_HASHES / BANDS;
+    private static final int SHINGLE = 3;
+
+    private static final long[] SEEDS = new long[NUM_HASHES];
+
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            seed = mix64(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private MinHash() {
+    }
+
+    /** Сигнатура текста; для пустого текста — все позиции Integer.MAX_VALUE. */
+    public static int[] signature(String text) {
+        String s = QuestionHash.normalize(text);
+        int[] sig = new int[NUM_HASHES];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        if (s.isEmpty()) return sig;
+
+        // Минимум по мультимножеству равен минимуму по множеству — повторы триграмм не мешают
+        int count = Math.max(1, s.length() - SHINGLE + 1);
+        for (int start = 0; start < count; start++) {
+            long h = 0xcbf29ce484222325L;
+            int end = Math.min(s.length(), start + SHINGLE);
+            for (int i = start; i < end; i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            for (int k = 0; k < NUM_HASHES; k++) {
+                int v = (int) mix64(h ^ SEEDS[k]);
+                if (v < sig[k]) sig[k] = v;
+            }
+        }
+        return sig;
+    }
+
+    /** Оценка сходства Жаккара: доля совпавших позиций. */
+    public static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return (double) same / NUM_HASHES;
+    }
+
+    /** Ключ корзины полосы band (0..BANDS-1). */
+    public static long bandHash(int[] sig, int band) {
+        long h = band;
+        for (int i = band * ROWS_PER_BAND; i < (band + 1) * ROWS_PER_BAND; i++) {
+            h = mix64(h * 31 + sig[i]);
+        }
+        return h;
+    }
+
+    public static byte[] toBytes(int[] sig) {
+        ByteBuffer buffer = ByteBuffer.allocate(NUM_HASHES * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int v : sig) buffer.putInt(v);
+        return buffer.array();
+    }
+
+    /** null, если blob не сигнатура текущего формата. */
+    public static int[] fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != NUM_HASHES * 4) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int[] sig = new int[NUM_HASHES];
+        for (int i = 0; i < NUM_HASHES; i++) sig[i] = buffer.getInt();
+        return sig;
+    }
+
+    // Финализатор SplitMix64
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
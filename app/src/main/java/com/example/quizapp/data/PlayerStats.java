@@ -0,0 +1,18 @@
+package com.example.quizapp.data;
+
+/**
+ * Снимок строки player_stats (игрок с ID=1).
+ */
+public class PlayerStats {
+    public final String name;
+    public final int points;
+    public final int singleWins;
+    public final int pvpWins;
+
+    public PlayerStats(String name, int points, int singleWins, int pvpWins) {
+        this.name = name;
+        this.points = points;
+        this.singleWins = singleWins;
+        this.pvpWins = pvpWins;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.quizapp.data;
+
+import java.io.Serializable;
+
+/**
+ * Вопрос викторины в памяти. Передаётся сопернику в START_GAME, поэтому Serializable.
+ */
+public class Question implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public int id;
+    public String question;
+    public String[] options;
+    public int answerNum; // 1-4
+}
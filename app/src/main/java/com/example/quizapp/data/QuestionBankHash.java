@@ -0,0 +1,55 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * QuestionBankHash — отпечаток банка вопросов для сравнения с банком соперника.
+ *
+ * SHA-256 по отсортированным content_hash: совпадение отпечатков значит, что у обоих один и тот же
+ * набор вопросов, и в START_GAME достаточно передать content_hash (клиент находит вопросы у себя по ним).
+ * id в отпечаток не входят: после сверки банков (QuestionBankSync) одни и те же вопросы лежат у соперников
+ * под разными id, а отпечатки совпадают. Читается только idx_questions_content_hash — для 20 тыс. вопросов
+ * это единицы миллисекунд; результат кэшируется в QuizDatabaseHelper до изменения банка.
+ */
+public final class QuestionBankHash {
+
+    private QuestionBankHash() {
+    }
+
+    /** Шестнадцатеричный отпечаток (первые 16 байт SHA-256). */
+    public static String compute(SQLiteDatabase db) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] row = new byte[8];
+        try (Cursor c = db.rawQuery("SELECT " + QuizDatabaseHelper.COLUMN_CONTENT_HASH + " FROM " +
+                QuizDatabaseHelper.TABLE_QUESTIONS + " ORDER BY " + QuizDatabaseHelper.COLUMN_CONTENT_HASH, null)) {
+            while (c.moveToNext()) {
+                putLong(row, 0, c.getLong(0));
+                digest.update(row);
+            }
+        }
+        byte[] hash = digest.digest();
+        StringBuilder sb = new StringBuilder(32);
+        for (int i = 0; i < 16; i++) {
+            sb.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void putLong(byte[] b, int offset, long v) {
+        for (int i = 7; i >= 0; i--) {
+            b[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * QuestionBankSync — сверка банков вопросов двух игроков по дереву хешей (QuestionMerkleTree).
+ *
+ * Протокол (сообщения BankSyncMessage):
+ * - инициатор шлёт корень (NODES уровня 0); получатель сравнивает со своими хешами и отвечает
+ *   хешами детей только несовпавших узлов — стороны спускаются по очереди, пока не дойдут до листьев
+ * - на уровне листьев отправляются content_hash несовпавших листьев (LEAVES); получатель шлёт строки,
+ *   которых нет у соперника (ROWS), просит недостающие себе (WANT) и после последней части LEAVES — DONE
+ * - сторона, получившая DONE, отвечает DONE, если ещё не отправляла; сверка закончена, когда обе
+ *   стороны отправили и получили DONE. Совпавшие корни — один NODES и два DONE
+ * - принятые строки копятся в памяти и по DONE вставляются одной транзакцией: при обрыве или ABORT
+ *   в базе не остаётся половины чужого банка. Уже имеющиеся (по content_hash) пропускаются,
+ *   почти-дубликаты помечаются через QuestionDeduplicator, но вставляются — иначе деревья не сойдутся
+ *
+ * Объём трафика и работы с базой растёт с числом различающихся вопросов, а не с размером банка.
+ * Вся работа идёт на собственном потоке, кроме загрузки дерева (пересчёт изменившихся листьев
+ * сохраняется в базе) и вставки принятого — они на потоке-писателе базы;
+ * handle() можно вызывать из потока чтения транспорта.
+ * Отправки идут по одной: следующая — после подтверждения предыдущей, поэтому сверка не забивает
+ * исходящую очередь соединения и не задерживает игровые сообщения. Без сообщений от соперника
+ * дольше IDLE_TIMEOUT_MS сверка прерывается. start() вызывает только одна из сторон.
+ */
+public class QuestionBankSync {
+
+    private static final String TAG = "QuestionBankSync";
+    public static final long IDLE_TIMEOUT_MS = 15000;
+    private static final long SEND_TIMEOUT_MS = 5000;
+    // Ограничения размера сообщений: кадр WireCodec не больше мегабайта
+    static final int MAX_HASHES_PER_MESSAGE = 16384;
+    static final int MAX_ROWS_PER_MESSAGE = 64;
+    private static final int MAX_ROW_CHARS_PER_MESSAGE = 64 * 1024;
+    // Больше не принимаем — защита памяти от мусора в канале
+    public static final int MAX_RECEIVED_ROWS = 50_000;
+
+    private static final String SELECT_ROW_SQL = "SELECT " +
+            QuizDatabaseHelper.COLUMN_QUESTION + ", " +
+            QuizDatabaseHelper.COLUMN_OPTION1 + ", " +
+            QuizDatabaseHelper.COLUMN_OPTION2 + ", " +
+            QuizDatabaseHelper.COLUMN_OPTION3 + ", " +
+            QuizDatabaseHelper.COLUMN_OPTION4 + ", " +
+            QuizDatabaseHelper.COLUMN_ANSWER_NUM + ", " +
+            QuizDatabaseHelper.COLUMN_CATEGORY + ", " +
+            QuizDatabaseHelper.COLUMN_DIFFICULTY + ", " +
+            QuizDatabaseHelper.COLUMN_LANGUAGE +
+            " FROM " + QuizDatabaseHelper.TABLE_QUESTIONS +
+            " WHERE " + QuizDatabaseHelper.COLUMN_CONTENT_HASH + " = ? LIMIT 1";
+
+    /** Отправка сообщения сопернику; result вызывается после записи в канал или при отказе. */
+    public interface Sender {
+        void send(BankSyncMessage message, SendResult result);
+    }
+
+    public interface SendResult {
+        void onComplete(boolean sent);
+    }
+
+    /** Вызывается один раз на потоке сверки. */
+    public interface Listener {
+        void onFinished(Result result);
+    }
+
+    public static class Result {
+        public final boolean success;
+        public final int messagesSent;
+        public final int rowsSent;
+        public final int rowsReceived;
+        public final int rowsInserted;
+        public final long elapsedNanos;
+
+        Result(boolean success, int messagesSent, int rowsSent, int rowsReceived, int rowsInserted, long elapsedNanos) {
+            this.success = success;
+            this.messagesSent = messagesSent;
+            this.rowsSent = rowsSent;
+            this.rowsReceived = rowsReceived;
+            this.rowsInserted = rowsInserted;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "success=" + success + ", messages=" + messagesSent + ", rows sent/received/inserted=" +
+                    rowsSent + "/" + rowsReceived + "/" + rowsInserted + ", " + (elapsedNanos / 1_000_000) + " ms";
+        }
+    }
+
+    private final Supplier<SQLiteDatabase> database;
+    private final Executor writer;
+    private final Runnable onBankChanged;
+    private final Sender sender;
+    private final Listener listener;
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, TAG);
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Состояние — только на потоке сверки
+    private QuestionMerkleTree tree;
+    private final List<BankSyncMessage.Row> received = new ArrayList<>();
+    private boolean sentDone;
+    private boolean receivedDone;
+    private boolean finished;
+    private int messagesSent;
+    private int rowsSent;
+    private int rowsReceived;
+    private int rowsInserted;
+    private long startNanos;
+    private ScheduledFuture<?> idleTimeout;
+
+    /** Принятые строки вставляются прямо на потоке сверки — когда других писателей у базы нет. */
+    public QuestionBankSync(Supplier<SQLiteDatabase> database, Sender sender, Listener listener) {
+        this(database, Runnable::run, null, sender, listener);
+    }
+
+    /**
+     * writer — поток-писатель базы: принятые строки вставляются задачей на нём, поток сверки ждёт её окончания.
+     * onBankChanged вызывается на потоке сверки сразу после того, как принятые строки вставлены.
+     */
+    public QuestionBankSync(Supplier<SQLiteDatabase> database, Executor writer, Runnable onBankChanged,
+                            Sender sender, Listener listener) {
+        this.database = database;
+        this.writer = writer;
+        this.onBankChanged = onBankChanged;
+        this.sender = sender;
+        this.listener = listener;
+        // Отменённый таймаут не держит поток после shutdown()
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Начинает сверку: отправляет корень дерева. */
+    public void start() {
+        execute(() -> {
+            try {
+                startNanos = SystemClock.elapsedRealtimeNanos();
+                touch();
+                send(BankSyncMessage.nodes(0, new int[]{0}, new long[]{tree().root()}));
+            } catch (Exception e) {
+                fail("Не удалось начать сверку", e);
+            }
+        });
+    }
+
+    /** Сообщение от соперника. Можно вызывать из любого потока. */
+    public void handle(BankSyncMessage message) {
+        execute(() -> {
+            try {
+                process(message);
+            } catch (Exception e) {
+                fail("Ошибка сверки на " + message.kind, e);
+            }
+        });
+    }
+
+    /** Прерывает сверку без уведомления соперника (соединение закрывается); принятое не применяется. */
+    public void close() {
+        execute(() -> {
+            if (!finished) finish(false);
+        });
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Сверка уже завершена
+        }
+    }
+
+    private void process(BankSyncMessage m) throws IOException {
+        if (finished) return;
+        if (startNanos == 0) startNanos = SystemClock.elapsedRealtimeNanos();
+        touch();
+        switch (m.kind) {
+            case NODES:
+                onNodes(m);
+                break;
+            case LEAVES:
+                onLeaves(m);
+                break;
+            case WANT:
+                sendRows(m.hashes, m.hashes.length);
+                break;
+            case ROWS:
+                if (received.size() + m.rows.size() > MAX_RECEIVED_ROWS) {
+                    throw new IOException("Соперник прислал больше " + MAX_RECEIVED_ROWS + " строк");
+                }
+                received.addAll(m.rows);
+                rowsReceived += m.rows.size();
+                break;
+            case DONE:
+                receivedDone = true;
+                // Соперник шлёт DONE после всех своих ROWS — принятое можно применять
+                apply();
+                if (sentDone) finish(true);
+                else sendDone();
+                break;
+            case ABORT:
+                Log.w(TAG, "Соперник прервал сверку");
+                finish(false);
+                break;
+        }
+    }
+
+    private void onNodes(BankSyncMessage m) throws IOException {
+        int level = m.level;
+        if (level < 0 || level > QuestionMerkleTree.LEAF_LEVEL || m.indexes.length != m.hashes.length) {
+            throw new IOException("Некорректный NODES: уровень " + level);
+        }
+        QuestionMerkleTree t = tree();
+        int[] differing = new int[m.indexes.length];
+        int n = 0;
+        for (int i = 0; i < m.indexes.length; i++) {
+            int index = m.indexes[i];
+            if (index < 0 || index >= QuestionMerkleTree.nodeCount(level)) throw new IOException("Узел вне дерева: " + index);
+            if (t.hash(level, index) != m.hashes[i]) differing[n++] = index;
+        }
+        if (n == 0) {
+            sendDone();
+            return;
+        }
+        if (level == QuestionMerkleTree.LEAF_LEVEL) {
+            sendLeaves(differing, n);
+            return;
+        }
+        int[] children = new int[n * QuestionMerkleTree.FANOUT];
+        long[] hashes = new long[children.length];
+        for (int i = 0; i < n; i++) {
+            for (int c = 0; c < QuestionMerkleTree.FANOUT; c++) {
+                int child = differing[i] * QuestionMerkleTree.FANOUT + c;
+                children[i * QuestionMerkleTree.FANOUT + c] = child;
+                hashes[i * QuestionMerkleTree.FANOUT + c] = t.hash(level + 1, child);
+            }
+        }
+        send(BankSyncMessage.nodes(level + 1, children, hashes));
+    }
+
+    /** Содержимое несовпавших листьев частями; лист целиком в одной части — получатель сравнивает его сразу. */
+    private void sendLeaves(int[] leaves, int count) throws IOException {
+        SQLiteDatabase db = database.get();
+        int[] chunkLeaves = new int[count];
+        int[] chunkCounts = new int[count];
+        long[] chunkHashes = new long[256];
+        int leafCount = 0;
+        int hashCount = 0;
+        for (int i = 0; i < count; i++) {
+            long[] content = QuestionMerkleTree.leafContent(db, leaves[i]);
+            if (leafCount > 0 && hashCount + content.length > MAX_HASHES_PER_MESSAGE) {
+                send(BankSyncMessage.leaves(Arrays.copyOf(chunkLeaves, leafCount), Arrays.copyOf(chunkCounts, leafCount),
+                        Arrays.copyOf(chunkHashes, hashCount), false));
+                leafCount = 0;
+                hashCount = 0;
+            }
+            if (hashCount + content.length > chunkHashes.length) {
+                chunkHashes = Arrays.copyOf(chunkHashes, Math.max(chunkHashes.length * 2, hashCount + content.length));
+            }
+            System.arraycopy(content, 0, chunkHashes, hashCount, content.length);
+            hashCount += content.length;
+            chunkLeaves[leafCount] = leaves[i];
+            chunkCounts[leafCount++] = content.length;
+        }
+        send(BankSyncMessage.leaves(Arrays.copyOf(chunkLeaves, leafCount), Arrays.copyOf(chunkCounts, leafCount),
+                Arrays.copyOf(chunkHashes, hashCount), true));
+    }
+
+    private void onLeaves(BankSyncMessage m) throws IOException {
+        if (m.indexes.length != m.counts.length) throw new IOException("Некорректный LEAVES");
+        SQLiteDatabase db = database.get();
+        long[] peerLacks = new long[64];
+        long[] iLack = new long[64];
+        int lackCount = 0;
+        int wantCount = 0;
+        int offset = 0;
+        for (int i = 0; i < m.indexes.length; i++) {
+            int leaf = m.indexes[i];
+            int count = m.counts[i];
+            if (leaf < 0 || leaf >= QuestionMerkleTree.LEAF_COUNT || count < 0 || offset + count > m.hashes.length) {
+                throw new IOException("Некорректный LEAVES: лист " + leaf);
+            }
+            long[] theirs = Arrays.copyOfRange(m.hashes, offset, offset + count);
+            offset += count;
+            Arrays.sort(theirs);
+            long[] mine = QuestionMerkleTree.leafContent(db, leaf);
+            for (long h : mine) {
+                if (Arrays.binarySearch(theirs, h) < 0) {
+                    if (lackCount == peerLacks.length) peerLacks = Arrays.copyOf(peerLacks, lackCount * 2);
+                    peerLacks[lackCount++] = h;
+                }
+            }
+            for (long h : theirs) {
+                if (Arrays.binarySearch(mine, h) < 0) {
+                    if (wantCount == iLack.length) iLack = Arrays.copyOf(iLack, wantCount * 2);
+                    iLack[wantCount++] = h;
+                }
+            }
+        }
+        sendRows(peerLacks, lackCount);
+        for (int from = 0; from < wantCount; from += MAX_HASHES_PER_MESSAGE) {
+            send(BankSyncMessage.want(Arrays.copyOfRange(iLack, from, Math.min(wantCount, from + MAX_HASHES_PER_MESSAGE))));
+        }
+        if (m.last) sendDone();
+    }
+
+    private void sendRows(long[] hashes, int count) throws IOException {
+        SQLiteDatabase db = database.get();
+        List<BankSyncMessage.Row> batch = new ArrayList<>(MAX_ROWS_PER_MESSAGE);
+        int batchChars = 0;
+        String[] args = new String[1];
+        for (int i = 0; i < count; i++) {
+            args[0] = String.valueOf(hashes[i]);
+            BankSyncMessage.Row row = null;
+            try (Cursor c = db.rawQuery(SELECT_ROW_SQL, args)) {
+                if (c.moveToFirst()) {
+                    row = new BankSyncMessage.Row(c.getString(0),
+                            new String[]{c.getString(1), c.getString(2), c.getString(3), c.getString(4)},
+                            c.getInt(5), c.getString(6), c.getInt(7), c.getString(8));
+                }
+            }
+            if (row == null) continue; // удалён после построения дерева или соперник просит чужое
+            int chars = row.question.length();
+            for (String option : row.options) chars += option != null ? option.length() : 0;
+            if (!batch.isEmpty() && (batch.size() == MAX_ROWS_PER_MESSAGE || batchChars + chars > MAX_ROW_CHARS_PER_MESSAGE)) {
+                sendRowBatch(batch);
+                batch = new ArrayList<>(MAX_ROWS_PER_MESSAGE);
+                batchChars = 0;
+            }
+            batch.add(row);
+            batchChars += chars;
+        }
+        if (!batch.isEmpty()) sendRowBatch(batch);
+    }
+
+    private void sendRowBatch(List<BankSyncMessage.Row> batch) throws IOException {
+        send(BankSyncMessage.rows(batch));
+        rowsSent += batch.size();
+    }
+
+    /** Вставляет принятые строки одной транзакцией на потоке-писателе. */
+    private void apply() throws IOException {
+        if (received.isEmpty()) return;
+        List<BankSyncMessage.Row> rows = new ArrayList<>(received);
+        received.clear();
+        int inserted = onWriter(() -> insertRows(rows), "вставить принятые строки");
+        rowsInserted = inserted;
+        if (inserted > 0 && onBankChanged != null) onBankChanged.run();
+    }
+
+    /** Выполняет задачу на потоке-писателе и ждёт её. */
+    private <T> T onWriter(Callable<T> task, String what) throws IOException {
+        FutureTask<T> future = new FutureTask<>(task);
+        writer.execute(future);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Не удалось " + what, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Прервано: " + what, e);
+        }
+    }
+
+    private int insertRows(List<BankSyncMessage.Row> rows) {
+        SQLiteDatabase db = database.get();
+        int inserted = 0;
+        db.beginTransaction();
+        try (SQLiteStatement exists = db.compileStatement("SELECT COUNT(*) FROM " + QuizDatabaseHelper.TABLE_QUESTIONS +
+                " WHERE " + QuizDatabaseHelper.COLUMN_CONTENT_HASH + " = ?");
+             SQLiteStatement insert = db.compileStatement(QuestionPackImporter.INSERT_SQL);
+             QuestionDeduplicator deduplicator = new QuestionDeduplicator(db)) {
+            deduplicator.ensureIndexed();
+            for (BankSyncMessage.Row row : rows) {
+                if (row.question == null || row.options == null || row.options.length != 4 ||
+                        row.answerNum < 1 || row.answerNum > 4) {
+                    continue;
+                }
+                long contentHash = QuestionHash.contentHash(row.question, row.options, row.answerNum);
+                exists.bindLong(1, contentHash);
+                if (exists.simpleQueryForLong() > 0) continue;
+
+                insert.bindString(1, row.question);
+                for (int i = 0; i < 4; i++) insert.bindString(2 + i, row.options[i] != null ? row.options[i] : "");
+                insert.bindLong(6, row.answerNum);
+                insert.bindString(7, row.category != null ? row.category : "");
+                insert.bindLong(8, row.difficulty);
+                insert.bindString(9, row.language != null ? row.language : "");
+                insert.bindLong(10, contentHash);
+                long id = insert.executeInsert();
+                insert.clearBindings();
+
+                int[] signature = MinHash.signature(row.question);
+                deduplicator.add(id, signature, deduplicator.findDuplicate(signature, row.options[row.answerNum - 1]));
+                inserted++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return inserted;
+    }
+
+    private void sendDone() throws IOException {
+        sentDone = true;
+        send(BankSyncMessage.done());
+        if (receivedDone) finish(true);
+    }
+
+    /** Отправляет и ждёт подтверждения записи в канал. */
+    private void send(BankSyncMessage message) throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean ok = new AtomicBoolean();
+        sender.send(message, sent -> {
+            ok.set(sent);
+            latch.countDown();
+        });
+        try {
+            if (!latch.await(SEND_TIMEOUT_MS, TimeUnit.MILLISECONDS)) throw new IOException("Таймаут отправки " + message.kind);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Отправка прервана", e);
+        }
+        if (!ok.get()) throw new IOException("Сообщение " + message.kind + " не отправлено");
+        messagesSent++;
+    }
+
+    /** Дерево по сохранённым листьям; изменённые листья пересчитываются и сохраняются на потоке-писателе. */
+    private QuestionMerkleTree tree() throws IOException {
+        if (tree == null) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            tree = onWriter(() -> QuestionMerkleTree.load(database.get()), "загрузить дерево хешей");
+            Log.d(TAG, "Дерево хешей загружено за " + (SystemClock.elapsedRealtimeNanos() - start) / 1000 +
+                    " мкс, пересчитано листьев: " + tree.leavesRecomputed());
+        }
+        return tree;
+    }
+
+    private void touch() {
+        if (idleTimeout != null) idleTimeout.cancel(false);
+        idleTimeout = executor.schedule(() -> {
+            if (finished) return;
+            Log.w(TAG, "Соперник молчит дольше " + IDLE_TIMEOUT_MS + " мс, сверка прервана");
+            finish(false);
+        }, IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void fail(String message, Exception e) {
+        if (finished) return;
+        Log.e(TAG, message, e);
+        try {
+            send(BankSyncMessage.abort());
+        } catch (IOException ignored) {
+            // Соединения уже нет
+        }
+        finish(false);
+    }
+
+    private void finish(boolean success) {
+        if (finished) return;
+        finished = true;
+        if (idleTimeout != null) idleTimeout.cancel(false);
+        received.clear();
+        long elapsed = startNanos == 0 ? 0 : SystemClock.elapsedRealtimeNanos() - startNanos;
+        Result result = new Result(success, messagesSent, rowsSent, rowsReceived, rowsInserted, elapsed);
+        Log.d(TAG, "Сверка банков завершена: " + result);
+        executor.shutdown();
+        if (listener != null) {
+            try {
+                listener.onFinished(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error delivering sync result", e);
+            }
+        }
+    }
+}
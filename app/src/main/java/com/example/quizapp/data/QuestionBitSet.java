@@ -0,0 +1,111 @@
+package com.example.quizapp.data;
+
+import java.util.Arrays;
+
+/**
+ * QuestionBitSet — компактный набор id вопросов на примитивном long[].
+ *
+ * Один бит на id: банк из 1 000 000 вопросов занимает 15 625 long = 125 КБ.
+ * Без боксинга Integer и без аллокаций на get/set (массив растёт только при set за пределами).
+ * Сериализуется в BLOB (little-endian, хвостовые нулевые слова отбрасываются).
+ */
+public class QuestionBitSet {
+
+    private long[] words;
+
+    public QuestionBitSet() {
+        this(0);
+    }
+
+    public QuestionBitSet(int expectedMaxId) {
+        words = new long[wordIndex(Math.max(expectedMaxId, 0)) + 1];
+    }
+
+    private QuestionBitSet(long[] words) {
+        this.words = words;
+    }
+
+    /** Независимая копия: выборку можно делать по ней, не меняя исходный набор. */
+    public QuestionBitSet copy() {
+        return new QuestionBitSet(words.clone());
+    }
+
+    private static int wordIndex(int bit) {
+        return bit >>> 6;
+    }
+
+    public boolean get(int id) {
+        if (id < 0) return false;
+        int w = wordIndex(id);
+        return w < words.length && (words[w] & (1L << id)) != 0;
+    }
+
+    public void set(int id) {
+        if (id < 0) throw new IllegalArgumentException("id < 0: " + id);
+        int w = wordIndex(id);
+        if (w >= words.length) {
+            // Рост с запасом, чтобы последовательные id не копировали массив на каждом слове
+            words = Arrays.copyOf(words, Math.max(w + 1, words.length * 2));
+        }
+        words[w] |= 1L << id;
+    }
+
+    public void clear(int id) {
+        if (id < 0) return;
+        int w = wordIndex(id);
+        if (w < words.length) words[w] &= ~(1L << id);
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int sum = 0;
+        for (long word : words) sum += Long.bitCount(word);
+        return sum;
+    }
+
+    /** Первый id >= from, которого нет в наборе (как java.util.BitSet.nextClearBit). */
+    public int nextClearBit(int from) {
+        if (from < 0) from = 0;
+        int w = wordIndex(from);
+        if (w >= words.length) return from;
+        long word = ~words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length) return w << 6;
+            word = ~words[w];
+        }
+    }
+
+    /** Байтовое представление для BLOB: 8 байт на слово, little-endian, без хвостовых нулей. */
+    public byte[] toBytes() {
+        int used = words.length;
+        while (used > 0 && words[used - 1] == 0) used--;
+        byte[] bytes = new byte[used * 8];
+        for (int w = 0; w < used; w++) {
+            long word = words[w];
+            for (int b = 0; b < 8; b++) {
+                bytes[w * 8 + b] = (byte) (word >>> (b * 8));
+            }
+        }
+        return bytes;
+    }
+
+    public static QuestionBitSet fromBytes(byte[] bytes) {
+        if (bytes == null) return new QuestionBitSet();
+        long[] words = new long[(bytes.length + 7) / 8];
+        for (int i = 0; i < bytes.length; i++) {
+            words[i >>> 3] |= (bytes[i] & 0xFFL) << ((i & 7) * 8);
+        }
+        return new QuestionBitSet(words);
+    }
+}
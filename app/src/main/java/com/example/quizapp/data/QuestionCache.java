@@ -0,0 +1,339 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * QuestionCache — репозиторий вопросов матча с кэшем и предзагрузкой.
+ *
+ * Создаётся и принадлежит QuizRepository; активности обращаются к нему через репозиторий.
+ *
+ * Особенности:
+ * - ограниченный LRU материализованных Question по id: повторно встречающиеся вопросы не читаются из базы
+ * - prefetchNextMatch() готовит набор следующего матча в фоновом потоке (вызывается с экрана
+ *   результатов и из меню), takeMatchQuestions() в GameActivity отдаёт его без обращения к базе
+ * - выборка через QuestionSampler с учётом показанных вопросов и выбранной темы/сложности; набор готовится
+ *   под конкретный фильтр по копии seen. Показанными вопросы становятся только в takeMatchQuestions —
+ *   отменённая или так и не выданная предзагрузка не расходует банк. Сохраняется seen на потоке-писателе
+ * - invalidate() по изменению банка (импорт, сверка с соперником — через QuizDatabaseHelper)
+ * - getQuestionsByContentHash(hashes) — набор, присланный хостом одними content_hash (банки совпадают):
+ *   id находятся по индексу content_hash, сами вопросы — через тот же LRU
+ * - счётчики: готовые/ожидаемые/отсутствующие предзагрузки, попадания LRU, время загрузки набора
+ */
+public class QuestionCache {
+
+    private static final String TAG = "QuestionCache";
+    static final int LRU_CAPACITY = 512;
+
+    private final QuizDatabaseHelper dbHelper;
+    private final Executor writer;
+    private final QuestionSampler sampler = new QuestionSampler();
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "QuestionPrefetch");
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private final LinkedHashMap<Integer, Question> lru = new LinkedHashMap<Integer, Question>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Question> eldest) {
+            return size() > LRU_CAPACITY;
+        }
+    };
+
+    /** Набор матча и состояние seen, которое станет текущим, если набор выдадут. */
+    private static final class MatchSet {
+        final List<Question> questions;
+        final QuestionBitSet seenAfter;
+        final long seenVersion; // версия seen, по копии которой сделана выборка
+
+        MatchSet(List<Question> questions, QuestionBitSet seenAfter, long seenVersion) {
+            this.questions = questions;
+            this.seenAfter = seenAfter;
+            this.seenVersion = seenVersion;
+        }
+    }
+
+    private Future<MatchSet> pendingSet;
+    private int pendingSize;
+    private QuestionSampler.Filter pendingFilter = QuestionSampler.Filter.ANY;
+
+    // Показанные вопросы: загружаются из базы один раз, меняются только при выдаче набора. Под блокировкой sampler
+    private QuestionBitSet seen;
+    private long seenVersion;
+
+    // Счётчики
+    private long prefetchReady;    // набор был готов к моменту takeMatchQuestions
+    private long prefetchWaited;   // набор ещё грузился — дождались
+    private long prefetchMissed;   // предзагрузки не было — грузили синхронно
+    private long lruHits;
+    private long lruMisses;
+    private long loads;
+    private long totalLoadNanos;
+    private long lastLoadNanos;
+
+    /** writer — поток-писатель QuizRepository: seen сохраняется через него, как и все записи в базу. */
+    QuestionCache(QuizDatabaseHelper dbHelper, Executor writer) {
+        this.dbHelper = dbHelper;
+        this.writer = writer;
+        dbHelper.addQuestionBankListener(this::invalidate);
+    }
+
+    public void prefetchNextMatch(int count) {
+        prefetchNextMatch(count, QuestionSampler.Filter.ANY);
+    }
+
+    /** Запускает фоновую подготовку набора из count вопросов, если он ещё не готовится. */
+    public synchronized void prefetchNextMatch(int count, QuestionSampler.Filter filter) {
+        if (pendingSet != null && pendingSize == count && pendingFilter.equals(filter)) return;
+        if (pendingSet != null) pendingSet.cancel(false);
+        pendingSize = count;
+        pendingFilter = filter;
+        pendingSet = prefetchExecutor.submit(() -> loadMatchSet(count, filter));
+    }
+
+    public List<Question> takeMatchQuestions(int count) {
+        return takeMatchQuestions(count, QuestionSampler.Filter.ANY);
+    }
+
+    /**
+     * Набор вопросов для нового матча: предзагруженный, если есть, иначе загружается в вызывающем потоке.
+     * После выдачи набора сразу запускается подготовка следующего.
+     */
+    public List<Question> takeMatchQuestions(int count, QuestionSampler.Filter filter) {
+        Future<MatchSet> pending;
+        synchronized (this) {
+            pending = pendingSize == count && pendingFilter.equals(filter) ? pendingSet : null;
+            if (pending == null && pendingSet != null) pendingSet.cancel(false);
+            pendingSet = null;
+        }
+
+        MatchSet result = null;
+        if (pending != null) {
+            boolean ready = pending.isDone();
+            try {
+                result = pending.get();
+                if (!markSeen(result)) {
+                    // seen изменился после выборки — набор мог повторить уже показанные вопросы
+                    result = null;
+                } else {
+                    synchronized (this) {
+                        if (ready) prefetchReady++; else prefetchWaited++;
+                    }
+                }
+            } catch (ExecutionException | InterruptedException | CancellationException e) {
+                Log.w(TAG, "Предзагрузка набора не удалась, грузим синхронно", e);
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            }
+        }
+        if (result == null) {
+            synchronized (this) {
+                prefetchMissed++;
+            }
+            do {
+                result = loadMatchSet(count, filter);
+            } while (!markSeen(result));
+        }
+
+        prefetchNextMatch(count, filter);
+        return result.questions;
+    }
+
+    /**
+     * Делает выданный набор показанным и сохраняет seen.
+     * @return false, если набор выбран по устаревшему seen и выдавать его нельзя
+     */
+    private boolean markSeen(MatchSet set) {
+        synchronized (sampler) {
+            if (set.seenVersion != seenVersion) return false;
+            if (set.questions.isEmpty()) return true;
+            // Текущий seen после этого не меняется (выборки идут по копиям) — сохранять его можно как есть.
+            // Ставим в очередь писателя под блокировкой, чтобы сохранения шли в порядке версий
+            QuestionBitSet saved = set.seenAfter;
+            seen = saved;
+            seenVersion++;
+            writer.execute(() -> dbHelper.saveSeenQuestions(saved));
+            return true;
+        }
+    }
+
+    /** Сбрасывает кэш и готовящийся набор — после изменения банка вопросов. */
+    public synchronized void invalidate() {
+        lru.clear();
+        if (pendingSet != null) pendingSet.cancel(false);
+        pendingSet = null;
+    }
+
+    private MatchSet loadMatchSet(int count, QuestionSampler.Filter filter) {
+        // System.nanoTime, а не SystemClock: тот же монотонный счётчик, но идёт и в JVM-тестах
+        long start = System.nanoTime();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        int[] ids;
+        QuestionBitSet seenAfter;
+        long version;
+        // Sampler (его Random) и seen не потокобезопасны — выборку делаем под блокировкой
+        synchronized (sampler) {
+            if (seen == null) seen = dbHelper.loadSeenQuestions();
+            seenAfter = seen.copy();
+            version = seenVersion;
+            ids = sampler.sample(db, count, seenAfter, filter);
+        }
+
+        List<Question> questions = getQuestions(db, ids);
+
+        long elapsed = System.nanoTime() - start;
+        synchronized (this) {
+            loads++;
+            totalLoadNanos += elapsed;
+            lastLoadNanos = elapsed;
+        }
+        return new MatchSet(questions, seenAfter, version);
+    }
+
+    /** Вопросы по id в порядке ids; отсутствующие в банке пропускаются. */
+    public List<Question> getQuestions(int[] ids) {
+        return getQuestions(dbHelper.getReadableDatabase(), ids);
+    }
+
+    /** Вопросы по content_hash в порядке hashes; отсутствующие в банке пропускаются. */
+    public List<Question> getQuestionsByContentHash(long[] hashes) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        StringBuilder inClause = new StringBuilder();
+        for (int i = 0; i < hashes.length; i++) inClause.append(i == 0 ? "" : ",").append(hashes[i]);
+
+        Map<Long, Integer> idByHash = new HashMap<>();
+        try (Cursor cursor = db.rawQuery("SELECT " + QuizDatabaseHelper.COLUMN_CONTENT_HASH + ", " +
+                QuizDatabaseHelper.COLUMN_ID + " FROM " + QuizDatabaseHelper.TABLE_QUESTIONS +
+                " WHERE " + QuizDatabaseHelper.COLUMN_CONTENT_HASH + " IN (" + inClause + ")", null)) {
+            while (cursor.moveToNext()) idByHash.put(cursor.getLong(0), cursor.getInt(1));
+        }
+
+        int[] ids = new int[hashes.length];
+        int found = 0;
+        for (long hash : hashes) {
+            Integer id = idByHash.get(hash);
+            if (id != null) ids[found++] = id;
+        }
+        return getQuestions(db, Arrays.copyOf(ids, found));
+    }
+
+    private List<Question> getQuestions(SQLiteDatabase db, int[] ids) {
+        Question[] ordered = new Question[ids.length];
+        List<Integer> missing = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < ids.length; i++) {
+                ordered[i] = lru.get(ids[i]);
+                if (ordered[i] == null) missing.add(ids[i]);
+            }
+            lruHits += ids.length - missing.size();
+            lruMisses += missing.size();
+        }
+
+        if (!missing.isEmpty()) {
+            List<Question> loaded = queryByIds(db, missing);
+            synchronized (this) {
+                for (Question q : loaded) {
+                    lru.put(q.id, q);
+                    for (int i = 0; i < ids.length; i++) {
+                        if (ids[i] == q.id) { ordered[i] = q; break; }
+                    }
+                }
+            }
+        }
+
+        List<Question> result = new ArrayList<>(ordered.length);
+        for (Question q : ordered) {
+            if (q != null) result.add(q);
+        }
+        return result;
+    }
+
+    static List<Question> queryByIds(SQLiteDatabase db, List<Integer> ids) {
+        StringBuilder inClause = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) inClause.append(i == 0 ? "" : ",").append(ids.get(i));
+
+        List<Question> result = new ArrayList<>(ids.size());
+        try (Cursor cursor = db.rawQuery(
+                "SELECT * FROM " + QuizDatabaseHelper.TABLE_QUESTIONS +
+                        " WHERE " + QuizDatabaseHelper.COLUMN_ID + " IN (" + inClause + ")",
+                null)) {
+            int idCol = cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_ID);
+            int questionCol = cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_QUESTION);
+            int option1Col = cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_OPTION1);
+            int option2Col = cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_OPTION2);
+            int option3Col = cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_OPTION3);
+            int option4Col = cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_OPTION4);
+            int answerCol = cursor.getColumnIndexOrThrow(QuizDatabaseHelper.COLUMN_ANSWER_NUM);
+            while (cursor.moveToNext()) {
+                Question q = new Question();
+                q.id = cursor.getInt(idCol);
+                q.question = cursor.getString(questionCol);
+                q.options = new String[]{
+                        cursor.getString(option1Col),
+                        cursor.getString(option2Col),
+                        cursor.getString(option3Col),
+                        cursor.getString(option4Col)
+                };
+                q.answerNum = cursor.getInt(answerCol);
+                result.add(q);
+            }
+        }
+        return result;
+    }
+
+    // Счётчики
+
+    public synchronized double getPrefetchHitRate() {
+        long total = prefetchReady + prefetchWaited + prefetchMissed;
+        return total == 0 ? 0 : (double) prefetchReady / total;
+    }
+
+    public synchronized double getLruHitRate() {
+        long total = lruHits + lruMisses;
+        return total == 0 ? 0 : (double) lruHits / total;
+    }
+
+    public synchronized long getAverageLoadMillis() {
+        return loads == 0 ? 0 : totalLoadNanos / loads / 1_000_000;
+    }
+
+    public synchronized long getLastLoadMillis() {
+        return lastLoadNanos / 1_000_000;
+    }
+
+    /** Сколько наборов выбрано из базы (предзагрузкой или синхронно). */
+    public synchronized long getLoadCount() {
+        return loads;
+    }
+
+    @VisibleForTesting
+    synchronized Future<?> pendingPrefetch() {
+        return pendingSet;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QuestionCache{prefetch ready=" + prefetchReady + ", waited=" + prefetchWaited +
+                ", missed=" + prefetchMissed + ", lru hits=" + lruHits + ", misses=" + lruMisses +
+                ", loads=" + loads + ", avgLoadMs=" + getAverageLoadMillis() + ", lru size=" + lru.size() + "}";
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import java.io.Closeable;
+
+/**
+ * QuestionDeduplicator — поиск почти-дубликатов вопросов по MinHash + LSH.
+ *
+ * Особенности:
+ * - сигнатура текста вопроса хранится в question_minhash, корзины полос — в question_lsh,
+ *   поэтому при следующих импортах хешируются только новые строки
+ * - банк из ассета и вопросы старых баз индексируются не при открытии базы, а перед первой проверкой
+ *   дубликатов (ensureIndexed — импорт, сверка с соперником), на потоке-писателе
+ * - кандидаты — вопросы, совпавшие хотя бы в одной полосе (один запрос по первичному ключу корзин),
+ *   дубликат — кандидат с оценкой сходства >= SIMILARITY_THRESHOLD (0.75: "Столица Франции?" и
+ *   "столица франции" — 1.0, "Столица Франции?" и "Столица Германии?" — ~0.3) и тем же текстом правильного
+ *   ответа; попарного сравнения с банком нет
+ * - одного сходства текста мало: шаблонные вопросы, отличающиеся одним словом ("Какой химический элемент
+ *   обозначается символом Fe?" и "...Au?" — 0.92, "Сколько будет 12×12?" и "12×11?" — 0.98), разные,
+ *   и различает их ответ.
+ *   Ответ сравнивается текстом после QuestionHash.normalize, а не номером — переформулировка может
+ *   переставить варианты
+ * - строки, добавленные в текущей транзакции, тоже видны: дубликаты внутри одного пакета находятся
+ * - при удалении вопроса сигнатура и записи корзин удаляются триггерами
+ *
+ * Экземпляр держит скомпилированные запросы к одной базе — закрывать после использования.
+ */
+public class QuestionDeduplicator implements Closeable {
+
+    private static final String TAG = "QuestionDeduplicator";
+    public static final double SIMILARITY_THRESHOLD = 0.75;
+
+    public static final String TABLE_MINHASH = "question_minhash";
+    public static final String MINHASH_COLUMN_QUESTION_ID = "question_id";
+    public static final String MINHASH_COLUMN_SIGNATURE = "signature";
+    public static final String MINHASH_COLUMN_DUPLICATE_OF = "duplicate_of"; // id похожего вопроса или NULL
+    public static final String TABLE_LSH = "question_lsh";
+
+    private static final int INDEX_CHUNK = 512;
+    // Предел проверяемых кандидатов на одну строку: стоимость поиска не растёт с размером корзины
+    private static final int MAX_CANDIDATES = 64;
+    private static final String FIND_CANDIDATES_SQL = buildFindCandidatesSql();
+
+    private final SQLiteDatabase db;
+    private final SQLiteStatement insertSignature;
+    private final SQLiteStatement insertBucket;
+    private final String[] bucketArgs = new String[MinHash.BANDS];
+
+    public QuestionDeduplicator(SQLiteDatabase db) {
+        this.db = db;
+        insertSignature = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_MINHASH + "(" +
+                MINHASH_COLUMN_QUESTION_ID + ", " + MINHASH_COLUMN_SIGNATURE + ", " + MINHASH_COLUMN_DUPLICATE_OF +
+                ") VALUES (?, ?, ?)");
+        insertBucket = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_LSH +
+                "(band, bucket, question_id) VALUES (?, ?, ?)");
+    }
+
+    /** Таблицы и триггеры; сигнатуры не считаются (см. ensureIndexed). Вызывается из onCreate и миграций. */
+    public static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MINHASH + "(" +
+                MINHASH_COLUMN_QUESTION_ID + " INTEGER PRIMARY KEY," +
+                MINHASH_COLUMN_SIGNATURE + " BLOB NOT NULL," +
+                MINHASH_COLUMN_DUPLICATE_OF + " INTEGER" +
+                ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_question_minhash_duplicate_of ON " + TABLE_MINHASH +
+                "(" + MINHASH_COLUMN_DUPLICATE_OF + ") WHERE " + MINHASH_COLUMN_DUPLICATE_OF + " IS NOT NULL");
+        // Корзина — (полоса, хеш полосы); строки кластеризованы по ключу, поиск корзины — один спуск по B-дереву
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_LSH + "(" +
+                "band INTEGER NOT NULL," +
+                "bucket INTEGER NOT NULL," +
+                "question_id INTEGER NOT NULL," +
+                "PRIMARY KEY(band, bucket, question_id)" +
+                ") WITHOUT ROWID");
+        // Для удаления корзин вопроса: первичный ключ начинается с полосы
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_question_lsh_question_id ON " + TABLE_LSH + "(question_id)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_MINHASH + "_ad AFTER DELETE ON " +
+                QuizDatabaseHelper.TABLE_QUESTIONS + " BEGIN DELETE FROM " + TABLE_MINHASH +
+                " WHERE " + MINHASH_COLUMN_QUESTION_ID + " = old." + QuizDatabaseHelper.COLUMN_ID + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_LSH + "_ad AFTER DELETE ON " +
+                QuizDatabaseHelper.TABLE_QUESTIONS + " BEGIN DELETE FROM " + TABLE_LSH +
+                " WHERE question_id = old." + QuizDatabaseHelper.COLUMN_ID + "; END");
+    }
+
+    /** Записи корзин вопросов, удалённых до появления триггера question_lsh_ad. */
+    public static void deleteOrphanBuckets(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_LSH + " WHERE question_id NOT IN (SELECT " +
+                MINHASH_COLUMN_QUESTION_ID + " FROM " + TABLE_MINHASH + ")");
+    }
+
+    /**
+     * Досчитывает сигнатуры, если в банке есть вопросы без них: вызывается перед проверкой дубликатов.
+     * Сигнатуры есть только у существующих вопросов (триггер удаления), поэтому хватает сравнить число строк —
+     * полный проход по банку нужен один раз, при первом импорте или сверке.
+     * @return число проиндексированных вопросов
+     */
+    public int ensureIndexed() {
+        if (DatabaseUtils.queryNumEntries(db, TABLE_MINHASH) >=
+                DatabaseUtils.queryNumEntries(db, QuizDatabaseHelper.TABLE_QUESTIONS)) {
+            return 0;
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        int indexed;
+        db.beginTransaction();
+        try {
+            indexed = indexMissing();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Банк проиндексирован за " + (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000 + " мс");
+        return indexed;
+    }
+
+    /**
+     * Считает сигнатуры для вопросов, у которых их ещё нет (банк из ассета, старые базы).
+     * Дубликаты среди них помечаются, но не удаляются. Вызывать в транзакции.
+     * @return число проиндексированных вопросов
+     */
+    public int indexMissing() {
+        String sql = "SELECT q." + QuizDatabaseHelper.COLUMN_ID + ", q." + QuizDatabaseHelper.COLUMN_QUESTION +
+                ", " + answerColumn("q") + " FROM " + QuizDatabaseHelper.TABLE_QUESTIONS + " q LEFT JOIN " + TABLE_MINHASH + " m ON m." +
+                MINHASH_COLUMN_QUESTION_ID + " = q." + QuizDatabaseHelper.COLUMN_ID +
+                " WHERE m." + MINHASH_COLUMN_QUESTION_ID + " IS NULL ORDER BY q." + QuizDatabaseHelper.COLUMN_ID +
+                " LIMIT " + INDEX_CHUNK;
+        long[] ids = new long[INDEX_CHUNK];
+        String[] texts = new String[INDEX_CHUNK];
+        String[] answers = new String[INDEX_CHUNK];
+        int indexed = 0;
+        while (true) {
+            // Пачка читается целиком до записи: курсор по изменяемой выборке дочитывал бы окна со сдвигом
+            int n = 0;
+            try (Cursor c = db.rawQuery(sql, null)) {
+                while (c.moveToNext()) {
+                    ids[n] = c.getLong(0);
+                    texts[n] = c.getString(1);
+                    answers[n++] = QuestionHash.normalize(c.getString(2));
+                }
+            }
+            if (n == 0) break;
+            for (int i = 0; i < n; i++) {
+                int[] sig = MinHash.signature(texts[i]);
+                add(ids[i], sig, findDuplicate(sig, answers[i], ids[i]));
+            }
+            indexed += n;
+        }
+        if (indexed > 0) Log.d(TAG, "Сигнатуры посчитаны для " + indexed + " вопросов");
+        return indexed;
+    }
+
+    /** id похожего вопроса с тем же правильным ответом answer или -1. */
+    public long findDuplicate(int[] sig, String answer) {
+        return findDuplicate(sig, QuestionHash.normalize(answer), -1);
+    }
+
+    private long findDuplicate(int[] sig, String normalizedAnswer, long selfId) {
+        for (int band = 0; band < MinHash.BANDS; band++) {
+            bucketArgs[band] = String.valueOf(MinHash.bandHash(sig, band));
+        }
+        try (Cursor c = db.rawQuery(FIND_CANDIDATES_SQL, bucketArgs)) {
+            while (c.moveToNext()) {
+                long candidate = c.getLong(0);
+                if (candidate == selfId) continue;
+                int[] other = MinHash.fromBytes(c.getBlob(1));
+                // Достаточно первого похожего: в банке шаблонных вопросов корзины бывают большими
+                if (other != null && MinHash.similarity(sig, other) >= SIMILARITY_THRESHOLD &&
+                        normalizedAnswer.equals(QuestionHash.normalize(c.getString(2)))) {
+                    return candidate;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Текст правильного варианта строки вопросов q — для сравнения ответов кандидатов в SQL. */
+    private static String answerColumn(String q) {
+        return "CASE " + q + "." + QuizDatabaseHelper.COLUMN_ANSWER_NUM +
+                " WHEN 1 THEN " + q + "." + QuizDatabaseHelper.COLUMN_OPTION1 +
+                " WHEN 2 THEN " + q + "." + QuizDatabaseHelper.COLUMN_OPTION2 +
+                " WHEN 3 THEN " + q + "." + QuizDatabaseHelper.COLUMN_OPTION3 +
+                " WHEN 4 THEN " + q + "." + QuizDatabaseHelper.COLUMN_OPTION4 + " END";
+    }
+
+    /** Сохраняет сигнатуру вопроса questionId и раскладывает его по корзинам. */
+    public void add(long questionId, int[] sig, long duplicateOf) {
+        insertSignature.bindLong(1, questionId);
+        insertSignature.bindBlob(2, MinHash.toBytes(sig));
+        if (duplicateOf >= 0) insertSignature.bindLong(3, duplicateOf);
+        else insertSignature.bindNull(3);
+        insertSignature.executeInsert();
+
+        insertBucket.bindLong(3, questionId);
+        for (int band = 0; band < MinHash.BANDS; band++) {
+            insertBucket.bindLong(1, band);
+            insertBucket.bindLong(2, MinHash.bandHash(sig, band));
+            insertBucket.executeInsert();
+        }
+    }
+
+    // Все полосы одним запросом: SQLite разворачивает OR в поиски по первичному ключу корзин
+    private static String buildFindCandidatesSql() {
+        StringBuilder sb = new StringBuilder("SELECT DISTINCT l.question_id, m.").append(MINHASH_COLUMN_SIGNATURE)
+                .append(", ").append(answerColumn("q"))
+                .append(" FROM ").append(TABLE_LSH).append(" l JOIN ").append(TABLE_MINHASH).append(" m ON m.")
+                .append(MINHASH_COLUMN_QUESTION_ID).append(" = l.question_id JOIN ")
+                .append(QuizDatabaseHelper.TABLE_QUESTIONS).append(" q ON q.").append(QuizDatabaseHelper.COLUMN_ID)
+                .append(" = l.question_id WHERE ");
+        for (int band = 0; band < MinHash.BANDS; band++) {
+            if (band > 0) sb.append(" OR ");
+            sb.append("(l.band = ").append(band).append(" AND l.bucket = ?)");
+        }
+        return sb.append(" LIMIT ").append(MAX_CANDIDATES).toString();
+    }
+
+    @Override
+    public void close() {
+        insertSignature.close();
+        insertBucket.close();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.quizapp.data;
+
+import java.util.Locale;
+
+/**
+ * QuestionHash — нормализация текста и 64-битный хеш содержимого вопроса (FNV-1a).
+ *
+ * Хеш считается по нормализованным тексту вопроса, вариантам и номеру правильного ответа,
+ * поэтому регистр, пунктуация и лишние пробелы на него не влияют.
+ * Тот же алгоритм повторён в задаче compileQuestionBank (app/build.gradle.kts) — менять только вместе.
+ */
+public final class QuestionHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char FIELD_SEPARATOR = '\u001F';
+
+    private QuestionHash() {
+    }
+
+    /** Нижний регистр, ё -> е, всё кроме букв и цифр -> пробел, пробелы схлопываются. */
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(lower.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (c == 'ё') c = 'е';
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) sb.append(' ');
+                pendingSpace = false;
+                sb.append(c);
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    public static long contentHash(String question, String[] options, int answerNum) {
+        long h = FNV_OFFSET;
+        h = mix(h, normalize(question));
+        for (String option : options) {
+            h = mixChar(h, FIELD_SEPARATOR);
+            h = mix(h, normalize(option));
+        }
+        h = mixChar(h, FIELD_SEPARATOR);
+        return mixChar(h, (char) ('0' + answerNum));
+    }
+
+    private static long mix(long h, String s) {
+        for (int i = 0; i < s.length(); i++) h = mixChar(h, s.charAt(i));
+        return h;
+    }
+
+    private static long mixChar(long h, char c) {
+        h ^= c & 0xFF;
+        h *= FNV_PRIME;
+        h ^= c >>> 8;
+        h *= FNV_PRIME;
+        return h;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+/**
+ * QuestionMerkleTree — дерево хешей над множеством content_hash банка вопросов.
+ *
+ * Особенности:
+ * - лист — диапазон content_hash по старшим LEAF_BITS битам (4096 листьев), а не диапазон id:
+ *   id на разных устройствах после независимых импортов не совпадают, а хеш содержимого — общий
+ * - хеш листа — свёртка отсортированных content_hash, хеш узла — свёртка FANOUT детей;
+ *   пустое поддерево имеет хеш 0, поэтому редкий банк сравнивается дёшево
+ * - хеши листьев хранятся в question_merkle_leaves; триггеры на вставку, удаление и смену content_hash
+ *   помечают лист изменившимся (hash = NULL), и load() пересчитывает только такие листья —
+ *   полный проход по idx_questions_content_hash (только индекс, строки таблицы не читаются) нужен
+ *   лишь при первой сверке. Узлы выше листьев (273 штуки) считаются в памяти
+ * - совпадение корней — банки содержат одни и те же вопросы; различия ищутся спуском только в
+ *   несовпавшие узлы, так что стоимость сверки растёт с размером разницы, а не банка
+ */
+public final class QuestionMerkleTree {
+
+    public static final int FANOUT = 16;
+    public static final int LEAF_LEVEL = 3;
+    public static final int LEAF_BITS = 12; // FANOUT ^ LEAF_LEVEL листьев
+    public static final int LEAF_COUNT = 1 << LEAF_BITS;
+
+    public static final String TABLE_LEAVES = "question_merkle_leaves";
+    static final String LEAVES_COLUMN_LEAF = "leaf";
+    static final String LEAVES_COLUMN_HASH = "hash"; // NULL — лист изменился, пересчитать
+
+    private static final long LEAF_SPAN = 1L << (64 - LEAF_BITS);
+
+    private final long[][] levels = new long[LEAF_LEVEL + 1][];
+    private int leavesRecomputed = LEAF_COUNT;
+
+    private QuestionMerkleTree() {
+        for (int level = 0; level <= LEAF_LEVEL; level++) levels[level] = new long[nodeCount(level)];
+    }
+
+    /** Таблица хешей листьев и триггеры, помечающие лист изменившимся. Вызывается из onCreate и миграций. */
+    public static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_LEAVES + "(" +
+                LEAVES_COLUMN_LEAF + " INTEGER PRIMARY KEY," +
+                LEAVES_COLUMN_HASH + " INTEGER" +
+                ")");
+        // content_hash IS NULL даёт лист NULL — такие строки в дерево не входят и ничего не помечают
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_LEAVES + "_ai AFTER INSERT ON " +
+                QuizDatabaseHelper.TABLE_QUESTIONS + " BEGIN " + markDirty("new") + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_LEAVES + "_ad AFTER DELETE ON " +
+                QuizDatabaseHelper.TABLE_QUESTIONS + " BEGIN " + markDirty("old") + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_LEAVES + "_au AFTER UPDATE OF " +
+                QuizDatabaseHelper.COLUMN_CONTENT_HASH + " ON " + QuizDatabaseHelper.TABLE_QUESTIONS +
+                " BEGIN " + markDirty("old") + " " + markDirty("new") + " END");
+    }
+
+    private static String markDirty(String row) {
+        // leafOf на SQL: >> в SQLite арифметический, маска отрезает знаковые биты
+        return "UPDATE " + TABLE_LEAVES + " SET " + LEAVES_COLUMN_HASH + " = NULL WHERE " + LEAVES_COLUMN_LEAF +
+                " = ((" + row + "." + QuizDatabaseHelper.COLUMN_CONTENT_HASH + " >> " + (64 - LEAF_BITS) + ") & " +
+                (LEAF_COUNT - 1) + ");";
+    }
+
+    /**
+     * Дерево по сохранённым хешам листьев: пересчитываются только помеченные триггерами листья,
+     * при первом вызове (таблица не заполнена) — все. Пишет в базу — вызывать на потоке-писателе.
+     */
+    public static QuestionMerkleTree load(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            QuestionMerkleTree tree;
+            if (DatabaseUtils.queryNumEntries(db, TABLE_LEAVES) < LEAF_COUNT) {
+                tree = build(db);
+                tree.saveLeaves(db);
+            } else {
+                tree = new QuestionMerkleTree();
+                tree.refreshLeaves(db);
+                tree.computeParents();
+            }
+            db.setTransactionSuccessful();
+            return tree;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Дерево одним проходом по индексу content_hash, без сохранённых листьев. */
+    public static QuestionMerkleTree build(SQLiteDatabase db) {
+        QuestionMerkleTree tree = new QuestionMerkleTree();
+        long[] leaves = tree.levels[LEAF_LEVEL];
+        try (Cursor c = db.rawQuery("SELECT " + QuizDatabaseHelper.COLUMN_CONTENT_HASH + " FROM " +
+                QuizDatabaseHelper.TABLE_QUESTIONS + " WHERE " + QuizDatabaseHelper.COLUMN_CONTENT_HASH +
+                " IS NOT NULL ORDER BY " + QuizDatabaseHelper.COLUMN_CONTENT_HASH, null)) {
+            while (c.moveToNext()) {
+                long hash = c.getLong(0);
+                int leaf = leafOf(hash);
+                leaves[leaf] = foldLeaf(leaves[leaf], hash);
+            }
+        }
+        tree.computeParents();
+        return tree;
+    }
+
+    private void saveLeaves(SQLiteDatabase db) {
+        long[] leaves = levels[LEAF_LEVEL];
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_LEAVES + "(" +
+                LEAVES_COLUMN_LEAF + ", " + LEAVES_COLUMN_HASH + ") VALUES (?, ?)")) {
+            for (int leaf = 0; leaf < LEAF_COUNT; leaf++) {
+                insert.bindLong(1, leaf);
+                insert.bindLong(2, leaves[leaf]);
+                insert.executeInsert();
+            }
+        }
+    }
+
+    private void refreshLeaves(SQLiteDatabase db) {
+        long[] leaves = levels[LEAF_LEVEL];
+        int[] dirty = new int[LEAF_COUNT];
+        int dirtyCount = 0;
+        try (Cursor c = db.rawQuery("SELECT " + LEAVES_COLUMN_LEAF + ", " + LEAVES_COLUMN_HASH +
+                " FROM " + TABLE_LEAVES, null)) {
+            while (c.moveToNext()) {
+                if (c.isNull(1)) {
+                    dirty[dirtyCount++] = c.getInt(0);
+                } else {
+                    leaves[c.getInt(0)] = c.getLong(1);
+                }
+            }
+        }
+        try (SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_LEAVES + " SET " +
+                LEAVES_COLUMN_HASH + " = ? WHERE " + LEAVES_COLUMN_LEAF + " = ?")) {
+            for (int i = 0; i < dirtyCount; i++) {
+                int leaf = dirty[i];
+                long h = 0;
+                for (long hash : leafContent(db, leaf)) h = foldLeaf(h, hash);
+                leaves[leaf] = h;
+                update.bindLong(1, h);
+                update.bindLong(2, leaf);
+                update.executeUpdateDelete();
+            }
+        }
+        leavesRecomputed = dirtyCount;
+    }
+
+    private void computeParents() {
+        for (int level = LEAF_LEVEL - 1; level >= 0; level--) {
+            long[] parents = levels[level];
+            long[] children = levels[level + 1];
+            for (int i = 0; i < parents.length; i++) {
+                long h = 0;
+                boolean empty = true;
+                for (int c = 0; c < FANOUT; c++) {
+                    long child = children[i * FANOUT + c];
+                    if (child != 0) empty = false;
+                    h = mix64(h * 31 + child);
+                }
+                parents[i] = empty ? 0 : h;
+            }
+        }
+    }
+
+    public static int nodeCount(int level) {
+        return 1 << (4 * level);
+    }
+
+    /** Сколько листьев пересчитано при загрузке (LEAF_COUNT — дерево построено целиком). */
+    public int leavesRecomputed() {
+        return leavesRecomputed;
+    }
+
+    public long root() {
+        return levels[0][0];
+    }
+
+    public long hash(int level, int index) {
+        return levels[level][index];
+    }
+
+    /** Лист, в который попадает content_hash. */
+    public static int leafOf(long contentHash) {
+        return (int) (contentHash >>> (64 - LEAF_BITS));
+    }
+
+    /**
+     * content_hash листа по возрастанию (порядок свёртки). Диапазон листа не пересекает смену знака,
+     * поэтому это обычный BETWEEN по индексу.
+     */
+    public static long[] leafContent(SQLiteDatabase db, int leaf) {
+        long lo = (long) leaf * LEAF_SPAN;
+        long hi = lo + (LEAF_SPAN - 1);
+        try (Cursor c = db.rawQuery("SELECT " + QuizDatabaseHelper.COLUMN_CONTENT_HASH + " FROM " +
+                QuizDatabaseHelper.TABLE_QUESTIONS + " WHERE " + QuizDatabaseHelper.COLUMN_CONTENT_HASH +
+                " BETWEEN ? AND ? ORDER BY " + QuizDatabaseHelper.COLUMN_CONTENT_HASH,
+                new String[]{String.valueOf(lo), String.valueOf(hi)})) {
+            long[] result = new long[c.getCount()];
+            for (int i = 0; c.moveToNext(); i++) result[i] = c.getLong(0);
+            return result;
+        }
+    }
+
+    private static long foldLeaf(long h, long contentHash) {
+        // Ненулевой результат и для листа из одного хеша 0
+        return mix64(h ^ contentHash) | 1;
+    }
+
+    // Финализатор SplitMix64
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
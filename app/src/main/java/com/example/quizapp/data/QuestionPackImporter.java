@@ -0,0 +1,187 @@
+package com.example.quizapp.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * QuestionPackImporter — массовая загрузка внешних пакетов вопросов в TABLE_QUESTIONS.
+ *
+ * Особенности:
+ * - файл читается потоково (QuestionPackReader), в памяти одна запись
+ * - строки пишутся через один скомпилированный SQLiteStatement пачками по batchSize в отдельной транзакции
+ * - некорректные строки пропускаются и считаются в rejected
+ * - почти-дубликаты уже имеющихся (и ранее импортированных в этом же пакете) вопросов — похожий текст
+ *   и тот же правильный ответ — находятся через QuestionDeduplicator: по умолчанию пропускаются, в режиме FLAG вставляются с пометкой duplicate_of;
+ *   и те и другие считаются в duplicates. Перед первым импортом банк индексируется целиком (ensureIndexed)
+ * - прогресс сообщается после каждой пачки; cancel() останавливает импорт, уже закоммиченные пачки остаются
+ * - Result содержит время и скорость (строк/сек) — для замеров из JVM/Robolectric тестов
+ *
+ * Вызывать не из UI-потока.
+ */
+public class QuestionPackImporter {
+
+    private static final String TAG = "QuestionPackImporter";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    // Сколько первых ошибок выводить в лог, чтобы битый файл не засыпал logcat
+    private static final int MAX_LOGGED_ERRORS = 20;
+
+    static final String INSERT_SQL = "INSERT INTO " + QuizDatabaseHelper.TABLE_QUESTIONS + "(" +
+            QuizDatabaseHelper.COLUMN_QUESTION + "," +
+            QuizDatabaseHelper.COLUMN_OPTION1 + "," +
+            QuizDatabaseHelper.COLUMN_OPTION2 + "," +
+            QuizDatabaseHelper.COLUMN_OPTION3 + "," +
+            QuizDatabaseHelper.COLUMN_OPTION4 + "," +
+            QuizDatabaseHelper.COLUMN_ANSWER_NUM + "," +
+            QuizDatabaseHelper.COLUMN_CATEGORY + "," +
+            QuizDatabaseHelper.COLUMN_DIFFICULTY + "," +
+            QuizDatabaseHelper.COLUMN_LANGUAGE + "," +
+            QuizDatabaseHelper.COLUMN_CONTENT_HASH +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    public enum DuplicatePolicy {
+        SKIP, // не вставлять
+        FLAG  // вставить и записать, на какой вопрос похож
+    }
+
+    public interface ProgressListener {
+        void onProgress(long imported, long rejected, long bytesRead);
+    }
+
+    public static class Result {
+        public final long imported;
+        public final long rejected;
+        public final long duplicates;
+        public final boolean cancelled;
+        public final long elapsedNanos;
+
+        Result(long imported, long rejected, long duplicates, boolean cancelled, long elapsedNanos) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.duplicates = duplicates;
+            this.cancelled = cancelled;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedNanos > 0 ? imported * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "imported=" + imported + ", rejected=" + rejected + ", duplicates=" + duplicates +
+                    ", cancelled=" + cancelled +
+                    ", " + (elapsedNanos / 1_000_000) + " ms, " + Math.round(rowsPerSecond()) + " rows/s";
+        }
+    }
+
+    private final QuizDatabaseHelper dbHelper;
+    private final int batchSize;
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.SKIP;
+    private volatile boolean cancelled = false;
+
+    public QuestionPackImporter(QuizDatabaseHelper dbHelper) {
+        this(dbHelper, DEFAULT_BATCH_SIZE);
+    }
+
+    public QuestionPackImporter(QuizDatabaseHelper dbHelper, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        this.dbHelper = dbHelper;
+        this.batchSize = batchSize;
+    }
+
+    public void setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+    }
+
+    /** Можно вызывать из любого потока; текущая незакоммиченная пачка откатывается. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public Result importPack(InputStream in, QuestionPackReader.Format format, ProgressListener listener) throws IOException {
+        cancelled = false;
+        long start = SystemClock.elapsedRealtimeNanos();
+        long imported = 0;
+        long rejected = 0;
+        long duplicates = 0;
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        QuestionPackReader.Row row = new QuestionPackReader.Row();
+
+        try (QuestionPackReader reader = new QuestionPackReader(in, format);
+             SQLiteStatement insert = db.compileStatement(INSERT_SQL);
+             QuestionDeduplicator deduplicator = new QuestionDeduplicator(db)) {
+            // Первый импорт: сначала сигнатуры вопросов банка, иначе дубликаты уже имеющихся не найдутся
+            deduplicator.ensureIndexed();
+            boolean eof = false;
+            while (!eof && !cancelled) {
+                long batchImported = 0;
+                long batchRejected = 0;
+                long batchDuplicates = 0;
+                boolean commit = false;
+                db.beginTransaction();
+                try {
+                    while (batchImported < batchSize) {
+                        if (cancelled) break;
+                        if (!reader.next(row)) {
+                            eof = true;
+                            break;
+                        }
+                        if (row.error != null) {
+                            if (rejected + batchRejected < MAX_LOGGED_ERRORS) {
+                                Log.w(TAG, "Строка " + row.lineNumber + " пропущена: " + row.error);
+                            }
+                            batchRejected++;
+                            continue;
+                        }
+                        int[] signature = MinHash.signature(row.question);
+                        long duplicateOf = deduplicator.findDuplicate(signature, row.options[row.answerNum - 1]);
+                        if (duplicateOf >= 0) {
+                            batchDuplicates++;
+                            if (duplicatePolicy == DuplicatePolicy.SKIP) continue;
+                        }
+                        insert.bindString(1, row.question);
+                        insert.bindString(2, row.options[0]);
+                        insert.bindString(3, row.options[1]);
+                        insert.bindString(4, row.options[2]);
+                        insert.bindString(5, row.options[3]);
+                        insert.bindLong(6, row.answerNum);
+                        insert.bindString(7, row.category);
+                        insert.bindLong(8, row.difficulty);
+                        insert.bindString(9, row.language);
+                        insert.bindLong(10, QuestionHash.contentHash(row.question, row.options, row.answerNum));
+                        long id = insert.executeInsert();
+                        insert.clearBindings();
+                        deduplicator.add(id, signature, duplicateOf);
+                        batchImported++;
+                    }
+                    // Флаг читается один раз: cancel() между коммитом и проверкой оставил бы пачку в базе, но не в imported
+                    commit = !cancelled;
+                    if (commit) db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                if (!commit) break;
+
+                imported += batchImported;
+                rejected += batchRejected;
+                duplicates += batchDuplicates;
+                if (listener != null) listener.onProgress(imported, rejected, reader.getBytesRead());
+            }
+        }
+
+        // Закоммиченные пачки остаются и при отмене — отпечаток банка и кэш вопросов устарели в обоих случаях
+        if (imported > 0) dbHelper.onQuestionBankChanged();
+
+        Result result = new Result(imported, rejected, duplicates, cancelled, SystemClock.elapsedRealtimeNanos() - start);
+        Log.d(TAG, "Импорт пакета завершён: " + result);
+        return result;
+    }
+}
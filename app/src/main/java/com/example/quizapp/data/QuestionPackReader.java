@@ -0,0 +1,413 @@
+package com.example.quizapp.data;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * QuestionPackReader — потоковый разбор файла с пакетом вопросов.
+ *
+ * Особенности:
+ * - форматы: CSV (заголовок как в src/main/questions/questions.csv), JSON lines (один объект на строку,
+ *   .jsonl/.ndjson) и JSON-массив объектов (.json) — массив тоже читается по одному объекту, а не целиком
+ * - память ограничена одной записью: файл не читается целиком, объект Row переиспользуется
+ * - category, difficulty, language необязательны (в CSV — по наличию колонки в заголовке)
+ * - битые строки не прерывают чтение — в Row.error пишется причина, вызывающий решает, что с ней делать
+ * - длина поля CSV и объекта JSON ограничена: слишком длинная запись дочитывается без сохранения
+ *   и отклоняется, а не обрезается
+ */
+public class QuestionPackReader implements Closeable {
+
+    public enum Format {
+        CSV,
+        JSON_LINES,
+        JSON_ARRAY;
+
+        public static Format fromFileName(String fileName) {
+            String lower = fileName == null ? "" : fileName.toLowerCase();
+            if (lower.endsWith(".jsonl") || lower.endsWith(".ndjson")) return JSON_LINES;
+            if (lower.endsWith(".json")) return JSON_ARRAY;
+            return CSV;
+        }
+    }
+
+    /** Одна запись пакета. Переиспользуется между вызовами next(). */
+    public static class Row {
+        public long lineNumber;
+        public String question;
+        public final String[] options = new String[4];
+        public int answerNum; // 1-4
+        // Необязательные поля; без них — значения по умолчанию из схемы
+        public String category;
+        public int difficulty;
+        public String language;
+        public String error;  // null, если запись корректна
+
+        void reset(long lineNumber) {
+            this.lineNumber = lineNumber;
+            question = null;
+            for (int i = 0; i < options.length; i++) options[i] = null;
+            answerNum = 0;
+            category = QuizDatabaseHelper.DEFAULT_CATEGORY;
+            difficulty = 1;
+            language = QuizDatabaseHelper.DEFAULT_LANGUAGE;
+            error = null;
+        }
+    }
+
+    // Защита от "бесконечного" поля в битом файле: держим в памяти не больше этого
+    private static final int MAX_FIELD_LENGTH = 4096;
+    // Строка JSON lines: вопрос, четыре варианта и метаданные с запасом на ключи и экранирование символов
+    private static final int MAX_JSON_LINE_LENGTH = 8 * MAX_FIELD_LENGTH;
+    private static final String[] CSV_COLUMNS = {"question", "option1", "option2", "option3", "option4", "answer_num"};
+    private static final String[] CSV_OPTIONAL_COLUMNS = {"category", "difficulty", "language"};
+
+    private final CountingInputStream countingStream;
+    private final BufferedReader reader;
+    private final Format format;
+
+    // CSV: позиция колонки в строке для каждого из CSV_COLUMNS
+    private int[] csvColumnIndex;
+    // -1 для отсутствующих необязательных колонок
+    private int[] csvOptionalIndex;
+    private final List<String> csvFields = new ArrayList<>();
+    private final StringBuilder csvField = new StringBuilder();
+    private final StringBuilder jsonLine = new StringBuilder();
+    private boolean jsonLineTooLong;
+    // JSON-массив: '[' уже прочитан, ']' уже встречен
+    private boolean jsonArrayOpened;
+    private boolean jsonArrayClosed;
+    private long lineNumber = 0;
+
+    public QuestionPackReader(InputStream in, Format format) {
+        this.countingStream = new CountingInputStream(in);
+        this.reader = new BufferedReader(new InputStreamReader(countingStream, StandardCharsets.UTF_8), 64 * 1024);
+        this.format = format;
+    }
+
+    /** Сколько байт исходного файла уже прочитано — для процента выполнения. */
+    public long getBytesRead() {
+        return countingStream.count;
+    }
+
+    /**
+     * Читает следующую запись в row.
+     * @return false, если файл закончился
+     */
+    public boolean next(Row row) throws IOException {
+        switch (format) {
+            case JSON_LINES:
+                return nextJsonLine(row);
+            case JSON_ARRAY:
+                return nextJsonArrayElement(row);
+            default:
+                return nextCsv(row);
+        }
+    }
+
+    private boolean nextJsonLine(Row row) throws IOException {
+        String line;
+        do {
+            if (!readJsonLine()) return false;
+            lineNumber++;
+            line = jsonLine.toString();
+        } while (!jsonLineTooLong && line.trim().isEmpty());
+
+        row.reset(lineNumber);
+        if (jsonLineTooLong) {
+            row.error = "слишком длинная строка (больше " + MAX_JSON_LINE_LENGTH + " символов)";
+            return true;
+        }
+        parseJsonObject(line, row);
+        return true;
+    }
+
+    private void parseJsonObject(String text, Row row) {
+        try {
+            JSONObject obj = new JSONObject(text);
+            row.question = obj.optString("question", null);
+            JSONArray options = obj.optJSONArray("options");
+            for (int i = 0; i < 4; i++) {
+                row.options[i] = options != null ? options.optString(i, null) : obj.optString("option" + (i + 1), null);
+            }
+            row.answerNum = obj.has("answer") ? obj.optInt("answer", 0) : obj.optInt("answer_num", 0);
+            if (options != null && options.length() != 4) row.error = "ожидалось 4 варианта ответа";
+            row.category = obj.optString("category", row.category);
+            row.difficulty = obj.optInt("difficulty", row.difficulty);
+            row.language = obj.optString("language", row.language);
+        } catch (JSONException e) {
+            row.error = "некорректный JSON: " + e.getMessage();
+        }
+        if (row.error == null) row.error = validate(row);
+    }
+
+    /**
+     * Следующий элемент JSON-массива: объект выделяется по балансу скобок вне строк и разбирается
+     * так же, как строка JSON lines. Row.lineNumber — строка файла, где объект начинается.
+     * Ошибка внутри объекта отклоняет только его; нарушенная структура самого массива — IOException.
+     */
+    private boolean nextJsonArrayElement(Row row) throws IOException {
+        if (jsonArrayClosed) return false;
+        if (!jsonArrayOpened) {
+            int c = skipJsonWhitespace(readSkippingBom());
+            if (c == -1) return false; // пустой файл
+            if (c != '[') throw new IOException("JSON: ожидался массив, строка " + (lineNumber + 1));
+            jsonArrayOpened = true;
+        }
+
+        int c = skipJsonWhitespace(reader.read());
+        if (c == ',') c = skipJsonWhitespace(reader.read());
+        if (c == ']') {
+            jsonArrayClosed = true;
+            return false;
+        }
+        if (c != '{') {
+            throw new IOException(c == -1 ? "JSON: массив не закрыт" : "JSON: ожидался объект, строка " + (lineNumber + 1));
+        }
+
+        row.reset(lineNumber + 1);
+        readJsonObject(c);
+        if (jsonLineTooLong) {
+            row.error = "слишком длинный объект (больше " + MAX_JSON_LINE_LENGTH + " символов)";
+            return true;
+        }
+        parseJsonObject(jsonLine.toString(), row);
+        return true;
+    }
+
+    /** Читает объект, начинающийся с first ('{'), в jsonLine с тем же ограничением длины, что и строки JSON lines. */
+    private void readJsonObject(int first) throws IOException {
+        jsonLine.setLength(0);
+        jsonLineTooLong = false;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        int c = first;
+        while (c != -1) {
+            if (c == '\n') lineNumber++;
+            if (jsonLine.length() < MAX_JSON_LINE_LENGTH) jsonLine.append((char) c);
+            else jsonLineTooLong = true;
+
+            if (inString) {
+                if (escaped) escaped = false;
+                else if (c == '\\') escaped = true;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                return;
+            }
+            c = reader.read();
+        }
+        throw new IOException("JSON: объект со строки " + (lineNumber + 1) + " не закрыт");
+    }
+
+    private int skipJsonWhitespace(int c) throws IOException {
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            if (c == '\n') lineNumber++;
+            c = reader.read();
+        }
+        return c;
+    }
+
+    private int readSkippingBom() throws IOException {
+        int c = reader.read();
+        return c == '\uFEFF' ? reader.read() : c;
+    }
+
+    /**
+     * Читает строку в jsonLine, как readLine(), но не больше MAX_JSON_LINE_LENGTH символов:
+     * остаток слишком длинной строки пропускается, jsonLineTooLong = true.
+     * @return false, если файл закончился
+     */
+    private boolean readJsonLine() throws IOException {
+        jsonLine.setLength(0);
+        jsonLineTooLong = false;
+        int c = reader.read();
+        if (c == -1) return false;
+        while (c != -1 && c != '\n') {
+            if (c != '\r') {
+                if (jsonLine.length() < MAX_JSON_LINE_LENGTH) jsonLine.append((char) c);
+                else jsonLineTooLong = true;
+            }
+            c = reader.read();
+        }
+        return true;
+    }
+
+    private boolean nextCsv(Row row) throws IOException {
+        if (csvColumnIndex == null) {
+            if (!readCsvRecord()) return false;
+            if (!csvFields.isEmpty() && csvFields.get(0).startsWith("\uFEFF")) {
+                csvFields.set(0, csvFields.get(0).substring(1)); // BOM от Excel
+            }
+            csvColumnIndex = new int[CSV_COLUMNS.length];
+            for (int c = 0; c < CSV_COLUMNS.length; c++) {
+                csvColumnIndex[c] = csvFields.indexOf(CSV_COLUMNS[c]);
+                if (csvColumnIndex[c] < 0) throw new IOException("CSV: нет колонки " + CSV_COLUMNS[c] + " в заголовке " + csvFields);
+            }
+            csvOptionalIndex = new int[CSV_OPTIONAL_COLUMNS.length];
+            for (int c = 0; c < CSV_OPTIONAL_COLUMNS.length; c++) {
+                csvOptionalIndex[c] = csvFields.indexOf(CSV_OPTIONAL_COLUMNS[c]);
+            }
+        }
+
+        long startLine;
+        do {
+            startLine = lineNumber + 1;
+            if (!readCsvRecord()) return false;
+        } while (csvFields.size() == 1 && csvFields.get(0).isEmpty());
+
+        row.reset(startLine);
+        if (csvFields.size() < CSV_COLUMNS.length) {
+            row.error = "ожидалось " + CSV_COLUMNS.length + " полей, получено " + csvFields.size();
+            return true;
+        }
+        row.question = csvField(0);
+        for (int i = 0; i < 4; i++) row.options[i] = csvField(i + 1);
+        try {
+            row.answerNum = Integer.parseInt(csvField(5).trim());
+        } catch (NumberFormatException e) {
+            row.error = "answer_num не число";
+            return true;
+        }
+        String category = csvOptionalField(0);
+        if (!isBlank(category)) row.category = category.trim();
+        String difficulty = csvOptionalField(1);
+        if (!isBlank(difficulty)) {
+            try {
+                row.difficulty = Integer.parseInt(difficulty.trim());
+            } catch (NumberFormatException e) {
+                row.error = "difficulty не число";
+                return true;
+            }
+        }
+        String language = csvOptionalField(2);
+        if (!isBlank(language)) row.language = language.trim();
+        row.error = validate(row);
+        return true;
+    }
+
+    private String csvField(int column) {
+        int index = csvColumnIndex[column];
+        return index < csvFields.size() ? csvFields.get(index) : null;
+    }
+
+    private String csvOptionalField(int column) {
+        int index = csvOptionalIndex[column];
+        return index >= 0 && index < csvFields.size() ? csvFields.get(index) : null;
+    }
+
+    /** Читает одну CSV-запись (RFC 4180, поля в кавычках могут содержать переводы строк) в csvFields. */
+    private boolean readCsvRecord() throws IOException {
+        csvFields.clear();
+        csvField.setLength(0);
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int nextChar = reader.read();
+                    if (nextChar == '"') {
+                        appendCsvChar('"');
+                    } else {
+                        quoted = false;
+                        if (nextChar != -1) reader.reset();
+                    }
+                } else {
+                    if (c == '\n') lineNumber++;
+                    appendCsvChar((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                csvFields.add(csvField.toString());
+                csvField.setLength(0);
+            } else if (c == '\n') {
+                lineNumber++;
+                csvFields.add(csvField.toString());
+                return true;
+            } else if (c != '\r') {
+                appendCsvChar((char) c);
+            }
+        }
+        if (!any) return false;
+        lineNumber++;
+        csvFields.add(csvField.toString());
+        return true;
+    }
+
+    /** Поле длиннее MAX_FIELD_LENGTH обрезается до него, и validate отклоняет запись по длине. */
+    private void appendCsvChar(char c) {
+        if (csvField.length() < MAX_FIELD_LENGTH) csvField.append(c);
+    }
+
+    /** Правила, общие для всех форматов. */
+    static String validate(Row row) {
+        if (isBlank(row.question)) return "пустой текст вопроса";
+        if (row.question.length() >= MAX_FIELD_LENGTH) return "слишком длинный вопрос";
+        for (int i = 0; i < 4; i++) {
+            if (isBlank(row.options[i])) return "пустой вариант ответа " + (i + 1);
+            if (row.options[i].length() >= MAX_FIELD_LENGTH) return "слишком длинный вариант ответа " + (i + 1);
+        }
+        if (row.answerNum < 1 || row.answerNum > 4) return "answer_num должен быть 1..4";
+        if (isBlank(row.category)) return "пустая тема";
+        if (row.difficulty < 1 || row.difficulty > 3) return "difficulty должен быть 1..3";
+        return null;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import java.util.Random;
+
+/**
+ * QuestionSampler — выбор k различных случайных вопросов без ORDER BY RANDOM().
+ *
+ * ORDER BY RANDOM() генерирует ключ для каждой строки и сортирует всю таблицу, т.е. O(n).
+ * Здесь используются только поиски по rowid (_id — INTEGER PRIMARY KEY), каждый O(log n):
+ * - MIN/MAX(_id) — диапазон идентификаторов
+ * - случайный id из диапазона проверяется точным поиском; после нескольких промахов (дыры от удалений)
+ *   берётся ближайший существующий id >= кандидата
+ * - повторы отбрасываются, всего выходит O(k) поисков независимо от размера банка
+ * - с набором seen уже показанные вопросы пропускаются (серии показанных id перескакиваются в памяти
+ *   через nextClearBit); если непоказанных не осталось, seen сбрасывается и банк идёт по новому кругу
+ *
+ * - с фильтром (тема/сложность) те же поиски идут по индексам idx_questions_*: rowid входит в каждый
+ *   индекс, поэтому "_id >= ? внутри темы" — тоже один поиск, без сканирования и временной сортировки
+ *
+ * Полные строки вызывающий запрашивает уже только по выбранным id.
+ */
+public class QuestionSampler {
+
+    // Точных попыток на один выбор, прежде чем перейти к поиску соседа: при редких дырах
+    // выбор остаётся равномерным, при плотных дырах не уходим в долгий цикл
+    private static final int EXACT_PROBES_PER_PICK = 4;
+    // Общий бюджет попыток на один id (включая отброшенные повторы)
+    private static final int ATTEMPTS_PER_ID = 16;
+
+    private static final String TABLE = QuizDatabaseHelper.TABLE_QUESTIONS;
+    private static final String ID = QuizDatabaseHelper.COLUMN_ID;
+
+    /** Ограничение выборки: тема и/или сложность. null/0 — без ограничения. */
+    public static final class Filter {
+        public static final Filter ANY = new Filter(null, 0);
+
+        public final String category;
+        public final int difficulty;
+
+        public Filter(String category, int difficulty) {
+            this.category = category;
+            this.difficulty = difficulty;
+        }
+
+        public boolean isAny() {
+            return category == null && difficulty <= 0;
+        }
+
+        /** Условие без ведущего AND/WHERE; пустая строка для ANY. */
+        String whereClause() {
+            StringBuilder sb = new StringBuilder();
+            if (category != null) sb.append(QuizDatabaseHelper.COLUMN_CATEGORY).append(" = ?");
+            if (difficulty > 0) {
+                if (sb.length() > 0) sb.append(" AND ");
+                sb.append(QuizDatabaseHelper.COLUMN_DIFFICULTY).append(" = ?");
+            }
+            return sb.toString();
+        }
+
+        /** Привязывает параметры фильтра начиная с позиции first. */
+        void bind(SQLiteStatement statement, int first) {
+            if (category != null) statement.bindString(first++, category);
+            if (difficulty > 0) statement.bindLong(first, difficulty);
+        }
+
+        String[] args() {
+            if (category != null && difficulty > 0) return new String[]{category, String.valueOf(difficulty)};
+            if (category != null) return new String[]{category};
+            if (difficulty > 0) return new String[]{String.valueOf(difficulty)};
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Filter)) return false;
+            Filter other = (Filter) o;
+            return difficulty == other.difficulty &&
+                    (category == null ? other.category == null : category.equals(other.category));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (category == null ? 0 : category.hashCode()) + difficulty;
+        }
+
+        @Override
+        public String toString() {
+            return "Filter{category=" + category + ", difficulty=" + difficulty + "}";
+        }
+    }
+
+    // SQL выборок. Параметр id (если есть) всегда первый, параметры фильтра — за ним.
+    // Пакетные, чтобы тест мог проверить их планы через EXPLAIN QUERY PLAN.
+
+    // MIN и MAX — отдельными запросами: вместе в одном SELECT SQLite не применяет к ним
+    // оптимизацию "один поиск по индексу" и проходит все подходящие строки
+    static String minIdSql(Filter filter) {
+        return "SELECT MIN(" + ID + ") FROM " + TABLE + where(filter, null);
+    }
+
+    static String maxIdSql(Filter filter) {
+        return "SELECT MAX(" + ID + ") FROM " + TABLE + where(filter, null);
+    }
+
+    static String exactSql(Filter filter) {
+        return "SELECT " + ID + " FROM " + TABLE + where(filter, ID + " = ?");
+    }
+
+    static String ceilingSql(Filter filter) {
+        return "SELECT " + ID + " FROM " + TABLE + where(filter, ID + " >= ?") + " ORDER BY " + ID + " LIMIT 1";
+    }
+
+    private static String where(Filter filter, String idCondition) {
+        String filterClause = filter.whereClause();
+        if (idCondition == null) return filterClause.isEmpty() ? "" : " WHERE " + filterClause;
+        return " WHERE " + idCondition + (filterClause.isEmpty() ? "" : " AND " + filterClause);
+    }
+
+    private final Random random;
+
+    public QuestionSampler() {
+        this(new Random());
+    }
+
+    public QuestionSampler(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * @return до k различных id вопросов в случайном порядке; меньше k, только если в банке меньше k вопросов
+     */
+    public int[] sample(SQLiteDatabase db, int k) {
+        return sample(db, k, null);
+    }
+
+    /**
+     * То же, но пропускает id из seen и добавляет в него выбранные. Вызывающий сохраняет seen сам.
+     */
+    public int[] sample(SQLiteDatabase db, int k, QuestionBitSet seen) {
+        return sample(db, k, seen, Filter.ANY);
+    }
+
+    /**
+     * То же в пределах filter. При сильно неравномерных дырах в id внутри темы выбор чуть смещён
+     * к вопросам после дыр — ради этого не стоит платить полным сканированием темы.
+     */
+    public int[] sample(SQLiteDatabase db, int k, QuestionBitSet seen, Filter filter) {
+        if (k <= 0) return new int[0];
+        if (filter == null) filter = Filter.ANY;
+
+        long min = queryBound(db, minIdSql(filter), filter);
+        if (min < 0) return new int[0]; // под фильтр ничего не попадает
+        long max = queryBound(db, maxIdSql(filter), filter);
+        long span = max - min + 1;
+
+        int[] picked = new int[k];
+        int count = 0;
+
+        try (SQLiteStatement exact = db.compileStatement(exactSql(filter));
+             SQLiteStatement ceiling = db.compileStatement(ceilingSql(filter))) {
+            filter.bind(exact, 2);
+            filter.bind(ceiling, 2);
+            boolean cycleRestarted = false;
+            int attempts = 0;
+            int maxAttempts = k * ATTEMPTS_PER_ID;
+            while (count < k && attempts < maxAttempts) {
+                long id = -1;
+                for (int probe = 0; probe < EXACT_PROBES_PER_PICK && id < 0; probe++) {
+                    attempts++;
+                    id = queryId(exact, min + Math.floorMod(random.nextLong(), span));
+                    if (id >= 0 && !isAvailable((int) id, seen, picked, count)) id = -1;
+                }
+                if (id < 0) {
+                    id = nextAvailable(ceiling, min + Math.floorMod(random.nextLong(), span), min, seen, picked, count);
+                }
+                if (id < 0) {
+                    if (seen == null || seen.isEmpty() || cycleRestarted) break; // в банке меньше k вопросов
+                    // Все вопросы (под фильтром) уже показаны — начинаем новый круг
+                    clearSeen(db, seen, filter);
+                    cycleRestarted = true;
+                    continue;
+                }
+                picked[count++] = (int) id;
+            }
+        }
+
+        if (count < k) {
+            // Банк меньше k (или почти пуст после удалений) — добираем оставшиеся полным выбором,
+            // на таких размерах ORDER BY RANDOM() ничего не стоит
+            count = fillFromSmallTable(db, picked, count, filter);
+        }
+
+        if (seen != null) {
+            for (int i = 0; i < count; i++) seen.set(picked[i]);
+        }
+
+        if (count == k) return picked;
+        int[] result = new int[count];
+        System.arraycopy(picked, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Ближайший к candidate (по возрастанию, с переходом через конец на min) существующий id,
+     * которого нет ни в seen, ни среди уже выбранных. -1, если такого нет во всём диапазоне.
+     */
+    private static long nextAvailable(SQLiteStatement ceiling, long candidate, long min,
+                                      QuestionBitSet seen, int[] picked, int count) {
+        long from = candidate;
+        boolean wrapped = false;
+        while (true) {
+            long id = queryId(ceiling, from);
+            if (id < 0 || (wrapped && id >= candidate)) {
+                if (wrapped || candidate == min) return -1;
+                wrapped = true;
+                from = min;
+                continue;
+            }
+            if (isAvailable((int) id, seen, picked, count)) return id;
+            // Пропускаем всю серию показанных id разом, не спрашивая базу о каждом
+            from = seen != null && seen.get((int) id) ? seen.nextClearBit((int) id + 1) : id + 1;
+        }
+    }
+
+    private static boolean isAvailable(int id, QuestionBitSet seen, int[] picked, int count) {
+        return (seen == null || !seen.get(id)) && !contains(picked, count, id);
+    }
+
+    /** Сбрасывает в seen только вопросы под фильтром, чтобы не начинать заново другие темы. */
+    private static void clearSeen(SQLiteDatabase db, QuestionBitSet seen, Filter filter) {
+        if (filter.isAny()) {
+            seen.clear();
+            return;
+        }
+        try (Cursor c = db.rawQuery("SELECT " + ID + " FROM " + TABLE + where(filter, null), filter.args())) {
+            while (c.moveToNext()) seen.clear(c.getInt(0));
+        }
+    }
+
+    private int fillFromSmallTable(SQLiteDatabase db, int[] picked, int count, Filter filter) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(ID).append(" FROM ").append(TABLE);
+        String filterClause = filter.whereClause();
+        if (count > 0 || !filterClause.isEmpty()) sql.append(" WHERE ");
+        if (!filterClause.isEmpty()) sql.append(filterClause);
+        if (count > 0) {
+            if (!filterClause.isEmpty()) sql.append(" AND ");
+            sql.append(ID).append(" NOT IN (");
+            for (int i = 0; i < count; i++) sql.append(i == 0 ? "" : ",").append(picked[i]);
+            sql.append(")");
+        }
+        sql.append(" ORDER BY RANDOM() LIMIT ").append(picked.length - count);
+        try (Cursor c = db.rawQuery(sql.toString(), filter.args())) {
+            while (c.moveToNext()) picked[count++] = c.getInt(0);
+        }
+        return count;
+    }
+
+    /** MIN/MAX(_id) под фильтром; -1, если строк нет (агрегат вернул NULL). */
+    private static long queryBound(SQLiteDatabase db, String sql, Filter filter) {
+        try (Cursor c = db.rawQuery(sql, filter.args())) {
+            return c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : -1;
+        }
+    }
+
+    private static long queryId(SQLiteStatement statement, long id) {
+        statement.bindLong(1, id);
+        try {
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return -1; // строки нет
+        }
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.quizapp.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * QuestionSchema — таблица questions и её индексы без Android: один DDL для QuizDatabaseHelper,
+ * тестовых банков и бенчмарков на JDBC. Задача compileQuestionBank (app/build.gradle.kts) повторяет его
+ * в Kotlin — менять только вместе.
+ */
+public final class QuestionSchema {
+
+    public static final String TABLE_QUESTIONS = "questions";
+    public static final String COLUMN_ID = "_id";
+    public static final String COLUMN_QUESTION = "question";
+    public static final String COLUMN_OPTION1 = "option1";
+    public static final String COLUMN_OPTION2 = "option2";
+    public static final String COLUMN_OPTION3 = "option3";
+    public static final String COLUMN_OPTION4 = "option4";
+    public static final String COLUMN_ANSWER_NUM = "answer_num";
+    // Схема v3
+    public static final String COLUMN_CATEGORY = "category";         // ключ темы, например "geography"
+    public static final String COLUMN_DIFFICULTY = "difficulty";     // 1-3
+    public static final String COLUMN_LANGUAGE = "language";         // "ru", "en"
+    public static final String COLUMN_CONTENT_HASH = "content_hash"; // QuestionHash.contentHash
+    public static final String DEFAULT_CATEGORY = "general";
+    public static final String DEFAULT_LANGUAGE = "ru";
+
+    // IF NOT EXISTS: при установке из ассета таблица вопросов уже заполнена
+    public static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " +
+            TABLE_QUESTIONS + "(" +
+            COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+            COLUMN_QUESTION + " TEXT," +
+            COLUMN_OPTION1 + " TEXT," +
+            COLUMN_OPTION2 + " TEXT," +
+            COLUMN_OPTION3 + " TEXT," +
+            COLUMN_OPTION4 + " TEXT," +
+            COLUMN_ANSWER_NUM + " INTEGER," +
+            COLUMN_CATEGORY + " TEXT NOT NULL DEFAULT '" + DEFAULT_CATEGORY + "'," +
+            COLUMN_DIFFICULTY + " INTEGER NOT NULL DEFAULT 1," +
+            COLUMN_LANGUAGE + " TEXT NOT NULL DEFAULT '" + DEFAULT_LANGUAGE + "'," +
+            COLUMN_CONTENT_HASH + " INTEGER" +
+            ")";
+
+    // Индексы под "k случайных вопросов темы X сложности Y": в SQLite rowid входит в каждый индекс,
+    // поэтому MIN/MAX(_id) и поиск _id >= ? внутри фильтра идут по индексу без обращения к таблице.
+    // Отдельный индекс по category нужен, чтобы фильтр только по теме шёл в порядке _id без сортировки.
+    // По content_hash — сверка банков, дубликаты и набор матча от хоста.
+    public static final List<String> CREATE_INDEXES = Collections.unmodifiableList(Arrays.asList(
+            "CREATE INDEX IF NOT EXISTS idx_questions_category_difficulty ON " +
+                    TABLE_QUESTIONS + "(" + COLUMN_CATEGORY + ", " + COLUMN_DIFFICULTY + ")",
+            "CREATE INDEX IF NOT EXISTS idx_questions_category ON " + TABLE_QUESTIONS + "(" + COLUMN_CATEGORY + ")",
+            "CREATE INDEX IF NOT EXISTS idx_questions_difficulty ON " + TABLE_QUESTIONS + "(" + COLUMN_DIFFICULTY + ")",
+            "CREATE INDEX IF NOT EXISTS idx_questions_content_hash ON " +
+                    TABLE_QUESTIONS + "(" + COLUMN_CONTENT_HASH + ")"));
+
+    private QuestionSchema() {
+    }
+}
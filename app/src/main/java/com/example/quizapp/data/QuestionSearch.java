@@ -0,0 +1,266 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * QuestionSearch — полнотекстовый поиск по банку вопросов (для составления и модерации пакетов).
+ *
+ * Особенности:
+ * - виртуальная таблица questions_fts по тексту вопроса и вариантам; синхронизируется с questions триггерами.
+ *   Для встроенного банка строится при сборке (FTS4) и приходит в ассете; в базах, установленных
+ *   до появления поиска, создаётся миграцией (FTS5, если модуль есть в SQLite устройства, иначе FTS4)
+ * - токенизатор unicode61 без диакритики: регистр не важен для кириллицы и латиницы,
+ *   ё приводится к е ещё в триггере (unicode61 её не сворачивает)
+ * - каждое слово запроса от MIN_PREFIX_LENGTH букв ищется как префикс (под prefix="2,3" индекса), более
+ *   короткое — целым словом: "в*" совпадало бы почти со всем банком. Слова объединяются по И
+ * - ранжирование: FTS5 — bm25 с весом вопроса выше вариантов; FTS4 — по числу совпадений с теми же весами
+ *   среди первых MAX_RANKED совпадений по docid: страница стоит не больше MAX_RANKED строк при любом банке,
+ *   а на слишком общий запрос выдача обрывается на MAX_RANKED
+ * - постраничная выдача: limit + 1 строка, чтобы знать, есть ли следующая страница
+ */
+public class QuestionSearch {
+
+    private static final String TAG = "QuestionSearch";
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MIN_PREFIX_LENGTH = 2;
+    // 50 страниц по DEFAULT_PAGE_SIZE; дальше запрос стоит уточнить
+    static final int MAX_RANKED = 1000;
+
+    static final String TABLE_FTS = "questions_fts";
+    private static final String[] COLUMNS = {
+            QuizDatabaseHelper.COLUMN_QUESTION,
+            QuizDatabaseHelper.COLUMN_OPTION1,
+            QuizDatabaseHelper.COLUMN_OPTION2,
+            QuizDatabaseHelper.COLUMN_OPTION3,
+            QuizDatabaseHelper.COLUMN_OPTION4
+    };
+    // Вес совпадения по колонкам COLUMNS: в тексте вопроса важнее, чем в варианте ответа
+    private static final int[] COLUMN_WEIGHTS = {4, 1, 1, 1, 1};
+
+    /** Страница результатов в порядке релевантности. */
+    public static class Page {
+        public final List<Question> questions;
+        public final int offset;
+        public final boolean hasMore;
+
+        Page(List<Question> questions, int offset, boolean hasMore) {
+            this.questions = questions;
+            this.offset = offset;
+            this.hasMore = hasMore;
+        }
+
+        static Page empty(int offset) {
+            return new Page(Collections.emptyList(), offset, false);
+        }
+    }
+
+    private final QuizDatabaseHelper dbHelper;
+    private Boolean fts5; // определяется по схеме при первом поиске
+
+    public QuestionSearch(QuizDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Создаёт индекс и заполняет его из существующих вопросов, если его ещё нет, затем триггеры.
+     * Вызывается из миграции для баз, установленных до появления поиска; повторный вызов ничего не меняет.
+     */
+    public static void createIndex(SQLiteDatabase db) {
+        createIndex(db, true);
+    }
+
+    /**
+     * tryFts5 = false — сразу FTS4, как в ассете (задача compileQuestionBank): в SQLite Android FTS5 обычно нет,
+     * а в тестах так проверяется запасной путь.
+     */
+    @VisibleForTesting
+    public static void createIndex(SQLiteDatabase db, boolean tryFts5) {
+        if (!Migration.tableExists(db, TABLE_FTS)) {
+            String columns = String.join(", ", COLUMNS);
+            boolean fts5 = tryFts5 && createFts5Table(db, columns);
+            if (!fts5) {
+                // Те же параметры, что у таблицы в ассете
+                db.execSQL("CREATE VIRTUAL TABLE " + TABLE_FTS + " USING fts4(" + columns +
+                        ", tokenize=unicode61 \"remove_diacritics=1\", prefix=\"2,3\")");
+            }
+            db.execSQL("INSERT INTO " + TABLE_FTS + "(" + rowIdColumn(fts5) + ", " + columns + ") SELECT " +
+                    QuizDatabaseHelper.COLUMN_ID + ", " + foldedColumns("") + " FROM " + QuizDatabaseHelper.TABLE_QUESTIONS);
+            Log.d(TAG, "Поисковый индекс построен: " + DatabaseUtils.queryNumEntries(db, TABLE_FTS) + " вопросов");
+        }
+        createTriggers(db);
+    }
+
+    private static boolean createFts5Table(SQLiteDatabase db, String columns) {
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE " + TABLE_FTS + " USING fts5(" + columns +
+                    ", tokenize='unicode61 remove_diacritics 1', prefix='2 3')");
+            // Совпадение в тексте вопроса важнее совпадения в варианте ответа
+            db.execSQL("INSERT INTO " + TABLE_FTS + "(" + TABLE_FTS + ", rank) VALUES('rank', 'bm25(4.0, 1.0, 1.0, 1.0, 1.0)')");
+            return true;
+        } catch (SQLiteException e) {
+            Log.i(TAG, "FTS5 недоступен, используется FTS4: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Триггеры, синхронизирующие questions_fts с questions. Сама таблица к этому моменту уже есть:
+     * для нового банка она построена при сборке и приходит в ассете, поэтому onCreate вызывает только это.
+     * Без ассета (пустой банк) создаётся пустой индекс.
+     */
+    public static void createTriggers(SQLiteDatabase db) {
+        if (!Migration.tableExists(db, TABLE_FTS)) {
+            createIndex(db);
+            return;
+        }
+        String columns = String.join(", ", COLUMNS);
+        String rowId = rowIdColumn(isFts5Table(db));
+        String table = QuizDatabaseHelper.TABLE_QUESTIONS;
+        String id = QuizDatabaseHelper.COLUMN_ID;
+        String insertNew = "INSERT INTO " + TABLE_FTS + "(" + rowId + ", " + columns + ") VALUES (new." + id + ", " +
+                foldedColumns("new.") + ");";
+        String deleteOld = "DELETE FROM " + TABLE_FTS + " WHERE " + rowId + " = old." + id + ";";
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_FTS + "_ai AFTER INSERT ON " + table +
+                " BEGIN " + insertNew + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_FTS + "_ad AFTER DELETE ON " + table +
+                " BEGIN " + deleteOld + " END");
+        // Только текстовые колонки: смена темы или сложности индекс не трогает
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_FTS + "_au AFTER UPDATE OF " + columns + " ON " + table +
+                " BEGIN " + deleteOld + " " + insertNew + " END");
+    }
+
+    private static String rowIdColumn(boolean fts5) {
+        return fts5 ? "rowid" : "docid";
+    }
+
+    private static boolean isFts5Table(SQLiteDatabase db) {
+        String sql = DatabaseUtils.stringForQuery(db,
+                "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{TABLE_FTS});
+        return sql != null && sql.toLowerCase().contains("fts5");
+    }
+
+    private static String foldedColumns(String prefix) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("replace(replace(").append(prefix).append(COLUMNS[i]).append(", 'ё', 'е'), 'Ё', 'Е')");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Строит MATCH-выражение из пользовательского ввода: слова через пробел, от MIN_PREFIX_LENGTH букв — префикс.
+     * Операторы и кавычки FTS из ввода не пропускаются. null, если искать нечего.
+     */
+    static String toMatchQuery(String input) {
+        String normalized = QuestionHash.normalize(input);
+        if (normalized.isEmpty()) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String token : normalized.split(" ")) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(token);
+            if (token.length() >= MIN_PREFIX_LENGTH) sb.append('*');
+        }
+        return sb.toString();
+    }
+
+    public Page search(String query, int offset, int limit) {
+        String match = toMatchQuery(query);
+        if (match == null || limit <= 0) return Page.empty(offset);
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<Integer> ids;
+        try {
+            ids = isFts5(db) ? rankedFts5(db, match, Math.max(0, offset), limit + 1)
+                    : rankedFts4(db, match, Math.max(0, offset), limit + 1);
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Поиск не удался: " + match, e);
+            return Page.empty(offset);
+        }
+
+        boolean hasMore = ids.size() > limit;
+        if (hasMore) ids.remove(ids.size() - 1);
+        if (ids.isEmpty()) return Page.empty(offset);
+
+        // Строки приходят в порядке rowid — возвращаем порядок релевантности
+        List<Question> loaded = QuestionCache.queryByIds(db, ids);
+        List<Question> ordered = new ArrayList<>(loaded.size());
+        for (int id : ids) {
+            for (Question q : loaded) {
+                if (q.id == id) {
+                    ordered.add(q);
+                    break;
+                }
+            }
+        }
+        return new Page(ordered, offset, hasMore);
+    }
+
+    private static List<Integer> rankedFts5(SQLiteDatabase db, String match, int offset, int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        try (Cursor c = db.rawQuery("SELECT rowid FROM " + TABLE_FTS + " WHERE " + TABLE_FTS +
+                " MATCH ? ORDER BY rank LIMIT " + count + " OFFSET " + offset, new String[]{match})) {
+            while (c.moveToNext()) ids.add(c.getInt(0));
+        }
+        return ids;
+    }
+
+    /**
+     * FTS4 сам не ранжирует: совпадения по колонкам (matchinfo 'y') взвешиваются здесь, с теми же весами,
+     * что bm25 у FTS5. matchinfo считается по спискам позиций индекса — ORDER BY length(offsets()) перечитывал
+     * и токенизировал текст каждой найденной строки и на 100k вопросов занимал десятки миллисекунд.
+     * Ранжируются первые MAX_RANKED совпадений: без предела каждая страница общего запроса читала бы
+     * и сортировала все совпадения банка.
+     */
+    private static List<Integer> rankedFts4(SQLiteDatabase db, String match, int offset, int count) {
+        if (offset >= MAX_RANKED) return new ArrayList<>();
+        long[] keys = new long[64];
+        int n = 0;
+        try (Cursor c = db.rawQuery("SELECT docid, matchinfo(" + TABLE_FTS + ", 'y') FROM " + TABLE_FTS +
+                " WHERE " + TABLE_FTS + " MATCH ? LIMIT " + MAX_RANKED, new String[]{match})) {
+            while (c.moveToNext()) {
+                if (n == keys.length) keys = Arrays.copyOf(keys, n * 2);
+                // Старшие биты — вес, младшие — id наоборот: при равном весе раньше меньший id,
+                // порядок одинаков от страницы к странице
+                keys[n++] = ((long) score(c.getBlob(1)) << 32) | (Integer.MAX_VALUE - c.getInt(0));
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        List<Integer> ids = new ArrayList<>(count);
+        for (int i = n - 1 - offset; i >= 0 && ids.size() < count; i--) {
+            ids.add(Integer.MAX_VALUE - (int) keys[i]);
+        }
+        return ids;
+    }
+
+    /** matchinfo 'y': 32-битные числа в порядке байт устройства — совпадения каждой фразы запроса по колонкам. */
+    private static int score(byte[] matchinfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+        int score = 0;
+        for (int i = 0; buffer.remaining() >= 4; i++) {
+            score += buffer.getInt() * COLUMN_WEIGHTS[i % COLUMN_WEIGHTS.length];
+        }
+        return score;
+    }
+
+    private synchronized boolean isFts5(SQLiteDatabase db) {
+        if (fts5 == null) fts5 = isFts5Table(db);
+        return fts5;
+    }
+}
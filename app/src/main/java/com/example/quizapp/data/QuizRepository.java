@@ -0,0 +1,186 @@
+package com.example.quizapp.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * QuizRepository — асинхронный доступ к данным поверх QuizDatabaseHelper.
+ *
+ * Особенности:
+ * - чтения выполняются на небольшом пуле потоков, записи — на единственном потоке-писателе
+ *   (порядок записей сохраняется, база в WAL, поэтому читатели писателя не ждут). Через писателя идут
+ *   и записи QuestionCache (показанные вопросы) и QuestionBankSync (принятые строки)
+ * - база открывается первой задачей писателя: копирование банка из ассетов не попадает на UI-поток
+ * - результат приходит в Callback на главном потоке; при исключении — null
+ * - каждый метод также возвращает Future для вызывающих не из UI
+ *
+ * Активности не должны обращаться к SQLiteDatabase напрямую — только через этот класс.
+ */
+public class QuizRepository {
+
+    private static final String TAG = "QuizRepository";
+    private static final int READER_THREADS = 2;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private static QuizRepository instance;
+
+    private final QuizDatabaseHelper dbHelper;
+    private final QuestionCache questionCache;
+    private final QuestionSearch questionSearch;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService readExecutor = Executors.newFixedThreadPool(READER_THREADS, namedThreads("QuizDbReader"));
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(namedThreads("QuizDbWriter"));
+
+    public static synchronized QuizRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new QuizRepository(QuizDatabaseHelper.getInstance(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    private QuizRepository(QuizDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        // Первая задача писателя: копирование банка из ассетов и открытие базы
+        dbHelper.openOn(writeExecutor);
+        this.questionCache = new QuestionCache(dbHelper, writeExecutor);
+        this.questionSearch = new QuestionSearch(dbHelper);
+    }
+
+    // Предзагрузка
+
+    /** Фоновая подготовка набора следующего матча (см. QuestionCache.prefetchNextMatch). */
+    public void prefetchNextMatch(int count, QuestionSampler.Filter filter) {
+        questionCache.prefetchNextMatch(count, filter);
+    }
+
+    // Чтение
+
+    public Future<PlayerStats> loadPlayerStats(Callback<PlayerStats> callback) {
+        return read(dbHelper::getPlayerStats, callback);
+    }
+
+    public Future<String> loadPlayerName(Callback<String> callback) {
+        return read(dbHelper::getPlayerName, callback);
+    }
+
+    /** ID всех предметов инвентаря (эмоции и прочее). */
+    public Future<List<String>> loadOwnedItems(Callback<List<String>> callback) {
+        return read(dbHelper::getOwnedEmotes, callback);
+    }
+
+    /** Число купленных эмоций; -1, если запрос не удался. */
+    public Future<Integer> loadOwnedEmoteCount(Callback<Integer> callback) {
+        return read(dbHelper::countOwnedEmotes, callback);
+    }
+
+    /** Набор вопросов матча (из предзагрузки QuestionCache, если она готова). */
+    public Future<List<Question>> loadMatchQuestions(int count, QuestionSampler.Filter filter,
+                                                     Callback<List<Question>> callback) {
+        return read(() -> questionCache.takeMatchQuestions(count, filter), callback);
+    }
+
+    /** Вопросы по content_hash в заданном порядке — набор матча, присланный хостом одними хешами. */
+    public Future<List<Question>> loadQuestionsByContentHash(long[] hashes, Callback<List<Question>> callback) {
+        return read(() -> questionCache.getQuestionsByContentHash(hashes), callback);
+    }
+
+    /** Отпечаток банка вопросов для сравнения с соперником (см. QuestionBankHash). */
+    public Future<String> loadQuestionBankHash(Callback<String> callback) {
+        return read(dbHelper::getQuestionBankHash, callback);
+    }
+
+    /** Страница полнотекстового поиска по вопросам и вариантам ответа. */
+    public Future<QuestionSearch.Page> searchQuestions(String query, int offset, int limit,
+                                                       Callback<QuestionSearch.Page> callback) {
+        return read(() -> questionSearch.search(query, offset, limit), callback);
+    }
+
+    /** Темы банка вопросов по алфавиту ключей. */
+    public Future<List<String>> loadCategories(Callback<List<String>> callback) {
+        return read(dbHelper::getCategories, callback);
+    }
+
+    // Запись
+
+    /**
+     * Сверка банка вопросов с соперником (QuestionBankSync) поверх базы приложения.
+     * Принятые строки вставляются на потоке-писателе. Если вопросы добавились, отпечаток банка
+     * и кэш вопросов сбрасываются. listener вызывается на потоке сверки.
+     */
+    public QuestionBankSync newBankSync(QuestionBankSync.Sender sender, QuestionBankSync.Listener listener) {
+        return new QuestionBankSync(dbHelper::getWritableDatabase, writeExecutor, dbHelper::onQuestionBankChanged,
+                sender, listener);
+    }
+
+    /** Импорт внешнего пакета вопросов (см. QuestionPackImporter); in закрывается по окончании. */
+    public Future<QuestionPackImporter.Result> importQuestionPack(InputStream in, QuestionPackReader.Format format,
+                                                                  QuestionPackImporter.ProgressListener progress,
+                                                                  Callback<QuestionPackImporter.Result> callback) {
+        return write(() -> new QuestionPackImporter(dbHelper).importPack(in, format, progress), callback);
+    }
+
+    public Future<Boolean> updatePlayerName(String newName, Callback<Boolean> callback) {
+        return write(() -> dbHelper.updatePlayerName(newName), callback);
+    }
+
+    public Future<Boolean> updatePlayerStats(int pointsEarned, boolean isPvp, boolean isWinner, Callback<Boolean> callback) {
+        return write(() -> {
+            dbHelper.updatePlayerStats(pointsEarned, isPvp, isWinner);
+            return true;
+        }, callback);
+    }
+
+    public Future<QuizDatabaseHelper.PurchaseResult> purchaseItem(String itemId, String itemName, int price,
+                                                                  Callback<QuizDatabaseHelper.PurchaseResult> callback) {
+        return write(() -> dbHelper.purchaseItem(itemId, itemName, price), callback);
+    }
+
+    // Исполнение
+
+    private <T> Future<T> read(Callable<T> task, Callback<T> callback) {
+        return readExecutor.submit(() -> run(task, callback));
+    }
+
+    private <T> Future<T> write(Callable<T> task, Callback<T> callback) {
+        return writeExecutor.submit(() -> run(task, callback));
+    }
+
+    private <T> T run(Callable<T> task, Callback<T> callback) {
+        T result = null;
+        try {
+            result = task.call();
+        } catch (Exception e) {
+            Log.e(TAG, "Ошибка операции с базой", e);
+        }
+        if (callback != null) {
+            final T delivered = result;
+            mainHandler.post(() -> callback.onResult(delivered));
+        }
+        return result;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
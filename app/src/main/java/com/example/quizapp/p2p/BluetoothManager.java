@@ -19,8 +19,6 @@ import androidx.core.app.ActivityCompat;
 import com.example.quizapp.QuizDatabaseHelper;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,8 +31,10 @@ import java.util.UUID;
  * Особенности:
  * - все listener callbacks постятся в main Looper
  * - при connected() отправляется PLAYER_NAME:<nick>
- * - обрабатывает строковые запросы REQUEST_PLAYER_NAME и PLAYER_NAME:...
+ * - обрабатывает строковые запросы REQUEST_PLAYER_NAME, REQUEST_BANK_HASH и PLAYER_NAME:...
  * - передаёт Serializable объекты (GameDataModel и т.п.) напрямую слушателю
+ * - сообщения кодируются WireCodec, а не Java-сериализацией
+ * - соединение — FramedLink: поток чтения, OutboundQueue (sendMessage не блокирует) и Heartbeat
  */
 public class BluetoothManager implements P2PManager {
 
@@ -45,14 +45,18 @@ public class BluetoothManager implements P2PManager {
     private final BluetoothAdapter bluetoothAdapter;
     private ConnectionListener listener;
     private Context context;
+    private final BankHashSource bankHashSource;
 
     private AcceptThread acceptThread;
     private ConnectThread connectThread;
-    private ConnectedThread connectedThread;
+    private FramedLink connectedLink;
+    private String lastDeviceAddress; // для reconnect() на стороне клиента
+    private volatile Heartbeat.Config heartbeatConfig = Heartbeat.Config.DEFAULT;
 
     private final List<DiscoveredDevice> discoveredDevices = new ArrayList<>();
 
-    public BluetoothManager() {
+    public BluetoothManager(BankHashSource bankHashSource) {
+        this.bankHashSource = bankHashSource;
         bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
     }
 
@@ -149,21 +153,41 @@ public class BluetoothManager implements P2PManager {
         }
 
         BluetoothDevice device = bluetoothAdapter.getRemoteDevice(deviceAddress);
+        lastDeviceAddress = deviceAddress;
         connectThread = new ConnectThread(device);
         connectThread.start();
         Log.d(TAG, "Attempting to connect to " + deviceAddress);
     }
 
     @Override
-    public void sendMessage(Serializable data) {
-        if (connectedThread != null) {
-            connectedThread.write(data);
+    public void sendMessage(Serializable data, SendCallback callback) {
+        FramedLink link = connectedLink;
+        if (link != null) {
+            link.send(data, callback);
         } else {
             Log.e(TAG, "Cannot send message: not connected.");
+            if (callback != null) callback.onComplete(false);
             postConnectionFailed("Cannot send message: not connected.");
         }
     }
 
+    @Override
+    public OutboundQueue.Metrics getOutboundMetrics() {
+        FramedLink link = connectedLink;
+        return link != null ? link.getOutboundMetrics() : null;
+    }
+
+    @Override
+    public Heartbeat.RttStats getRttStats() {
+        FramedLink link = connectedLink;
+        return link != null ? link.getRttStats() : null;
+    }
+
+    @Override
+    public void setHeartbeatConfig(Heartbeat.Config config) {
+        heartbeatConfig = config;
+    }
+
     @Override
     public void stop() {
         Log.d(TAG, "Stopping all Bluetooth threads.");
@@ -174,9 +198,23 @@ public class BluetoothManager implements P2PManager {
             connectThread = null;
         }
 
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
+        FramedLink link;
+        synchronized (this) {
+            link = connectedLink;
+            connectedLink = null;
+        }
+        if (link != null) link.close();
+    }
+
+    /** Клиент заново подключается к последнему устройству; хост и так слушает после обрыва (AcceptThread). */
+    @Override
+    public synchronized void reconnect() {
+        if (connectedLink != null || !isEnabled()) return;
+        if (lastDeviceAddress == null) {
+            startAcceptThread();
+        } else if (connectThread == null) {
+            Log.d(TAG, "reconnect(): connecting to " + lastDeviceAddress);
+            connect(lastDeviceAddress);
         }
     }
 
@@ -224,28 +262,28 @@ public class BluetoothManager implements P2PManager {
     // Helpers to post callbacks on UI thread
     private void postConnectionFailed(final String message) {
         if (listener == null) return;
-        new Handler(Looper.getMainLooper()).post(() -> {
+        FramedLink.postToMain(() -> {
             try { listener.onConnectionFailed(message); } catch (Exception e) { Log.e(TAG, "Error delivering onConnectionFailed", e); }
         });
     }
 
     private void postDisconnected(final String reason) {
         if (listener == null) return;
-        new Handler(Looper.getMainLooper()).post(() -> {
+        FramedLink.postToMain(() -> {
             try { listener.onDisconnected(reason); } catch (Exception e) { Log.e(TAG, "Error delivering onDisconnected", e); }
         });
     }
 
     private void postConnected(final String deviceName, final ConnectionType type) {
         if (listener == null) return;
-        new Handler(Looper.getMainLooper()).post(() -> {
+        FramedLink.postToMain(() -> {
             try { listener.onConnected(deviceName, type); } catch (Exception e) { Log.e(TAG, "Error delivering onConnected", e); }
         });
     }
 
     private void postDeviceFound(final String name, final String address) {
         if (listener == null) return;
-        new Handler(Looper.getMainLooper()).post(() -> {
+        FramedLink.postToMain(() -> {
             try { listener.onDeviceFound(name, address); } catch (Exception e) { Log.e(TAG, "Error delivering onDeviceFound", e); }
         });
     }
@@ -259,11 +297,19 @@ public class BluetoothManager implements P2PManager {
         P2PConnectionSingleton.getInstance().setGroupOwner(true);
 
         if (connectThread != null) { connectThread.cancel(); connectThread = null; }
-        if (connectedThread != null) { connectedThread.cancel(); connectedThread = null; }
+        if (connectedLink != null) { connectedLink.close(); connectedLink = null; }
         if (acceptThread != null) { acceptThread.cancel(); acceptThread = null; }
 
-        connectedThread = new ConnectedThread(socket, listener);
-        connectedThread.start();
+        try {
+            connectedLink = new FramedLink("Bluetooth", socket.getInputStream(), socket.getOutputStream(), socket,
+                    heartbeatConfig, linkListener);
+        } catch (IOException e) {
+            Log.e(TAG, "connected(): socket streams not available", e);
+            try { socket.close(); } catch (IOException e2) { Log.e(TAG, "connected(): unable to close() socket", e2); }
+            connectionFailed("Не удалось открыть соединение: " + e.getMessage());
+            return;
+        }
+        connectedLink.start();
 
         postConnected(device.getName() != null ? device.getName() : device.getAddress(), ConnectionType.BLUETOOTH);
 
@@ -274,9 +320,9 @@ public class BluetoothManager implements P2PManager {
     private void sendLocalPlayerNameIfPossible() {
         String localPlayerName = readLocalPlayerName();
         if (localPlayerName == null) localPlayerName = "noname";
-        if (connectedThread != null) {
+        if (connectedLink != null) {
             try {
-                connectedThread.write("PLAYER_NAME:" + localPlayerName);
+                connectedLink.send("PLAYER_NAME:" + localPlayerName, null);
                 Log.d(TAG, "Sent PLAYER_NAME:" + localPlayerName);
             } catch (Exception e) {
                 Log.w(TAG, "Failed to send PLAYER_NAME at connected()", e);
@@ -300,11 +346,37 @@ public class BluetoothManager implements P2PManager {
         postConnectionFailed(message);
     }
 
-    public synchronized void connectionLost(String reason) {
+    private synchronized void connectionLost(FramedLink link, String reason) {
+        // Соединение, уже заменённое новым, об обрыве не сообщает
+        if (link != connectedLink) return;
+        connectedLink = null;
         postDisconnected(reason);
         startAcceptThread();
     }
 
+    // Кадры соединения: строковые запросы обслуживаются здесь, остальное уходит слушателю
+    private final FramedLink.Listener linkListener = new FramedLink.Listener() {
+        @Override
+        public void onFrame(FramedLink link, Serializable frame) {
+            if ("REQUEST_PLAYER_NAME".equals(frame)) {
+                link.send("PLAYER_NAME:" + readLocalPlayerName(), null);
+                return;
+            }
+            if (REQUEST_BANK_HASH.equals(frame)) {
+                // Не на потоке чтения: отпечаток считается источником, send() безопасен из любого потока
+                bankHashSource.loadBankHash(hash -> link.send(P2PManager.bankHashReply(hash), null));
+                return;
+            }
+            ConnectionListener l = listener;
+            if (l != null) l.onDataReceived(frame);
+        }
+
+        @Override
+        public void onClosed(FramedLink link, boolean peerDead, IOException cause) {
+            connectionLost(link, peerDead ? "Соперник не отвечает." : "Соединение потеряно: " + cause.getMessage());
+        }
+    };
+
     public synchronized void startAcceptThread() {
         if (acceptThread == null) {
             acceptThread = new AcceptThread();
@@ -412,6 +484,7 @@ public class BluetoothManager implements P2PManager {
         public void run() {
             Log.d(TAG, "ConnectThread started.");
             if (mmSocket == null) {
+                synchronized (BluetoothManager.this) { if (connectThread == this) connectThread = null; }
                 connectionFailed("Ошибка сокета: Отсутствует разрешение или сокет не создан.");
                 return;
             }
@@ -419,6 +492,7 @@ public class BluetoothManager implements P2PManager {
             try {
                 mmSocket.connect();
             } catch (IOException e) {
+                synchronized (BluetoothManager.this) { if (connectThread == this) connectThread = null; }
                 connectionFailed("Не удалось подключиться: " + e.getMessage());
                 try { mmSocket.close(); } catch (IOException e2) { Log.e(TAG, "ConnectThread: unable to close() socket", e2); }
                 return;
@@ -431,79 +505,4 @@ public class BluetoothManager implements P2PManager {
             try { if (mmSocket != null) mmSocket.close(); } catch (IOException e) { Log.e(TAG, "ConnectThread: Close of socket failed", e); }
         }
     }
-
-    // ConnectedThread — читает объекты и обрабатывает простые строковые запросы
-    private class ConnectedThread extends Thread {
-        private final P2PManager.ConnectionListener mmListener;
-        private final ObjectOutputStream mmOutStream;
-        private final ObjectInputStream mmInStream;
-
-        public ConnectedThread(BluetoothSocket socket, P2PManager.ConnectionListener listener) {
-            mmListener = listener;
-            ObjectInputStream tmpIn = null;
-            ObjectOutputStream tmpOut = null;
-            try {
-                tmpOut = new ObjectOutputStream(socket.getOutputStream());
-                tmpIn = new ObjectInputStream(socket.getInputStream());
-            } catch (IOException e) {
-                Log.e(TAG, "ConnectedThread: temp sockets not created", e);
-            }
-            mmOutStream = tmpOut;
-            mmInStream = tmpIn;
-        }
-
-        public void run() {
-            Log.d(TAG, "ConnectedThread started. Ready for I/O.");
-            while (true) {
-                try {
-                    Serializable receivedData = (Serializable) mmInStream.readObject();
-
-                    // handle simple string protocol
-                    if (receivedData instanceof String) {
-                        String s = (String) receivedData;
-                        if (s.equals("REQUEST_PLAYER_NAME")) {
-                            String name = readLocalPlayerName();
-                            write("PLAYER_NAME:" + name);
-                            continue;
-                        }
-                        // forward PLAYER_NAME and other strings to listener
-                        if (mmListener != null) mmListener.onDataReceived(s);
-                        continue;
-                    }
-
-                    // forward other serializable objects (GameDataModel etc.)
-                    if (mmListener != null) mmListener.onDataReceived(receivedData);
-
-                } catch (IOException e) {
-                    connectionLost("Соединение потеряно: " + e.getMessage());
-                    break;
-                } catch (ClassNotFoundException e) {
-                    Log.e(TAG, "Received object of unknown class", e);
-                }
-            }
-        }
-
-        public void write(Serializable data) {
-            try {
-                if (mmOutStream != null) {
-                    mmOutStream.writeObject(data);
-                    mmOutStream.flush();
-                } else {
-                    Log.w(TAG, "write(): output stream is null");
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Exception during write", e);
-                connectionLost("Ошибка при отправке данных: " + e.getMessage());
-            }
-        }
-
-        public void cancel() {
-            try {
-                if (mmOutStream != null) mmOutStream.close();
-                if (mmInStream != null) mmInStream.close();
-            } catch (IOException e) {
-                Log.e(TAG, "close() of connect socket failed", e);
-            }
-        }
-    }
-}
\ No newline at end of file
+}
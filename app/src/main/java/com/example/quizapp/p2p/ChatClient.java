@@ -5,8 +5,6 @@ import android.util.Log;
 
 import com.example.quizapp.p2p.P2PManager;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -19,8 +17,7 @@ public class ChatClient implements Runnable {
     private final P2PManager.ConnectionListener listener;
     private final InetAddress hostAddress;
     private Socket socket;
-    private ObjectOutputStream outputStream;
-    private ObjectInputStream inputStream;
+    private volatile FramedLink link;
 
     public ChatClient(P2PManager.ConnectionListener listener, Context context, InetAddress hostAddress) {
         this.listener = listener;
@@ -36,11 +33,11 @@ public class ChatClient implements Runnable {
             socket.connect(new InetSocketAddress(hostAddress.getHostAddress(), PORT), 5000); // Таймаут 5с
             Log.d(TAG, "Клиент подключен к серверу.");
 
-            // Инициализация потоков для обмена данными
-            outputStream = new ObjectOutputStream(socket.getOutputStream());
-            inputStream = new ObjectInputStream(socket.getInputStream());
-
-            readDataLoop(); // Начинаем цикл чтения данных
+            // Обмен данными: поток чтения, очередь записи и heartbeat — в FramedLink
+            socket.setTcpNoDelay(true);
+            link = new FramedLink("ChatClient", socket.getInputStream(), socket.getOutputStream(), socket,
+                    Heartbeat.Config.DEFAULT, linkListener);
+            link.start();
 
         } catch (IOException e) {
             Log.e(TAG, "Ошибка подключения клиента к серверу: " + e.getMessage());
@@ -49,40 +46,29 @@ public class ChatClient implements Runnable {
         }
     }
 
-    private void readDataLoop() {
-        try {
-            Object receivedObject;
-            while (true) {
-                // Блокирующий вызов: ожидание объекта
-                receivedObject = inputStream.readObject();
-                if (receivedObject != null) {
-                    listener.onDataReceived((Serializable) receivedObject);
-                }
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            Log.e(TAG, "Разрыв соединения с сервером: " + e.getMessage());
-            listener.onDisconnected("Соединение с противником потеряно.");
+    private final FramedLink.Listener linkListener = new FramedLink.Listener() {
+        @Override
+        public void onFrame(FramedLink link, Serializable frame) {
+            listener.onDataReceived(frame);
+        }
+
+        @Override
+        public void onClosed(FramedLink link, boolean peerDead, IOException cause) {
+            Log.e(TAG, "Разрыв соединения с сервером: " + cause.getMessage());
+            listener.onDisconnected(peerDead ? "Соперник не отвечает." : "Соединение с противником потеряно.");
             cancel();
         }
-    }
+    };
 
     public void write(Serializable data) {
-        try {
-            if (outputStream != null) {
-                outputStream.writeObject(data);
-                outputStream.flush();
-                Log.d(TAG, "Клиент отправил данные: " + data.getClass().getSimpleName());
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Ошибка отправки данных серверу: " + e.getMessage());
-            // Возможно, соединение уже разорвано
-        }
+        FramedLink current = link;
+        if (current != null) current.send(data, null);
     }
 
     public void cancel() {
+        FramedLink current = link;
+        if (current != null) current.close();
         try {
-            if (outputStream != null) outputStream.close();
-            if (inputStream != null) inputStream.close();
             if (socket != null) socket.close();
         } catch (IOException e) {
             Log.e(TAG, "Ошибка закрытия сокетов клиента: " + e.getMessage());
@@ -6,8 +6,6 @@ import android.util.Log;
 
 import com.example.quizapp.p2p.P2PManager;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.ServerSocket;
@@ -20,8 +18,7 @@ public class ChatServer implements Runnable {
     private final P2PManager.ConnectionListener listener;
     private ServerSocket serverSocket;
     private Socket clientSocket;
-    private ObjectOutputStream outputStream;
-    private ObjectInputStream inputStream;
+    private volatile FramedLink link;
 
     public ChatServer(P2PManager.ConnectionListener listener, Context context, InetAddress address) {
         this.listener = listener;
@@ -37,11 +34,11 @@ public class ChatServer implements Runnable {
             clientSocket = serverSocket.accept();
             Log.d(TAG, "Клиент подключен.");
 
-            // Инициализация потоков для обмена данными
-            outputStream = new ObjectOutputStream(clientSocket.getOutputStream());
-            inputStream = new ObjectInputStream(clientSocket.getInputStream());
-
-            readDataLoop(); // Начинаем цикл чтения данных
+            // Обмен данными: поток чтения, очередь записи и heartbeat — в FramedLink
+            clientSocket.setTcpNoDelay(true);
+            link = new FramedLink("ChatServer", clientSocket.getInputStream(), clientSocket.getOutputStream(), clientSocket,
+                    Heartbeat.Config.DEFAULT, linkListener);
+            link.start();
 
         } catch (IOException e) {
             Log.e(TAG, "Ошибка ServerSocket/Accept: " + e.getMessage());
@@ -50,41 +47,29 @@ public class ChatServer implements Runnable {
         }
     }
 
-    private void readDataLoop() {
-        try {
-            Object receivedObject;
-            while (true) {
-                // Блокирующий вызов: ожидание объекта
-                receivedObject = inputStream.readObject();
-                if (receivedObject != null) {
-                    // Передача данных в главную активность
-                    listener.onDataReceived((Serializable) receivedObject);
-                }
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            Log.e(TAG, "Разрыв соединения с клиентом: " + e.getMessage());
-            listener.onDisconnected("Соединение с противником потеряно.");
+    private final FramedLink.Listener linkListener = new FramedLink.Listener() {
+        @Override
+        public void onFrame(FramedLink link, Serializable frame) {
+            listener.onDataReceived(frame);
+        }
+
+        @Override
+        public void onClosed(FramedLink link, boolean peerDead, IOException cause) {
+            Log.e(TAG, "Разрыв соединения с клиентом: " + cause.getMessage());
+            listener.onDisconnected(peerDead ? "Соперник не отвечает." : "Соединение с противником потеряно.");
             cancel();
         }
-    }
+    };
 
     public void write(Serializable data) {
-        try {
-            if (outputStream != null) {
-                outputStream.writeObject(data);
-                outputStream.flush();
-                Log.d(TAG, "Сервер отправил данные: " + data.getClass().getSimpleName());
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Ошибка отправки данных клиенту: " + e.getMessage());
-            // Возможно, соединение уже разорвано
-        }
+        FramedLink current = link;
+        if (current != null) current.send(data, null);
     }
 
     public void cancel() {
+        FramedLink current = link;
+        if (current != null) current.close();
         try {
-            if (outputStream != null) outputStream.close();
-            if (inputStream != null) inputStream.close();
             if (clientSocket != null) clientSocket.close();
             if (serverSocket != null) serverSocket.close();
         } catch (IOException e) {
@@ -0,0 +1,218 @@
+package com.example.quizapp.p2p;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+
+/**
+ * FramedLink — общий движок соединения поверх пары потоков (Bluetooth, TCP Wi-Fi Direct, чат).
+ *
+ * Особенности:
+ * - один поток чтения на соединение; кадры WireCodec разбираются прямо в буфере чтения, без
+ *   BufferedInputStream и второго копирования в readFully; буферы чтения берутся из общего пула
+ * - запись — через OutboundQueue (пачки и один flush), живость и RTT — через Heartbeat;
+ *   Ping/Pong поглощаются здесь и до Listener не доходят
+ * - onFrame вызывается в потоке чтения: сетевые сообщения не ждут очереди UI, а тяжёлые (сверка банка)
+ *   не попадают в главный поток
+ * - onClosed приходит один раз через общий Handler главного потока и только если соединение закрыл
+ *   не этот конец: соперник, ошибка чтения или записи, молчание дольше лимита Heartbeat
+ * - close() — штатное завершение: остановить heartbeat, дописать очередь (не дольше
+ *   OutboundQueue.CLOSE_TIMEOUT_MS), закрыть сокет; поток чтения выходит молча
+ */
+public class FramedLink {
+
+    private static final String TAG = "FramedLink";
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int POOL_SIZE = 4;
+    private static final int HEADER_LENGTH = 4;
+
+    private static final ArrayDeque<byte[]> BUFFER_POOL = new ArrayDeque<>();
+    private static volatile Handler mainHandler;
+
+    public interface Listener {
+        /** Входящий кадр; вызывается в потоке чтения. */
+        void onFrame(FramedLink link, Serializable frame);
+
+        /**
+         * Соединение потеряно (в главном потоке).
+         * @param peerDead соперник замолчал дольше лимита Heartbeat
+         * @param cause ошибка чтения или записи; EOFException — соперник закрыл сокет
+         */
+        void onClosed(FramedLink link, boolean peerDead, IOException cause);
+    }
+
+    private final String name;
+    private final InputStream in;
+    private final Closeable socket;
+    private final Listener listener;
+    private final OutboundQueue outbound;
+    private final Heartbeat heartbeat;
+    private final WireCodec.Decoder decoder = new WireCodec.Decoder();
+    private final Thread reader;
+    private volatile boolean closing;
+    private volatile boolean peerDead;
+    private volatile IOException writeError;
+
+    /**
+     * @param socket закрывается при завершении; закрытие должно прерывать блокирующее чтение из in
+     */
+    public FramedLink(String name, InputStream in, OutputStream out, Closeable socket,
+                      Heartbeat.Config heartbeatConfig, Listener listener) {
+        this.name = name;
+        this.in = in;
+        this.socket = socket;
+        this.listener = listener;
+        this.outbound = new OutboundQueue(name + "Out", out, e -> {
+            writeError = e;
+            closeSocket(); // поток чтения проснётся и сообщит об обрыве
+        });
+        this.heartbeat = new Heartbeat(name, msg -> outbound.send(msg, null), heartbeatConfig, silentMillis -> {
+            peerDead = true;
+            closeSocket();
+        });
+        this.reader = new Thread(this::readLoop, name + "-reader");
+        this.reader.setDaemon(true);
+    }
+
+    /** Главный поток; один Handler на все соединения вместо нового на каждый колбэк. */
+    public static void postToMain(Runnable task) {
+        Handler handler = mainHandler;
+        if (handler == null) {
+            synchronized (FramedLink.class) {
+                if (mainHandler == null) mainHandler = new Handler(Looper.getMainLooper());
+                handler = mainHandler;
+            }
+        }
+        handler.post(task);
+    }
+
+    public void start() {
+        outbound.start();
+        heartbeat.start();
+        reader.start();
+    }
+
+    /** Не блокирует; false — очередь полна или соединение закрыто (колбэк уже получил false). */
+    public boolean send(Serializable message, P2PManager.SendCallback callback) {
+        return outbound.send(message, callback);
+    }
+
+    /** Штатное закрытие этим концом: onClosed не вызывается. */
+    public void close() {
+        closing = true;
+        heartbeat.stop();
+        outbound.close();
+        closeSocket();
+    }
+
+    public boolean isOpen() {
+        return !closing;
+    }
+
+    public OutboundQueue.Metrics getOutboundMetrics() {
+        return outbound.getMetrics();
+    }
+
+    public Heartbeat.RttStats getRttStats() {
+        return heartbeat.getRttStats();
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.e(TAG, name + ": close failed", e);
+        }
+    }
+
+    private void readLoop() {
+        byte[] pooled = acquireBuffer();
+        byte[] buf = pooled;
+        int start = 0;
+        int end = 0;
+        try {
+            while (true) {
+                // Заголовок и тело кадра должны лежать в буфере целиком: при нехватке места
+                // недочитанный хвост сдвигается в начало, а под большой кадр (START_GAME) буфер растёт
+                int need = HEADER_LENGTH;
+                for (int pass = 0; pass < 2; pass++) {
+                    if (need > buf.length) {
+                        byte[] bigger = new byte[Math.max(need, buf.length * 2)];
+                        System.arraycopy(buf, start, bigger, 0, end - start);
+                        buf = bigger;
+                        end -= start;
+                        start = 0;
+                    } else if (start + need > buf.length) {
+                        System.arraycopy(buf, start, buf, 0, end - start);
+                        end -= start;
+                        start = 0;
+                    }
+                    while (end - start < need) {
+                        int n = in.read(buf, end, buf.length - end);
+                        if (n < 0) throw new EOFException("Соперник закрыл соединение");
+                        end += n;
+                    }
+                    if (pass == 0) {
+                        int length = ((buf[start] & 0xFF) << 24) | ((buf[start + 1] & 0xFF) << 16)
+                                | ((buf[start + 2] & 0xFF) << 8) | (buf[start + 3] & 0xFF);
+                        if (length <= 0 || length > WireCodec.MAX_FRAME_LENGTH) {
+                            throw new IOException("Некорректная длина кадра: " + length);
+                        }
+                        need = HEADER_LENGTH + length;
+                    }
+                }
+                Serializable frame = decoder.decode(buf, start + HEADER_LENGTH, need - HEADER_LENGTH);
+                start += need;
+                if (start == end) start = end = 0;
+
+                if (heartbeat.onFrame(frame)) continue;
+                try {
+                    listener.onFrame(this, frame);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, name + ": error delivering frame", e);
+                }
+            }
+        } catch (IOException e) {
+            if (!closing) {
+                closing = true;
+                heartbeat.stop();
+                outbound.close();
+                closeSocket();
+                IOException cause = writeError != null ? writeError : e;
+                Log.w(TAG, name + ": соединение потеряно" + (peerDead ? " (соперник молчит)" : "") + ": " + cause.getMessage());
+                boolean dead = peerDead;
+                postToMain(() -> {
+                    try {
+                        listener.onClosed(this, dead, cause);
+                    } catch (Exception ex) {
+                        Log.e(TAG, "Error delivering onClosed", ex);
+                    }
+                });
+            }
+        } finally {
+            releaseBuffer(pooled);
+        }
+    }
+
+    private static byte[] acquireBuffer() {
+        synchronized (BUFFER_POOL) {
+            byte[] buf = BUFFER_POOL.pollFirst();
+            if (buf != null) return buf;
+        }
+        return new byte[READ_BUFFER_SIZE];
+    }
+
+    private static void releaseBuffer(byte[] buf) {
+        synchronized (BUFFER_POOL) {
+            if (BUFFER_POOL.size() < POOL_SIZE) BUFFER_POOL.addFirst(buf);
+        }
+    }
+}
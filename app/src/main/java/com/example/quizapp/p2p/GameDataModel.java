@@ -9,11 +9,12 @@ public class GameDataModel implements Serializable {
     private static final long serialVersionUID = 1L;
 
     public enum DataType {
-        START_GAME,     // Начало игры (передача набора вопросов)
-        QUESTION_INDEX, // Текущий индекс вопроса
+        START_GAME,     // Начало игры: List<Question> или long[] content_hash, если банки вопросов совпадают
+        QUESTION_INDEX, // Одновременный режим: хост открывает вопрос с этим индексом у обоих игроков
         ANSWER_SUBMITTED, // Ответ игрока
         EMOTE_USED,     // Использование эмоции
-        GAME_OVER       // Конец игры
+        GAME_OVER,      // Конец игры
+        BANK_SYNC       // Сверка банков вопросов: BankSyncMessage
     }
 
     public final DataType type;
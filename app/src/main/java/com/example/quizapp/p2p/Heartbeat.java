@@ -0,0 +1,180 @@
+package com.example.quizapp.p2p;
+
+import android.util.Log;
+
+import com.example.quizapp.p2p.LinkMessages.Ping;
+import com.example.quizapp.p2p.LinkMessages.Pong;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heartbeat — ping/pong поверх соединения: замер RTT и быстрое обнаружение пропавшего соперника.
+ *
+ * Особенности:
+ * - раз в intervalMs отправляется Ping с моментом отправки; соперник сразу возвращает его в Pong,
+ *   RTT считается по своим же часам (часы устройств не сравниваются)
+ * - RTT: сглаженное значение (EWMA с коэффициентом 1/8, как SRTT в TCP) и перцентили по последним
+ *   RTT_WINDOW замерам; Ping и Pong идут через исходящую очередь, поэтому в RTT входит и её задержка —
+ *   ровно то, что чувствует игровое сообщение
+ * - живым соперника делает любой входящий кадр, а не только Pong: под нагрузкой ответы не теряются
+ * - тишина дольше intervalMs * maxMissed — соперник объявляется пропавшим (один раз); транспорт закрывает
+ *   сокет, и onDisconnected приходит не позже чем через intervalMs * (maxMissed + 1), а не когда
+ *   блокирующее чтение само заметит обрыв (на Bluetooth — десятки секунд)
+ * - таймеры всех соединений на одном общем потоке
+ */
+public class Heartbeat {
+
+    private static final String TAG = "Heartbeat";
+    private static final int RTT_WINDOW = 128;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Период и допустимое число пропущенных ответов. */
+    public static final class Config {
+        public static final Config DEFAULT = new Config(1000, 3);
+
+        public final long intervalMs;
+        public final int maxMissed;
+
+        public Config(long intervalMs, int maxMissed) {
+            if (intervalMs <= 0 || maxMissed <= 0) throw new IllegalArgumentException("intervalMs и maxMissed должны быть > 0");
+            this.intervalMs = intervalMs;
+            this.maxMissed = maxMissed;
+        }
+    }
+
+    public interface Sender {
+        void send(Serializable message);
+    }
+
+    public interface PeerDeadHandler {
+        void onPeerDead(long silentMillis);
+    }
+
+    /** Снимок RTT. Значения в микросекундах; без замеров — нули. */
+    public static class RttStats {
+        public final int samples;
+        public final long lastMicros;
+        public final long smoothedMicros;
+        public final long p50Micros;
+        public final long p95Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+
+        RttStats(int samples, long lastMicros, long smoothedMicros, long p50Micros, long p95Micros,
+                 long p99Micros, long maxMicros) {
+            this.samples = samples;
+            this.lastMicros = lastMicros;
+            this.smoothedMicros = smoothedMicros;
+            this.p50Micros = p50Micros;
+            this.p95Micros = p95Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "samples=" + samples + ", rtt last/smoothed=" + lastMicros + "/" + smoothedMicros +
+                    ", p50/p95/p99/max=" + p50Micros + "/" + p95Micros + "/" + p99Micros + "/" + maxMicros + " мкс";
+        }
+    }
+
+    private final String name;
+    private final Sender sender;
+    private final Config config;
+    private final PeerDeadHandler deadHandler;
+    private ScheduledFuture<?> tick;
+    private volatile long lastHeardNanos;
+    private volatile boolean dead;
+
+    // Замеры RTT — под блокировкой this
+    private final long[] window = new long[RTT_WINDOW];
+    private int samples;
+    private long lastMicros;
+    private long smoothedMicros;
+    private long maxMicros;
+
+    public Heartbeat(String name, Sender sender, Config config, PeerDeadHandler deadHandler) {
+        this.name = name;
+        this.sender = sender;
+        this.config = config;
+        this.deadHandler = deadHandler;
+    }
+
+    public synchronized void start() {
+        if (tick != null) return;
+        lastHeardNanos = System.nanoTime();
+        tick = TIMER.scheduleAtFixedRate(this::beat, config.intervalMs, config.intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (tick != null) tick.cancel(false);
+    }
+
+    /**
+     * Вызывается потоком чтения на каждый входящий кадр.
+     * @return true, если кадр служебный (Ping/Pong) и дальше передавать его не нужно
+     */
+    public boolean onFrame(Serializable frame) {
+        long now = System.nanoTime();
+        lastHeardNanos = now;
+        if (frame instanceof Ping) {
+            sender.send(new Pong(((Ping) frame).sentAtNanos));
+            return true;
+        }
+        if (frame instanceof Pong) {
+            long rtt = now - ((Pong) frame).sentAtNanos;
+            if (rtt >= 0) addSample(rtt / 1000);
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized RttStats getRttStats() {
+        int n = Math.min(samples, RTT_WINDOW);
+        if (n == 0) return new RttStats(0, 0, 0, 0, 0, 0, 0);
+        long[] sorted = Arrays.copyOf(window, n);
+        Arrays.sort(sorted);
+        return new RttStats(samples, lastMicros, smoothedMicros, percentile(sorted, 50),
+                percentile(sorted, 95), percentile(sorted, 99), maxMicros);
+    }
+
+    private synchronized void addSample(long micros) {
+        window[samples % RTT_WINDOW] = micros;
+        smoothedMicros = samples == 0 ? micros : smoothedMicros + (micros - smoothedMicros) / 8;
+        samples++;
+        lastMicros = micros;
+        if (micros > maxMicros) maxMicros = micros;
+    }
+
+    private void beat() {
+        if (dead) return;
+        long silentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeardNanos);
+        if (silentMillis >= config.intervalMs * config.maxMissed) {
+            dead = true;
+            stop();
+            Log.w(TAG, name + ": соперник молчит " + silentMillis + " мс, соединение считается потерянным");
+            try {
+                deadHandler.onPeerDead(silentMillis);
+            } catch (Exception e) {
+                Log.e(TAG, "Error delivering onPeerDead", e);
+            }
+            return;
+        }
+        sender.send(new Ping(System.nanoTime()));
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
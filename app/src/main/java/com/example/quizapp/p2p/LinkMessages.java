@@ -0,0 +1,69 @@
+package com.example.quizapp.p2p;
+
+import java.io.Serializable;
+
+/**
+ * Служебные кадры соединения: ping/pong Heartbeat и кадры ResumableSession.
+ * Без Android — их кодирует WireCodec, в том числе в бенчмарках на обычной JVM.
+ */
+public final class LinkMessages {
+
+    private LinkMessages() {
+    }
+
+    public static final class Ping implements Serializable {
+        private static final long serialVersionUID = 1L;
+        public final long sentAtNanos;
+
+        public Ping(long sentAtNanos) {
+            this.sentAtNanos = sentAtNanos;
+        }
+    }
+
+    public static final class Pong implements Serializable {
+        private static final long serialVersionUID = 1L;
+        public final long sentAtNanos;
+
+        public Pong(long sentAtNanos) {
+            this.sentAtNanos = sentAtNanos;
+        }
+    }
+
+    /** Рукопожатие после (пере)подключения. reply — ответ на HELLO соперника, отвечать на него не нужно. */
+    public static final class Hello implements Serializable {
+        private static final long serialVersionUID = 1L;
+        public final long sessionId;
+        public final long peerSessionId; // 0 — сессию соперника ещё не знаем
+        public final int received;
+        public final boolean reply;
+
+        public Hello(long sessionId, long peerSessionId, int received, boolean reply) {
+            this.sessionId = sessionId;
+            this.peerSessionId = peerSessionId;
+            this.received = received;
+            this.reply = reply;
+        }
+    }
+
+    public static final class Data implements Serializable {
+        private static final long serialVersionUID = 1L;
+        public final int seq;
+        public final int ack;
+        public final Serializable payload;
+
+        public Data(int seq, int ack, Serializable payload) {
+            this.seq = seq;
+            this.ack = ack;
+            this.payload = payload;
+        }
+    }
+
+    public static final class Ack implements Serializable {
+        private static final long serialVersionUID = 1L;
+        public final int received;
+
+        public Ack(int received) {
+            this.received = received;
+        }
+    }
+}
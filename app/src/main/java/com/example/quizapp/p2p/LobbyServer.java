@@ -0,0 +1,396 @@
+package com.example.quizapp.p2p;
+
+import android.util.Log;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LobbyServer — неблокирующий сервер владельца группы: до MAX_CLIENTS клиентов на одном потоке Selector.
+ *
+ * Особенности:
+ * - приём, чтение и запись всех клиентов мультиплексируются одним потоком; сверх maxClients
+ *   подключение принимается и сразу закрывается (клиент видит обрыв, а не зависший connect)
+ * - кадры WireCodec: broadcast() кодирует сообщение один раз, и все клиенты пишут один и тот же
+ *   массив байт; всё, что накопилось у клиента, склеивается в буфер записи и уходит одним write()
+ * - у каждого клиента свой Heartbeat: Ping клиента получает Pong, замолчавший клиент отключается,
+ *   RTT считается по Pong на пинги сервера
+ * - клиент, у которого копится больше MAX_QUEUED_BYTES неотправленного, не успевает читать
+ *   и отключается: один медленный телефон не раздувает память сервера
+ * - колбэки Listener вызываются в потоке Selector; долгую работу из них нужно уносить
+ */
+public class LobbyServer {
+
+    private static final String TAG = "LobbyServer";
+    public static final int MAX_CLIENTS = 8;
+    private static final int MAX_QUEUED_BYTES = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_LENGTH = 4;
+
+    public interface Listener {
+        void onClientJoined(int clientId);
+
+        /** Кадр клиента (Ping/Pong сюда не попадают). */
+        void onFrame(int clientId, Serializable frame);
+
+        void onClientLeft(int clientId, boolean peerDead);
+    }
+
+    private final class Client {
+        final int id;
+        final SocketChannel channel;
+        final SelectionKey key;
+        final WireCodec.Decoder decoder = new WireCodec.Decoder();
+        final ConcurrentLinkedQueue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();      // кадров в outbox
+        final AtomicInteger queuedBytes = new AtomicInteger();
+        final ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE); // режим записи: [0, position) ждёт сокета
+        final Heartbeat heartbeat;
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        volatile boolean dead;   // отключить при следующем обороте цикла
+        volatile boolean silent; // молчит дольше лимита Heartbeat
+
+        Client(int id, SocketChannel channel, SelectionKey key) {
+            this.id = id;
+            this.channel = channel;
+            this.key = key;
+            this.heartbeat = new Heartbeat(name + "#" + id, msg -> enqueue(this, encode(msg)), heartbeatConfig,
+                    silentMillis -> {
+                        silent = true;
+                        dead = true;
+                        selector.wakeup();
+                    });
+        }
+    }
+
+    private final String name;
+    private final InetSocketAddress bindAddress;
+    private final int maxClients;
+    private final Heartbeat.Config heartbeatConfig;
+    private final Listener listener;
+    private final WireCodec.Encoder encoder = new WireCodec.Encoder();
+    // Клиенты по порядку подключения; меняет только поток Selector, остальные читают копию
+    private final Map<Integer, Client> clients = new LinkedHashMap<>();
+    private volatile Client[] snapshot = new Client[0];
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread loop;
+    private volatile boolean closed;
+    private int nextId = 1;
+
+    private final AtomicLong framesQueued = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private long framesWritten;
+    private long writes;
+
+    public LobbyServer(String name, InetSocketAddress bindAddress, int maxClients,
+                       Heartbeat.Config heartbeatConfig, Listener listener) {
+        if (maxClients < 1 || maxClients > MAX_CLIENTS) {
+            throw new IllegalArgumentException("maxClients должен быть от 1 до " + MAX_CLIENTS);
+        }
+        this.name = name;
+        this.bindAddress = bindAddress;
+        this.maxClients = maxClients;
+        this.heartbeatConfig = heartbeatConfig;
+        this.listener = listener;
+    }
+
+    public synchronized void start() throws IOException {
+        if (loop != null) return;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(bindAddress);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        loop = new Thread(this::selectLoop, name + "-selector");
+        loop.setDaemon(true);
+        loop.start();
+        Log.d(TAG, name + ": слушает " + server.getLocalAddress() + ", клиентов до " + maxClients);
+    }
+
+    public int getLocalPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int clientCount() {
+        return snapshot.length;
+    }
+
+    /** Рассылает сообщение всем клиентам. @return false, если некому или сервер закрыт */
+    public boolean broadcast(Serializable message) {
+        return broadcast(message, 0);
+    }
+
+    /** Рассылает всем, кроме exceptClientId (0 — всем): ретрансляция хода одного клиента остальным. */
+    public boolean broadcast(Serializable message, int exceptClientId) {
+        Client[] targets = snapshot;
+        if (closed || targets.length == 0) return false;
+        byte[] frame = encode(message);
+        boolean any = false;
+        for (Client client : targets) {
+            if (client.id != exceptClientId) any |= enqueue(client, frame);
+        }
+        return any;
+    }
+
+    public boolean sendTo(int clientId, Serializable message) {
+        for (Client client : snapshot) {
+            if (client.id == clientId) return enqueue(client, encode(message));
+        }
+        return false;
+    }
+
+    /** RTT самого раннего из подключённых клиентов (в игре на двоих — соперника) или null. */
+    public Heartbeat.RttStats getRttStats() {
+        Client[] current = snapshot;
+        return current.length > 0 ? current[0].heartbeat.getRttStats() : null;
+    }
+
+    /** Метрики записи по всем клиентам в формате OutboundQueue; задержки не меряются. */
+    public OutboundQueue.Metrics getOutboundMetrics() {
+        int depth = 0;
+        for (Client client : snapshot) depth = Math.max(depth, client.queued.get());
+        synchronized (this) {
+            return new OutboundQueue.Metrics(depth, 0, framesWritten, rejected.get(), writes, 0, 0, 0);
+        }
+    }
+
+    public void close() {
+        if (closed) return;
+        closed = true;
+        Selector s = selector;
+        if (s != null) s.wakeup();
+        Thread t = loop;
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(OutboundQueue.CLOSE_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private byte[] encode(Serializable message) {
+        synchronized (encoder) {
+            int length = encoder.encode(message);
+            return Arrays.copyOf(encoder.buffer(), length);
+        }
+    }
+
+    private boolean enqueue(Client client, byte[] frame) {
+        if (closed || client.dead) return false;
+        if (client.queuedBytes.addAndGet(frame.length) > MAX_QUEUED_BYTES) {
+            client.queuedBytes.addAndGet(-frame.length);
+            rejected.incrementAndGet();
+            Log.w(TAG, name + ": клиент " + client.id + " не успевает читать, отключаем");
+            client.dead = true;
+            selector.wakeup();
+            return false;
+        }
+        client.queued.incrementAndGet();
+        client.outbox.add(ByteBuffer.wrap(frame));
+        framesQueued.incrementAndGet();
+        selector.wakeup();
+        return true;
+    }
+
+    private void selectLoop() {
+        try {
+            while (!closed) {
+                selector.select(heartbeatConfig.intervalMs);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isReadable()) read(client);
+                        if (key.isValid() && key.isWritable()) write(client);
+                    } catch (IOException e) {
+                        drop(client, e);
+                    }
+                }
+                // Новые кадры из других потоков и клиенты, признанные мёртвыми
+                for (Client client : snapshot) {
+                    if (client.dead) {
+                        drop(client, null);
+                    } else if (!client.outbox.isEmpty() && (client.key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+                        client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) Log.e(TAG, name + ": selector failed", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            if (clients.size() >= maxClients) {
+                Log.w(TAG, name + ": лобби заполнено (" + maxClients + "), подключение отклонено");
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Client client = new Client(nextId++, channel, key);
+            key.attach(client);
+            clients.put(client.id, client);
+            snapshot = clients.values().toArray(new Client[0]);
+            client.heartbeat.start();
+            Log.d(TAG, name + ": клиент " + client.id + " подключён, всего " + clients.size());
+            listener.onClientJoined(client.id);
+        }
+    }
+
+    private void read(Client client) throws IOException {
+        ByteBuffer in = client.in;
+        if (client.channel.read(in) < 0) throw new EOFException("Клиент закрыл соединение");
+        // Разбираем все целые кадры прямо в буфере; хвост переносится в начало
+        in.flip();
+        while (in.remaining() >= HEADER_LENGTH) {
+            int length = in.getInt(in.position());
+            if (length <= 0 || length > WireCodec.MAX_FRAME_LENGTH) throw new IOException("Некорректная длина кадра: " + length);
+            if (in.remaining() < HEADER_LENGTH + length) {
+                if (HEADER_LENGTH + length > in.capacity()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(Math.max(HEADER_LENGTH + length, in.capacity() * 2));
+                    bigger.put(in);
+                    client.in = bigger;
+                    return;
+                }
+                break;
+            }
+            Serializable frame = client.decoder.decode(in.array(), in.position() + HEADER_LENGTH, length);
+            in.position(in.position() + HEADER_LENGTH + length);
+            if (client.heartbeat.onFrame(frame)) continue;
+            try {
+                listener.onFrame(client.id, frame);
+            } catch (RuntimeException e) {
+                Log.e(TAG, name + ": error delivering frame", e);
+            }
+        }
+        in.compact();
+    }
+
+    private void write(Client client) throws IOException {
+        ByteBuffer out = client.out;
+        while (true) {
+            int frames = 0;
+            int bytes = 0;
+            ByteBuffer next;
+            while ((next = client.outbox.peek()) != null && next.remaining() <= out.remaining()) {
+                bytes += next.remaining();
+                out.put(next);
+                client.outbox.poll();
+                frames++;
+            }
+            if (frames > 0) {
+                client.queued.addAndGet(-frames);
+                client.queuedBytes.addAndGet(-bytes);
+            }
+            out.flip();
+            if (!out.hasRemaining()) {
+                out.clear();
+                if (next == null) {
+                    client.key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                // Кадр больше буфера записи (START_GAME) — напрямую, без склейки
+                int before = next.remaining();
+                client.channel.write(next);
+                if (next.hasRemaining()) return;
+                client.outbox.poll();
+                client.queued.decrementAndGet();
+                client.queuedBytes.addAndGet(-before);
+                frames = 1;
+            } else {
+                client.channel.write(out);
+                boolean drained = !out.hasRemaining();
+                out.compact();
+                if (!drained) {
+                    count(frames);
+                    return; // сокет заполнен — дождёмся OP_WRITE
+                }
+            }
+            count(frames);
+        }
+    }
+
+    private synchronized void count(int frames) {
+        framesWritten += frames;
+        writes++;
+    }
+
+    private void drop(Client client, IOException cause) {
+        if (clients.remove(client.id) == null) return;
+        snapshot = clients.values().toArray(new Client[0]);
+        client.heartbeat.stop();
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            Log.e(TAG, name + ": close failed", e);
+        }
+        boolean peerDead = client.silent;
+        Log.d(TAG, name + ": клиент " + client.id + " отключён" + (cause != null ? ": " + cause.getMessage() : "") +
+                ", осталось " + clients.size());
+        if (!closed) listener.onClientLeft(client.id, peerDead);
+    }
+
+    private void shutdown() {
+        closed = true;
+        List<Client> all = new ArrayList<>(clients.values());
+        for (Client client : all) {
+            client.heartbeat.stop();
+            try {
+                // Последнее, что успели поставить (GAME_OVER), уходит, если сокет готов принять
+                if (client.key.isValid()) write(client);
+            } catch (IOException e) {
+                Log.w(TAG, name + ": клиент " + client.id + " не получил остаток очереди: " + e.getMessage());
+            }
+            try {
+                client.channel.close();
+            } catch (IOException e) {
+                Log.e(TAG, name + ": close failed", e);
+            }
+        }
+        clients.clear();
+        snapshot = new Client[0];
+        try {
+            if (server != null) server.close();
+            selector.close();
+        } catch (IOException e) {
+            Log.e(TAG, name + ": close failed", e);
+        }
+        Log.d(TAG, name + ": остановлен, кадров отправлено " + framesWritten + " из " + framesQueued.get());
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.quizapp.p2p;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OutboundQueue — исходящая очередь соединения с отдельным потоком записи.
+ *
+ * Особенности:
+ * - send() не блокирует: сообщение кладётся в ограниченную очередь; при переполнении
+ *   или после закрытия оно отклоняется и колбэк получает false
+ * - поток записи забирает всё, что накопилось, кодирует пачку WireCodec в буфер и делает один flush —
+ *   ответ и эмоция, отправленные подряд, уходят одной записью в сокет
+ * - колбэки вызываются в потоке записи после flush (или при ошибке/закрытии); в UI их нужно постить
+ * - при IOException все ожидающие сообщения отклоняются, а FailureHandler вызывается один раз
+ * - close() дописывает уже поставленное в очередь (GAME_OVER перед разрывом), но ждёт не дольше таймаута
+ * - метрики: глубина очереди, число отправленных/отклонённых, задержка от send() до flush
+ */
+public class OutboundQueue {
+
+    private static final String TAG = "OutboundQueue";
+    public static final int DEFAULT_CAPACITY = 64;
+    private static final int MAX_BATCH = 16;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    public static final long CLOSE_TIMEOUT_MS = 300;
+
+    public interface FailureHandler {
+        void onWriteFailed(IOException e);
+    }
+
+    /** Снимок метрик очереди. Задержки — в микросекундах. */
+    public static class Metrics {
+        public final int depth;
+        public final int capacity;
+        public final long sent;
+        public final long rejected;
+        public final long flushes;
+        public final long lastLatencyMicros;
+        public final long avgLatencyMicros;
+        public final long maxLatencyMicros;
+
+        Metrics(int depth, int capacity, long sent, long rejected, long flushes,
+                long lastLatencyMicros, long avgLatencyMicros, long maxLatencyMicros) {
+            this.depth = depth;
+            this.capacity = capacity;
+            this.sent = sent;
+            this.rejected = rejected;
+            this.flushes = flushes;
+            this.lastLatencyMicros = lastLatencyMicros;
+            this.avgLatencyMicros = avgLatencyMicros;
+            this.maxLatencyMicros = maxLatencyMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "depth=" + depth + "/" + capacity + ", sent=" + sent + ", rejected=" + rejected +
+                    ", flushes=" + flushes + ", latency last/avg/max=" + lastLatencyMicros + "/" +
+                    avgLatencyMicros + "/" + maxLatencyMicros + " мкс";
+        }
+    }
+
+    private static final class Pending {
+        final Serializable message;
+        final P2PManager.SendCallback callback;
+        final long enqueuedAt;
+
+        Pending(Serializable message, P2PManager.SendCallback callback, long enqueuedAt) {
+            this.message = message;
+            this.callback = callback;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    // Будит поток записи при close(); не кодируется
+    private static final Pending CLOSE_MARKER = new Pending(null, null, 0);
+
+    private final BlockingQueue<Pending> queue;
+    private final int capacity;
+    private final OutputStream out;
+    private final FailureHandler failureHandler;
+    private final WireCodec.Encoder encoder = new WireCodec.Encoder();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // Метрики пишет только поток записи (кроме rejected)
+    private volatile long sent;
+    private volatile long flushes;
+    private volatile long lastLatencyNanos;
+    private volatile long totalLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public OutboundQueue(String name, OutputStream out, FailureHandler failureHandler) {
+        this(name, out, DEFAULT_CAPACITY, failureHandler);
+    }
+
+    public OutboundQueue(String name, OutputStream out, int capacity, FailureHandler failureHandler) {
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+        this.failureHandler = failureHandler;
+        this.writer = new Thread(this::drainLoop, name + "-writer");
+        this.writer.setDaemon(true);
+    }
+
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Ставит сообщение в очередь, не блокируясь.
+     * @return false, если очередь переполнена или закрыта (колбэк уже вызван с false)
+     */
+    public boolean send(Serializable message, P2PManager.SendCallback callback) {
+        Pending pending = new Pending(message, callback, System.nanoTime());
+        if (closed || !queue.offer(pending)) {
+            rejected.incrementAndGet();
+            Log.w(TAG, (closed ? "Очередь закрыта" : "Очередь переполнена") + ", сообщение отброшено");
+            complete(pending, false);
+            return false;
+        }
+        if (closed) failPending(); // гонка с close(): сообщение не должно остаться без ответа
+        return true;
+    }
+
+    /**
+     * Перестаёт принимать сообщения, даёт потоку записи до CLOSE_TIMEOUT_MS дописать очередь
+     * и останавливает его; не успевшие уйти сообщения отклоняются. Поток вывода не закрывается.
+     */
+    public void close() {
+        closed = true;
+        queue.offer(CLOSE_MARKER); // очередь полна — поток записи и так не спит
+        if (writer.isAlive() && Thread.currentThread() != writer) {
+            try {
+                writer.join(CLOSE_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writer.interrupt();
+        if (!writer.isAlive()) failPending();
+    }
+
+    public Metrics getMetrics() {
+        long count = sent;
+        return new Metrics(queue.size(), capacity, count, rejected.get(), flushes,
+                lastLatencyNanos / 1000, count == 0 ? 0 : totalLatencyNanos / count / 1000, maxLatencyNanos / 1000);
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                // После close() ждать новых сообщений незачем — дописываем остаток и выходим
+                Pending first = closed ? queue.poll() : queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (closed) break;
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.get(i) == CLOSE_MARKER) {
+                        batch.remove(i--);
+                        continue;
+                    }
+                    try {
+                        encoder.write(out, batch.get(i).message);
+                    } catch (IllegalArgumentException e) {
+                        // Кодек отказал до записи в поток — соединение не страдает
+                        Log.e(TAG, "Сообщение не кодируется и отброшено", e);
+                        rejected.incrementAndGet();
+                        complete(batch.remove(i--), false);
+                    }
+                }
+                if (batch.isEmpty()) continue;
+                out.flush();
+
+                long now = System.nanoTime();
+                flushes++;
+                for (Pending p : batch) {
+                    long latency = now - p.enqueuedAt;
+                    lastLatencyNanos = latency;
+                    totalLatencyNanos += latency;
+                    if (latency > maxLatencyNanos) maxLatencyNanos = latency;
+                    sent++;
+                    complete(p, true);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // close()
+        } catch (IOException e) {
+            // Сокет, закрытый после close(), — штатная остановка, а не потеря соединения
+            boolean closing = closed;
+            closed = true;
+            if (!closing) Log.e(TAG, "Ошибка записи, очередь остановлена", e);
+            // Сначала соединение помечается потерянным, затем отправители узнают об отказе
+            if (!closing && failureHandler != null) failureHandler.onWriteFailed(e);
+            for (Pending p : batch) complete(p, false);
+            failPending();
+            return;
+        }
+        for (Pending p : batch) complete(p, false);
+        failPending();
+    }
+
+    private void failPending() {
+        Pending p;
+        while ((p = queue.poll()) != null) complete(p, false);
+    }
+
+    private static void complete(Pending p, boolean ok) {
+        if (p.callback == null) return; // в том числе CLOSE_MARKER
+        try {
+            p.callback.onComplete(ok);
+        } catch (Exception e) {
+            Log.e(TAG, "Error delivering send callback", e);
+        }
+    }
+}
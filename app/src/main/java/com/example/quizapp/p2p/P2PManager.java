@@ -1,8 +1,10 @@
 package com.example.quizapp.p2p;
 
 import android.content.Context;
+
 import java.io.Serializable;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface P2PManager {
 
@@ -16,10 +18,48 @@ public interface P2PManager {
         void onDeviceLost(String deviceAddress); // Добавлено, чтобы исправить ошибку
     }
 
+    // Сверка банков вопросов: транспорт сам отвечает на REQUEST_BANK_HASH строкой BANK_HASH:<отпечаток>;
+    // REQUEST_QUESTIONS — клиент не нашёл у себя вопросы по content_hash и просит полный набор
+    String REQUEST_BANK_HASH = "REQUEST_BANK_HASH";
+    String BANK_HASH_PREFIX = "BANK_HASH:";
+    String REQUEST_QUESTIONS = "REQUEST_QUESTIONS";
+
+    /**
+     * Отпечаток банка для ответа на REQUEST_BANK_HASH; транспорт получает его при создании и в базу сам не ходит.
+     * Первый расчёт хеширует весь банк, поэтому источник не блокирует: ответ уходит из callback,
+     * а не из потока чтения или Selector транспорта.
+     */
+    interface BankHashSource {
+        /** callback — на потоке источника; null, если банк прочитать не удалось. */
+        void loadBankHash(Consumer<String> callback);
+    }
+
+    /** Ответ на REQUEST_BANK_HASH, общий для транспортов; пустой отпечаток, если банк прочитать не удалось. */
+    static String bankHashReply(String hash) {
+        return BANK_HASH_PREFIX + (hash != null ? hash : "");
+    }
+
+    // Результат отправки; вызывается в потоке записи транспорта
+    interface SendCallback {
+        void onComplete(boolean sent);
+    }
+
     void initialize(Context context, ConnectionListener listener);
     void startDiscovery();
     void connect(String deviceAddress);
-    void sendMessage(Serializable data);
+    /** Не блокирует: сообщение ставится в исходящую очередь соединения. */
+    void sendMessage(Serializable data, SendCallback callback);
+    default void sendMessage(Serializable data) {
+        sendMessage(data, null);
+    }
+    /** Метрики исходящей очереди или null, если соединения нет. */
+    OutboundQueue.Metrics getOutboundMetrics();
+    /** RTT соединения по heartbeat или null, если соединения нет. */
+    Heartbeat.RttStats getRttStats();
+    /** Период heartbeat и число пропущенных ответов до onDisconnected; действует со следующего соединения. */
+    void setHeartbeatConfig(Heartbeat.Config config);
+    /** Пытается заново поднять соединение с последним соперником после обрыва; не блокирует, итог — onConnected. */
+    void reconnect();
     void stop();
 
     List<DiscoveredDevice> getDiscoveredDevices();
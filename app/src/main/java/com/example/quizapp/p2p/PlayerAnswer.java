@@ -8,15 +8,25 @@ import java.io.Serializable;
 public class PlayerAnswer implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    /** reactionTimeMs ответа от версии без игровых часов. */
+    public static final int UNKNOWN_REACTION_TIME = -1;
+
     public final int questionIndex;
     public final int selectedOption;
     public final boolean isCorrect;
     public final boolean isLocalPlayer; // Для отметки ответа в кружочках
+    public final int reactionTimeMs; // От показа вопроса до ответа по GameClock; по таймауту — всё время на ответ
 
     public PlayerAnswer(int questionIndex, int selectedOption, boolean isCorrect, boolean isLocalPlayer) {
+        this(questionIndex, selectedOption, isCorrect, isLocalPlayer, UNKNOWN_REACTION_TIME);
+    }
+
+    public PlayerAnswer(int questionIndex, int selectedOption, boolean isCorrect, boolean isLocalPlayer,
+                        int reactionTimeMs) {
         this.questionIndex = questionIndex;
         this.selectedOption = selectedOption;
         this.isCorrect = isCorrect;
         this.isLocalPlayer = isLocalPlayer;
+        this.reactionTimeMs = reactionTimeMs;
     }
 }
\ No newline at end of file
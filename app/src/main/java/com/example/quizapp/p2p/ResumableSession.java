@@ -0,0 +1,461 @@
+package com.example.quizapp.p2p;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.quizapp.p2p.LinkMessages.Ack;
+import com.example.quizapp.p2p.LinkMessages.Data;
+import com.example.quizapp.p2p.LinkMessages.Hello;
+
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResumableSession — сессия поверх транспорта P2PManager, переживающая кратковременные обрывы.
+ *
+ * Особенности:
+ * - каждое сообщение приложения получает номер (seq) и лежит в буфере повторной отправки, пока соперник
+ *   его не подтвердит; подтверждение едет в каждом DATA или отдельным ACK не позже ackDelayMs
+ * - обрыв транспорта приложению не передаётся: сессия до resumeTimeoutMs раз в retryIntervalMs просит
+ *   транспорт переподключиться и шлёт HELLO; отправленное в это время копится в буфере
+ * - HELLO несёт id сессий обеих сторон и номер последнего принятого сообщения: после переподключения
+ *   уходит только неподтверждённый хвост, повторы получатель отбрасывает по seq
+ * - буфер ограничен maxUnacked: при переполнении отправка отклоняется (колбэк false)
+ * - колбэк отправки вызывается, когда сообщение записано в транспорт (возможно, после переподключения),
+ *   и false — только если сессия закрылась раньше
+ * - восстановиться не удалось (истёк таймаут, соперник начал новую сессию) — приложение получает
+ *   onDisconnected, как без сессии
+ * - новое подключение транспорта после закрытия (cleanup, неудачное восстановление) начинает новую сессию
+ * - REQUEST_PLAYER_NAME и REQUEST_BANK_HASH идут мимо сессии: на них отвечает транспорт соперника,
+ *   а ответы (строки без номера) передаются приложению как есть
+ */
+public class ResumableSession implements P2PManager {
+
+    private static final String TAG = "ResumableSession";
+    // Отдельный ACK, если приняли столько сообщений и сами ничего не отправляли
+    private static final int ACK_EVERY = 16;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ResumableSession");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static final class Config {
+        public static final Config DEFAULT = new Config(10_000, 500, 100, 256);
+
+        public final long resumeTimeoutMs;
+        public final long retryIntervalMs;
+        public final long ackDelayMs;
+        public final int maxUnacked;
+
+        public Config(long resumeTimeoutMs, long retryIntervalMs, long ackDelayMs, int maxUnacked) {
+            this.resumeTimeoutMs = resumeTimeoutMs;
+            this.retryIntervalMs = retryIntervalMs;
+            this.ackDelayMs = ackDelayMs;
+            this.maxUnacked = maxUnacked;
+        }
+    }
+
+    private enum State {
+        IDLE,        // транспорт ещё не подключался
+        HANDSHAKE,   // подключились, ждём HELLO соперника
+        ESTABLISHED,
+        SUSPENDED,   // обрыв, ждём переподключения
+        CLOSED
+    }
+
+    private static final class Outgoing {
+        final int seq;
+        final Serializable payload;
+        SendCallback callback; // null после первой успешной записи
+
+        Outgoing(int seq, Serializable payload, SendCallback callback) {
+            this.seq = seq;
+            this.payload = payload;
+            this.callback = callback;
+        }
+    }
+
+    private final P2PManager transport;
+    private final Config config;
+    private final SecureRandom random = new SecureRandom();
+    private final ConnectionListener transportListener = new TransportListener();
+    private volatile ConnectionListener listener;
+
+    // Состояние — под блокировкой this
+    private State state = State.IDLE;
+    private long sessionId;
+    private long peerSessionId;
+    private int nextSeq = 1;
+    private int received;
+    private int ackSent;
+    private int resyncRequestedAt = -1;
+    private final ArrayDeque<Outgoing> unacked = new ArrayDeque<>();
+    private boolean connectedReported;
+    private String lostReason;
+    private ScheduledFuture<?> tick;
+    private ScheduledFuture<?> ackTimer;
+    private ScheduledFuture<?> resumeDeadline;
+    private int resumes;
+    private long retransmitted;
+
+    public ResumableSession(P2PManager transport) {
+        this(transport, Config.DEFAULT);
+    }
+
+    public ResumableSession(P2PManager transport, Config config) {
+        this.transport = transport;
+        this.config = config;
+        reset();
+    }
+
+    /** Транспорт под сессией — для настроек, которых нет в P2PManager (режим хоста Bluetooth). */
+    public P2PManager getTransport() {
+        return transport;
+    }
+
+    // P2PManager
+
+    @Override
+    public void initialize(Context context, ConnectionListener listener) {
+        this.listener = listener;
+        transport.initialize(context, transportListener);
+    }
+
+    @Override
+    public void sendMessage(Serializable data, SendCallback callback) {
+        if (REQUEST_BANK_HASH.equals(data) || "REQUEST_PLAYER_NAME".equals(data)) {
+            transport.sendMessage(data, callback);
+            return;
+        }
+        synchronized (this) {
+            if (state != State.CLOSED && unacked.size() < config.maxUnacked) {
+                Outgoing out = new Outgoing(nextSeq++, data, callback);
+                unacked.addLast(out);
+                // Вне ESTABLISHED сообщение уйдёт при восстановлении
+                if (state == State.ESTABLISHED) transmit(out);
+                return;
+            }
+            Log.w(TAG, state == State.CLOSED ? "Сессия закрыта, сообщение отброшено"
+                    : "Буфер повторной отправки полон (" + config.maxUnacked + "), сообщение отброшено");
+        }
+        if (callback != null) callback.onComplete(false);
+    }
+
+    @Override
+    public void cleanup() {
+        close();
+        transport.cleanup();
+    }
+
+    @Override
+    public void stop() {
+        close();
+        transport.stop();
+    }
+
+    @Override
+    public void reconnect() {
+        transport.reconnect();
+    }
+
+    @Override public void startDiscovery() { transport.startDiscovery(); }
+    @Override public void connect(String deviceAddress) { transport.connect(deviceAddress); }
+    @Override public void connectTo(String deviceAddress) { transport.connectTo(deviceAddress); }
+    @Override public void stopDiscovery() { transport.stopDiscovery(); }
+    @Override public OutboundQueue.Metrics getOutboundMetrics() { return transport.getOutboundMetrics(); }
+    @Override public Heartbeat.RttStats getRttStats() { return transport.getRttStats(); }
+    @Override public void setHeartbeatConfig(Heartbeat.Config config) { transport.setHeartbeatConfig(config); }
+    @Override public List<DiscoveredDevice> getDiscoveredDevices() { return transport.getDiscoveredDevices(); }
+    @Override public ConnectionType getConnectionType() { return transport.getConnectionType(); }
+    @Override public boolean isEnabled() { return transport.isEnabled(); }
+
+    // Исходящие
+
+    /** Под блокировкой: порядок записи в транспорт совпадает с порядком seq. */
+    private void transmit(Outgoing out) {
+        ackSent = received;
+        cancelAckTimer();
+        transport.sendMessage(new Data(out.seq, received, out.payload), sent -> onTransmitted(out, sent));
+    }
+
+    private void onTransmitted(Outgoing out, boolean sent) {
+        SendCallback callback;
+        synchronized (this) {
+            if (!sent) {
+                // Запись не удалась, хотя транспорт жив (переполнена очередь) — в потоке дыра;
+                // HELLO из tick() сверит номера и повторит хвост
+                if (state == State.ESTABLISHED) {
+                    Log.w(TAG, "DATA " + out.seq + " не записан, пересинхронизация");
+                    state = State.SUSPENDED;
+                    armResumeDeadline("Не удалось отправить данные сопернику.");
+                }
+                return;
+            }
+            callback = out.callback;
+            out.callback = null;
+        }
+        if (callback != null) callback.onComplete(true);
+    }
+
+    private synchronized void sendHello(boolean reply) {
+        transport.sendMessage(new Hello(sessionId, peerSessionId, received, reply), null);
+        ackSent = received;
+    }
+
+    // Входящие
+
+    private void onData(Data data) {
+        Serializable deliver = null;
+        synchronized (this) {
+            if (state == State.CLOSED) return;
+            acknowledge(data.ack);
+            if (data.seq == received + 1) {
+                received = data.seq;
+                deliver = data.payload;
+                if (received - ackSent >= ACK_EVERY) sendAck();
+                else scheduleAck();
+            } else if (data.seq > received + 1) {
+                // Пропуск возможен, только если соперник не смог что-то записать — просим повторить
+                if (resyncRequestedAt != received) {
+                    resyncRequestedAt = received;
+                    Log.w(TAG, "Пропуск: ждали " + (received + 1) + ", пришло " + data.seq);
+                    sendHello(false);
+                }
+            } else {
+                scheduleAck(); // повтор после переподключения
+            }
+        }
+        ConnectionListener l = listener;
+        if (deliver != null && l != null) l.onDataReceived(deliver);
+    }
+
+    private void onHello(Hello hello) {
+        synchronized (this) {
+            if (state == State.CLOSED) return;
+            boolean sameSession = peerSessionId == 0 || hello.sessionId == peerSessionId;
+            boolean knowsUs = hello.peerSessionId == 0 || hello.peerSessionId == sessionId;
+            if (!sameSession || !knowsUs) {
+                Log.w(TAG, "Соперник начал новую сессию — восстановить матч нельзя");
+                giveUp("Соперник начал новую сессию.");
+                return;
+            }
+            peerSessionId = hello.sessionId;
+            acknowledge(hello.received);
+
+            boolean resuming = state != State.ESTABLISHED;
+            if (state == State.SUSPENDED || (state == State.ESTABLISHED && !hello.reply)) resumes++;
+            // Новый HELLO — у соперника новое соединение: всё неподтверждённое могло пропасть
+            if (!hello.reply || resuming) {
+                for (Outgoing out : unacked) {
+                    transmit(out);
+                    retransmitted++;
+                }
+                if (!unacked.isEmpty()) {
+                    Log.d(TAG, "Повторно отправлено " + unacked.size() + " сообщений начиная с " + unacked.peekFirst().seq);
+                }
+            }
+            state = State.ESTABLISHED;
+            resyncRequestedAt = -1;
+            if (resumeDeadline != null) {
+                resumeDeadline.cancel(false);
+                resumeDeadline = null;
+                Log.d(TAG, "Сессия восстановлена: восстановлений " + resumes + ", повторено " + retransmitted);
+            }
+            if (!hello.reply) sendHello(true);
+        }
+    }
+
+    private void acknowledge(int ack) {
+        while (!unacked.isEmpty() && unacked.peekFirst().seq <= ack && unacked.peekFirst().callback == null) {
+            unacked.pollFirst();
+        }
+    }
+
+    private void scheduleAck() {
+        if (ackTimer != null) return;
+        ackTimer = TIMER.schedule(() -> {
+            synchronized (this) {
+                ackTimer = null;
+                if (state == State.ESTABLISHED && received != ackSent) sendAck();
+            }
+        }, config.ackDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendAck() {
+        cancelAckTimer();
+        ackSent = received;
+        transport.sendMessage(new Ack(received), null);
+    }
+
+    private void cancelAckTimer() {
+        if (ackTimer != null) {
+            ackTimer.cancel(false);
+            ackTimer = null;
+        }
+    }
+
+    // Жизненный цикл соединения
+
+    /** Под блокировкой: новая сессия с нуля. */
+    private void reset() {
+        do {
+            sessionId = random.nextLong();
+        } while (sessionId == 0);
+        state = State.IDLE;
+        peerSessionId = 0;
+        nextSeq = 1;
+        received = 0;
+        ackSent = 0;
+        resyncRequestedAt = -1;
+        connectedReported = false;
+        tick = null;
+        resumeDeadline = null;
+    }
+
+    private void onTransportConnected() {
+        synchronized (this) {
+            if (state != State.ESTABLISHED) state = State.HANDSHAKE;
+            if (tick == null) {
+                tick = TIMER.scheduleAtFixedRate(this::onTick, config.retryIntervalMs, config.retryIntervalMs,
+                        TimeUnit.MILLISECONDS);
+            }
+            sendHello(false);
+        }
+    }
+
+    private synchronized void onTransportLost(String reason) {
+        if (state == State.CLOSED) return;
+        Log.w(TAG, "Транспорт потерян (" + reason + "), ждём переподключения до " + config.resumeTimeoutMs + " мс");
+        state = State.SUSPENDED;
+        armResumeDeadline(reason);
+        transport.reconnect();
+    }
+
+    private void armResumeDeadline(String reason) {
+        lostReason = reason;
+        if (resumeDeadline != null) return;
+        resumeDeadline = TIMER.schedule(() -> {
+            synchronized (this) {
+                if (state != State.SUSPENDED && state != State.HANDSHAKE) return;
+                giveUp(lostReason);
+            }
+        }, config.resumeTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void onTick() {
+        synchronized (this) {
+            if (state == State.SUSPENDED) transport.reconnect();
+            // Транспорт мог подключиться, не сообщив об этом (Wi-Fi Direct поднимает сокет позже onConnected)
+            if (state == State.SUSPENDED || state == State.HANDSHAKE) sendHello(false);
+        }
+    }
+
+    /** Под блокировкой: закрывает сессию и сообщает приложению об обрыве (вне блокировки). */
+    private void giveUp(String reason) {
+        List<SendCallback> failed = closeLocked();
+        TIMER.execute(() -> {
+            for (SendCallback callback : failed) callback.onComplete(false);
+            ConnectionListener l = listener;
+            if (l != null) l.onDisconnected(reason);
+        });
+    }
+
+    private void close() {
+        List<SendCallback> failed;
+        synchronized (this) {
+            failed = closeLocked();
+        }
+        for (SendCallback callback : failed) callback.onComplete(false);
+    }
+
+    private List<SendCallback> closeLocked() {
+        List<SendCallback> failed = new ArrayList<>();
+        if (state == State.CLOSED) return failed;
+        state = State.CLOSED;
+        if (tick != null) tick.cancel(false);
+        if (resumeDeadline != null) resumeDeadline.cancel(false);
+        cancelAckTimer();
+        for (Outgoing out : unacked) {
+            if (out.callback != null) failed.add(out.callback);
+        }
+        unacked.clear();
+        return failed;
+    }
+
+    private class TransportListener implements ConnectionListener {
+        @Override
+        public void onConnected(String deviceName, ConnectionType type) {
+            boolean first;
+            synchronized (ResumableSession.this) {
+                if (state == State.CLOSED) reset();
+                first = !connectedReported;
+                connectedReported = true;
+            }
+            onTransportConnected();
+            ConnectionListener l = listener;
+            if (first && l != null) l.onConnected(deviceName, type);
+        }
+
+        @Override
+        public void onConnectionFailed(String message) {
+            boolean connecting;
+            synchronized (ResumableSession.this) {
+                connecting = state == State.IDLE || state == State.CLOSED;
+            }
+            ConnectionListener l = listener;
+            if (connecting && l != null) l.onConnectionFailed(message);
+            else Log.d(TAG, "Ошибка транспорта во время сессии: " + message);
+        }
+
+        @Override
+        public void onDisconnected(String reason) {
+            boolean idle;
+            synchronized (ResumableSession.this) {
+                idle = state == State.IDLE || state == State.CLOSED;
+            }
+            if (idle) {
+                ConnectionListener l = listener;
+                if (l != null) l.onDisconnected(reason);
+                return;
+            }
+            onTransportLost(reason);
+        }
+
+        @Override
+        public void onDataReceived(Serializable data) {
+            if (data instanceof Data) {
+                onData((Data) data);
+            } else if (data instanceof Ack) {
+                synchronized (ResumableSession.this) {
+                    acknowledge(((Ack) data).received);
+                }
+            } else if (data instanceof Hello) {
+                onHello((Hello) data);
+            } else {
+                ConnectionListener l = listener;
+                if (l != null) l.onDataReceived(data);
+            }
+        }
+
+        @Override
+        public void onDeviceFound(String deviceName, String deviceAddress) {
+            ConnectionListener l = listener;
+            if (l != null) l.onDeviceFound(deviceName, deviceAddress);
+        }
+
+        @Override
+        public void onDeviceLost(String deviceAddress) {
+            ConnectionListener l = listener;
+            if (l != null) l.onDeviceLost(deviceAddress);
+        }
+    }
+}
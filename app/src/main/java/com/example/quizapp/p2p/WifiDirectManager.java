@@ -21,16 +21,15 @@ import androidx.core.content.ContextCompat;
 import com.example.quizapp.QuizApplication;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 public class WifiDirectManager implements P2PManager {
@@ -40,6 +39,7 @@ public class WifiDirectManager implements P2PManager {
 
     private Context context;
     private ConnectionListener listener;
+    private final BankHashSource bankHashSource;
 
     private final WifiP2pManager manager;
     private final WifiP2pManager.Channel channel;
@@ -54,13 +54,21 @@ public class WifiDirectManager implements P2PManager {
     private ConnectionType type = ConnectionType.WIFI_DIRECT;
 
     private ExecutorService executor = Executors.newSingleThreadExecutor();
-    private ServerThread serverThread;
+    // Владелец группы: неблокирующий сервер; в игре на двоих принимает одного клиента
+    private LobbyServer lobby;
+    private volatile int lobbyCapacity = 1;
     private ClientThread clientThread;
-    private DataTransferThread dataTransferThread;
+    private FramedLink dataLink;
+    // Адрес группы и роль — для reconnect(); сокет поднимается задачей socketTask
+    private InetAddress groupOwnerAddress;
+    private boolean groupOwnerSide;
+    private Future<?> socketTask;
+    private volatile Heartbeat.Config heartbeatConfig = Heartbeat.Config.DEFAULT;
 
 
-    public WifiDirectManager() {
+    public WifiDirectManager(BankHashSource bankHashSource) {
         context = null; // Будет установлено в initialize
+        this.bankHashSource = bankHashSource;
         manager = (WifiP2pManager) QuizApplication.getInstance().getSystemService(Context.WIFI_P2P_SERVICE);
         channel = manager.initialize(QuizApplication.getInstance(), QuizApplication.getInstance().getMainLooper(), null);
 
@@ -188,34 +196,93 @@ public class WifiDirectManager implements P2PManager {
     }
 
     @Override
-    public void sendMessage(Serializable data) {
-        if (dataTransferThread != null) {
-            dataTransferThread.write(data);
+    public void sendMessage(Serializable data, SendCallback callback) {
+        LobbyServer server = lobby;
+        if (server != null) {
+            // Колбэк — по постановке в очереди клиентов: запись идёт в потоке Selector
+            boolean queued = server.broadcast(data);
+            if (!queued) Log.e(TAG, "Cannot send message: no clients in lobby.");
+            if (callback != null) callback.onComplete(queued);
+            return;
+        }
+        FramedLink link = dataLink;
+        if (link != null) {
+            link.send(data, callback);
         } else {
-            Log.e(TAG, "Cannot send message: DataTransferThread is not running.");
+            Log.e(TAG, "Cannot send message: data link is not open.");
+            if (callback != null) callback.onComplete(false);
         }
     }
 
+    @Override
+    public OutboundQueue.Metrics getOutboundMetrics() {
+        LobbyServer server = lobby;
+        if (server != null) return server.getOutboundMetrics();
+        FramedLink link = dataLink;
+        return link != null ? link.getOutboundMetrics() : null;
+    }
+
+    @Override
+    public Heartbeat.RttStats getRttStats() {
+        LobbyServer server = lobby;
+        if (server != null) return server.getRttStats();
+        FramedLink link = dataLink;
+        return link != null ? link.getRttStats() : null;
+    }
+
+    @Override
+    public void setHeartbeatConfig(Heartbeat.Config config) {
+        heartbeatConfig = config;
+    }
+
     @Override
     public void stop() {
         Log.d(TAG, "Stopping all Wifi Direct threads.");
-        if (serverThread != null) {
-            serverThread.cancel();
-            serverThread = null;
-        }
         if (clientThread != null) {
             clientThread.cancel();
             clientThread = null;
         }
-        if (dataTransferThread != null) {
-            dataTransferThread.cancel();
-            dataTransferThread = null;
+        FramedLink link;
+        LobbyServer server;
+        synchronized (this) {
+            link = dataLink;
+            dataLink = null;
+            server = lobby;
+            lobby = null;
+            groupOwnerAddress = null;
         }
+        if (link != null) link.close();
+        if (server != null) server.close();
         executor.shutdownNow();
         executor = Executors.newSingleThreadExecutor();
         disconnect();
     }
 
+    /**
+     * Заново поднимает сокет внутри уже собранной группы: клиент подключается снова,
+     * владелец и так принимает клиентов, пока жив LobbyServer.
+     */
+    @Override
+    public synchronized void reconnect() {
+        if (groupOwnerAddress == null) return;
+        if (groupOwnerSide) {
+            startLobby();
+            return;
+        }
+        if (dataLink != null || (socketTask != null && !socketTask.isDone())) return;
+        Log.d(TAG, "reconnect(): connecting to " + groupOwnerAddress);
+        clientThread = new ClientThread(groupOwnerAddress);
+        socketTask = executor.submit(clientThread);
+    }
+
+    /**
+     * Сколько клиентов принимает владелец группы (1..LobbyServer.MAX_CLIENTS); действует со следующего
+     * запуска сервера. Матч на двоих и ResumableSession рассчитаны на одного соперника.
+     */
+    public void setLobbyCapacity(int capacity) {
+        lobbyCapacity = Math.max(1, Math.min(LobbyServer.MAX_CLIENTS, capacity));
+    }
+
     @Override
     public List<DiscoveredDevice> getDiscoveredDevices() {
         return discoveredDevicesUI;
@@ -297,13 +364,14 @@ public class WifiDirectManager implements P2PManager {
             Log.d(TAG, "Connection info available: " + info.isGroupOwner + ", " + info.groupFormed);
 
             final InetAddress groupOwnerAddress = info.groupOwnerAddress;
+            synchronized (WifiDirectManager.this) {
+                WifiDirectManager.this.groupOwnerAddress = info.groupFormed ? groupOwnerAddress : null;
+                groupOwnerSide = info.isGroupOwner;
+            }
 
             if (info.groupFormed && info.isGroupOwner) {
                 Log.d(TAG, "Device is Group Owner (Server).");
-                if (serverThread == null) {
-                    serverThread = new ServerThread(groupOwnerAddress);
-                    executor.execute(serverThread);
-                }
+                startLobby();
                 // Устанавливаем флаг groupOwner в синглтоне
                 P2PConnectionSingleton.getInstance().setGroupOwner(true);
                 listener.onConnected("Хост", type);
@@ -311,7 +379,7 @@ public class WifiDirectManager implements P2PManager {
                 Log.d(TAG, "Device is Client.");
                 if (clientThread == null) {
                     clientThread = new ClientThread(groupOwnerAddress);
-                    executor.execute(clientThread);
+                    socketTask = executor.submit(clientThread);
                 }
                 P2PConnectionSingleton.getInstance().setGroupOwner(false);
                 listener.onConnected("Клиент", type);
@@ -374,51 +442,90 @@ public class WifiDirectManager implements P2PManager {
     }
 
     // --- Data exchange threads (unchanged) ---
-    private void dataExchangeConnected(Socket socket) {
-        Log.d(TAG, "Socket connected. Starting DataTransferThread.");
-        if (dataTransferThread != null) {
-            dataTransferThread.cancel();
+    private synchronized void dataExchangeConnected(Socket socket) {
+        Log.d(TAG, "Socket connected. Starting data link.");
+        FramedLink link;
+        try {
+            // Кадры мелкие: без задержки Нагла ответ уходит сразу
+            socket.setTcpNoDelay(true);
+            link = new FramedLink("WifiDirect", socket.getInputStream(), socket.getOutputStream(), socket,
+                    heartbeatConfig, linkListener);
+        } catch (IOException e) {
+            Log.e(TAG, "Data link setup failed", e);
+            try { socket.close(); } catch (IOException e2) { Log.e(TAG, "Socket close failed.", e2); }
+            listener.onConnectionFailed("Ошибка соединения данных Wi-Fi Direct.");
+            return;
         }
-        dataTransferThread = new DataTransferThread(socket, listener);
-        dataTransferThread.start();
+        FramedLink old = dataLink;
+        dataLink = link;
+        link.start();
+        if (old != null) old.close();
     }
 
-    private class ServerThread implements Runnable {
-        private final InetAddress address;
-        private ServerSocket serverSocket;
+    private synchronized void startLobby() {
+        if (lobby != null) return;
+        LobbyServer server = new LobbyServer("WifiDirectLobby", new InetSocketAddress(SERVER_PORT), lobbyCapacity,
+                heartbeatConfig, lobbyListener);
+        try {
+            server.start();
+            lobby = server;
+        } catch (IOException e) {
+            Log.e(TAG, "Lobby server failed: " + e.getMessage());
+            server.close();
+            listener.onConnectionFailed("Ошибка при старте сервера: " + e.getMessage());
+        }
+    }
 
-        public ServerThread(InetAddress address) {
-            this.address = address;
+    // Кадры клиентов лобби (поток Selector): на REQUEST_BANK_HASH отвечает транспорт, остальное уходит слушателю
+    private final LobbyServer.Listener lobbyListener = new LobbyServer.Listener() {
+        @Override
+        public void onClientJoined(int clientId) {
+            Log.d(TAG, "Lobby client " + clientId + " joined.");
         }
 
         @Override
-        public void run() {
-            try {
-                serverSocket = new ServerSocket(SERVER_PORT);
-                Log.d(TAG, "Server socket created on port " + SERVER_PORT);
+        public void onFrame(int clientId, Serializable frame) {
+            LobbyServer server = lobby;
+            if (REQUEST_BANK_HASH.equals(frame)) {
+                // Selector обслуживает всё лобби: отпечаток считается источником, ответ — из его callback
+                if (server != null) {
+                    bankHashSource.loadBankHash(hash -> server.sendTo(clientId, P2PManager.bankHashReply(hash)));
+                }
+                return;
+            }
+            listener.onDataReceived(frame);
+        }
 
-                Socket clientSocket = serverSocket.accept();
-                Log.d(TAG, "Client connected to server.");
-                dataExchangeConnected(clientSocket);
+        @Override
+        public void onClientLeft(int clientId, boolean peerDead) {
+            LobbyServer server = lobby;
+            if (server != null && server.clientCount() > 0) return;
+            FramedLink.postToMain(() -> listener.onDisconnected(
+                    peerDead ? "Соперник не отвечает." : "Потеряно соединение данных Wi-Fi Direct."));
+        }
+    };
 
-            } catch (IOException e) {
-                Log.e(TAG, "ServerThread failed: " + e.getMessage());
-                listener.onConnectionFailed("Ошибка при старте сервера: " + e.getMessage());
-            } finally {
-                cancel();
+    // Кадры соединения: на REQUEST_BANK_HASH отвечает транспорт, остальное уходит слушателю
+    private final FramedLink.Listener linkListener = new FramedLink.Listener() {
+        @Override
+        public void onFrame(FramedLink link, Serializable frame) {
+            if (REQUEST_BANK_HASH.equals(frame)) {
+                bankHashSource.loadBankHash(hash -> link.send(P2PManager.bankHashReply(hash), null));
+                return;
             }
+            listener.onDataReceived(frame);
         }
 
-        public void cancel() {
-            try {
-                if (serverSocket != null) {
-                    serverSocket.close();
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Server socket close failed.", e);
+        @Override
+        public void onClosed(FramedLink link, boolean peerDead, IOException cause) {
+            // Соединение, уже заменённое новым или остановленное stop(), об обрыве не сообщает
+            synchronized (WifiDirectManager.this) {
+                if (dataLink != link) return;
+                dataLink = null;
             }
+            listener.onDisconnected(peerDead ? "Соперник не отвечает." : "Потеряно соединение данных Wi-Fi Direct.");
         }
-    }
+    };
 
     private class ClientThread implements Runnable {
         private final InetAddress hostAddress;
@@ -452,66 +559,4 @@ public class WifiDirectManager implements P2PManager {
             }
         }
     }
-
-    private class DataTransferThread extends Thread {
-        private final Socket mmSocket;
-        private final ConnectionListener mmListener;
-        private final ObjectOutputStream mmOutStream;
-        private final ObjectInputStream mmInStream;
-
-        public DataTransferThread(Socket socket, ConnectionListener listener) {
-            mmSocket = socket;
-            mmListener = listener;
-            ObjectInputStream tmpIn = null;
-            ObjectOutputStream tmpOut = null;
-
-            try {
-                tmpOut = new ObjectOutputStream(mmSocket.getOutputStream());
-                tmpIn = new ObjectInputStream(mmSocket.getInputStream());
-            } catch (IOException e) {
-                Log.e(TAG, "DataTransferThread: stream setup failed", e);
-            }
-
-            mmOutStream = tmpOut;
-            mmInStream = tmpIn;
-        }
-
-        public void run() {
-            Log.d(TAG, "DataTransferThread started. Ready for I/O.");
-
-            while (true) {
-                try {
-                    Serializable receivedData = (Serializable) mmInStream.readObject();
-                    mmListener.onDataReceived(receivedData);
-
-                } catch (IOException e) {
-                    Log.e(TAG, "DataTransferThread: read failed", e);
-                    mmListener.onDisconnected("Потеряно соединение данных Wi-Fi Direct.");
-                    break;
-                } catch (ClassNotFoundException e) {
-                    Log.e(TAG, "Received object of unknown class", e);
-                }
-            }
-        }
-
-        public void write(Serializable data) {
-            try {
-                mmOutStream.writeObject(data);
-                mmOutStream.flush();
-            } catch (IOException e) {
-                Log.e(TAG, "Exception during write", e);
-                mmListener.onConnectionFailed("Ошибка при отправке данных по Wi-Fi Direct.");
-            }
-        }
-
-        public void cancel() {
-            try {
-                if (mmOutStream != null) mmOutStream.close();
-                if (mmInStream != null) mmInStream.close();
-                if (mmSocket != null) mmSocket.close();
-            } catch (IOException e) {
-                Log.e(TAG, "DataTransferThread: close failed", e);
-            }
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,468 @@
+package com.example.quizapp.p2p;
+
+import com.example.quizapp.data.BankSyncMessage;
+import com.example.quizapp.data.Question;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WireCodec — компактный двоичный формат сообщений P2P вместо Java-сериализации.
+ *
+ * Кадр: [длина тела: int32 BE][тег: 1 байт][поля]. Длина включает тег.
+ * - STRING (PLAYER_NAME:..., REQUEST_PLAYER_NAME): utf
+ * - START_GAME: u16 число вопросов, на каждый — int32 id, u8 answerNum, utf вопрос, 4 x utf варианты
+ * - START_GAME_HASHES (START_GAME с long[] content_hash — банки совпадают): u16 число, int64 хеш на вопрос.
+ *   Тег 6 (START_GAME_IDS прежних версий, int32 id) больше не пишется и не читается
+ * - QUESTION_INDEX: int32
+ * - ANSWER_SUBMITTED: u16 questionIndex, i8 selectedOption, u8 флаги (1 — isCorrect, 2 — isLocalPlayer),
+ *   u16 reactionTimeMs (0xFFFF — неизвестно); поле в конце: старые версии его не пишут и, читая, пропускают
+ * - EMOTE_USED: utf
+ * - GAME_OVER: без полей
+ * - BANK_SYNC: u8 вид сообщения сверки, дальше по виду:
+ *   NODES — u8 уровень, int32 число, на узел u16 номер и int64 хеш;
+ *   LEAVES — u8 last, int32 число листьев, на лист u16 номер и int32 число хешей, int32 число хешей, int64 хеши;
+ *   WANT — int32 число, int64 хеши; ROWS — u16 число, на строку utf вопрос, 4 x utf варианты, u8 answerNum,
+ *   utf category, u8 difficulty, utf language; DONE, ABORT — без полей
+ * - PING, PONG (Heartbeat): int64 момент отправки пинга
+ * - SESSION_HELLO (ResumableSession): int64 id сессии, int64 id сессии соперника, int32 последний принятый seq,
+ *   u8 reply; SESSION_DATA: int32 seq, int32 ack, вложенное тело (тег и поля без длины); SESSION_ACK: int32 ack
+ * utf — u16 длина в байтах + UTF-8.
+ *
+ * Encoder и Decoder переиспользуют свои буферы; Encoder не выделяет память (ответ кодируется
+ * без единой аллокации, строки — посимвольно прямо в буфер). Экземпляры не потокобезопасны:
+ * по одному на поток записи и поток чтения соединения.
+ */
+public final class WireCodec {
+
+    /** Больше не бывает даже у START_GAME; защищает от мусора в потоке. */
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    static final byte TAG_STRING = 0;
+    static final byte TAG_START_GAME = 1;
+    static final byte TAG_QUESTION_INDEX = 2;
+    static final byte TAG_ANSWER_SUBMITTED = 3;
+    static final byte TAG_EMOTE_USED = 4;
+    static final byte TAG_GAME_OVER = 5;
+    static final byte TAG_BANK_SYNC = 7;
+    static final byte TAG_PING = 8;
+    static final byte TAG_PONG = 9;
+    static final byte TAG_SESSION_HELLO = 10;
+    static final byte TAG_SESSION_DATA = 11;
+    static final byte TAG_SESSION_ACK = 12;
+    static final byte TAG_START_GAME_HASHES = 13;
+
+    private static final int FLAG_CORRECT = 1;
+    private static final int FLAG_LOCAL_PLAYER = 2;
+    private static final int UNKNOWN_REACTION_TIME = 0xFFFF;
+    private static final int HEADER_LENGTH = 4;
+
+    private WireCodec() {
+    }
+
+    public static final class Encoder {
+        private byte[] buf = new byte[256];
+        private int pos;
+
+        /** Кодирует сообщение и пишет кадр одним вызовом write(). flush — на вызывающем. */
+        public void write(OutputStream out, Serializable message) throws IOException {
+            int length = encode(message);
+            out.write(buf, 0, length);
+        }
+
+        /**
+         * Кодирует сообщение во внутренний буфер.
+         * @return длина кадра; байты доступны через buffer() до следующего вызова
+         */
+        public int encode(Serializable message) {
+            pos = HEADER_LENGTH;
+            encodeBody(message);
+            int bodyLength = pos - HEADER_LENGTH;
+            buf[0] = (byte) (bodyLength >>> 24);
+            buf[1] = (byte) (bodyLength >>> 16);
+            buf[2] = (byte) (bodyLength >>> 8);
+            buf[3] = (byte) bodyLength;
+            return pos;
+        }
+
+        public byte[] buffer() {
+            return buf;
+        }
+
+        private void encodeBody(Serializable message) {
+            if (message instanceof String) {
+                putByte(TAG_STRING);
+                putUtf((String) message);
+            } else if (message instanceof GameDataModel) {
+                encodeModel((GameDataModel) message);
+            } else if (message instanceof LinkMessages.Ping) {
+                putByte(TAG_PING);
+                putLong(((LinkMessages.Ping) message).sentAtNanos);
+            } else if (message instanceof LinkMessages.Pong) {
+                putByte(TAG_PONG);
+                putLong(((LinkMessages.Pong) message).sentAtNanos);
+            } else if (message instanceof LinkMessages.Data) {
+                LinkMessages.Data data = (LinkMessages.Data) message;
+                putByte(TAG_SESSION_DATA);
+                putInt(data.seq);
+                putInt(data.ack);
+                encodeBody(data.payload);
+            } else if (message instanceof LinkMessages.Ack) {
+                putByte(TAG_SESSION_ACK);
+                putInt(((LinkMessages.Ack) message).received);
+            } else if (message instanceof LinkMessages.Hello) {
+                LinkMessages.Hello hello = (LinkMessages.Hello) message;
+                putByte(TAG_SESSION_HELLO);
+                putLong(hello.sessionId);
+                putLong(hello.peerSessionId);
+                putInt(hello.received);
+                putByte(hello.reply ? 1 : 0);
+            } else {
+                throw new IllegalArgumentException("Неподдерживаемое сообщение: " +
+                        (message == null ? "null" : message.getClass().getName()));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void encodeModel(GameDataModel model) {
+            switch (model.type) {
+                case START_GAME:
+                    if (model.data instanceof long[]) {
+                        putByte(TAG_START_GAME_HASHES);
+                        long[] hashes = (long[]) model.data;
+                        putShort(hashes.length);
+                        for (long hash : hashes) putLong(hash);
+                        break;
+                    }
+                    putByte(TAG_START_GAME);
+                    List<Question> questions = (List<Question>) model.data;
+                    putShort(questions.size());
+                    for (Question q : questions) {
+                        putInt(q.id);
+                        putByte(q.answerNum);
+                        putUtf(q.question);
+                        for (int i = 0; i < 4; i++) putUtf(q.options[i]);
+                    }
+                    break;
+                case QUESTION_INDEX:
+                    putByte(TAG_QUESTION_INDEX);
+                    putInt((Integer) model.data);
+                    break;
+                case ANSWER_SUBMITTED:
+                    putByte(TAG_ANSWER_SUBMITTED);
+                    PlayerAnswer answer = (PlayerAnswer) model.data;
+                    putShort(answer.questionIndex);
+                    putByte(answer.selectedOption);
+                    putByte((answer.isCorrect ? FLAG_CORRECT : 0) | (answer.isLocalPlayer ? FLAG_LOCAL_PLAYER : 0));
+                    putShort(answer.reactionTimeMs < 0 ? UNKNOWN_REACTION_TIME
+                            : Math.min(answer.reactionTimeMs, UNKNOWN_REACTION_TIME - 1));
+                    break;
+                case EMOTE_USED:
+                    putByte(TAG_EMOTE_USED);
+                    putUtf(((EmoteAction) model.data).emoteName);
+                    break;
+                case GAME_OVER:
+                    putByte(TAG_GAME_OVER);
+                    break;
+                case BANK_SYNC:
+                    putByte(TAG_BANK_SYNC);
+                    encodeBankSync((BankSyncMessage) model.data);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный тип: " + model.type);
+            }
+        }
+
+        private void encodeBankSync(BankSyncMessage m) {
+            putByte(m.kind.ordinal());
+            switch (m.kind) {
+                case NODES:
+                    putByte(m.level);
+                    putInt(m.indexes.length);
+                    for (int i = 0; i < m.indexes.length; i++) {
+                        putShort(m.indexes[i]);
+                        putLong(m.hashes[i]);
+                    }
+                    break;
+                case LEAVES:
+                    putByte(m.last ? 1 : 0);
+                    putInt(m.indexes.length);
+                    for (int i = 0; i < m.indexes.length; i++) {
+                        putShort(m.indexes[i]);
+                        putInt(m.counts[i]);
+                    }
+                    putLongs(m.hashes);
+                    break;
+                case WANT:
+                    putLongs(m.hashes);
+                    break;
+                case ROWS:
+                    putShort(m.rows.size());
+                    for (BankSyncMessage.Row row : m.rows) {
+                        putUtf(row.question);
+                        for (int i = 0; i < 4; i++) putUtf(row.options[i]);
+                        putByte(row.answerNum);
+                        putUtf(row.category);
+                        putByte(row.difficulty);
+                        putUtf(row.language);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                byte[] grown = new byte[Math.max(buf.length * 2, pos + extra)];
+                System.arraycopy(buf, 0, grown, 0, pos);
+                buf = grown;
+            }
+        }
+
+        private void putByte(int v) {
+            ensure(1);
+            buf[pos++] = (byte) v;
+        }
+
+        private void putShort(int v) {
+            if (v < 0 || v > 0xFFFF) throw new IllegalArgumentException("Не помещается в u16: " + v);
+            ensure(2);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        private void putInt(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        private void putLong(long v) {
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+
+        private void putLongs(long[] values) {
+            putInt(values.length);
+            ensure(values.length * 8);
+            for (long v : values) putLong(v);
+        }
+
+        /** UTF-8 без промежуточного byte[]: длина дописывается после кодирования. */
+        private void putUtf(String s) {
+            if (s == null) s = "";
+            ensure(2 + s.length() * 3);
+            int lengthPos = pos;
+            pos += 2;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[pos++] = (byte) (0xC0 | (c >> 6));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    if (Character.isSurrogate(c)) c = '?'; // одиночный суррогат
+                    buf[pos++] = (byte) (0xE0 | (c >> 12));
+                    buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            int length = pos - lengthPos - 2;
+            if (length > 0xFFFF) throw new IllegalArgumentException("Строка длиннее 65535 байт");
+            buf[lengthPos] = (byte) (length >>> 8);
+            buf[lengthPos + 1] = (byte) length;
+        }
+    }
+
+    public static final class Decoder {
+        private byte[] buf = new byte[256];
+        private int pos;
+        private int limit;
+
+        /** Читает один кадр. EOFException — поток закрыт, IOException — повреждённый кадр. */
+        public Serializable read(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_FRAME_LENGTH) throw new IOException("Некорректная длина кадра: " + length);
+            if (buf.length < length) buf = new byte[Math.max(length, buf.length * 2)];
+            in.readFully(buf, 0, length);
+            return decode(buf, 0, length);
+        }
+
+        /** Декодирует тело кадра (без 4 байт длины). */
+        public Serializable decode(byte[] data, int offset, int length) throws IOException {
+            byte[] saved = buf;
+            buf = data;
+            pos = offset;
+            limit = offset + length;
+            try {
+                return decodeBody();
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Кадр обрезан", e);
+            } finally {
+                buf = saved;
+            }
+        }
+
+        private Serializable decodeBody() throws IOException {
+            byte tag = getByte();
+            switch (tag) {
+                case TAG_STRING:
+                    return getUtf();
+                case TAG_START_GAME: {
+                    int count = getShort();
+                    ArrayList<Question> questions = new ArrayList<>(count);
+                    for (int n = 0; n < count; n++) {
+                        Question q = new Question();
+                        q.id = getInt();
+                        q.answerNum = getByte();
+                        q.question = getUtf();
+                        q.options = new String[4];
+                        for (int i = 0; i < 4; i++) q.options[i] = getUtf();
+                        questions.add(q);
+                    }
+                    return new GameDataModel(GameDataModel.DataType.START_GAME, questions);
+                }
+                case TAG_START_GAME_HASHES: {
+                    long[] hashes = new long[getShort()];
+                    for (int i = 0; i < hashes.length; i++) hashes[i] = getLong();
+                    return new GameDataModel(GameDataModel.DataType.START_GAME, hashes);
+                }
+                case TAG_QUESTION_INDEX:
+                    return new GameDataModel(GameDataModel.DataType.QUESTION_INDEX, getInt());
+                case TAG_ANSWER_SUBMITTED: {
+                    int questionIndex = getShort();
+                    int selectedOption = getByte();
+                    int flags = getByte();
+                    int reaction = pos < limit ? getShort() : UNKNOWN_REACTION_TIME;
+                    return new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED, new PlayerAnswer(
+                            questionIndex, selectedOption, (flags & FLAG_CORRECT) != 0, (flags & FLAG_LOCAL_PLAYER) != 0,
+                            reaction == UNKNOWN_REACTION_TIME ? PlayerAnswer.UNKNOWN_REACTION_TIME : reaction));
+                }
+                case TAG_EMOTE_USED:
+                    return new GameDataModel(GameDataModel.DataType.EMOTE_USED, new EmoteAction(getUtf()));
+                case TAG_GAME_OVER:
+                    return new GameDataModel(GameDataModel.DataType.GAME_OVER, null);
+                case TAG_BANK_SYNC:
+                    return new GameDataModel(GameDataModel.DataType.BANK_SYNC, decodeBankSync());
+                case TAG_PING:
+                    return new LinkMessages.Ping(getLong());
+                case TAG_PONG:
+                    return new LinkMessages.Pong(getLong());
+                case TAG_SESSION_HELLO:
+                    return new LinkMessages.Hello(getLong(), getLong(), getInt(), getByte() != 0);
+                case TAG_SESSION_DATA: {
+                    int seq = getInt();
+                    int ack = getInt();
+                    return new LinkMessages.Data(seq, ack, decodeBody());
+                }
+                case TAG_SESSION_ACK:
+                    return new LinkMessages.Ack(getInt());
+                default:
+                    throw new IOException("Неизвестный тег кадра: " + tag);
+            }
+        }
+
+        private BankSyncMessage decodeBankSync() throws IOException {
+            int kind = getByte();
+            BankSyncMessage.Kind[] kinds = BankSyncMessage.Kind.values();
+            if (kind < 0 || kind >= kinds.length) throw new IOException("Неизвестный вид сверки: " + kind);
+            switch (kinds[kind]) {
+                case NODES: {
+                    int level = getByte();
+                    int count = getCount(10);
+                    int[] indexes = new int[count];
+                    long[] hashes = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        indexes[i] = getShort();
+                        hashes[i] = getLong();
+                    }
+                    return BankSyncMessage.nodes(level, indexes, hashes);
+                }
+                case LEAVES: {
+                    boolean last = getByte() != 0;
+                    int count = getCount(6);
+                    int[] leaves = new int[count];
+                    int[] counts = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        leaves[i] = getShort();
+                        counts[i] = getInt();
+                    }
+                    return BankSyncMessage.leaves(leaves, counts, getLongs(), last);
+                }
+                case WANT:
+                    return BankSyncMessage.want(getLongs());
+                case ROWS: {
+                    int count = getShort();
+                    ArrayList<BankSyncMessage.Row> rows = new ArrayList<>(count);
+                    for (int n = 0; n < count; n++) {
+                        String question = getUtf();
+                        String[] options = new String[4];
+                        for (int i = 0; i < 4; i++) options[i] = getUtf();
+                        int answerNum = getByte();
+                        String category = getUtf();
+                        int difficulty = getByte();
+                        rows.add(new BankSyncMessage.Row(question, options, answerNum, category, difficulty, getUtf()));
+                    }
+                    return BankSyncMessage.rows(rows);
+                }
+                case DONE:
+                    return BankSyncMessage.done();
+                default:
+                    return BankSyncMessage.abort();
+            }
+        }
+
+        /** int32 число элементов; не больше, чем поместится в остаток кадра — мусор не раздувает массивы. */
+        private int getCount(int bytesEach) throws IOException {
+            int count = getInt();
+            if (count < 0 || (long) count * bytesEach > limit - pos) throw new IOException("Некорректное число элементов: " + count);
+            return count;
+        }
+
+        private long[] getLongs() throws IOException {
+            long[] values = new long[getCount(8)];
+            for (int i = 0; i < values.length; i++) values[i] = getLong();
+            return values;
+        }
+
+        private byte getByte() {
+            if (pos >= limit) throw new ArrayIndexOutOfBoundsException(pos);
+            return buf[pos++];
+        }
+
+        private int getShort() {
+            return ((getByte() & 0xFF) << 8) | (getByte() & 0xFF);
+        }
+
+        private int getInt() {
+            return (getShort() << 16) | getShort();
+        }
+
+        private long getLong() {
+            return ((long) getInt() << 32) | (getInt() & 0xFFFFFFFFL);
+        }
+
+        private String getUtf() {
+            int length = getShort();
+            if (pos + length > limit) throw new ArrayIndexOutOfBoundsException(pos + length);
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+}
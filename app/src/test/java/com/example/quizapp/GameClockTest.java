@@ -0,0 +1,125 @@
+package com.example.quizapp;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * GameClock на виртуальных часах Robolectric: десятые доли на кадрах, отсутствие дрейфа после занятого
+ * главного потока, однократное истечение (в том числе без кадров) и время реакции из stop().
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GameClockTest {
+
+    private final List<Long> ticks = new ArrayList<>();
+    private int expired;
+    private GameClock clock;
+    private Duration frameDelay;
+
+    @Before
+    public void setUp() {
+        // Без паузы Robolectric сдвигает часы на каждый кадр, и перевыставляемый колбэк доводит отсчёт до нуля;
+        // на паузе кадр приходит через frameDelay, только когда часы двигает сам тест
+        ShadowChoreographer.setPaused(true);
+        frameDelay = ShadowChoreographer.getFrameDelay();
+        clock = new GameClock(new GameClock.Listener() {
+            @Override public void onTick(long remainingMs) {
+                ticks.add(remainingMs);
+            }
+            @Override public void onExpired() {
+                expired++;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        clock.stop();
+        ShadowChoreographer.setFrameDelay(frameDelay);
+        ShadowChoreographer.setPaused(false);
+    }
+
+    @Test
+    public void countdownFollowsDeadlineThroughMainThreadStall() {
+        clock.start(1000);
+        idleFor(250);
+        assertEquals(1000L, (long) ticks.get(0));
+        assertEquals(800L, last());
+        assertTenthsStrictlyDecreasing();
+
+        // Главный поток занят 400 мс: следующий кадр показывает остаток от дедлайна, а не «следующий тик»
+        ShadowSystemClock.advanceBy(Duration.ofMillis(400));
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(400L, last());
+        assertFalse("показан устаревший остаток", ticks.contains(700L));
+
+        idleFor(1000);
+        assertEquals(1, expired);
+        assertEquals(0L, last());
+        assertTenthsStrictlyDecreasing();
+        assertEquals(1000, clock.stop());
+        assertEquals(0, clock.remainingMs());
+    }
+
+    @Test
+    public void expiresWithoutFramesAndNotEarly() {
+        // Окно не рисуется: следующий кадр — через минуту
+        ShadowChoreographer.setFrameDelay(Duration.ofMinutes(1));
+        clock.start(500);
+        idleFor(499);
+        assertEquals(0, expired);
+        idleFor(1);
+        assertEquals(1, expired);
+        idleFor(1000);
+        assertEquals(1, expired);
+    }
+
+    @Test
+    public void stopReturnsReactionTimeOfTheTurn() {
+        assertEquals(GameClock.UNKNOWN, clock.stop());
+
+        clock.start(15_000);
+        idleFor(1234);
+        assertEquals(1234, clock.stop());
+        int shown = ticks.size();
+        idleFor(20_000);
+        assertEquals("повторный stop — то же время реакции", 1234, clock.stop());
+        assertEquals(shown, ticks.size());
+        assertEquals(0, expired);
+
+        clock.start(15_000);
+        idleFor(300);
+        assertEquals(300, clock.stop());
+    }
+
+    private void idleFor(long ms) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(ms));
+    }
+
+    /** Слушатель получает только смену показываемой десятой доли. */
+    private void assertTenthsStrictlyDecreasing() {
+        for (int i = 0; i < ticks.size(); i++) {
+            assertEquals(0, ticks.get(i) % GameClock.TICK_MS);
+            if (i > 0) assertTrue(ticks.get(i - 1) + " -> " + ticks.get(i), ticks.get(i) < ticks.get(i - 1));
+        }
+    }
+
+    private long last() {
+        return ticks.get(ticks.size() - 1);
+    }
+}
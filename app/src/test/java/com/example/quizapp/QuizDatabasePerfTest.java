@@ -0,0 +1,278 @@
+package com.example.quizapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.quizapp.data.QuestionBitSet;
+import com.example.quizapp.data.QuestionDeduplicator;
+import com.example.quizapp.data.QuestionHash;
+import com.example.quizapp.data.QuestionPackImporter;
+import com.example.quizapp.data.QuestionPackReader;
+import com.example.quizapp.data.QuestionSampler;
+import com.example.quizapp.data.QuestionSchema;
+import com.example.quizapp.data.QuestionSearch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * QuizDatabaseHelper на нативном SQLite Robolectric с синтетическими банками: время onCreate, выборки
+ * (QuestionSampler и для сравнения ORDER BY RANDOM()), первой страницы поиска,
+ * статистики, сигнатур дубликатов по банку, инвентаря, COUNT экрана статистики и импорта пакета сравнивается с perf/quiz_db_baseline.properties.
+ * Размеры банков, запас и запись новой базовой линии — системные свойства quiz.perf.* (см. app/build.gradle.kts).
+ * Запускается только с quiz.perf.sizes: базовая линия записана на одной машине, в обычном прогоне тестов на CI
+ * она давала бы ложные падения.
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class QuizDatabasePerfTest {
+
+    private static final String BASELINE_RESOURCE = "/perf/quiz_db_baseline.properties";
+    private static final File RECORD_FILE = new File("build/reports/perf/quiz_db_baseline.properties");
+    private static final double DEFAULT_MARGIN = 0.5;
+
+    private static final String[] CATEGORIES = {"general", "geography", "history", "science"};
+    private static final String[] SYLLABLES = {"ка", "ро", "ми", "та", "ле", "ну", "во", "за", "си", "пе", "до", "ры", "гу", "ше", "бя", "фо"};
+    private static final int MATCH_QUESTIONS = 5;
+    private static final int INVENTORY_ITEMS = 40;
+    private static final int IMPORT_ROWS = 5000;
+    private static final String SEARCH_QUERY = "каро";
+
+    private Context context;
+    private final Properties baseline = new Properties();
+    private final TreeMap<String, Long> measured = new TreeMap<>();
+
+    @Before
+    public void setUp() throws IOException {
+        context = RuntimeEnvironment.getApplication();
+        try (InputStream in = QuizDatabasePerfTest.class.getResourceAsStream(BASELINE_RESOURCE)) {
+            assertNotNull("нет " + BASELINE_RESOURCE, in);
+            baseline.load(in);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        QuizDatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void databaseOperationsStayWithinBaseline() throws IOException {
+        String sizes = System.getProperty("quiz.perf.sizes");
+        assumeTrue("замеры — только с -Pquiz.perf.sizes", sizes != null);
+        for (String size : sizes.split(",")) {
+            measureBank(Integer.parseInt(size.trim()));
+        }
+
+        if (Boolean.getBoolean("quiz.perf.record")) record();
+
+        double margin = Double.parseDouble(System.getProperty("quiz.perf.margin", String.valueOf(DEFAULT_MARGIN)));
+        List<String> exceeded = new ArrayList<>();
+        for (String key : measured.keySet()) {
+            long value = measured.get(key);
+            String limit = baseline.getProperty(key);
+            String line = String.format(Locale.ROOT, "%-28s %10d мкс", key, value);
+            if (limit == null) {
+                System.out.println(line + "  (нет базовой линии)");
+                continue;
+            }
+            long allowed = (long) (Long.parseLong(limit.trim()) * (1 + margin));
+            System.out.println(line + "  база " + limit.trim() + ", предел " + allowed);
+            if (value > allowed) exceeded.add(key + ": " + value + " мкс > " + allowed + " мкс");
+        }
+        if (!exceeded.isEmpty()) fail("Медленнее базовой линии +" + (int) (margin * 100) + "%: " + exceeded);
+    }
+
+    private void measureBank(int size) throws IOException {
+        QuizDatabaseHelper.resetInstance();
+        context.deleteDatabase(QuizDatabaseHelper.DATABASE_NAME);
+        installSyntheticBank(size);
+
+        // onCreate: таблицы игрока и дубликатов, триггеры поиска; сигнатуры банка — при первом импорте
+        QuizDatabaseHelper dbHelper = QuizDatabaseHelper.getInstance(context);
+        long start = System.nanoTime();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        put("onCreate", size, (System.nanoTime() - start) / 1000);
+        assertEquals(size, DatabaseUtils.queryNumEntries(db, QuizDatabaseHelper.TABLE_QUESTIONS));
+
+        QuestionSampler sampler = new QuestionSampler(new Random(size));
+        QuestionBitSet seen = new QuestionBitSet(size);
+        time("sample", size, 200, () -> assertEquals(MATCH_QUESTIONS, sampler.sample(db, MATCH_QUESTIONS, seen).length));
+        // Прежний способ выборки — для сравнения с QuestionSampler на том же банке
+        String orderByRandom = "SELECT " + QuizDatabaseHelper.COLUMN_ID + " FROM " + QuizDatabaseHelper.TABLE_QUESTIONS +
+                " ORDER BY RANDOM() LIMIT " + MATCH_QUESTIONS;
+        time("sampleOrderByRandom", size, size >= 1_000_000 ? 20 : 200, () -> {
+            try (Cursor c = db.rawQuery(orderByRandom, null)) {
+                assertEquals(MATCH_QUESTIONS, c.getCount());
+            }
+        });
+
+        // Первая страница поиска: префикс двух слогов есть примерно в каждом двадцатом вопросе,
+        // ранжируются до LIMIT (не больше QuestionSearch.MAX_RANKED)
+        QuestionSearch search = new QuestionSearch(dbHelper);
+        time("searchFirstPage", size, 50, () -> assertEquals(QuestionSearch.DEFAULT_PAGE_SIZE,
+                search.search(SEARCH_QUERY, 0, QuestionSearch.DEFAULT_PAGE_SIZE).questions.size()));
+
+        time("updatePlayerStats", size, 200, () -> dbHelper.updatePlayerStats(25, true, true));
+        assertEquals(25 * 220, dbHelper.getPlayerStats().points);
+
+        for (int i = 0; i < INVENTORY_ITEMS; i++) {
+            String id = (i % 2 == 0 ? "emote_" : "skin_") + i;
+            assertTrue(dbHelper.addToInventory(id, "Предмет " + i, i % 5 == 0));
+        }
+        time("isItemOwned", size, 500, () -> assertTrue(dbHelper.isItemOwned("emote_10")));
+        time("getOwnedEmotes", size, 500, () -> assertEquals(INVENTORY_ITEMS, dbHelper.getOwnedEmotes().size()));
+        time("getEquippedItems", size, 500, () -> assertEquals(INVENTORY_ITEMS / 5, dbHelper.getEquippedItems().size()));
+        // StatsActivity: число эмоций через QuizRepository.loadOwnedEmoteCount
+        time("countOwnedEmotes", size, 500, () -> assertEquals(INVENTORY_ITEMS / 2, dbHelper.countOwnedEmotes()));
+
+        // Последним: импорт добавляет вопросы в банк. Сигнатуры банка, которые импорт досчитывает
+        // при первом запуске, замеряются отдельно
+        try (QuestionDeduplicator deduplicator = new QuestionDeduplicator(db)) {
+            start = System.nanoTime();
+            assertEquals(size, deduplicator.ensureIndexed());
+            put("dedupIndex", size, (System.nanoTime() - start) / 1000);
+        }
+        measureImport(dbHelper, size);
+    }
+
+    /**
+     * Импорт CSV-пакета из IMPORT_ROWS новых вопросов поверх банка: в базовую линию — мкс на весь пакет,
+     * скорость и пик кучи — в вывод. Время по System.nanoTime: SystemClock у Robolectric виртуальный.
+     */
+    private void measureImport(QuizDatabaseHelper dbHelper, int size) throws IOException {
+        byte[] pack = syntheticPack(new Random(-size), IMPORT_ROWS);
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+        long start = System.nanoTime();
+        QuestionPackImporter.Result result = new QuestionPackImporter(dbHelper)
+                .importPack(new ByteArrayInputStream(pack), QuestionPackReader.Format.CSV, null);
+        long elapsedNanos = System.nanoTime() - start;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+        }
+        assertEquals(0, result.rejected);
+        assertEquals(IMPORT_ROWS, result.imported + result.duplicates);
+        put("importPack", size, elapsedNanos / 1000);
+        System.out.println(String.format(Locale.ROOT, "importPack.%d: %d строк, %.0f строк/с, пик кучи %d КБ",
+                size, IMPORT_ROWS, IMPORT_ROWS * 1e9 / elapsedNanos, peakHeap / 1024));
+    }
+
+    private static byte[] syntheticPack(Random random, int rows) {
+        StringBuilder csv = new StringBuilder("question,option1,option2,option3,option4,answer_num,category,difficulty\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(words(random, 6 + random.nextInt(6))).append('?');
+            for (int o = 0; o < 4; o++) csv.append(',').append(words(random, 1 + random.nextInt(3)));
+            csv.append(',').append(1 + random.nextInt(4))
+                    .append(',').append(CATEGORIES[random.nextInt(CATEGORIES.length)])
+                    .append(',').append(1 + random.nextInt(3))
+                    .append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Среднее время операции в мкс после прогрева на десятой части итераций. */
+    private void time(String metric, int size, int iterations, Runnable operation) {
+        for (int i = 0; i < iterations / 10; i++) operation.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) operation.run();
+        put(metric, size, (System.nanoTime() - start) / 1000 / iterations);
+    }
+
+    private void put(String metric, int size, long micros) {
+        measured.put(metric + "." + size, micros);
+    }
+
+    /**
+     * Банк в файле базы до первого открытия — как после копирования ассета: таблица вопросов с индексами
+     * и поисковый индекс, user_version 0, остальное досоздаёт onCreate. Тексты из случайных слогов,
+     * чтобы поиск дубликатов не упирался в одну корзину.
+     */
+    private void installSyntheticBank(int size) {
+        File file = context.getDatabasePath(QuizDatabaseHelper.DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        Random random = new Random(size);
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null)) {
+            db.execSQL(QuestionSchema.CREATE_TABLE);
+            QuizDatabaseHelper.createQuestionIndexes(db);
+            db.beginTransaction();
+            try (SQLiteStatement insert = db.compileStatement("INSERT INTO " + QuizDatabaseHelper.TABLE_QUESTIONS + "(" +
+                    QuizDatabaseHelper.COLUMN_QUESTION + ", " + QuizDatabaseHelper.COLUMN_OPTION1 + ", " +
+                    QuizDatabaseHelper.COLUMN_OPTION2 + ", " + QuizDatabaseHelper.COLUMN_OPTION3 + ", " +
+                    QuizDatabaseHelper.COLUMN_OPTION4 + ", " + QuizDatabaseHelper.COLUMN_ANSWER_NUM + ", " +
+                    QuizDatabaseHelper.COLUMN_CATEGORY + ", " + QuizDatabaseHelper.COLUMN_DIFFICULTY + ", " +
+                    QuizDatabaseHelper.COLUMN_CONTENT_HASH + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < size; i++) {
+                    String question = words(random, 6 + random.nextInt(6)) + "?";
+                    String[] options = new String[4];
+                    for (int o = 0; o < options.length; o++) options[o] = words(random, 1 + random.nextInt(3));
+                    int answer = 1 + random.nextInt(4);
+                    insert.bindString(1, question);
+                    for (int o = 0; o < options.length; o++) insert.bindString(2 + o, options[o]);
+                    insert.bindLong(6, answer);
+                    insert.bindString(7, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                    insert.bindLong(8, 1 + random.nextInt(3));
+                    insert.bindLong(9, QuestionHash.contentHash(question, options, answer));
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            // Поисковый индекс в ассете собран при сборке (FTS4) — строим так же, до onCreate
+            QuestionSearch.createIndex(db, false);
+        }
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int w = 0; w < count; w++) {
+            if (w > 0) sb.append(' ');
+            for (int s = 2 + random.nextInt(3); s > 0; s--) sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return sb.toString();
+    }
+
+    /** Новая базовая линия: прежние значения плюс измеренные в этом прогоне. */
+    private void record() throws IOException {
+        Properties updated = new Properties();
+        updated.putAll(baseline);
+        for (String key : measured.keySet()) updated.setProperty(key, String.valueOf(measured.get(key)));
+        RECORD_FILE.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(RECORD_FILE)) {
+            updated.store(out, "QuizDatabasePerfTest: скопировать в app/src/test/resources" + BASELINE_RESOURCE);
+        }
+        System.out.println("Базовая линия записана: " + RECORD_FILE.getAbsolutePath());
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.quizapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.quizapp.data.Migration;
+import com.example.quizapp.data.MigrationRunner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Обновление схемы с фикстур v1 и v2 с большим банком: данные игрока сохраняются,
+ * вопросы не пересоздаются, время обновления выводится в stdout и ограничено сверху.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuizMigrationsTest {
+
+    private static final int BANK_SIZE = 20_000;
+    // Верхняя граница обновления банка BANK_SIZE с v1/v2 на JVM (~1.5 с): хеши, индексы и поисковый индекс
+    private static final long MAX_UPGRADE_MILLIS = 5_000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+    }
+
+    @After
+    public void tearDown() {
+        QuizDatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void upgradesFromV1KeepingStats() {
+        try (SQLiteDatabase db = createFixture()) {
+            createQuestions(db);
+            db.execSQL("CREATE TABLE player_stats(_id INTEGER PRIMARY KEY, player_name TEXT DEFAULT 'noname'," +
+                    " single_wins INTEGER DEFAULT 0, pvp_wins INTEGER DEFAULT 0)");
+            db.execSQL("INSERT INTO player_stats VALUES (1, 'Аня', 7, 3)");
+            db.execSQL("CREATE TABLE emotions(emotion_id TEXT PRIMARY KEY)");
+            db.setVersion(1);
+        }
+
+        SQLiteDatabase db = openAndMeasure("v1");
+
+        assertEquals(QuizDatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertStats(db, "Аня", 7, 3, 0);
+        assertTrue(Migration.tableExists(db, QuizDatabaseHelper.TABLE_INVENTORY));
+        assertFalse(Migration.tableExists(db, "emotions"));
+        assertQuestionsUpgraded(db);
+    }
+
+    @Test
+    public void upgradesFromV2KeepingStatsAndInventory() {
+        try (SQLiteDatabase db = createFixture()) {
+            createQuestions(db);
+            db.execSQL("CREATE TABLE player_stats(_id INTEGER PRIMARY KEY, player_name TEXT DEFAULT 'noname'," +
+                    " single_wins INTEGER DEFAULT 0, pvp_wins INTEGER DEFAULT 0, points INTEGER DEFAULT 0)");
+            db.execSQL("INSERT INTO player_stats VALUES (1, 'Борис', 12, 5, 340)");
+            db.execSQL("CREATE TABLE inventory(item_id TEXT PRIMARY KEY, item_name TEXT NOT NULL, is_equipped INTEGER DEFAULT 0)");
+            db.execSQL("INSERT INTO inventory VALUES ('emote_laugh', 'Смех', 1)");
+            db.setVersion(2);
+        }
+
+        SQLiteDatabase db = openAndMeasure("v2");
+
+        assertEquals(QuizDatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertStats(db, "Борис", 12, 5, 340);
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, QuizDatabaseHelper.TABLE_INVENTORY));
+        assertQuestionsUpgraded(db);
+    }
+
+    @Test
+    public void failedStepRollsBackAndKeepsPreviousVersion() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE t(a INTEGER)");
+        db.setVersion(1);
+
+        MigrationRunner runner = new MigrationRunner(
+                new Migration(1, 2) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        db.execSQL("ALTER TABLE t ADD COLUMN b INTEGER");
+                    }
+                },
+                new Migration(2, 3) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        db.execSQL("ALTER TABLE t ADD COLUMN c INTEGER");
+                        throw new IllegalStateException("сбой шага");
+                    }
+                });
+
+        try {
+            runner.migrate(db, 3);
+            fail("ожидалось исключение");
+        } catch (IllegalStateException expected) {
+            // шаг 2 -> 3 откатан
+        }
+        assertEquals(2, db.getVersion());
+        assertTrue(Migration.hasColumn(db, "t", "b"));
+        assertFalse(Migration.hasColumn(db, "t", "c"));
+        db.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsGapsInChain() {
+        new MigrationRunner(
+                new Migration(1, 2) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                    }
+                },
+                new Migration(3, 4) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                    }
+                });
+    }
+
+    private SQLiteDatabase createFixture() {
+        File file = context.getDatabasePath(QuizDatabaseHelper.DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        return SQLiteDatabase.openOrCreateDatabase(file, null);
+    }
+
+    private static void createQuestions(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE questions(_id INTEGER PRIMARY KEY AUTOINCREMENT, question TEXT," +
+                " option1 TEXT, option2 TEXT, option3 TEXT, option4 TEXT, answer_num INTEGER)");
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < BANK_SIZE; i++) {
+                values.put("question", "Вопрос номер " + i + "?");
+                values.put("option1", "Ответ A" + i);
+                values.put("option2", "Ответ B" + i);
+                values.put("option3", "Ответ C" + i);
+                values.put("option4", "Ответ D" + i);
+                values.put("answer_num", 1 + i % 4);
+                db.insert("questions", null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private SQLiteDatabase openAndMeasure(String fixture) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = QuizDatabaseHelper.getInstance(context).getWritableDatabase();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Обновление с " + fixture + " (" + BANK_SIZE + " вопросов): " + elapsedMs + " мс");
+        assertTrue("обновление " + elapsedMs + " мс", elapsedMs < MAX_UPGRADE_MILLIS);
+        return db;
+    }
+
+    private static void assertStats(SQLiteDatabase db, String name, int singleWins, int pvpWins, int points) {
+        try (Cursor c = db.rawQuery("SELECT player_name, single_wins, pvp_wins, points FROM player_stats WHERE _id = 1", null)) {
+            assertTrue(c.moveToFirst());
+            assertEquals(name, c.getString(0));
+            assertEquals(singleWins, c.getInt(1));
+            assertEquals(pvpWins, c.getInt(2));
+            assertEquals(points, c.getInt(3));
+        }
+    }
+
+    private static void assertQuestionsUpgraded(SQLiteDatabase db) {
+        assertEquals(BANK_SIZE, DatabaseUtils.queryNumEntries(db, QuizDatabaseHelper.TABLE_QUESTIONS));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, QuizDatabaseHelper.TABLE_QUESTIONS,
+                QuizDatabaseHelper.COLUMN_CONTENT_HASH + " IS NULL"));
+        assertEquals(BANK_SIZE, DatabaseUtils.queryNumEntries(db, QuizDatabaseHelper.TABLE_QUESTIONS,
+                QuizDatabaseHelper.COLUMN_CATEGORY + " = ?", new String[]{QuizDatabaseHelper.DEFAULT_CATEGORY}));
+        assertTrue(Migration.tableExists(db, QuizDatabaseHelper.TABLE_SEEN_QUESTIONS));
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = 'idx_questions_category_difficulty'", null));
+        assertEquals(BANK_SIZE, DatabaseUtils.queryNumEntries(db, "questions_fts"));
+        // Сигнатуры дубликатов считаются при первом импорте, не при обновлении
+        assertTrue(Migration.tableExists(db, "question_minhash"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, "question_minhash"));
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name = 'question_lsh_ad'", null));
+        // Хеши листьев дерева сверки — тоже при первой сверке
+        assertTrue(Migration.tableExists(db, "question_merkle_leaves"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, "question_merkle_leaves"));
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.quizapp.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.quizapp.QuizDatabaseHelper;
+import com.example.quizapp.p2p.GameDataModel;
+import com.example.quizapp.p2p.WireCodec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Сверка банков двух устройств через WireCodec: после обмена банки совпадают, а трафик
+ * растёт с разницей, а не с размером банка (байты выводятся в stdout).
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuestionBankSyncTest {
+
+    private static final int BANK_SIZE = 5000;
+
+    private SQLiteDatabase host;
+    private SQLiteDatabase client;
+
+    @Before
+    public void setUp() {
+        host = createBank();
+        client = createBank();
+    }
+
+    @After
+    public void tearDown() {
+        host.close();
+        client.close();
+    }
+
+    @Test
+    public void identicalBanksExchangeOnlyRoots() throws Exception {
+        insert(host, 0, BANK_SIZE);
+        insert(client, 0, BANK_SIZE);
+
+        Exchange exchange = sync();
+
+        assertTrue(exchange.clientResult.success && exchange.hostResult.success);
+        assertEquals(0, exchange.hostResult.rowsSent + exchange.clientResult.rowsSent);
+        assertTrue("байт: " + exchange.bytes.get(), exchange.bytes.get() < 100);
+        System.out.println("Одинаковые банки по " + BANK_SIZE + ": " + exchange.bytes.get() + " Б");
+    }
+
+    @Test
+    public void smallDiffConvergesWithTrafficProportionalToDiff() throws Exception {
+        insert(host, 0, BANK_SIZE);
+        insert(host, 100_000, 10);        // есть только у хоста
+        // Клиент импортировал тот же пакет в другом порядке — id не совпадают
+        insert(client, 200_000, 5);       // есть только у клиента
+        insert(client, 0, BANK_SIZE);
+
+        Exchange exchange = sync();
+
+        assertTrue(exchange.clientResult.success && exchange.hostResult.success);
+        assertEquals(BANK_SIZE + 15, count(host));
+        assertEquals(BANK_SIZE + 15, count(client));
+        assertEquals(5, exchange.hostResult.rowsInserted);
+        assertEquals(10, exchange.clientResult.rowsInserted);
+        assertEquals(QuestionMerkleTree.build(host).root(), QuestionMerkleTree.build(client).root());
+        // id у соперников разные, а отпечатки совпадают — START_GAME снова идёт одними content_hash
+        assertEquals(QuestionBankHash.compute(host), QuestionBankHash.compute(client));
+        // Хеши листьев и 15 строк, а не 5000 вопросов
+        assertTrue("байт: " + exchange.bytes.get(), exchange.bytes.get() < 16 * 1024);
+        System.out.println("Разница 10+5 из " + BANK_SIZE + ": " + exchange.bytes.get() + " Б, " +
+                exchange.messages.get() + " сообщений");
+    }
+
+    @Test
+    public void emptyBankReceivesEverything() throws Exception {
+        insert(client, 0, BANK_SIZE);
+
+        Exchange exchange = sync();
+
+        assertTrue(exchange.clientResult.success && exchange.hostResult.success);
+        assertEquals(BANK_SIZE, count(host));
+        assertEquals(BANK_SIZE, exchange.hostResult.rowsInserted);
+        // На писателе хоста две задачи: загрузка дерева (сохранение листьев) и вставка принятого
+        assertEquals(2, exchange.hostWrites.get());
+        assertEquals(QuestionMerkleTree.build(host).root(), QuestionMerkleTree.build(client).root());
+        System.out.println("Пустой банк против " + BANK_SIZE + ": " + exchange.bytes.get() + " Б, " +
+                exchange.messages.get() + " сообщений");
+    }
+
+    @Test
+    public void abortedSyncLeavesBankUntouched() throws Exception {
+        insert(client, 0, 200);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<QuestionBankSync.Result> hostResult = new AtomicReference<>();
+        QuestionBankSync[] peers = new QuestionBankSync[2];
+        peers[0] = new QuestionBankSync(() -> host, (m, r) -> {
+            peers[1].handle(m);
+            r.onComplete(true);
+        }, result -> {
+            hostResult.set(result);
+            done.countDown();
+        });
+        // Строки клиента доходят, а его DONE — нет: клиент прерывает сверку, хост получает ABORT
+        peers[1] = new QuestionBankSync(() -> client, (m, r) -> {
+            if (m.kind == BankSyncMessage.Kind.DONE) {
+                r.onComplete(false);
+                return;
+            }
+            peers[0].handle(m);
+            r.onComplete(true);
+        }, null);
+        peers[1].start();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertFalse(hostResult.get().success);
+        assertEquals(200, hostResult.get().rowsReceived);
+        assertEquals(0, count(host));
+    }
+
+    private static class Exchange {
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong messages = new AtomicLong();
+        final AtomicInteger hostWrites = new AtomicInteger();
+        QuestionBankSync.Result hostResult;
+        QuestionBankSync.Result clientResult;
+    }
+
+    /** Клиент начинает сверку; сообщения проходят через кодек, как по сети. У хоста свой поток-писатель. */
+    private Exchange sync() throws Exception {
+        Exchange exchange = new Exchange();
+        CountDownLatch done = new CountDownLatch(2);
+        ExecutorService hostWriter = Executors.newSingleThreadExecutor();
+        QuestionBankSync[] peers = new QuestionBankSync[2];
+        peers[0] = new QuestionBankSync(() -> host, task -> {
+            exchange.hostWrites.incrementAndGet();
+            hostWriter.execute(task);
+        }, null, pipe(exchange, () -> peers[1]), result -> {
+            exchange.hostResult = result;
+            done.countDown();
+        });
+        peers[1] = new QuestionBankSync(() -> client, pipe(exchange, () -> peers[0]), result -> {
+            exchange.clientResult = result;
+            done.countDown();
+        });
+        peers[1].start();
+        assertTrue("сверка не завершилась", done.await(30, TimeUnit.SECONDS));
+        hostWriter.shutdown();
+        return exchange;
+    }
+
+    private interface Peer {
+        QuestionBankSync get();
+    }
+
+    private static QuestionBankSync.Sender pipe(Exchange exchange, Peer peer) {
+        WireCodec.Encoder encoder = new WireCodec.Encoder();
+        WireCodec.Decoder decoder = new WireCodec.Decoder();
+        return (message, result) -> {
+            try {
+                int length = encoder.encode(new GameDataModel(GameDataModel.DataType.BANK_SYNC, message));
+                GameDataModel decoded = (GameDataModel) decoder.decode(encoder.buffer(), 4, length - 4);
+                exchange.bytes.addAndGet(length);
+                exchange.messages.incrementAndGet();
+                peer.get().handle((BankSyncMessage) decoded.data);
+                result.onComplete(true);
+            } catch (IOException e) {
+                result.onComplete(false);
+            }
+        };
+    }
+
+    private static SQLiteDatabase createBank() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.execSQL(QuestionSchema.CREATE_TABLE);
+        for (String sql : QuestionSchema.CREATE_INDEXES) db.execSQL(sql);
+        QuestionDeduplicator.createTables(db);
+        QuestionMerkleTree.createTables(db);
+        return db;
+    }
+
+    /** Вопросы from..from+count-1; один номер — один и тот же вопрос на любом устройстве. */
+    private static void insert(SQLiteDatabase db, int from, int count) {
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(QuestionPackImporter.INSERT_SQL)) {
+            for (int n = from; n < from + count; n++) {
+                String question = "Вопрос номер " + n + " о столице страны " + (n * 7919 % 1000);
+                String[] options = {"Ответ " + n, "Вариант " + (n + 1), "Вариант " + (n + 2), "Вариант " + (n + 3)};
+                insert.bindString(1, question);
+                for (int i = 0; i < 4; i++) insert.bindString(2 + i, options[i]);
+                insert.bindLong(6, 1);
+                insert.bindString(7, "geography");
+                insert.bindLong(8, 1 + n % 3);
+                insert.bindString(9, "ru");
+                insert.bindLong(10, QuestionHash.contentHash(question, options, 1));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static long count(SQLiteDatabase db) {
+        return DatabaseUtils.queryNumEntries(db, QuizDatabaseHelper.TABLE_QUESTIONS);
+    }
+}
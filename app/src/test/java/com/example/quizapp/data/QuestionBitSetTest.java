@@ -0,0 +1,89 @@
+package com.example.quizapp.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * QuestionBitSet на границах 64-битных слов: set/get/clear, nextClearBit через серии установленных бит
+ * и BLOB little-endian, в том числе после роста массива.
+ */
+public class QuestionBitSetTest {
+
+    @Test
+    public void setAndGetAcrossWordBoundaries() {
+        QuestionBitSet set = new QuestionBitSet(10);
+        int[] ids = {0, 63, 64, 127, 128, 1000};
+        for (int id : ids) set.set(id);
+
+        for (int id : ids) assertTrue(String.valueOf(id), set.get(id));
+        for (int id : new int[]{1, 62, 65, 126, 129, 999, 1001, 100_000}) assertFalse(String.valueOf(id), set.get(id));
+        assertFalse(set.get(-1));
+        assertEquals(ids.length, set.cardinality());
+
+        set.clear(64);
+        assertFalse(set.get(64));
+        assertTrue(set.get(63));
+        assertEquals(ids.length - 1, set.cardinality());
+
+        set.clear();
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void nextClearBitSkipsRunsAcrossWords() {
+        QuestionBitSet set = new QuestionBitSet(256);
+        for (int id = 60; id < 200; id++) set.set(id);
+
+        assertEquals(0, set.nextClearBit(0));
+        assertEquals(59, set.nextClearBit(59));
+        assertEquals(200, set.nextClearBit(60));
+        assertEquals(200, set.nextClearBit(64));
+        assertEquals(200, set.nextClearBit(199));
+        assertEquals(0, set.nextClearBit(-5));
+
+        // Все биты последнего слова заняты: первый свободный — сразу за массивом
+        QuestionBitSet full = new QuestionBitSet(127);
+        for (int id = 0; id < 128; id++) full.set(id);
+        assertEquals(128, full.nextClearBit(0));
+        assertEquals(10_000, full.nextClearBit(10_000));
+    }
+
+    @Test
+    public void bytesAreLittleEndianWithoutTrailingZeroWords() {
+        QuestionBitSet set = new QuestionBitSet(1000);
+        set.set(0);
+        set.set(9);
+        set.set(63);
+
+        byte[] bytes = set.toBytes();
+        assertArrayEquals(new byte[]{0x01, 0x02, 0, 0, 0, 0, 0, (byte) 0x80}, bytes);
+        assertEquals(0, new QuestionBitSet(1000).toBytes().length);
+
+        // Неполное последнее слово из старого BLOB читается как младшие байты
+        QuestionBitSet partial = QuestionBitSet.fromBytes(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0x01});
+        assertTrue(partial.get(64));
+        assertEquals(1, partial.cardinality());
+        assertTrue(QuestionBitSet.fromBytes(null).isEmpty());
+    }
+
+    @Test
+    public void roundTripAfterGrowing() {
+        QuestionBitSet set = new QuestionBitSet(10);
+        int[] ids = {3, 64, 4095, 70_001};
+        for (int id : ids) set.set(id); // массив растёт с 1 слова
+
+        QuestionBitSet restored = QuestionBitSet.fromBytes(set.toBytes());
+        for (int id : ids) assertTrue(String.valueOf(id), restored.get(id));
+        assertEquals(ids.length, restored.cardinality());
+        assertEquals((70_001 / 64 + 1) * 8, set.toBytes().length);
+        assertArrayEquals(set.toBytes(), restored.toBytes());
+
+        // Восстановленный набор тоже растёт
+        restored.set(1_000_000);
+        assertTrue(QuestionBitSet.fromBytes(restored.toBytes()).get(1_000_000));
+    }
+}
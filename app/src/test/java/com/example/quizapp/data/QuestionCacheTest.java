@@ -0,0 +1,179 @@
+package com.example.quizapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * QuestionCache: LRU по id, набор по content_hash от хоста, счётчики предзагрузки и загрузок, сброс по изменению банка
+ * и то, что показанными становятся только выданные наборы, а не каждая предзагрузка.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuestionCacheTest {
+
+    private static final int ROWS = QuestionCache.LRU_CAPACITY + 100;
+    private static final int MATCH = 5;
+    private static final QuestionSampler.Filter GEOGRAPHY = new QuestionSampler.Filter("geography", 0);
+
+    private QuizDatabaseHelper dbHelper;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private QuestionCache cache;
+    private int[] ids;
+
+    @Before
+    public void setUp() {
+        dbHelper = QuizDatabaseHelper.getInstance(RuntimeEnvironment.getApplication());
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete(QuizDatabaseHelper.TABLE_QUESTIONS, null, null);
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < ROWS; i++) {
+                values.put(QuizDatabaseHelper.COLUMN_QUESTION, "Вопрос " + i);
+                values.put(QuizDatabaseHelper.COLUMN_OPTION1, "a");
+                values.put(QuizDatabaseHelper.COLUMN_OPTION2, "b");
+                values.put(QuizDatabaseHelper.COLUMN_OPTION3, "c");
+                values.put(QuizDatabaseHelper.COLUMN_OPTION4, "d");
+                values.put(QuizDatabaseHelper.COLUMN_ANSWER_NUM, 1);
+                values.put(QuizDatabaseHelper.COLUMN_CATEGORY, i % 2 == 0 ? "geography" : "history");
+                db.insert(QuizDatabaseHelper.TABLE_QUESTIONS, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        ids = new int[ROWS];
+        try (Cursor c = db.rawQuery("SELECT _id FROM questions ORDER BY _id", null)) {
+            for (int i = 0; c.moveToNext(); i++) ids[i] = c.getInt(0);
+        }
+        cache = new QuestionCache(dbHelper, writer);
+    }
+
+    @After
+    public void tearDown() {
+        writer.shutdown();
+        QuizDatabaseHelper.resetInstance();
+    }
+
+    /** seen в базе после всех поставленных в очередь писателя сохранений. */
+    private QuestionBitSet savedSeen() throws Exception {
+        writer.submit(() -> { }).get();
+        return dbHelper.loadSeenQuestions();
+    }
+
+    @Test
+    public void lruServesRepeatedIdsAndEvictsLeastRecentlyUsed() {
+        int capacity = QuestionCache.LRU_CAPACITY;
+        int[] first = new int[capacity];
+        System.arraycopy(ids, 0, first, 0, capacity);
+        assertEquals(capacity, cache.getQuestions(first).size());
+        assertEquals(0.0, cache.getLruHitRate(), 0);
+
+        // Порядок ответа — порядок запроса; отсутствующий id пропускается
+        List<Question> repeated = cache.getQuestions(new int[]{ids[1], -1, ids[0]});
+        assertEquals(2, repeated.size());
+        assertEquals(ids[1], repeated.get(0).id);
+        assertEquals(ids[0], repeated.get(1).id);
+
+        // Новый id вытесняет давнее всех использованный: ids[2], а не только что прочитанные ids[0] и ids[1]
+        cache.getQuestions(new int[]{ids[capacity]});
+        cache.getQuestions(new int[]{ids[0]});
+        cache.getQuestions(new int[]{ids[2]});
+
+        long hits = 3;                     // ids[1], ids[0], снова ids[0]
+        long misses = capacity + 1 + 1 + 1; // первая пачка, -1, ids[capacity], вытесненный ids[2]
+        assertEquals((double) hits / (hits + misses), cache.getLruHitRate(), 1e-9);
+    }
+
+    @Test
+    public void contentHashesResolveToLocalQuestionsInOrder() {
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + QuizDatabaseHelper.TABLE_QUESTIONS + " SET " +
+                QuizDatabaseHelper.COLUMN_CONTENT_HASH + " = " + QuizDatabaseHelper.COLUMN_ID + " * 1000003");
+
+        // Хеша, которого нет в банке, в ответе нет — GameActivity по размеру запросит полный набор
+        List<Question> questions = cache.getQuestionsByContentHash(
+                new long[]{ids[5] * 1000003L, ids[1] * 1000003L, -1L, ids[3] * 1000003L});
+
+        assertEquals(3, questions.size());
+        assertEquals(ids[5], questions.get(0).id);
+        assertEquals(ids[1], questions.get(1).id);
+        assertEquals(ids[3], questions.get(2).id);
+        assertEquals("Вопрос 5", questions.get(0).question);
+    }
+
+    @Test
+    public void onlyHandedOutSetsAreMarkedSeen() throws Exception {
+        long start = System.nanoTime();
+
+        // Предзагрузка под другую тему, отменённая сменой фильтра, вопросы не расходует
+        cache.prefetchNextMatch(MATCH, GEOGRAPHY);
+        cache.pendingPrefetch().get();
+        cache.prefetchNextMatch(MATCH, QuestionSampler.Filter.ANY);
+        cache.pendingPrefetch().get();
+        assertTrue(savedSeen().isEmpty());
+
+        List<Question> firstMatch = cache.takeMatchQuestions(MATCH, QuestionSampler.Filter.ANY);
+        assertEquals(MATCH, firstMatch.size());
+        QuestionBitSet seen = savedSeen();
+        assertEquals(MATCH, seen.cardinality());
+        for (Question q : firstMatch) assertTrue(seen.get(q.id));
+
+        // Следующий набор уже готовится; готовый, но не выданный, тоже не отмечен
+        cache.pendingPrefetch().get();
+        assertEquals(MATCH, savedSeen().cardinality());
+
+        List<Question> secondMatch = cache.takeMatchQuestions(MATCH, QuestionSampler.Filter.ANY);
+        seen = savedSeen();
+        assertEquals(2 * MATCH, seen.cardinality());
+        for (Question q : firstMatch) {
+            for (Question other : secondMatch) assertFalse(q.id == other.id);
+        }
+        assertEquals(1.0, cache.getPrefetchHitRate(), 0);
+
+        // Другой фильтр: готовый набор ANY отбрасывается, загрузка синхронная
+        cache.pendingPrefetch().get();
+        List<Question> geography = cache.takeMatchQuestions(MATCH, GEOGRAPHY);
+        assertEquals(MATCH, geography.size());
+        assertEquals(2.0 / 3, cache.getPrefetchHitRate(), 1e-9);
+        assertEquals(3 * MATCH, savedSeen().cardinality());
+
+        cache.pendingPrefetch().get();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // Отменённый GEOGRAPHY, три набора ANY (третий отброшен), синхронный GEOGRAPHY и следующий за ним
+        assertEquals(6, cache.getLoadCount());
+        assertTrue(cache.getLastLoadMillis() <= elapsedMillis);
+        assertTrue(cache.getAverageLoadMillis() <= elapsedMillis);
+    }
+
+    @Test
+    public void bankChangeDropsCachedQuestionsAndPrefetch() throws Exception {
+        int[] some = {ids[0], ids[1], ids[2]};
+        cache.getQuestions(some);
+        cache.prefetchNextMatch(MATCH, QuestionSampler.Filter.ANY);
+        cache.pendingPrefetch().get();
+
+        dbHelper.onQuestionBankChanged();
+
+        assertNull(cache.pendingPrefetch());
+        cache.getQuestions(some);
+        assertEquals(0.0, cache.getLruHitRate(), 0);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.quizapp.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * QuestionDeduplicator на базе из ассета: переформулированный вопрос находится, близкий по тексту,
+ * но другой — нет, шаблонный вопрос с другим ответом — тоже нет; банк индексируется при первом импорте, а не при открытии; удаление вопроса
+ * убирает его сигнатуру и корзины.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuestionDeduplicatorTest {
+
+    // Сходство с BASE по оценке MinHash: переформулировки 0.86-0.92, другие вопросы 0.44 и 0.67 — ниже порога 0.75.
+    // В ассете этих вопросов нет
+    private static final String[] BASE = {
+            "В каком году началась Вторая мировая война?",
+            "Сколько костей в теле взрослого человека?",
+            "Сколько планет в Солнечной системе?"
+    };
+    private static final String[] REWORDED = {
+            "В каком году началась вторая мировая?",
+            "Сколько костей в теле у взрослого человека?",
+            "Сколько всего планет в Солнечной системе?"
+    };
+    private static final String[] DIFFERENT = {
+            "В каком году закончилась Вторая мировая война?",
+            "Сколько зубов во рту взрослого человека?"
+    };
+
+    // Шаблонные вопросы: текст отличается одним словом (сходство 0.92 и 0.98 — выше порога), ответ другой
+    private static final String[][] TEMPLATE_PAIRS = {
+            {"Какой химический элемент обозначается символом Fe?", "Железо",
+                    "Какой химический элемент обозначается символом Au?", "Золото"},
+            {"Сколько будет 12×12?", "144", "Сколько будет 12×11?", "132"}
+    };
+
+    private QuizDatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        dbHelper = QuizDatabaseHelper.getInstance(RuntimeEnvironment.getApplication());
+        db = dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        QuizDatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void settingsSeparateRewordedFromDifferent() {
+        assertEquals(MinHash.NUM_HASHES, MinHash.BANDS * MinHash.ROWS_PER_BAND);
+        for (int i = 0; i < REWORDED.length; i++) {
+            assertTrue(REWORDED[i], similarity(BASE[i], REWORDED[i]) >= QuestionDeduplicator.SIMILARITY_THRESHOLD);
+        }
+        for (int i = 0; i < DIFFERENT.length; i++) {
+            assertTrue(DIFFERENT[i], similarity(BASE[i], DIFFERENT[i]) < QuestionDeduplicator.SIMILARITY_THRESHOLD);
+        }
+        // Полосы подобраны так, что пара на пороге почти наверняка делит корзину, а далёкая — редко
+        assertTrue(candidateProbability(QuestionDeduplicator.SIMILARITY_THRESHOLD) > 0.99);
+        assertTrue(candidateProbability(0.3) < 0.15);
+    }
+
+    @Test
+    public void bankIsIndexedOnFirstImportNotOnOpen() throws IOException {
+        long bank = DatabaseUtils.queryNumEntries(db, QuizDatabaseHelper.TABLE_QUESTIONS);
+        assertTrue(bank > 0);
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_MINHASH));
+
+        // Вопрос из ассета другими словами, ответ тот же, варианты в другом порядке: найден только по сигнатурам банка
+        QuestionPackImporter.Result result = importRows(QuestionPackImporter.DuplicatePolicy.SKIP,
+                "\"Какая река самая длинная в мире?\",Амазонка,Нил,Обь,Лена,1\n");
+
+        assertEquals(1, result.duplicates);
+        assertEquals(0, result.imported);
+        assertEquals(bank, DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_MINHASH));
+        assertEquals(bank * MinHash.BANDS, DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_LSH));
+    }
+
+    @Test
+    public void flagPolicyMarksRewordedQuestionsOnly() throws IOException {
+        importPack(QuestionPackImporter.DuplicatePolicy.SKIP, BASE);
+
+        QuestionPackImporter.Result result = importPack(QuestionPackImporter.DuplicatePolicy.FLAG, concat(REWORDED, DIFFERENT));
+
+        assertEquals(REWORDED.length + DIFFERENT.length, result.imported);
+        assertEquals(REWORDED.length, result.duplicates);
+        for (int i = 0; i < REWORDED.length; i++) assertEquals(idOf(BASE[i]), duplicateOf(idOf(REWORDED[i])));
+        for (String question : DIFFERENT) assertEquals(-1, duplicateOf(idOf(question)));
+    }
+
+    @Test
+    public void skipPolicyDropsRewordedQuestions() throws IOException {
+        importPack(QuestionPackImporter.DuplicatePolicy.SKIP, BASE);
+
+        QuestionPackImporter.Result result = importPack(QuestionPackImporter.DuplicatePolicy.SKIP, concat(REWORDED, DIFFERENT));
+
+        assertEquals(DIFFERENT.length, result.imported);
+        assertEquals(REWORDED.length, result.duplicates);
+        for (String question : REWORDED) assertEquals(-1, idOf(question));
+        for (String question : DIFFERENT) assertTrue(idOf(question) > 0);
+    }
+
+    @Test
+    public void templateVariantsWithDifferentAnswersAreKept() throws IOException {
+        StringBuilder first = new StringBuilder();
+        StringBuilder second = new StringBuilder();
+        for (String[] pair : TEMPLATE_PAIRS) {
+            assertTrue(pair[2], similarity(pair[0], pair[2]) >= QuestionDeduplicator.SIMILARITY_THRESHOLD);
+            first.append(row(pair[0], pair[1], pair[3]));
+            second.append(row(pair[2], pair[3], pair[1]));
+        }
+        importRows(QuestionPackImporter.DuplicatePolicy.SKIP, first.toString());
+
+        QuestionPackImporter.Result result = importRows(QuestionPackImporter.DuplicatePolicy.SKIP, second.toString());
+
+        assertEquals(TEMPLATE_PAIRS.length, result.imported);
+        assertEquals(0, result.duplicates);
+        for (String[] pair : TEMPLATE_PAIRS) assertEquals(-1, duplicateOf(idOf(pair[2])));
+        // Тот же вопрос с тем же ответом, но вариантами в другом порядке — дубликат
+        result = importRows(QuestionPackImporter.DuplicatePolicy.SKIP,
+                row(TEMPLATE_PAIRS[0][0], TEMPLATE_PAIRS[0][1], "Медь"));
+        assertEquals(1, result.duplicates);
+    }
+
+    @Test
+    public void deletingQuestionRemovesSignatureAndBuckets() throws IOException {
+        importPack(QuestionPackImporter.DuplicatePolicy.SKIP, BASE);
+        long id = idOf(BASE[1]);
+        String[] args = {String.valueOf(id)};
+        assertEquals(MinHash.BANDS, DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_LSH, "question_id = ?", args));
+
+        db.delete(QuizDatabaseHelper.TABLE_QUESTIONS, QuizDatabaseHelper.COLUMN_ID + " = ?", args);
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_MINHASH,
+                QuestionDeduplicator.MINHASH_COLUMN_QUESTION_ID + " = ?", args));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_LSH, "question_id = ?", args));
+        // Переформулировка удалённого вопроса больше не дубликат
+        assertEquals(1, importPack(QuestionPackImporter.DuplicatePolicy.SKIP, REWORDED[1]).imported);
+    }
+
+    @Test
+    public void orphanBucketsAreDeleted() throws IOException {
+        importPack(QuestionPackImporter.DuplicatePolicy.SKIP, BASE);
+        long lsh = DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_LSH);
+        // Как в базе v5: триггера для корзин не было
+        db.execSQL("DROP TRIGGER " + QuestionDeduplicator.TABLE_LSH + "_ad");
+        db.delete(QuizDatabaseHelper.TABLE_QUESTIONS, QuizDatabaseHelper.COLUMN_ID + " = " + idOf(BASE[0]), null);
+        assertEquals(lsh, DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_LSH));
+
+        QuestionDeduplicator.deleteOrphanBuckets(db);
+
+        assertEquals(lsh - MinHash.BANDS, DatabaseUtils.queryNumEntries(db, QuestionDeduplicator.TABLE_LSH));
+    }
+
+    private QuestionPackImporter.Result importPack(QuestionPackImporter.DuplicatePolicy policy, String... questions)
+            throws IOException {
+        StringBuilder rows = new StringBuilder();
+        for (String question : questions) rows.append('"').append(question).append("\",а,б,в,г,1\n");
+        return importRows(policy, rows.toString());
+    }
+
+    /** Строка CSV: правильный ответ answer вторым вариантом, other — первым. */
+    private static String row(String question, String answer, String other) {
+        return "\"" + question + "\"," + other + "," + answer + ",x,y,2\n";
+    }
+
+    private QuestionPackImporter.Result importRows(QuestionPackImporter.DuplicatePolicy policy, String rows)
+            throws IOException {
+        String csv = "question,option1,option2,option3,option4,answer_num\n" + rows;
+        QuestionPackImporter importer = new QuestionPackImporter(dbHelper);
+        importer.setDuplicatePolicy(policy);
+        return importer.importPack(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                QuestionPackReader.Format.CSV, null);
+    }
+
+    private long idOf(String question) {
+        try (Cursor c = db.rawQuery("SELECT " + QuizDatabaseHelper.COLUMN_ID + " FROM " + QuizDatabaseHelper.TABLE_QUESTIONS +
+                " WHERE " + QuizDatabaseHelper.COLUMN_QUESTION + " = ?", new String[]{question})) {
+            return c.moveToFirst() ? c.getLong(0) : -1;
+        }
+    }
+
+    private long duplicateOf(long id) {
+        try (Cursor c = db.rawQuery("SELECT " + QuestionDeduplicator.MINHASH_COLUMN_DUPLICATE_OF + " FROM " +
+                QuestionDeduplicator.TABLE_MINHASH + " WHERE " + QuestionDeduplicator.MINHASH_COLUMN_QUESTION_ID + " = ?",
+                new String[]{String.valueOf(id)})) {
+            assertTrue("нет сигнатуры у " + id, c.moveToFirst());
+            return c.isNull(0) ? -1 : c.getLong(0);
+        }
+    }
+
+    private static double similarity(String a, String b) {
+        return MinHash.similarity(MinHash.signature(a), MinHash.signature(b));
+    }
+
+    /** Вероятность, что пара со сходством j совпадёт хотя бы в одной полосе LSH. */
+    private static double candidateProbability(double j) {
+        return 1 - Math.pow(1 - Math.pow(j, MinHash.ROWS_PER_BAND), MinHash.BANDS);
+    }
+
+    private static String[] concat(String[] a, String[] b) {
+        String[] result = new String[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
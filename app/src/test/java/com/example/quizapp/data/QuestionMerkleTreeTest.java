@@ -0,0 +1,90 @@
+package com.example.quizapp.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * QuestionMerkleTree на базе из ассета: первая загрузка строит и сохраняет все листья, следующие
+ * пересчитывают только листья, помеченные триггерами, и дают то же дерево, что полное построение.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuestionMerkleTreeTest {
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = QuizDatabaseHelper.getInstance(RuntimeEnvironment.getApplication()).getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        QuizDatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void firstLoadBuildsAndSavesAllLeaves() {
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, QuestionMerkleTree.TABLE_LEAVES));
+
+        QuestionMerkleTree tree = QuestionMerkleTree.load(db);
+
+        assertEquals(QuestionMerkleTree.LEAF_COUNT, tree.leavesRecomputed());
+        assertEquals(QuestionMerkleTree.LEAF_COUNT, DatabaseUtils.queryNumEntries(db, QuestionMerkleTree.TABLE_LEAVES));
+        assertNotEquals(0, tree.root());
+        assertEquals(QuestionMerkleTree.build(db).root(), tree.root());
+        assertEquals(0, QuestionMerkleTree.load(db).leavesRecomputed());
+    }
+
+    @Test
+    public void changesRecomputeOnlyTheirLeaves() {
+        long before = QuestionMerkleTree.load(db).root();
+
+        long first = insert("Сколько костей в теле взрослого человека?", 1L << 60);
+        insert("Сколько зубов во рту взрослого человека?", (1L << 60) + 1); // тот же лист
+        insert("Сколько материков на Земле?", -42L);
+        QuestionMerkleTree afterInsert = QuestionMerkleTree.load(db);
+        assertEquals(2, afterInsert.leavesRecomputed());
+        assertNotEquals(before, afterInsert.root());
+        assertEquals(QuestionMerkleTree.build(db).root(), afterInsert.root());
+
+        // Смена content_hash помечает и старый, и новый лист
+        ContentValues hash = new ContentValues();
+        hash.put(QuizDatabaseHelper.COLUMN_CONTENT_HASH, 7L);
+        db.update(QuizDatabaseHelper.TABLE_QUESTIONS, hash, QuizDatabaseHelper.COLUMN_ID + " = " + first, null);
+        QuestionMerkleTree afterUpdate = QuestionMerkleTree.load(db);
+        assertEquals(2, afterUpdate.leavesRecomputed());
+        assertEquals(QuestionMerkleTree.build(db).root(), afterUpdate.root());
+
+        db.delete(QuizDatabaseHelper.TABLE_QUESTIONS, QuizDatabaseHelper.COLUMN_CONTENT_HASH + " IN (7, ?, -42)",
+                new String[]{String.valueOf((1L << 60) + 1)});
+        QuestionMerkleTree afterDelete = QuestionMerkleTree.load(db);
+        assertEquals(3, afterDelete.leavesRecomputed());
+        assertEquals(before, afterDelete.root());
+        assertEquals(0, QuestionMerkleTree.load(db).leavesRecomputed());
+    }
+
+    private long insert(String question, long contentHash) {
+        ContentValues values = new ContentValues();
+        values.put(QuizDatabaseHelper.COLUMN_QUESTION, question);
+        values.put(QuizDatabaseHelper.COLUMN_OPTION1, "а");
+        values.put(QuizDatabaseHelper.COLUMN_OPTION2, "б");
+        values.put(QuizDatabaseHelper.COLUMN_OPTION3, "в");
+        values.put(QuizDatabaseHelper.COLUMN_OPTION4, "г");
+        values.put(QuizDatabaseHelper.COLUMN_ANSWER_NUM, 1);
+        values.put(QuizDatabaseHelper.COLUMN_CONTENT_HASH, contentHash);
+        return db.insert(QuizDatabaseHelper.TABLE_QUESTIONS, null, values);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.quizapp.data;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Ограничения длины в QuestionPackReader: слишком длинная строка JSON lines и слишком длинный
+ * вариант ответа в CSV отклоняются, а следующие записи читаются как обычно.
+ * Файл .json читается как массив объектов, а не как JSON lines.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuestionPackReaderTest {
+
+    private static final String CSV_HEADER = "question,option1,option2,option3,option4,answer_num\n";
+
+    @Test
+    public void overlongJsonLineIsRejectedAndNextLineIsRead() throws IOException {
+        String pack = "{\"question\":\"" + repeat('я', 100_000) + "\",\"options\":[\"a\",\"b\",\"c\",\"d\"],\"answer\":1}\n"
+                + "{\"question\":\"Столица Франции?\",\"options\":[\"Париж\",\"Лион\",\"Ницца\",\"Марсель\"],\"answer\":1}\n";
+        try (QuestionPackReader reader = reader(pack, QuestionPackReader.Format.JSON_LINES)) {
+            QuestionPackReader.Row row = new QuestionPackReader.Row();
+
+            assertTrue(reader.next(row));
+            assertEquals(1, row.lineNumber);
+            assertNotNull(row.error);
+            assertTrue(row.error, row.error.startsWith("слишком длинная строка"));
+
+            assertTrue(reader.next(row));
+            assertEquals(2, row.lineNumber);
+            assertNull(row.error);
+            assertEquals("Столица Франции?", row.question);
+            assertEquals("Марсель", row.options[3]);
+
+            assertFalse(reader.next(row));
+        }
+    }
+
+    @Test
+    public void overlongCsvOptionIsRejected() throws IOException {
+        String pack = CSV_HEADER
+                + "Вопрос?,a,b," + repeat('x', 10_000) + ",d,1\n"
+                + "Столица Франции?,Париж,Лион,Ницца,Марсель,1\n";
+        try (QuestionPackReader reader = reader(pack, QuestionPackReader.Format.CSV)) {
+            QuestionPackReader.Row row = new QuestionPackReader.Row();
+
+            assertTrue(reader.next(row));
+            assertEquals("слишком длинный вариант ответа 3", row.error);
+
+            assertTrue(reader.next(row));
+            assertNull(row.error);
+            assertEquals("Ницца", row.options[2]);
+
+            assertFalse(reader.next(row));
+        }
+    }
+
+    @Test
+    public void formatFollowsFileExtension() {
+        assertEquals(QuestionPackReader.Format.JSON_LINES, QuestionPackReader.Format.fromFileName("pack.jsonl"));
+        assertEquals(QuestionPackReader.Format.JSON_LINES, QuestionPackReader.Format.fromFileName("pack.NDJSON"));
+        assertEquals(QuestionPackReader.Format.JSON_ARRAY, QuestionPackReader.Format.fromFileName("pack.json"));
+        assertEquals(QuestionPackReader.Format.CSV, QuestionPackReader.Format.fromFileName("pack.csv"));
+    }
+
+    @Test
+    public void jsonArrayIsReadObjectByObject() throws IOException {
+        String pack = "[\n"
+                + "  {\n"
+                + "    \"question\": \"Что в скобках {}?\",\n"
+                + "    \"options\": [\"a\", \"b ]\", \"c \\\"}\\\"\", \"d\"],\n"
+                + "    \"answer\": 2\n"
+                + "  },\n"
+                + "  {\"question\": \"Без ответа\", \"options\": [\"a\", \"b\", \"c\", \"d\"]},\n"
+                + "  {\"question\": \"Столица Франции?\", \"option1\": \"Париж\", \"option2\": \"Лион\","
+                + " \"option3\": \"Ницца\", \"option4\": \"Марсель\", \"answer_num\": 1, \"category\": \"geography\"}\n"
+                + "]\n";
+        try (QuestionPackReader reader = reader(pack, QuestionPackReader.Format.JSON_ARRAY)) {
+            QuestionPackReader.Row row = new QuestionPackReader.Row();
+
+            assertTrue(reader.next(row));
+            assertEquals(2, row.lineNumber);
+            assertNull(row.error);
+            assertEquals("Что в скобках {}?", row.question);
+            assertEquals("b ]", row.options[1]);
+            assertEquals("c \"}\"", row.options[2]);
+            assertEquals(2, row.answerNum);
+
+            assertTrue(reader.next(row));
+            assertEquals(7, row.lineNumber);
+            assertEquals("answer_num должен быть 1..4", row.error);
+
+            assertTrue(reader.next(row));
+            assertEquals(8, row.lineNumber);
+            assertNull(row.error);
+            assertEquals("Марсель", row.options[3]);
+            assertEquals("geography", row.category);
+
+            assertFalse(reader.next(row));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void jsonFileWithoutArrayIsRejected() throws IOException {
+        try (QuestionPackReader reader = reader("{\"question\": \"?\"}\n", QuestionPackReader.Format.JSON_ARRAY)) {
+            reader.next(new QuestionPackReader.Row());
+        }
+    }
+
+    private static QuestionPackReader reader(String pack, QuestionPackReader.Format format) {
+        return new QuestionPackReader(new ByteArrayInputStream(pack.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) sb.append(c);
+        return sb.toString();
+    }
+}
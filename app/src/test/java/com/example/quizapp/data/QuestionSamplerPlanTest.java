@@ -0,0 +1,181 @@
+package com.example.quizapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Проверяет, что выборка по теме/сложности идёт только поисками по индексам:
+ * в EXPLAIN QUERY PLAN нет ни SCAN (полного прохода), ни USE TEMP B-TREE (сортировки).
+ * Заодно — новый круг, когда все вопросы (под фильтром) уже показаны.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuestionSamplerPlanTest {
+
+    private static final String[] CATEGORIES = {"geography", "history", "science"};
+    private static final int ROWS = 3000;
+
+    private static final QuestionSampler.Filter[] FILTERS = {
+            QuestionSampler.Filter.ANY,
+            new QuestionSampler.Filter("science", 0),
+            new QuestionSampler.Filter(null, 2),
+            new QuestionSampler.Filter("science", 2)
+    };
+
+    private QuizDatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        dbHelper = QuizDatabaseHelper.getInstance(RuntimeEnvironment.getApplication());
+        db = dbHelper.getWritableDatabase();
+        db.delete(QuizDatabaseHelper.TABLE_QUESTIONS, null, null);
+
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < ROWS; i++) {
+                values.put(QuizDatabaseHelper.COLUMN_QUESTION, "Вопрос " + i);
+                values.put(QuizDatabaseHelper.COLUMN_OPTION1, "a");
+                values.put(QuizDatabaseHelper.COLUMN_OPTION2, "b");
+                values.put(QuizDatabaseHelper.COLUMN_OPTION3, "c");
+                values.put(QuizDatabaseHelper.COLUMN_OPTION4, "d");
+                values.put(QuizDatabaseHelper.COLUMN_ANSWER_NUM, 1);
+                values.put(QuizDatabaseHelper.COLUMN_CATEGORY, CATEGORIES[i % CATEGORIES.length]);
+                values.put(QuizDatabaseHelper.COLUMN_DIFFICULTY, 1 + (i / CATEGORIES.length) % 3);
+                db.insert(QuizDatabaseHelper.TABLE_QUESTIONS, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        QuizDatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void samplerQueriesUseIndexSearchesOnly() {
+        for (QuestionSampler.Filter filter : FILTERS) {
+            String[] filterArgs = filter.args();
+            assertIndexOnly(QuestionSampler.minIdSql(filter), filterArgs);
+            assertIndexOnly(QuestionSampler.maxIdSql(filter), filterArgs);
+            assertIndexOnly(QuestionSampler.exactSql(filter), withId(filterArgs));
+            assertIndexOnly(QuestionSampler.ceilingSql(filter), withId(filterArgs));
+        }
+    }
+
+    @Test
+    public void filteredSampleStaysInsideFilter() {
+        QuestionSampler sampler = new QuestionSampler(new Random(42));
+        QuestionSampler.Filter filter = new QuestionSampler.Filter("science", 2);
+
+        int[] ids = sampler.sample(db, 5, new QuestionBitSet(), filter);
+
+        assertEquals(5, ids.length);
+        assertEquals(5, Arrays.stream(ids).distinct().count());
+        for (int id : ids) {
+            try (Cursor c = db.rawQuery("SELECT " + QuizDatabaseHelper.COLUMN_CATEGORY + ", " +
+                    QuizDatabaseHelper.COLUMN_DIFFICULTY + " FROM " + QuizDatabaseHelper.TABLE_QUESTIONS +
+                    " WHERE " + QuizDatabaseHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(id)})) {
+                assertTrue(c.moveToFirst());
+                assertEquals("science", c.getString(0));
+                assertEquals(2, c.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void emptyFilterReturnsNothing() {
+        int[] ids = new QuestionSampler().sample(db, 5, null, new QuestionSampler.Filter("sport", 0));
+        assertEquals(0, ids.length);
+    }
+
+    @Test
+    public void exhaustedBankStartsNewRound() {
+        QuestionBitSet seen = new QuestionBitSet();
+        assertEquals(ROWS, markAll(seen, QuestionSampler.Filter.ANY));
+
+        int[] ids = new QuestionSampler(new Random(7)).sample(db, 5, seen);
+
+        assertEquals(5, ids.length);
+        assertEquals(5, Arrays.stream(ids).distinct().count());
+        // Старый круг сброшен, в seen только что выбранные
+        assertEquals(5, seen.cardinality());
+        for (int id : ids) assertTrue(seen.get(id));
+    }
+
+    @Test
+    public void exhaustedFilterStartsNewRoundOnlyInsideFilter() {
+        QuestionSampler.Filter filter = new QuestionSampler.Filter("science", 2);
+        QuestionBitSet seen = new QuestionBitSet();
+        markAll(seen, QuestionSampler.Filter.ANY);
+        int inFilter = markAll(new QuestionBitSet(), filter);
+
+        int[] ids = new QuestionSampler(new Random(7)).sample(db, 5, seen, filter);
+
+        assertEquals(5, ids.length);
+        // Вопросы других тем остались показанными
+        assertEquals(ROWS - inFilter + 5, seen.cardinality());
+        for (int id : ids) assertTrue(seen.get(id));
+    }
+
+    @Test
+    public void categoriesAreDistinctAndSorted() {
+        List<String> categories = dbHelper.getCategories();
+        assertEquals(Arrays.asList(CATEGORIES), categories);
+    }
+
+    private void assertIndexOnly(String sql, String[] args) {
+        try (Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detailCol = c.getColumnIndexOrThrow("detail");
+            assertTrue("пустой план: " + sql, c.getCount() > 0);
+            while (c.moveToNext()) {
+                String detail = c.getString(detailCol);
+                assertFalse(sql + " -> " + detail, detail.startsWith("SCAN"));
+                assertFalse(sql + " -> " + detail, detail.contains("TEMP B-TREE"));
+            }
+        }
+    }
+
+    /** Отмечает в seen все вопросы под фильтром; возвращает их число. */
+    private int markAll(QuestionBitSet seen, QuestionSampler.Filter filter) {
+        String where = filter.whereClause();
+        int n = 0;
+        try (Cursor c = db.rawQuery("SELECT " + QuizDatabaseHelper.COLUMN_ID + " FROM " + QuizDatabaseHelper.TABLE_QUESTIONS +
+                (where.isEmpty() ? "" : " WHERE " + where), filter.args())) {
+            while (c.moveToNext()) {
+                seen.set(c.getInt(0));
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static String[] withId(String[] filterArgs) {
+        int n = filterArgs == null ? 0 : filterArgs.length;
+        String[] args = new String[n + 1];
+        args[0] = "1";
+        if (n > 0) System.arraycopy(filterArgs, 0, args, 1, n);
+        return args;
+    }
+}
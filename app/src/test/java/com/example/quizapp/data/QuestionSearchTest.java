@@ -0,0 +1,232 @@
+package com.example.quizapp.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.quizapp.QuizDatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * QuestionSearch поверх базы из ассета (FTS4, триггеры из onCreate): русский и английский текст,
+ * порядок релевантности, страницы, однобуквенный запрос к банку 100k, синхронизация индекса триггерами
+ * и построение индекса миграцией.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuestionSearchTest {
+
+    private QuizDatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+    private QuestionSearch search;
+
+    @Before
+    public void setUp() {
+        dbHelper = QuizDatabaseHelper.getInstance(RuntimeEnvironment.getApplication());
+        db = dbHelper.getWritableDatabase();
+        // Триггер удаления чистит и индекс, дальше в банке только вопросы теста
+        db.delete(QuizDatabaseHelper.TABLE_QUESTIONS, null, null);
+        search = new QuestionSearch(dbHelper);
+    }
+
+    @After
+    public void tearDown() {
+        QuizDatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void bundledIndexIsFts4() {
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = ? AND sql LIKE '%fts4%'",
+                new String[]{QuestionSearch.TABLE_FTS}));
+    }
+
+    @Test
+    public void matchesRussianAndEnglishIgnoringCaseAndYo() {
+        long hedgehog = insert("Ёжик в тумане — чей мультфильм?", "Норштейна", "Диснея", "Миядзаки", "Котёночкина");
+        long capital = insert("What is the capital of France?", "Paris", "Lyon", "Nice", "Marseille");
+        insert("Сколько ног у паука?", "6", "8", "10", "12");
+
+        assertEquals(ids(hedgehog), found("ежик"));
+        assertEquals(ids(hedgehog), found("ЁЖИК туман"));      // префиксы, оба слова
+        assertEquals(ids(hedgehog), found("котеночкин"));      // в варианте ответа
+        assertEquals(ids(capital), found("CAPITAL"));
+        assertEquals(ids(capital), found("franc par"));
+        assertTrue(found("ежик paris").isEmpty());            // слова объединяются по И
+        // Операторы FTS из ввода не проходят
+        assertEquals(ids(capital), found("\"capital\" -paris*"));
+        assertNull(QuestionSearch.toMatchQuery("  ?! "));
+        assertTrue(search.search("  ?! ", 0, 10).questions.isEmpty());
+    }
+
+    @Test
+    public void rankingCountsMatchesAndWeighsQuestionAboveOptions() {
+        long optionOnly = insert("Какая река течёт через город?", "Сена", "Париж", "Рона", "Луара");
+        long both = insert("Париж — столица какой страны? Париж", "Франции", "Париж", "Италии", "Испании");
+        long questionOnly = insert("Где находится Париж?", "Во Франции", "В Италии", "В Испании", "В Польше");
+        long twoOptions = insert("Какие города во Франции?", "Париж и Лион", "Рим", "Берлин", "Париж и Ницца");
+
+        assertEquals(ids(both, questionOnly, twoOptions, optionOnly), found("париж"));
+    }
+
+    @Test
+    public void pagesFollowOffsetAndLimit() {
+        int total = 25;
+        for (int i = 0; i < total; i++) insert("Планета номер " + i + "?", "a", "b", "c", "d");
+        insert("Другой вопрос", "a", "b", "c", "d");
+
+        Set<Integer> seen = new HashSet<>();
+        int offset = 0;
+        QuestionSearch.Page page;
+        do {
+            page = search.search("планета", offset, 10);
+            assertEquals(offset, page.offset);
+            assertEquals(Math.min(10, total - offset), page.questions.size());
+            for (Question q : page.questions) assertTrue("повтор на другой странице", seen.add(q.id));
+            offset += page.questions.size();
+        } while (page.hasMore);
+        assertEquals(total, seen.size());
+        assertTrue(search.search("планета", total, 10).questions.isEmpty());
+        assertTrue(search.search("планета", 0, 0).questions.isEmpty());
+    }
+
+    @Test
+    public void oneLetterQueryOnBigBankIsWholeWordAndCapped() {
+        int total = 100_000;
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT INTO " + QuizDatabaseHelper.TABLE_QUESTIONS + "(" +
+                QuizDatabaseHelper.COLUMN_QUESTION + ", " + QuizDatabaseHelper.COLUMN_OPTION1 + ", " +
+                QuizDatabaseHelper.COLUMN_OPTION2 + ", " + QuizDatabaseHelper.COLUMN_OPTION3 + ", " +
+                QuizDatabaseHelper.COLUMN_OPTION4 + ", " + QuizDatabaseHelper.COLUMN_ANSWER_NUM +
+                ") VALUES (?, 'a', 'b', 'c', 'd', 1)")) {
+            for (int i = 0; i < total; i++) {
+                // Слово "в" — в каждом втором вопросе, слова на "в" — во всех
+                insert.bindString(1, "Вопрос " + i + (i % 2 == 0 ? " в списке" : " вне списка"));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Одна буква — целое слово, а не префикс почти всего банка
+        assertEquals("в", QuestionSearch.toMatchQuery("В"));
+        QuestionSearch.Page first = search.search("в", 0, QuestionSearch.DEFAULT_PAGE_SIZE);
+        assertEquals(QuestionSearch.DEFAULT_PAGE_SIZE, first.questions.size());
+        assertTrue(first.hasMore);
+        for (Question q : first.questions) assertTrue(q.question, q.question.endsWith(" в списке"));
+        for (Question q : search.search("вн", 0, 10).questions) assertTrue(q.question, q.question.endsWith(" вне списка"));
+
+        // 50k совпадений, ранжируются первые MAX_RANKED: выдача на них и обрывается
+        QuestionSearch.Page last = search.search("в", QuestionSearch.MAX_RANKED - 5, 20);
+        assertEquals(5, last.questions.size());
+        assertFalse(last.hasMore);
+        assertTrue(search.search("в", QuestionSearch.MAX_RANKED, 20).questions.isEmpty());
+    }
+
+    @Test
+    public void triggersKeepIndexInSync() {
+        long id = insert("Самая длинная река?", "Нил", "Амазонка", "Янцзы", "Миссисипи");
+        assertEquals(ids(id), found("река"));
+
+        ContentValues text = new ContentValues();
+        text.put(QuizDatabaseHelper.COLUMN_QUESTION, "Самое глубокое озеро?");
+        db.update(QuizDatabaseHelper.TABLE_QUESTIONS, text, QuizDatabaseHelper.COLUMN_ID + " = " + id, null);
+        assertTrue(found("река").isEmpty());
+        assertEquals(ids(id), found("озеро"));
+
+        // Тема не индексируется — обновление её индекс не трогает
+        ContentValues category = new ContentValues();
+        category.put(QuizDatabaseHelper.COLUMN_CATEGORY, "geography");
+        db.update(QuizDatabaseHelper.TABLE_QUESTIONS, category, QuizDatabaseHelper.COLUMN_ID + " = " + id, null);
+        assertEquals(ids(id), found("озеро амазонка"));
+
+        db.delete(QuizDatabaseHelper.TABLE_QUESTIONS, QuizDatabaseHelper.COLUMN_ID + " = " + id, null);
+        assertTrue(found("озеро").isEmpty());
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, QuestionSearch.TABLE_FTS));
+    }
+
+    @Test
+    public void migrationBuildsFts4IndexFromExistingQuestions() {
+        long kept = insert("Столица Японии?", "Токио", "Киото", "Осака", "Нагоя");
+        dropIndex();
+
+        QuestionSearch.createIndex(db, false);
+        QuestionSearch.createIndex(db, false); // повторный вызов ничего не меняет
+
+        QuestionSearch fresh = new QuestionSearch(dbHelper);
+        assertEquals(1, fresh.search("токио", 0, 10).questions.size());
+        assertEquals(kept, fresh.search("токио", 0, 10).questions.get(0).id);
+        long added = insert("Столица Кореи?", "Сеул", "Пусан", "Инчхон", "Тэгу");
+        assertEquals(2, fresh.search("столица", 0, 10).questions.size());
+        assertEquals(added, fresh.search("сеул", 0, 10).questions.get(0).id);
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, QuestionSearch.TABLE_FTS));
+    }
+
+    @Test
+    public void fts5WeighsQuestionAboveOptions() {
+        long inOption = insert("Какая река течёт через город?", "Сена", "Париж", "Рона", "Луара");
+        long inQuestion = insert("Где находится Париж?", "Во Франции", "В Италии", "В Испании", "В Польше");
+        dropIndex();
+        QuestionSearch.createIndex(db);
+        assumeTrue("в SQLite нет FTS5", DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = ? AND sql LIKE '%fts5%'",
+                new String[]{QuestionSearch.TABLE_FTS}) == 1);
+
+        QuestionSearch fresh = new QuestionSearch(dbHelper);
+        List<Question> ranked = fresh.search("париж", 0, 10).questions;
+        assertEquals(2, ranked.size());
+        assertEquals(inQuestion, ranked.get(0).id);
+        assertEquals(inOption, ranked.get(1).id);
+        // Триггеры для FTS5 — по rowid
+        db.delete(QuizDatabaseHelper.TABLE_QUESTIONS, QuizDatabaseHelper.COLUMN_ID + " = " + inQuestion, null);
+        assertEquals(1, fresh.search("париж", 0, 10).questions.size());
+    }
+
+    private void dropIndex() {
+        for (String suffix : new String[]{"_ai", "_ad", "_au"}) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + QuestionSearch.TABLE_FTS + suffix);
+        }
+        db.execSQL("DROP TABLE " + QuestionSearch.TABLE_FTS);
+    }
+
+    private long insert(String question, String... options) {
+        ContentValues values = new ContentValues();
+        values.put(QuizDatabaseHelper.COLUMN_QUESTION, question);
+        values.put(QuizDatabaseHelper.COLUMN_OPTION1, options[0]);
+        values.put(QuizDatabaseHelper.COLUMN_OPTION2, options[1]);
+        values.put(QuizDatabaseHelper.COLUMN_OPTION3, options[2]);
+        values.put(QuizDatabaseHelper.COLUMN_OPTION4, options[3]);
+        values.put(QuizDatabaseHelper.COLUMN_ANSWER_NUM, 1);
+        return db.insert(QuizDatabaseHelper.TABLE_QUESTIONS, null, values);
+    }
+
+    private List<Long> found(String query) {
+        List<Long> result = new ArrayList<>();
+        for (Question q : search.search(query, 0, 50).questions) result.add((long) q.id);
+        return result;
+    }
+
+    private static List<Long> ids(long... ids) {
+        List<Long> result = new ArrayList<>();
+        for (long id : ids) result.add(id);
+        return result;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.quizapp.p2p;
+
+import com.example.quizapp.data.Question;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FramedLink через TCP на loopback: порядок и целостность кадров, пропускная способность (в stdout)
+ * и протокол закрытия — об обрыве сообщает только тот конец, который его не инициировал.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FramedLinkTest {
+
+    private static final Heartbeat.Config FAST = new Heartbeat.Config(20, 3);
+
+    private Socket left;
+    private Socket right;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            left = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+            right = server.accept();
+        }
+        left.setTcpNoDelay(true);
+        right.setTcpNoDelay(true);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        left.close();
+        right.close();
+    }
+
+    @Test
+    public void deliversFramesInOrderAcrossBufferBoundaries() throws Exception {
+        int count = 20_000;
+        Recorder receiver = new Recorder(count + 1);
+        FramedLink a = link("a", left, Heartbeat.Config.DEFAULT, new Recorder(0));
+        FramedLink b = link("b", right, Heartbeat.Config.DEFAULT, receiver);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            // Очередь ограничена: при переполнении ждём, пока поток записи её разгрузит
+            while (!a.send(answer(i), null)) Thread.sleep(1);
+        }
+        // Кадр больше буфера чтения — буфер должен вырасти
+        a.send(new GameDataModel(GameDataModel.DataType.START_GAME, new ArrayList<>(questions(300))), null);
+
+        assertTrue(receiver.frames.await(20, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        System.out.println("FramedLink: " + count + " ответов за " + elapsed / 1_000_000 + " мс, " +
+                count * 1_000_000_000L / elapsed + " кадров/с");
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, ((PlayerAnswer) ((GameDataModel) receiver.received.get(i)).data).questionIndex);
+        }
+        List<?> start300 = (List<?>) ((GameDataModel) receiver.received.get(count)).data;
+        assertEquals(300, start300.size());
+        a.close();
+        b.close();
+    }
+
+    @Test
+    public void onlyTheOtherEndReportsClose() throws Exception {
+        Recorder closer = new Recorder(0);
+        Recorder peer = new Recorder(1);
+        FramedLink a = link("a", left, Heartbeat.Config.DEFAULT, closer);
+        FramedLink b = link("b", right, Heartbeat.Config.DEFAULT, peer);
+
+        a.send(new GameDataModel(GameDataModel.DataType.GAME_OVER, null), null);
+        a.close(); // GAME_OVER из очереди уходит до закрытия сокета
+
+        awaitOnMain(peer.closed);
+        assertTrue(peer.frames.await(1, TimeUnit.SECONDS));
+        assertTrue(peer.cause.get() instanceof EOFException);
+        assertFalse(peer.peerDead);
+        Thread.sleep(100);
+        ShadowLooper.idleMainLooper();
+        assertEquals(0, closer.closedCount.get());
+        assertFalse(a.isOpen());
+        assertFalse(b.isOpen());
+        assertFalse("закрытое соединение приняло сообщение", a.send("PLAYER_NAME:x", null));
+    }
+
+    @Test
+    public void silentPeerIsReportedAsDead() throws Exception {
+        Recorder recorder = new Recorder(0);
+        // Сокет соперника открыт, но на ping никто не отвечает
+        link("a", left, FAST, recorder);
+
+        awaitOnMain(recorder.closed);
+        assertTrue(recorder.peerDead);
+        assertEquals(1, recorder.closedCount.get());
+    }
+
+    private static FramedLink link(String name, Socket socket, Heartbeat.Config heartbeat, Recorder recorder)
+            throws IOException {
+        FramedLink link = new FramedLink(name, socket.getInputStream(), socket.getOutputStream(), socket,
+                heartbeat, recorder);
+        link.start();
+        return link;
+    }
+
+    /** onClosed приходит через главный поток — прокручиваем его, пока ждём. */
+    private static void awaitOnMain(CountDownLatch latch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!latch.await(5, TimeUnit.MILLISECONDS)) {
+            ShadowLooper.idleMainLooper();
+            assertTrue("onClosed не пришёл", System.nanoTime() < deadline);
+        }
+    }
+
+    private static Serializable answer(int i) {
+        return new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED, new PlayerAnswer(i & 0xFFFF, i % 4, i % 2 == 0, false));
+    }
+
+    private static List<Question> questions(int count) {
+        List<Question> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Question q = new Question();
+            q.id = i;
+            q.question = "Сколько планет в Солнечной системе? (" + i + ")";
+            q.options = new String[]{"Семь", "Восемь", "Девять", "Десять"};
+            q.answerNum = 2;
+            list.add(q);
+        }
+        return list;
+    }
+
+    private static class Recorder implements FramedLink.Listener {
+        final List<Serializable> received = new ArrayList<>();
+        final CountDownLatch frames;
+        final CountDownLatch closed = new CountDownLatch(1);
+        final AtomicInteger closedCount = new AtomicInteger();
+        final AtomicReference<IOException> cause = new AtomicReference<>();
+        volatile boolean peerDead;
+
+        Recorder(int expectedFrames) {
+            frames = new CountDownLatch(expectedFrames);
+        }
+
+        @Override
+        public void onFrame(FramedLink link, Serializable frame) {
+            received.add(frame);
+            frames.countDown();
+        }
+
+        @Override
+        public void onClosed(FramedLink link, boolean peerDead, IOException cause) {
+            this.peerDead = peerDead;
+            this.cause.set(cause);
+            closedCount.incrementAndGet();
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.quizapp.p2p;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Heartbeat: RTT по ping/pong через канал с задержкой и время обнаружения замолчавшего соперника.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HeartbeatTest {
+
+    private static final Heartbeat.Config FAST = new Heartbeat.Config(20, 3);
+    private static final long LINK_DELAY_MS = 5;
+
+    private final ScheduledExecutorService link = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        link.shutdownNow();
+    }
+
+    @Test
+    public void measuresRttBetweenLivePeers() throws Exception {
+        Heartbeat[] peers = new Heartbeat[2];
+        CountDownLatch dead = new CountDownLatch(1);
+        peers[0] = new Heartbeat("a", delayedTo(() -> peers[1]), FAST, silent -> dead.countDown());
+        peers[1] = new Heartbeat("b", delayedTo(() -> peers[0]), FAST, silent -> dead.countDown());
+        peers[0].start();
+        peers[1].start();
+
+        assertFalse("живой соперник объявлен пропавшим", dead.await(500, TimeUnit.MILLISECONDS));
+        peers[0].stop();
+        peers[1].stop();
+
+        Heartbeat.RttStats rtt = peers[0].getRttStats();
+        System.out.println("RTT через канал 2 x " + LINK_DELAY_MS + " мс: " + rtt);
+        assertTrue(rtt.samples >= 10);
+        assertTrue(rtt.p50Micros >= 2 * LINK_DELAY_MS * 1000);
+        assertTrue(rtt.p50Micros <= rtt.p95Micros && rtt.p95Micros <= rtt.p99Micros && rtt.p99Micros <= rtt.maxMicros);
+        assertTrue(rtt.smoothedMicros >= 2 * LINK_DELAY_MS * 1000);
+    }
+
+    @Test
+    public void silentPeerIsDeclaredDeadWithinBound() throws Exception {
+        CountDownLatch dead = new CountDownLatch(1);
+        AtomicLong silentFor = new AtomicLong();
+        // Пинги уходят в никуда: соперник пропал без закрытия сокета
+        Heartbeat heartbeat = new Heartbeat("a", message -> { }, FAST, silent -> {
+            silentFor.set(silent);
+            dead.countDown();
+        });
+        long start = System.nanoTime();
+        heartbeat.start();
+
+        long bound = FAST.intervalMs * (FAST.maxMissed + 1);
+        assertTrue(dead.await(bound + 200, TimeUnit.MILLISECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Пропажа обнаружена через " + elapsed + " мс (граница " + bound + " мс)");
+        assertTrue(silentFor.get() >= FAST.intervalMs * FAST.maxMissed);
+        assertEquals(0, heartbeat.getRttStats().samples);
+    }
+
+    @Test
+    public void anyIncomingFrameKeepsPeerAlive() throws Exception {
+        CountDownLatch dead = new CountDownLatch(1);
+        Heartbeat heartbeat = new Heartbeat("a", message -> { }, FAST, silent -> dead.countDown());
+        heartbeat.start();
+
+        // Понгов нет, но соперник шлёт игровые сообщения — соединение живо
+        Serializable answer = new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED, new PlayerAnswer(0, 1, true, true));
+        for (int i = 0; i < 20; i++) {
+            assertFalse(heartbeat.onFrame(answer));
+            Thread.sleep(10);
+        }
+        assertEquals(1, dead.getCount());
+        heartbeat.stop();
+    }
+
+    private interface Peer {
+        Heartbeat get();
+    }
+
+    /** Канал с односторонней задержкой LINK_DELAY_MS, как у живого соединения. */
+    private Heartbeat.Sender delayedTo(Peer peer) {
+        return message -> link.schedule(() -> peer.get().onFrame(message), LINK_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.quizapp.p2p;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LobbyServer на loopback с 8 клиентами FramedLink: каждый ход рассылается всем, порядок ходов
+ * одного клиента сохраняется; пропускная способность и перцентили задержки выводятся в stdout.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LobbyServerTest {
+
+    private static final int CLIENTS = LobbyServer.MAX_CLIENTS;
+    private static final int MOVES_PER_CLIENT = 1000;
+
+    private final List<FramedLink> links = new ArrayList<>();
+    private final List<Socket> sockets = new ArrayList<>();
+    private LobbyServer lobby;
+
+    @After
+    public void tearDown() throws IOException {
+        for (FramedLink link : links) link.close();
+        for (Socket socket : sockets) socket.close();
+        if (lobby != null) lobby.close();
+    }
+
+    @Test
+    public void broadcastsEveryMoveToAllEightClients() throws Exception {
+        CountDownLatch joined = new CountDownLatch(CLIENTS);
+        lobby = start(CLIENTS, new Relay(joined));
+
+        Player[] players = new Player[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            players[i] = new Player(i);
+            links.add(connect(players[i]));
+        }
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        Thread[] senders = new Thread[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            Player player = players[i];
+            FramedLink link = links.get(i);
+            senders[i] = new Thread(() -> {
+                for (int move = 0; move < MOVES_PER_CLIENT; move++) {
+                    player.sentAt[move] = System.nanoTime();
+                    while (!link.send(move(player.index, move), null)) Thread.yield();
+                }
+            });
+            senders[i].start();
+        }
+        for (Player player : players) {
+            assertTrue("клиент " + player.index + " получил не всё", player.done.await(30, TimeUnit.SECONDS));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] latencies = new long[CLIENTS * MOVES_PER_CLIENT];
+        int n = 0;
+        for (Player player : players) {
+            for (long latency : player.latencyNanos) latencies[n++] = latency;
+            // От каждого отправителя ходы пришли по порядку
+            for (int from = 0; from < CLIENTS; from++) assertEquals(MOVES_PER_CLIENT, player.nextMove[from]);
+        }
+        Arrays.sort(latencies);
+        long delivered = (long) CLIENTS * CLIENTS * MOVES_PER_CLIENT;
+        System.out.println("Лобби " + CLIENTS + " x " + MOVES_PER_CLIENT + " ходов: доставлено " + delivered +
+                " сообщений за " + elapsed / 1_000_000 + " мс, " + delivered * 1_000_000_000L / elapsed + " сообщений/с");
+        System.out.println("Задержка ход -> рассылка обратно, мкс: p50=" + percentile(latencies, 50) / 1000 +
+                " p95=" + percentile(latencies, 95) / 1000 + " p99=" + percentile(latencies, 99) / 1000 +
+                " max=" + latencies[latencies.length - 1] / 1000);
+        System.out.println("Запись сервера: " + lobby.getOutboundMetrics());
+    }
+
+    @Test
+    public void rejectsClientsBeyondCapacityAndReportsLeaving() throws Exception {
+        CountDownLatch joined = new CountDownLatch(2);
+        CountDownLatch left = new CountDownLatch(1);
+        AtomicInteger leftId = new AtomicInteger();
+        lobby = start(2, new LobbyServer.Listener() {
+            @Override public void onClientJoined(int clientId) { joined.countDown(); }
+            @Override public void onFrame(int clientId, Serializable frame) { }
+            @Override public void onClientLeft(int clientId, boolean peerDead) {
+                leftId.set(clientId);
+                left.countDown();
+            }
+        });
+        links.add(connect(new Player(0)));
+        links.add(connect(new Player(1)));
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+
+        // Третий принимается и сразу закрывается: чтение видит конец потока
+        Socket extra = new Socket(InetAddress.getLoopbackAddress(), lobby.getLocalPort());
+        sockets.add(extra);
+        extra.setSoTimeout(2000);
+        assertEquals(-1, extra.getInputStream().read());
+        assertEquals(2, lobby.clientCount());
+
+        links.get(0).close();
+        assertTrue(left.await(5, TimeUnit.SECONDS));
+        assertEquals(1, leftId.get());
+        assertEquals(1, lobby.clientCount());
+    }
+
+    private static LobbyServer start(int capacity, LobbyServer.Listener listener) throws IOException {
+        LobbyServer server = new LobbyServer("TestLobby", new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                capacity, Heartbeat.Config.DEFAULT, listener);
+        server.start();
+        return server;
+    }
+
+    private FramedLink connect(Player player) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), lobby.getLocalPort());
+        socket.setTcpNoDelay(true);
+        sockets.add(socket);
+        FramedLink link = new FramedLink("client" + player.index, socket.getInputStream(), socket.getOutputStream(),
+                socket, Heartbeat.Config.DEFAULT, player);
+        link.start();
+        return link;
+    }
+
+    /** Ход: номер клиента и номер хода в одном int. */
+    private static Serializable move(int player, int move) {
+        return new GameDataModel(GameDataModel.DataType.QUESTION_INDEX, player * 1_000_000 + move);
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /** Сервер как концентратор: каждый ход уходит всем, включая автора (по нему считается задержка). */
+    private class Relay implements LobbyServer.Listener {
+        private final CountDownLatch joined;
+
+        Relay(CountDownLatch joined) {
+            this.joined = joined;
+        }
+
+        @Override
+        public void onClientJoined(int clientId) {
+            joined.countDown();
+        }
+
+        @Override
+        public void onFrame(int clientId, Serializable frame) {
+            lobby.broadcast(frame);
+        }
+
+        @Override
+        public void onClientLeft(int clientId, boolean peerDead) {
+        }
+    }
+
+    private static class Player implements FramedLink.Listener {
+        final int index;
+        final long[] sentAt = new long[MOVES_PER_CLIENT];
+        final long[] latencyNanos = new long[MOVES_PER_CLIENT];
+        final int[] nextMove = new int[CLIENTS];
+        final CountDownLatch done = new CountDownLatch(CLIENTS * MOVES_PER_CLIENT);
+
+        Player(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onFrame(FramedLink link, Serializable frame) {
+            int value = (Integer) ((GameDataModel) frame).data;
+            int from = value / 1_000_000;
+            int move = value % 1_000_000;
+            if (move != nextMove[from]) throw new AssertionError("ход " + move + " от " + from + " вне порядка");
+            nextMove[from]++;
+            if (from == index) latencyNanos[move] = System.nanoTime() - sentAt[move];
+            done.countDown();
+        }
+
+        @Override
+        public void onClosed(FramedLink link, boolean peerDead, IOException cause) {
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.example.quizapp.p2p;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoopbackP2PManager — транспорт P2PManager без радио: пара точек в одном процессе, соединённых очередями.
+ * Тестовый: лежит в тестовом наборе и в приложение не попадает.
+ *
+ * Особенности:
+ * - pair() создаёт две точки; каждая видит другую в startDiscovery() и подключается по её адресу
+ * - кадры проходят через WireCodec, как по сокету: кодек и размеры кадров те же, что на устройстве
+ * - канал моделируется Config: задержка с разбросом, полоса (кадры встают в очередь передачи)
+ *   и доля потерянных кадров; порядок доставки сохраняется, как в TCP и RFCOMM
+ * - колбэки ConnectionListener приходят в потоке доставки точки-получателя, по одному, в порядке событий;
+ *   главного потока и Android здесь нет — точка работает на обычной JVM
+ * - как настоящие транспорты, сама отвечает на REQUEST_PLAYER_NAME и REQUEST_BANK_HASH и после
+ *   соединения отправляет PLAYER_NAME:<ник>
+ * - dropConnection() рвёт связь (кадры в пути пропадают, обе стороны получают onDisconnected),
+ *   reconnect() поднимает её заново, если это не запрещено setReconnectAllowed(false);
+ *   stop() — штатный выход: onDisconnected получает только соперник
+ * - соединение поднимается за рукопожатие (2 x latencyMs): до onConnected кадры не уходят, как в сокет,
+ *   который ещё не открыт
+ * - у связи есть номер соединения: кадры и onConnected, отправленные в прошлое соединение,
+ *   при доставке после обрыва отбрасываются
+ */
+public final class LoopbackP2PManager implements P2PManager {
+
+    /** Параметры канала; одни на обе стороны. */
+    public static final class Config {
+        public static final Config IDEAL = new Config(0, 0, 0, 0, 1);
+
+        public final long latencyMs;
+        public final long jitterMs;
+        /** 0 — без ограничения полосы. */
+        public final long bytesPerSecond;
+        /** Доля кадров, которые уходят, но не доходят: 0..1. */
+        public final double lossRate;
+        public final long seed;
+
+        public Config(long latencyMs, long jitterMs, long bytesPerSecond, double lossRate, long seed) {
+            if (latencyMs < 0 || jitterMs < 0 || bytesPerSecond < 0 || lossRate < 0 || lossRate > 1) {
+                throw new IllegalArgumentException("Некорректные параметры канала");
+            }
+            this.latencyMs = latencyMs;
+            this.jitterMs = jitterMs;
+            this.bytesPerSecond = bytesPerSecond;
+            this.lossRate = lossRate;
+            this.seed = seed;
+        }
+    }
+
+    /** Две соединяемые точки: [0] — address "loopback-a", [1] — "loopback-b". */
+    public static LoopbackP2PManager[] pair(String nameA, String nameB, Config config) {
+        Channel channel = new Channel(config);
+        LoopbackP2PManager a = new LoopbackP2PManager(channel, nameA, "loopback-a");
+        LoopbackP2PManager b = new LoopbackP2PManager(channel, nameB, "loopback-b");
+        a.peer = b;
+        b.peer = a;
+        return new LoopbackP2PManager[]{a, b};
+    }
+
+    /** Общее состояние связи; все переходы — под его монитором. */
+    private static final class Channel {
+        final Config config;
+        final Random random;
+        boolean up;
+        boolean connecting; // рукопожатие: связь ещё не поднята
+        boolean reconnectAllowed = true;
+        // Номер соединения: растёт при каждом открытии и обрыве
+        int generation;
+
+        Channel(Config config) {
+            this.config = config;
+            this.random = new Random(config.seed);
+        }
+    }
+
+    /** Кадр в пути к этой точке. */
+    private static final class Frame {
+        final byte[] body;
+        final int generation;
+        final long sentAt;
+        final long deliverAt;
+
+        Frame(byte[] body, int generation, long sentAt, long deliverAt) {
+            this.body = body;
+            this.generation = generation;
+            this.sentAt = sentAt;
+            this.deliverAt = deliverAt;
+        }
+    }
+
+    private final Channel channel;
+    private final String name;
+    private final String address;
+    private final ScheduledExecutorService delivery;
+    private final WireCodec.Encoder encoder = new WireCodec.Encoder();
+    private final WireCodec.Decoder decoder = new WireCodec.Decoder();
+    private LoopbackP2PManager peer;
+    private volatile ConnectionListener listener;
+    private volatile String playerName;
+    private volatile String bankHash = "";
+    private volatile boolean stopped;
+    private boolean discovered;
+    private boolean everConnected;
+
+    // Очередь передачи этой стороны (наносекунды System.nanoTime): когда освободится полоса и
+    // когда доставлен последний кадр — следующий не может прийти раньше
+    private long linkFreeAt;
+    private long lastDeliveryAt;
+    // Входящие кадры по возрастанию deliverAt; задача доставки забирает всё, чему пришёл срок, —
+    // так порядок не зависит от того, в каком порядке сработали таймеры планировщика
+    private final ArrayDeque<Frame> inbox = new ArrayDeque<>();
+
+    // Метрики: под монитором канала
+    private int inFlight;
+    private long sent;
+    private long rejected;
+    private long lost;
+    private long sessionDataFrames;
+    private long lastLatencyMicros;
+    private long totalLatencyMicros;
+    private long maxLatencyMicros;
+    private long delivered;
+
+    private LoopbackP2PManager(Channel channel, String name, String address) {
+        this.channel = channel;
+        this.name = name;
+        this.address = address;
+        this.playerName = name;
+        this.delivery = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Loopback-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    /** Ник для PLAYER_NAME:; по умолчанию — имя точки. */
+    public void setPlayerName(String playerName) {
+        this.playerName = playerName;
+    }
+
+    /** Ответ на REQUEST_BANK_HASH; по умолчанию пустой — банки считаются различными. */
+    public void setBankHash(String bankHash) {
+        this.bankHash = bankHash != null ? bankHash : "";
+    }
+
+    /** Кадры LinkMessages.Data (ResumableSession), ушедшие в канал с этой стороны, включая повторы. */
+    public long getSentDataFrames() {
+        synchronized (channel) {
+            return sessionDataFrames;
+        }
+    }
+
+    /** false — reconnect() ничего не делает, как если бы соперник не вернулся; общее для обеих сторон. */
+    public void setReconnectAllowed(boolean allowed) {
+        synchronized (channel) {
+            channel.reconnectAllowed = allowed;
+        }
+    }
+
+    /** Кадры, ушедшие в канал, но потерянные по Config.lossRate. */
+    public long getLostFrames() {
+        synchronized (channel) {
+            return lost;
+        }
+    }
+
+    @Override
+    public void initialize(Context context, ConnectionListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void startDiscovery() {
+        LoopbackP2PManager other = peer;
+        if (other.stopped) return;
+        synchronized (channel) {
+            discovered = true;
+        }
+        post(() -> listener.onDeviceFound(other.name, other.address), channel.config.latencyMs);
+    }
+
+    @Override
+    public void stopDiscovery() {
+    }
+
+    @Override
+    public void connect(String deviceAddress) {
+        if (stopped) return;
+        if (!peer.address.equals(deviceAddress) || peer.stopped) {
+            post(() -> listener.onConnectionFailed("Устройство недоступно: " + deviceAddress), channel.config.latencyMs);
+            return;
+        }
+        open();
+    }
+
+    @Override
+    public void connectTo(String deviceAddress) {
+        connect(deviceAddress);
+    }
+
+    @Override
+    public void reconnect() {
+        boolean known;
+        synchronized (channel) {
+            known = everConnected && channel.reconnectAllowed;
+        }
+        if (known) connect(peer.address);
+    }
+
+    /** Обрыв связи: кадры в пути пропадают, обе стороны получают onDisconnected. */
+    public void dropConnection() {
+        synchronized (channel) {
+            if (!channel.up && !channel.connecting) return;
+            channel.generation++;
+            if (!channel.up) {
+                channel.connecting = false; // рукопожатие не завершилось — сообщать не о чем
+                return;
+            }
+            channel.up = false;
+            // Кадры в пути пропадают вместе со связью
+            resetQueue();
+            peer.resetQueue();
+        }
+        post(() -> listener.onDisconnected("Связь потеряна"), 0);
+        peer.post(() -> peer.listener.onDisconnected("Связь потеряна"), 0);
+    }
+
+    private void open() {
+        long handshake = 2 * channel.config.latencyMs;
+        int generation;
+        synchronized (channel) {
+            if (channel.up || channel.connecting) return;
+            channel.connecting = true;
+            generation = ++channel.generation;
+            everConnected = true;
+            peer.everConnected = true;
+        }
+        post(() -> handshakeDone(generation), handshake);
+    }
+
+    /** Конец рукопожатия: связь поднята, обе стороны узнают о соединении. */
+    private void handshakeDone(int generation) {
+        synchronized (channel) {
+            if (channel.generation != generation) return; // связь оборвалась до конца рукопожатия
+            channel.connecting = false;
+            channel.up = true;
+            resetQueue();
+            peer.resetQueue();
+        }
+        peer.post(() -> peer.connected(generation), 0);
+        connected(generation);
+    }
+
+    /** Как BluetoothManager.connected(): ник уходит раньше, чем приложение узнает о соединении. */
+    private void connected(int generation) {
+        synchronized (channel) {
+            if (channel.generation != generation) return;
+        }
+        sendMessage("PLAYER_NAME:" + playerName, null);
+        listener.onConnected(peer.name, ConnectionType.WIFI_DIRECT);
+    }
+
+    private void resetQueue() {
+        linkFreeAt = 0;
+        lastDeliveryAt = 0;
+        inFlight = 0;
+        peer.inbox.clear();
+    }
+
+    @Override
+    public void sendMessage(Serializable data, SendCallback callback) {
+        Config config = channel.config;
+        LoopbackP2PManager receiver = peer;
+        synchronized (channel) {
+            if (!channel.up || stopped) {
+                rejected++;
+                if (callback != null) callback.onComplete(false);
+                return;
+            }
+            long now = System.nanoTime();
+            int length = encoder.encode(data);
+            byte[] body = Arrays.copyOfRange(encoder.buffer(), 4, length);
+
+            long start = Math.max(now, linkFreeAt);
+            long transmit = config.bytesPerSecond == 0 ? 0 : length * 1_000_000_000L / config.bytesPerSecond;
+            linkFreeAt = start + transmit;
+            long jitter = config.jitterMs == 0 ? 0 : (long) (channel.random.nextDouble() * config.jitterMs * 1_000_000L);
+            long deliverAt = Math.max(linkFreeAt + config.latencyMs * 1_000_000L + jitter, lastDeliveryAt);
+            lastDeliveryAt = deliverAt;
+            sent++;
+            if (data instanceof LinkMessages.Data) sessionDataFrames++;
+            if (config.lossRate > 0 && channel.random.nextDouble() < config.lossRate) {
+                lost++;
+            } else {
+                inFlight++;
+                receiver.inbox.addLast(new Frame(body, channel.generation, now, deliverAt));
+                receiver.postNanos(receiver::deliverDue, deliverAt - now);
+            }
+        }
+        // Кадр ушёл в канал — как после flush в сокет, дошёл ли он, отправитель не знает
+        if (callback != null) callback.onComplete(true);
+    }
+
+    /** В потоке доставки: все кадры, чей срок наступил, по порядку. */
+    private void deliverDue() {
+        while (true) {
+            Frame frame;
+            synchronized (channel) {
+                frame = inbox.peekFirst();
+                long now = System.nanoTime();
+                if (frame == null || frame.deliverAt > now) return;
+                inbox.pollFirst();
+                if (frame.generation != channel.generation) continue;
+                LoopbackP2PManager sender = peer;
+                sender.inFlight--;
+                long latency = (now - frame.sentAt) / 1000;
+                sender.lastLatencyMicros = latency;
+                sender.totalLatencyMicros += latency;
+                sender.maxLatencyMicros = Math.max(sender.maxLatencyMicros, latency);
+                sender.delivered++;
+            }
+            receive(frame.body);
+        }
+    }
+
+    /** В потоке доставки получателя. */
+    private void receive(byte[] body) {
+        Serializable frame;
+        try {
+            frame = decoder.decode(body, 0, body.length);
+        } catch (IOException e) {
+            listener.onConnectionFailed("Некорректный кадр: " + e.getMessage());
+            return;
+        }
+        if ("REQUEST_PLAYER_NAME".equals(frame)) {
+            sendMessage("PLAYER_NAME:" + playerName, null);
+            return;
+        }
+        if (REQUEST_BANK_HASH.equals(frame)) {
+            sendMessage(BANK_HASH_PREFIX + bankHash, null);
+            return;
+        }
+        listener.onDataReceived(frame);
+    }
+
+    private void post(Runnable event, long delayMs) {
+        postNanos(event, TimeUnit.MILLISECONDS.toNanos(delayMs));
+    }
+
+    private void postNanos(Runnable event, long delayNanos) {
+        try {
+            delivery.schedule(() -> {
+                if (stopped) return;
+                event.run();
+            }, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // Точка остановлена — событие никому не нужно
+        }
+    }
+
+    @Override
+    public OutboundQueue.Metrics getOutboundMetrics() {
+        synchronized (channel) {
+            if (!channel.up) return null;
+            return new OutboundQueue.Metrics(inFlight, 0, sent, rejected + lost, sent, lastLatencyMicros,
+                    delivered == 0 ? 0 : totalLatencyMicros / delivered, maxLatencyMicros);
+        }
+    }
+
+    /** Heartbeat в памяти не нужен: обрыв приходит явным событием. */
+    @Override
+    public Heartbeat.RttStats getRttStats() {
+        return null;
+    }
+
+    @Override
+    public void setHeartbeatConfig(Heartbeat.Config config) {
+    }
+
+    @Override
+    public void stop() {
+        if (stopped) return;
+        boolean wasUp;
+        boolean peerSawUs;
+        synchronized (channel) {
+            wasUp = channel.up;
+            peerSawUs = peer.discovered;
+            if (channel.connecting) {
+                channel.connecting = false;
+                channel.generation++;
+            }
+            if (wasUp) {
+                channel.up = false;
+                channel.generation++;
+                resetQueue();
+                peer.resetQueue();
+            }
+        }
+        stopped = true;
+        LoopbackP2PManager other = peer;
+        if (wasUp) other.post(() -> other.listener.onDisconnected("Соперник закрыл соединение"), channel.config.latencyMs);
+        if (peerSawUs) other.post(() -> other.listener.onDeviceLost(address), channel.config.latencyMs);
+        delivery.shutdownNow();
+    }
+
+    @Override
+    public void cleanup() {
+        stop();
+    }
+
+    @Override
+    public List<DiscoveredDevice> getDiscoveredDevices() {
+        List<DiscoveredDevice> devices = new ArrayList<>();
+        synchronized (channel) {
+            if (discovered && !peer.stopped) devices.add(new DiscoveredDevice(peer.name, peer.address));
+        }
+        return devices;
+    }
+
+    @Override
+    public ConnectionType getConnectionType() {
+        return ConnectionType.WIFI_DIRECT;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return !stopped;
+    }
+}
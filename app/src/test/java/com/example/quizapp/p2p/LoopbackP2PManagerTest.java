@@ -0,0 +1,217 @@
+package com.example.quizapp.p2p;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LoopbackP2PManager: контракт ConnectionListener (поиск, соединение, обрыв, выход соперника)
+ * и модель канала — задержка, полоса и потери; измерения выводятся в stdout.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LoopbackP2PManagerTest {
+
+    private LoopbackP2PManager[] pair;
+
+    @After
+    public void tearDown() {
+        if (pair != null) for (LoopbackP2PManager endpoint : pair) endpoint.stop();
+    }
+
+    @Test
+    public void discoversConnectsAndDeliversInOrderWithLatency() throws Exception {
+        pair = LoopbackP2PManager.pair("Алиса", "Боб", new LoopbackP2PManager.Config(20, 5, 0, 0, 1));
+        Recorder a = new Recorder(2);
+        Recorder b = new Recorder(1000 + 1);
+        pair[0].initialize(null, a);
+        pair[1].initialize(null, b);
+        pair[1].setBankHash("abc");
+
+        pair[0].startDiscovery();
+        assertTrue(a.found.await(1, TimeUnit.SECONDS));
+        assertEquals("loopback-b", a.foundAddress);
+        pair[0].connect(a.foundAddress);
+        assertTrue(a.connected.await(1, TimeUnit.SECONDS));
+        assertTrue(b.connected.await(1, TimeUnit.SECONDS));
+
+        pair[0].sendMessage(P2PManager.REQUEST_BANK_HASH);
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) pair[0].sendMessage(answer(i));
+        assertTrue(b.frames.await(5, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // Ответ на REQUEST_BANK_HASH и ник приходят от транспорта соперника, не от приложения
+        assertTrue(a.frames.await(1, TimeUnit.SECONDS));
+
+        assertEquals("PLAYER_NAME:Алиса", b.received.get(0));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, ((PlayerAnswer) ((GameDataModel) b.received.get(i + 1)).data).questionIndex);
+        }
+        assertTrue(a.received.contains("PLAYER_NAME:Боб"));
+        assertTrue(a.received.contains(P2PManager.BANK_HASH_PREFIX + "abc"));
+        OutboundQueue.Metrics metrics = pair[0].getOutboundMetrics();
+        System.out.println("Loopback 20±5 мс: 1000 ответов за " + elapsedMs + " мс, " + metrics);
+        assertTrue(metrics.avgLatencyMicros >= 20_000);
+    }
+
+    @Test
+    public void bandwidthLimitQueuesFrames() throws Exception {
+        long bytesPerSecond = 100_000;
+        pair = LoopbackP2PManager.pair("a", "b", new LoopbackP2PManager.Config(0, 0, bytesPerSecond, 0, 1));
+        int count = 2000;
+        Recorder b = connect(new Recorder(0), new Recorder(count + 1));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) pair[0].sendMessage(answer(i));
+        assertTrue(b.frames.await(5, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Кадр ответа: 4 байта длины + тег + 6 байт полей
+        long expectedMs = count * 11L * 1000 / bytesPerSecond;
+        System.out.println("Loopback " + bytesPerSecond + " байт/с: " + count + " ответов за " + elapsedMs +
+                " мс (расчёт " + expectedMs + " мс)");
+        assertTrue(elapsedMs >= expectedMs - 10);
+    }
+
+    @Test
+    public void lossDropsConfiguredShareOfFrames() throws Exception {
+        pair = LoopbackP2PManager.pair("a", "b", new LoopbackP2PManager.Config(0, 0, 0, 0.2, 7));
+        int count = 5000;
+        Recorder b = connect(new Recorder(0), new Recorder(0));
+        Thread.sleep(50); // PLAYER_NAME соперника тоже проходит через потери
+
+        long lostBefore = pair[0].getLostFrames();
+        AtomicInteger accepted = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            pair[0].sendMessage(answer(i), sent -> {
+                if (sent) accepted.incrementAndGet();
+            });
+        }
+        Thread.sleep(200);
+        long lost = pair[0].getLostFrames() - lostBefore;
+        int received = 0;
+        int previous = -1;
+        for (Serializable frame : b.snapshot()) {
+            if (!(frame instanceof GameDataModel)) continue;
+            int index = ((PlayerAnswer) ((GameDataModel) frame).data).questionIndex;
+            assertTrue("потери не должны менять порядок", index > previous);
+            previous = index;
+            received++;
+        }
+        System.out.println("Loopback потери 20%: дошло " + received + " из " + count + ", потеряно " + lost);
+        assertEquals(count, accepted.get());
+        assertEquals(count, received + lost);
+        assertTrue(lost > count * 0.17 && lost < count * 0.23);
+    }
+
+    @Test
+    public void dropReconnectAndPeerExit() throws Exception {
+        pair = LoopbackP2PManager.pair("a", "b", LoopbackP2PManager.Config.IDEAL);
+        Recorder a = new Recorder(0);
+        Recorder b = new Recorder(0);
+        pair[0].initialize(null, a);
+        pair[1].initialize(null, b);
+
+        pair[0].connect("нет-такого");
+        assertTrue(a.failed.await(1, TimeUnit.SECONDS));
+
+        pair[0].startDiscovery();
+        pair[0].connect("loopback-b");
+        assertTrue(b.connected.await(1, TimeUnit.SECONDS));
+
+        pair[1].dropConnection();
+        assertTrue(a.disconnected.await(1, TimeUnit.SECONDS));
+        assertTrue(b.disconnected.await(1, TimeUnit.SECONDS));
+        CountDownLatch rejected = new CountDownLatch(1);
+        pair[0].sendMessage(answer(1), sent -> {
+            if (!sent) rejected.countDown();
+        });
+        assertTrue("отправка без связи не отклонена", rejected.await(1, TimeUnit.SECONDS));
+
+        pair[0].reconnect();
+        assertTrue(b.connectedCount.await(1, TimeUnit.SECONDS));
+        pair[1].stop();
+        assertTrue(a.lost.await(1, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(2, a.disconnectedCount.get());
+        assertEquals("вышедшая сторона не получает onDisconnected", 1, b.disconnectedCount.get());
+        assertTrue(pair[0].getDiscoveredDevices().isEmpty());
+    }
+
+    private Recorder connect(Recorder a, Recorder b) throws InterruptedException {
+        pair[0].initialize(null, a);
+        pair[1].initialize(null, b);
+        pair[0].connect("loopback-b");
+        assertTrue(b.connected.await(1, TimeUnit.SECONDS));
+        return b;
+    }
+
+    private static Serializable answer(int i) {
+        return new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED, new PlayerAnswer(i, i % 4, i % 2 == 0, false));
+    }
+
+    private static class Recorder implements P2PManager.ConnectionListener {
+        final List<Serializable> received = new ArrayList<>();
+        final CountDownLatch frames;
+        final CountDownLatch found = new CountDownLatch(1);
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch connectedCount = new CountDownLatch(2);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final CountDownLatch failed = new CountDownLatch(1);
+        final CountDownLatch lost = new CountDownLatch(1);
+        final AtomicInteger disconnectedCount = new AtomicInteger();
+        volatile String foundAddress;
+
+        Recorder(int expectedFrames) {
+            frames = new CountDownLatch(expectedFrames);
+        }
+
+        synchronized List<Serializable> snapshot() {
+            return new ArrayList<>(received);
+        }
+
+        @Override
+        public synchronized void onDataReceived(Serializable data) {
+            received.add(data);
+            frames.countDown();
+        }
+
+        @Override
+        public void onDeviceFound(String deviceName, String deviceAddress) {
+            foundAddress = deviceAddress;
+            found.countDown();
+        }
+
+        @Override
+        public void onConnected(String deviceName, ConnectionType type) {
+            connected.countDown();
+            connectedCount.countDown();
+        }
+
+        @Override
+        public void onConnectionFailed(String message) {
+            failed.countDown();
+        }
+
+        @Override
+        public void onDisconnected(String reason) {
+            disconnectedCount.incrementAndGet();
+            disconnected.countDown();
+        }
+
+        @Override
+        public void onDeviceLost(String deviceAddress) {
+            lost.countDown();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.quizapp.p2p;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Исходящая очередь: send() не ждёт медленный канал, накопившиеся сообщения уходят одним flush,
+ * переполнение и ошибка записи доходят до колбэков.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OutboundQueueTest {
+
+    private static final GameDataModel ANSWER = new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED,
+            new PlayerAnswer(1, 2, true, true));
+
+    @Test
+    public void sendDoesNotBlockOnSlowLinkAndCoalescesBacklog() throws Exception {
+        GatedStream link = new GatedStream();
+        OutboundQueue queue = new OutboundQueue("test", link, null);
+        queue.start();
+
+        CountDownLatch delivered = new CountDownLatch(6);
+        P2PManager.SendCallback callback = sent -> {
+            if (sent) delivered.countDown();
+        };
+
+        // Первое сообщение застревает в "медленном" канале
+        queue.send(ANSWER, callback);
+        assertTrue(link.writeStarted.await(2, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            queue.send(new GameDataModel(GameDataModel.DataType.EMOTE_USED, new EmoteAction("emote_" + i)), callback);
+        }
+        long sendMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("send() заблокировался на " + sendMillis + " мс", sendMillis < 50);
+        assertEquals(5, queue.getMetrics().depth);
+
+        link.open.countDown();
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+
+        // Один flush на застрявшее сообщение и один на весь накопившийся хвост
+        assertEquals(2, link.flushes.get());
+        OutboundQueue.Metrics metrics = queue.getMetrics();
+        assertEquals(6, metrics.sent);
+        assertEquals(2, metrics.flushes);
+        assertEquals(0, metrics.depth);
+        System.out.println("Метрики очереди: " + metrics);
+
+        List<Object> received = decodeAll(link.bytes.toByteArray());
+        assertEquals(6, received.size());
+        assertEquals("emote_4", ((EmoteAction) ((GameDataModel) received.get(5)).data).emoteName);
+        queue.close();
+    }
+
+    @Test
+    public void rejectsWhenFull() throws Exception {
+        GatedStream link = new GatedStream();
+        OutboundQueue queue = new OutboundQueue("test", link, 2, null);
+        queue.start();
+        queue.send(ANSWER, null);
+        assertTrue(link.writeStarted.await(2, TimeUnit.SECONDS));
+
+        assertTrue(queue.send(ANSWER, null));
+        assertTrue(queue.send(ANSWER, null));
+        AtomicReference<Boolean> result = new AtomicReference<>();
+        assertFalse(queue.send(ANSWER, result::set));
+        assertEquals(Boolean.FALSE, result.get());
+        assertEquals(1, queue.getMetrics().rejected);
+
+        link.open.countDown();
+        queue.close();
+    }
+
+    @Test
+    public void closeFlushesQueuedMessages() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutboundQueue queue = new OutboundQueue("test", bytes, null);
+        queue.start();
+        queue.send(ANSWER, null);
+        queue.send(new GameDataModel(GameDataModel.DataType.GAME_OVER, null), null);
+        queue.close();
+
+        List<Object> received = decodeAll(bytes.toByteArray());
+        assertEquals(2, received.size());
+        assertEquals(GameDataModel.DataType.GAME_OVER, ((GameDataModel) received.get(1)).type);
+
+        AtomicReference<Boolean> afterClose = new AtomicReference<>();
+        assertFalse(queue.send(ANSWER, afterClose::set));
+        assertEquals(Boolean.FALSE, afterClose.get());
+    }
+
+    @Test
+    public void writeFailureFailsPendingAndNotifiesOnce() throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(3);
+        AtomicInteger ok = new AtomicInteger();
+        OutboundQueue queue = new OutboundQueue("test", new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        }, e -> failures.incrementAndGet());
+
+        P2PManager.SendCallback callback = sent -> {
+            if (sent) ok.incrementAndGet();
+            done.countDown();
+        };
+        for (int i = 0; i < 3; i++) queue.send(ANSWER, callback);
+        queue.start();
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(0, ok.get());
+        assertEquals(1, failures.get());
+        assertNotNull(queue.getMetrics());
+    }
+
+    private static List<Object> decodeAll(byte[] data) throws IOException {
+        WireCodec.Decoder decoder = new WireCodec.Decoder();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        List<Object> out = new ArrayList<>();
+        while (in.available() > 0) out.add(decoder.read(in));
+        return out;
+    }
+
+    /** Канал, первая запись в который ждёт open. Считает flush(). */
+    private static class GatedStream extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final CountDownLatch writeStarted = new CountDownLatch(1);
+        final CountDownLatch open = new CountDownLatch(1);
+        final AtomicInteger flushes = new AtomicInteger();
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            writeStarted.countDown();
+            try {
+                if (!open.await(5, TimeUnit.SECONDS)) throw new IOException("timeout");
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.quizapp.p2p;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ResumableSession поверх пары LoopbackP2PManager: после обрыва матч продолжается без потерь и повторов,
+ * повторно уходит только неподтверждённое; без переподключения приложение узнаёт об обрыве.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ResumableSessionTest {
+
+    private static final ResumableSession.Config FAST = new ResumableSession.Config(2000, 50, 20, 256);
+
+    private final LoopbackP2PManager[] link = LoopbackP2PManager.pair("a", "b", new LoopbackP2PManager.Config(5, 0, 0, 0, 1));
+
+    @After
+    public void tearDown() {
+        for (LoopbackP2PManager endpoint : link) endpoint.stop();
+    }
+
+    private void connect() {
+        link[0].connect(link[1].getAddress());
+    }
+
+    @Test
+    public void resumesAfterCutAndReplaysOnlyUnacked() throws Exception {
+        App appA = new App(0);
+        App appB = new App(40);
+        ResumableSession a = session(link[0], appA, FAST);
+        session(link[1], appB, FAST);
+        connect();
+
+        for (int i = 0; i < 25; i++) a.sendMessage(index(i));
+        Thread.sleep(200); // соперник успевает подтвердить первые 25
+        for (int i = 25; i < 30; i++) a.sendMessage(index(i));
+        link[0].dropConnection(); // последние 5 пропадают в пути
+        for (int i = 30; i < 40; i++) a.sendMessage(index(i)); // уходят в буфер, пока связи нет
+
+        assertTrue("матч не восстановился", appB.done.await(5, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) expected.add(i);
+        Thread.sleep(100);
+        assertEquals(expected, appB.received);
+        assertEquals(1, appA.connected.get());
+        assertEquals(1, appB.connected.get());
+        assertEquals(0, appA.disconnected.get() + appB.disconnected.get());
+        // 40 сообщений и повтор только 5 неподтверждённых
+        System.out.println("Кадров DATA с обрывом: " + link[0].getSentDataFrames() + " на 40 сообщений");
+        assertEquals(45, link[0].getSentDataFrames());
+    }
+
+    @Test
+    public void bothSidesKeepOrderAcrossRepeatedCuts() throws Exception {
+        App appA = new App(200);
+        App appB = new App(200);
+        ResumableSession a = session(link[0], appA, FAST);
+        ResumableSession b = session(link[1], appB, FAST);
+        connect();
+
+        for (int i = 0; i < 200; i++) {
+            a.sendMessage(index(i));
+            b.sendMessage(index(i));
+            if (i % 50 == 25) link[0].dropConnection();
+            Thread.sleep(1);
+        }
+
+        assertTrue(appA.done.await(10, TimeUnit.SECONDS));
+        assertTrue(appB.done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, (int) appA.received.get(i));
+            assertEquals(i, (int) appB.received.get(i));
+        }
+        assertEquals(0, appA.disconnected.get() + appB.disconnected.get());
+    }
+
+    @Test
+    public void reportsDisconnectWhenPeerDoesNotReturn() throws Exception {
+        ResumableSession.Config config = new ResumableSession.Config(300, 50, 20, 256);
+        App appA = new App(0);
+        ResumableSession a = session(link[0], appA, config);
+        session(link[1], new App(0), config);
+        connect();
+        Thread.sleep(100);
+
+        link[0].setReconnectAllowed(false);
+        long start = System.nanoTime();
+        link[0].dropConnection();
+        CountDownLatch failed = new CountDownLatch(1);
+        a.sendMessage(index(1), sent -> {
+            if (!sent) failed.countDown();
+        });
+
+        assertTrue(appA.disconnectedLatch.await(2, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Обрыв передан приложению через " + elapsed + " мс (таймаут " + config.resumeTimeoutMs + " мс)");
+        assertTrue(elapsed >= config.resumeTimeoutMs - 50);
+        assertTrue("отправка в закрытую сессию не отклонена", failed.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void fullRetransmitBufferRejectsSends() throws Exception {
+        ResumableSession.Config config = new ResumableSession.Config(5000, 50, 20, 8);
+        App appB = new App(8);
+        ResumableSession a = session(link[0], new App(0), config);
+        session(link[1], appB, config);
+        connect();
+        Thread.sleep(100);
+
+        link[0].setReconnectAllowed(false);
+        link[0].dropConnection();
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            a.sendMessage(index(i), sent -> {
+                if (!sent) rejected.incrementAndGet();
+            });
+        }
+        assertEquals(2, rejected.get());
+
+        link[0].setReconnectAllowed(true);
+        assertTrue(appB.done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(8, appB.received.size());
+        assertFalse(appB.received.contains(8));
+    }
+
+    private static ResumableSession session(P2PManager transport, App app, ResumableSession.Config config) {
+        ResumableSession session = new ResumableSession(transport, config);
+        session.initialize(null, app);
+        return session;
+    }
+
+    private static Serializable index(int i) {
+        return new GameDataModel(GameDataModel.DataType.QUESTION_INDEX, i);
+    }
+
+    /** Приложение: собирает номера вопросов и считает события соединения. */
+    private static class App implements P2PManager.ConnectionListener {
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch done;
+        final AtomicInteger connected = new AtomicInteger();
+        final AtomicInteger disconnected = new AtomicInteger();
+        final CountDownLatch disconnectedLatch = new CountDownLatch(1);
+
+        App(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public synchronized void onDataReceived(Serializable data) {
+            if (!(data instanceof GameDataModel)) return; // PLAYER_NAME: от транспорта
+            received.add((Integer) ((GameDataModel) data).data);
+            done.countDown();
+        }
+
+        @Override
+        public void onConnected(String deviceName, ConnectionType type) {
+            connected.incrementAndGet();
+        }
+
+        @Override
+        public void onDisconnected(String reason) {
+            disconnected.incrementAndGet();
+            disconnectedLatch.countDown();
+        }
+
+        @Override public void onConnectionFailed(String message) { }
+        @Override public void onDeviceFound(String deviceName, String deviceAddress) { }
+        @Override public void onDeviceLost(String deviceAddress) { }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.quizapp.p2p;
+
+import com.example.quizapp.data.Question;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Кодек сообщений P2P: обратимость для каждого типа и сравнение с Java-сериализацией
+ * (байт на сообщение и нс на кодирование/декодирование выводятся в stdout).
+ */
+public class WireCodecTest {
+
+    private final WireCodec.Encoder encoder = new WireCodec.Encoder();
+    private final WireCodec.Decoder decoder = new WireCodec.Decoder();
+
+    @Test
+    public void roundTripsEveryMessageType() throws IOException {
+        assertEquals("PLAYER_NAME:Ёжик 🦔", roundTrip("PLAYER_NAME:Ёжик 🦔"));
+        assertEquals("REQUEST_PLAYER_NAME", roundTrip("REQUEST_PLAYER_NAME"));
+
+        GameDataModel answer = (GameDataModel) roundTrip(new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED,
+                new PlayerAnswer(14, -1, false, true)));
+        PlayerAnswer a = (PlayerAnswer) answer.data;
+        assertEquals(14, a.questionIndex);
+        assertEquals(-1, a.selectedOption);
+        assertEquals(false, a.isCorrect);
+        assertEquals(true, a.isLocalPlayer);
+        assertEquals(PlayerAnswer.UNKNOWN_REACTION_TIME, a.reactionTimeMs);
+
+        GameDataModel emote = (GameDataModel) roundTrip(new GameDataModel(GameDataModel.DataType.EMOTE_USED,
+                new EmoteAction("emote_laugh")));
+        assertEquals("emote_laugh", ((EmoteAction) emote.data).emoteName);
+
+        GameDataModel index = (GameDataModel) roundTrip(new GameDataModel(GameDataModel.DataType.QUESTION_INDEX, 7));
+        assertEquals(7, index.data);
+
+        assertEquals(123_456_789_012L, ((LinkMessages.Ping) roundTrip(new LinkMessages.Ping(123_456_789_012L))).sentAtNanos);
+        assertEquals(-5L, ((LinkMessages.Pong) roundTrip(new LinkMessages.Pong(-5L))).sentAtNanos);
+
+        LinkMessages.Hello hello = (LinkMessages.Hello) roundTrip(new LinkMessages.Hello(-42L, 77L, 9, true));
+        assertEquals(-42L, hello.sessionId);
+        assertEquals(77L, hello.peerSessionId);
+        assertEquals(9, hello.received);
+        assertTrue(hello.reply);
+        assertEquals(12, ((LinkMessages.Ack) roundTrip(new LinkMessages.Ack(12))).received);
+        LinkMessages.Data data = (LinkMessages.Data) roundTrip(new LinkMessages.Data(5, 3,
+                new GameDataModel(GameDataModel.DataType.EMOTE_USED, new EmoteAction("emote_cool"))));
+        assertEquals(5, data.seq);
+        assertEquals(3, data.ack);
+        assertEquals("emote_cool", ((EmoteAction) ((GameDataModel) data.payload).data).emoteName);
+
+        GameDataModel over = (GameDataModel) roundTrip(new GameDataModel(GameDataModel.DataType.GAME_OVER, null));
+        assertEquals(GameDataModel.DataType.GAME_OVER, over.type);
+        assertNull(over.data);
+
+        List<Question> sent = questions(10);
+        GameDataModel start = (GameDataModel) roundTrip(new GameDataModel(GameDataModel.DataType.START_GAME, (Serializable) sent));
+        @SuppressWarnings("unchecked")
+        List<Question> received = (List<Question>) start.data;
+        assertEquals(sent.size(), received.size());
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals(sent.get(i).id, received.get(i).id);
+            assertEquals(sent.get(i).question, received.get(i).question);
+            assertArrayEquals(sent.get(i).options, received.get(i).options);
+            assertEquals(sent.get(i).answerNum, received.get(i).answerNum);
+        }
+    }
+
+    @Test
+    public void startGameWithContentHashesIsOrderOfMagnitudeSmaller() throws IOException {
+        long[] hashes = {0x8f3a_1c22_9e01_77b4L, -1L, 0, 42, Long.MIN_VALUE, Long.MAX_VALUE, 7, -0x1234_5678_9abcL, 99, 1L << 52};
+        GameDataModel start = (GameDataModel) roundTrip(new GameDataModel(GameDataModel.DataType.START_GAME, hashes));
+        assertEquals(GameDataModel.DataType.START_GAME, start.type);
+        assertArrayEquals(hashes, (long[]) start.data);
+
+        int hashBytes = encoder.encode(new GameDataModel(GameDataModel.DataType.START_GAME, hashes));
+        int fullBytes = encoder.encode(new GameDataModel(GameDataModel.DataType.START_GAME, (Serializable) questions(10)));
+        System.out.println("START_GAME(10): content_hash " + hashBytes + " Б против " + fullBytes + " Б полным набором");
+        assertTrue(hashBytes * 10 < fullBytes);
+    }
+
+    @Test
+    public void readsConsecutiveFramesFromStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.write(out, "PLAYER_NAME:Аня");
+        encoder.write(out, new GameDataModel(GameDataModel.DataType.START_GAME, (Serializable) questions(10)));
+        encoder.write(out, new GameDataModel(GameDataModel.DataType.GAME_OVER, null));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("PLAYER_NAME:Аня", decoder.read(in));
+        assertEquals(GameDataModel.DataType.START_GAME, ((GameDataModel) decoder.read(in)).type);
+        assertEquals(GameDataModel.DataType.GAME_OVER, ((GameDataModel) decoder.read(in)).type);
+        try {
+            decoder.read(in);
+            fail("ожидался конец потока");
+        } catch (EOFException expected) {
+            // соединение закрыто
+        }
+    }
+
+    @Test
+    public void answerReactionTimeIsOptionalOnTheWire() throws IOException {
+        PlayerAnswer timed = (PlayerAnswer) ((GameDataModel) roundTrip(new GameDataModel(
+                GameDataModel.DataType.ANSWER_SUBMITTED, new PlayerAnswer(2, 3, true, true, 4_321)))).data;
+        assertEquals(4_321, timed.reactionTimeMs);
+        // Больше u16 не помещается: ограничивается, а не превращается в «неизвестно»
+        PlayerAnswer slow = (PlayerAnswer) ((GameDataModel) roundTrip(new GameDataModel(
+                GameDataModel.DataType.ANSWER_SUBMITTED, new PlayerAnswer(2, 0, false, true, 100_000)))).data;
+        assertEquals(0xFFFE, slow.reactionTimeMs);
+
+        // Кадр прежней версии: без поля времени реакции
+        GameDataModel old = (GameDataModel) decoder.read(new DataInputStream(new ByteArrayInputStream(
+                new byte[]{0, 0, 0, 5, WireCodec.TAG_ANSWER_SUBMITTED, 0, 14, 2, 1})));
+        PlayerAnswer a = (PlayerAnswer) old.data;
+        assertEquals(14, a.questionIndex);
+        assertEquals(2, a.selectedOption);
+        assertTrue(a.isCorrect);
+        assertEquals(PlayerAnswer.UNKNOWN_REACTION_TIME, a.reactionTimeMs);
+    }
+
+    @Test
+    public void rejectsCorruptFrames() {
+        assertRejected(new byte[]{0, 0, 0, 1, 42});                 // неизвестный тег
+        assertRejected(new byte[]{0, 0, 0, 3, 0, 0, 10});           // строка длиннее кадра
+        assertRejected(new byte[]{(byte) 0x7F, 0, 0, 0});           // длина больше MAX_FRAME_LENGTH
+    }
+
+    @Test
+    public void benchmarkAgainstJavaSerialization() throws Exception {
+        Serializable[] messages = {
+                new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED, new PlayerAnswer(3, 2, true, true)),
+                new GameDataModel(GameDataModel.DataType.EMOTE_USED, new EmoteAction("emote_laugh")),
+                "PLAYER_NAME:Игрок",
+                new GameDataModel(GameDataModel.DataType.START_GAME, (Serializable) questions(10))
+        };
+        String[] names = {"ANSWER_SUBMITTED", "EMOTE_USED", "PLAYER_NAME", "START_GAME(10)"};
+
+        for (int m = 0; m < messages.length; m++) {
+            Serializable message = messages[m];
+            int wireBytes = encoder.encode(message);
+            byte[] javaBytes = javaSerialize(message);
+            // Одиночную строку Java-сериализация пишет так же плотно (modified UTF-8), остальное — заметно длиннее
+            assertTrue(names[m] + ": кодек не должен быть длиннее", wireBytes <= javaBytes.length);
+
+            int iterations = m == 3 ? 20_000 : 200_000;
+            // Прогрев JIT, затем замер
+            for (int pass = 0; pass < 2; pass++) {
+                long wireEncode = time(iterations, () -> encoder.encode(message));
+                byte[] frame = encoder.buffer();
+                long wireDecode = time(iterations, () -> decoder.decode(frame, 4, wireBytes - 4));
+                long javaEncode = time(iterations / 10, () -> javaSerialize(message));
+                long javaDecode = time(iterations / 10, () -> javaDeserialize(javaBytes));
+                if (pass == 1) {
+                    System.out.printf("%-17s кодек: %4d Б, %6d нс / %6d нс;  Java: %5d Б, %7d нс / %7d нс%n",
+                            names[m], wireBytes, wireEncode, wireDecode, javaBytes.length, javaEncode, javaDecode);
+                }
+            }
+        }
+    }
+
+    private Serializable roundTrip(Serializable message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.write(out, message);
+        return decoder.read(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    private void assertRejected(byte[] frame) {
+        try {
+            decoder.read(new DataInputStream(new ByteArrayInputStream(frame)));
+            fail("кадр должен быть отклонён");
+        } catch (IOException expected) {
+            // повреждённый кадр
+        }
+    }
+
+    private static List<Question> questions(int count) {
+        List<Question> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Question q = new Question();
+            q.id = 1000 + i;
+            q.question = "Какая река самая длинная в Европе? (" + i + ")";
+            q.options = new String[]{"Волга", "Дунай", "Урал", "Днепр"};
+            q.answerNum = 1 + i % 4;
+            list.add(q);
+        }
+        return list;
+    }
+
+    private interface Body {
+        Object run() throws Exception;
+    }
+
+    /** Среднее время одной итерации, нс. */
+    private static long time(int iterations, Body body) throws Exception {
+        Object sink = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink = body.run();
+        long elapsed = System.nanoTime() - start;
+        if (sink == null) throw new AssertionError();
+        return elapsed / iterations;
+    }
+
+    private static byte[] javaSerialize(Serializable message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object javaDeserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// JMH-замеры горячих путей игры на обычной JVM.
+// :app — Android-модуль, зависеть от него нельзя: классы без Android подключаются исходниками.
+//
+//   ./gradlew :benchmarks:jmh                       -> results/<коммит>.csv
+//   ./gradlew :benchmarks:jmh -PjmhInclude=Sampling -> только бенчмарки, чьё имя подходит под шаблон
+//   ./gradlew :benchmarks:jmhDiff -Pbase=<коммит>   -> сравнение results/<base>.csv с текущим коммитом
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/example/quizapp/p2p/GameDataModel.java",
+                "com/example/quizapp/p2p/PlayerAnswer.java",
+                "com/example/quizapp/p2p/EmoteAction.java",
+                "com/example/quizapp/p2p/WireCodec.java",
+                "com/example/quizapp/p2p/LinkMessages.java",
+                "com/example/quizapp/data/Question.java",
+                "com/example/quizapp/data/QuestionBitSet.java",
+                "com/example/quizapp/data/QuestionSchema.java",
+                "com/example/quizapp/data/BankSyncMessage.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    jmh(project(":game"))
+    jmh(libs.sqlite.jdbc)
+}
+
+val gitHead: Provider<String> = providers.exec {
+    commandLine("git", "rev-parse", "--short", "HEAD")
+}.standardOutput.asText.map { it.trim() }
+
+fun resultsFile(commit: String) = layout.projectDirectory.file("results/$commit.csv").asFile
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    // CSV по одной строке на бенчмарк и параметр: файлы разных коммитов сравниваются jmhDiff или обычным diff
+    resultFormat.set("CSV")
+    resultsFile.set(layout.projectDirectory.file(gitHead.map { "results/$it.csv" }))
+    providers.gradleProperty("jmhInclude").orNull?.let { includes.set(listOf(it)) }
+    fork.set(2)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
+
+tasks.register<JavaExec>("jmhDiff") {
+    group = "benchmark"
+    description = "Сравнивает results/<base>.csv (-Pbase=<коммит>) с results/<текущий коммит>.csv"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.example.quizapp.bench.JmhReportDiff")
+    argumentProviders.add(CommandLineArgumentProvider {
+        val base = providers.gradleProperty("base").orNull
+            ?: throw GradleException("Укажите базовый коммит: -Pbase=<коммит>")
+        listOf(resultsFile(base).path, resultsFile(gitHead.get()).path)
+    })
+}
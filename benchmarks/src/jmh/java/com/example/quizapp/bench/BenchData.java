@@ -0,0 +1,70 @@
+package com.example.quizapp.bench;
+
+import com.example.quizapp.data.Question;
+import com.example.quizapp.data.QuestionSchema;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * BenchData — данные для бенчмарков: вопросы и банк в SQLite.
+ *
+ * Особенности:
+ * - схема и индексы таблицы questions — из QuestionSchema, общей с приложением; индексы строятся после вставки
+ * - тексты одной длины с типичным вопросом банка, чтобы размер строк был реалистичным
+ * - банк пишется во временный файл, а не в :memory: — страницы читаются через кеш SQLite, как на устройстве
+ */
+final class BenchData {
+
+    static final String[] CATEGORIES = {"general", "science", "history", "geography"};
+
+    private BenchData() {
+    }
+
+    static Question question(int id) {
+        Question q = new Question();
+        q.id = id;
+        q.question = "Какой город является столицей страны номер " + id + "?";
+        q.options = new String[]{"Вариант А " + id, "Вариант Б " + id, "Вариант В " + id, "Вариант Г " + id};
+        q.answerNum = 1 + id % 4;
+        return q;
+    }
+
+    /** Временный банк из size вопросов; файл удаляется при выходе из JVM. */
+    static Connection openBank(int size) throws IOException, SQLException {
+        File file = File.createTempFile("bench-bank-" + size + "-", ".db");
+        file.deleteOnExit();
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement st = connection.createStatement()) {
+            st.execute(QuestionSchema.CREATE_TABLE);
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO questions(question, option1, option2, option3, option4, answer_num, category, " +
+                        "difficulty, content_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= size; id++) {
+                Question q = question(id);
+                insert.setString(1, q.question);
+                for (int i = 0; i < 4; i++) insert.setString(2 + i, q.options[i]);
+                insert.setInt(6, q.answerNum);
+                insert.setString(7, CATEGORIES[id % CATEGORIES.length]);
+                insert.setInt(8, 1 + id % 3);
+                insert.setLong(9, id * 0x9E3779B97F4A7C15L);
+                insert.addBatch();
+                if (id % 10_000 == 0) insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+        try (Statement st = connection.createStatement()) {
+            for (String sql : QuestionSchema.CREATE_INDEXES) st.execute(sql);
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        return connection;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.quizapp.bench;
+
+import com.example.quizapp.game.GameSession;
+import com.example.quizapp.game.MatchSimulator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GameSessionBenchmark — подсчёт очков и переход хода в GameSession, матч целиком.
+ *
+ * Особенности:
+ * - одиночный матч и оба PvP-режима: две сессии, сообщения между ними — через очередь,
+ *   таймеры срабатывают сразу по вызову onTimer
+ * - simulatedMatch — матч MatchSimulator с задержкой канала и ботами: цена виртуального времени
+ *   и очереди событий сверх самих правил
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GameSessionBenchmark {
+
+    private static final int[] KEYS = {1, 2, 3, 4, 1};
+
+    private final ArrayDeque<Runnable> wire = new ArrayDeque<>();
+    private long seed;
+
+    @Benchmark
+    public int singleMatch() {
+        Side player = new Side(GameSession.Mode.SINGLE, true);
+        player.session.start(KEYS);
+        for (int i = 0; i < KEYS.length; i++) {
+            player.session.onLocalAnswer(i % 2 == 0 ? KEYS[i] : GameSession.NO_ANSWER);
+            player.session.onTimer(GameSession.Timer.ADVANCE);
+        }
+        return player.session.getLocalScore();
+    }
+
+    @Benchmark
+    public int turnBasedMatch() {
+        Side host = new Side(GameSession.Mode.TURN_BASED, true);
+        Side client = new Side(GameSession.Mode.TURN_BASED, false);
+        connect(host, client);
+        client.session.onQuestionsReceived(KEYS);
+        host.session.start(KEYS);
+        for (int i = 0; i < KEYS.length; i++) {
+            host.session.onLocalAnswer(KEYS[i]);
+            flush();
+            client.session.onLocalAnswer(i % 2 == 0 ? KEYS[i] : GameSession.NO_ANSWER);
+            flush();
+            host.session.onTimer(GameSession.Timer.ADVANCE);
+            flush();
+        }
+        return host.session.getLocalScore() + client.session.getLocalScore();
+    }
+
+    @Benchmark
+    public int simultaneousMatch() {
+        Side host = new Side(GameSession.Mode.SIMULTANEOUS, true);
+        Side client = new Side(GameSession.Mode.TURN_BASED, false);
+        connect(host, client);
+        client.session.onQuestionsReceived(KEYS);
+        host.session.start(KEYS);
+        flush();
+        for (int i = 0; i < KEYS.length; i++) {
+            client.session.onLocalAnswer(KEYS[i]);
+            host.session.onLocalAnswer(i % 2 == 0 ? KEYS[i] : GameSession.NO_ANSWER);
+            flush();
+            host.session.onTimer(GameSession.Timer.ADVANCE);
+            flush();
+        }
+        return host.session.getLocalScore() + client.session.getLocalScore();
+    }
+
+    @Benchmark
+    public long simulatedMatch() {
+        return MatchSimulator.run(new MatchSimulator.Config(GameSession.Mode.SIMULTANEOUS, 1, seed++, 5, 150, 0, 0)).events;
+    }
+
+    private void connect(Side host, Side client) {
+        host.peer = client;
+        client.peer = host;
+    }
+
+    private void flush() {
+        Runnable delivery;
+        while ((delivery = wire.poll()) != null) delivery.run();
+    }
+
+    /** Сторона матча: отправки — в очередь, показ и таймеры ничего не делают. */
+    private final class Side implements GameSession.Effects {
+        final GameSession session;
+        Side peer;
+
+        Side(GameSession.Mode mode, boolean host) {
+            session = new GameSession(GameSession.Config.DEFAULT, mode, host, this);
+        }
+
+        @Override public void showQuestion(int index) { }
+
+        @Override public void showWaiting() { }
+
+        @Override public void showAnswer(int index, int selectedOption, int correctOption) { }
+
+        @Override public void showOpponentAnswer(int index, boolean correct) { }
+
+        @Override public void sendAnswer(int index, int selectedOption, boolean correct) {
+            wire.add(() -> peer.session.onRemoteAnswer(index, correct));
+        }
+
+        @Override public void sendRoundOpened(int index) {
+            wire.add(() -> peer.session.onRoundOpened(index));
+        }
+
+        @Override public void sendGameOver() {
+            wire.add(() -> peer.session.onRemoteGameOver());
+        }
+
+        @Override public void schedule(GameSession.Timer timer, long delayMs) { }
+
+        @Override public void cancel(GameSession.Timer timer) { }
+
+        @Override public void finished(GameSession.Result result) { }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.quizapp.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * JmhReportDiff — сравнение двух CSV-отчётов JMH (results/<коммит>.csv).
+ *
+ * Особенности:
+ * - бенчмарк сопоставляется по имени класса, методу и параметрам
+ * - изменение меньше суммы погрешностей (99.9%) обоих замеров считается шумом («≈»)
+ * - для avgt/sample/ss лучше меньше, для thrpt — больше
+ * - бенчмарки, которых нет в одном из отчётов, выводятся отдельными строками
+ */
+public final class JmhReportDiff {
+
+    private JmhReportDiff() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Использование: JmhReportDiff <base.csv> <current.csv>");
+            System.exit(2);
+        }
+        Map<String, Row> base = read(Paths.get(args[0]));
+        Map<String, Row> current = read(Paths.get(args[1]));
+
+        int better = 0;
+        int worse = 0;
+        System.out.println(String.format(Locale.ROOT, "%-70s %22s %22s %9s", "Бенчмарк", "база", "сейчас", "изм."));
+        for (Map.Entry<String, Row> entry : current.entrySet()) {
+            Row now = entry.getValue();
+            Row was = base.get(entry.getKey());
+            if (was == null) {
+                System.out.println(String.format(Locale.ROOT, "%-70s %22s %22s %9s", entry.getKey(), "-", now, "новый"));
+                continue;
+            }
+            double change = was.score == 0 ? 0 : (now.score - was.score) / was.score * 100;
+            String verdict;
+            if (Math.abs(now.score - was.score) <= was.error + now.error) {
+                verdict = "≈";
+            } else if ((now.score < was.score) != now.higherIsBetter()) {
+                verdict = "лучше";
+                better++;
+            } else {
+                verdict = "хуже";
+                worse++;
+            }
+            System.out.println(String.format(Locale.ROOT, "%-70s %22s %22s %+8.1f%% %s",
+                    entry.getKey(), was, now, change, verdict));
+        }
+        for (String name : base.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.println(String.format(Locale.ROOT, "%-70s %22s %22s %9s", name, base.get(name), "-", "удалён"));
+            }
+        }
+        System.out.println("Лучше: " + better + ", хуже: " + worse + " (за пределами погрешности)");
+    }
+
+    private static Map<String, Row> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) throw new IOException(file + ": пустой отчёт");
+        List<String> header = parseLine(lines.get(0));
+        int benchmarkCol = header.indexOf("Benchmark");
+        int modeCol = header.indexOf("Mode");
+        int scoreCol = header.indexOf("Score");
+        int errorCol = header.indexOf("Score Error (99.9%)");
+        int unitCol = header.indexOf("Unit");
+        if (benchmarkCol < 0 || scoreCol < 0 || unitCol < 0) throw new IOException(file + ": не CSV-отчёт JMH");
+
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isEmpty()) continue;
+            List<String> fields = parseLine(line);
+            StringBuilder name = new StringBuilder(shortName(fields.get(benchmarkCol)));
+            for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                String column = header.get(i);
+                if (column.startsWith("Param: ") && !fields.get(i).isEmpty()) {
+                    name.append(' ').append(column.substring("Param: ".length())).append('=').append(fields.get(i));
+                }
+            }
+            rows.put(name.toString(), new Row(modeCol < 0 ? "avgt" : fields.get(modeCol),
+                    number(fields.get(scoreCol)), errorCol < 0 ? 0 : number(fields.get(errorCol)), fields.get(unitCol)));
+        }
+        return rows;
+    }
+
+    /** Класс.метод без пакета. */
+    private static String shortName(String benchmark) {
+        int method = benchmark.lastIndexOf('.');
+        int type = method > 0 ? benchmark.lastIndexOf('.', method - 1) : -1;
+        return benchmark.substring(type + 1);
+    }
+
+    /** JMH пишет числа в локали JVM: десятичная запятая тоже допустима. */
+    private static double number(String value) {
+        if (value.isEmpty() || value.equals("NaN")) return 0;
+        return Double.parseDouble(value.replace(',', '.'));
+    }
+
+    /** Строка CSV: поля в кавычках могут содержать запятые, "" — кавычка внутри поля. */
+    private static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static final class Row {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Row(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = Double.isNaN(error) ? 0 : error;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.3f±%.3f %s", score, error, unit);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.quizapp.bench;
+
+import com.example.quizapp.data.Question;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QuestionRowsBenchmark — материализация вопросов матча из строк таблицы questions.
+ *
+ * Особенности:
+ * - selectStar повторяет QuestionCache.queryByIds: SELECT * с id в тексте запроса, колонки ищутся по имени
+ *   на каждый запрос
+ * - selectColumns — заранее подготовленный запрос только нужных колонок с id в параметрах, колонки по номеру
+ * - наборы id заранее случайные, чтобы не мерить Random и чтобы страницы не были всегда одни и те же
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QuestionRowsBenchmark {
+
+    private static final int MATCH_QUESTIONS = 5;
+    private static final int ID_SETS = 1024;
+
+    @Param({"1000", "100000"})
+    public int bankSize;
+
+    private Connection connection;
+    private PreparedStatement byIds;
+    private int[][] idSets;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        connection = BenchData.openBank(bankSize);
+        StringBuilder sql = new StringBuilder(
+                "SELECT _id, question, option1, option2, option3, option4, answer_num FROM questions WHERE _id IN (");
+        for (int i = 0; i < MATCH_QUESTIONS; i++) sql.append(i == 0 ? "?" : ",?");
+        byIds = connection.prepareStatement(sql.append(')').toString());
+        Random random = new Random(1);
+        idSets = new int[ID_SETS][MATCH_QUESTIONS];
+        for (int[] ids : idSets) {
+            for (int i = 0; i < ids.length; i++) ids[i] = 1 + random.nextInt(bankSize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        byIds.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public List<Question> selectStar() throws SQLException {
+        int[] ids = nextIds();
+        StringBuilder inClause = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) inClause.append(i == 0 ? "" : ",").append(ids[i]);
+
+        List<Question> result = new ArrayList<>(ids.length);
+        try (Statement st = connection.createStatement();
+             ResultSet rows = st.executeQuery("SELECT * FROM questions WHERE _id IN (" + inClause + ")")) {
+            int idCol = rows.findColumn("_id");
+            int questionCol = rows.findColumn("question");
+            int option1Col = rows.findColumn("option1");
+            int option2Col = rows.findColumn("option2");
+            int option3Col = rows.findColumn("option3");
+            int option4Col = rows.findColumn("option4");
+            int answerCol = rows.findColumn("answer_num");
+            while (rows.next()) {
+                Question q = new Question();
+                q.id = rows.getInt(idCol);
+                q.question = rows.getString(questionCol);
+                q.options = new String[]{
+                        rows.getString(option1Col),
+                        rows.getString(option2Col),
+                        rows.getString(option3Col),
+                        rows.getString(option4Col)
+                };
+                q.answerNum = rows.getInt(answerCol);
+                result.add(q);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Question> selectColumns() throws SQLException {
+        int[] ids = nextIds();
+        for (int i = 0; i < ids.length; i++) byIds.setInt(i + 1, ids[i]);
+
+        List<Question> result = new ArrayList<>(ids.length);
+        try (ResultSet rows = byIds.executeQuery()) {
+            while (rows.next()) {
+                Question q = new Question();
+                q.id = rows.getInt(1);
+                q.question = rows.getString(2);
+                q.options = new String[]{rows.getString(3), rows.getString(4), rows.getString(5), rows.getString(6)};
+                q.answerNum = rows.getInt(7);
+                result.add(q);
+            }
+        }
+        return result;
+    }
+
+    private int[] nextIds() {
+        int[] ids = idSets[next];
+        next = (next + 1) % ID_SETS;
+        return ids;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.quizapp.bench;
+
+import com.example.quizapp.data.QuestionBitSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SamplingBenchmark — способы выбрать k случайных id вопросов для матча.
+ *
+ * Особенности:
+ * - orderByRandom — ORDER BY RANDOM() LIMIT k: ключ на каждую строку и сортировка всей таблицы
+ * - randomOffset — k запросов LIMIT 1 OFFSET случайное: SQLite проходит offset строк, в среднем половину банка
+ * - rowidProbe — как QuestionSampler: MIN/MAX(_id), точный поиск случайного id, после промахов — ближайший
+ *   существующий id; поиски по rowid, O(k log n)
+ * - rowidProbeSeen — то же с QuestionBitSet уже показанных: половина банка показана, серии показанных
+ *   пропускаются в памяти
+ * - в банке дыры: удалён каждый десятый вопрос, чтобы точный поиск иногда промахивался
+ * - QuestionSampler работает с android.database и здесь не запускается: rowidProbe повторяет его запросы
+ *   на sqlite-jdbc, а сам QuestionSampler против ORDER BY RANDOM() на тех же размерах сравнивает
+ *   QuizDatabasePerfTest (метрики sample и sampleOrderByRandom)
+ * - на 1000000 подготовка банка занимает секунды, но идёт один раз на форк
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SamplingBenchmark {
+
+    private static final int K = 5;
+    private static final int EXACT_PROBES_PER_PICK = 4;
+
+    @Param({"1000", "100000", "1000000"})
+    public int bankSize;
+
+    private Connection connection;
+    private PreparedStatement orderByRandom;
+    private PreparedStatement count;
+    private PreparedStatement offset;
+    private PreparedStatement minId;
+    private PreparedStatement maxId;
+    private PreparedStatement exact;
+    private PreparedStatement ceiling;
+    private QuestionBitSet halfSeen;
+    private final Random random = new Random(1);
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        connection = BenchData.openBank(bankSize);
+        try (Statement st = connection.createStatement()) {
+            st.execute("DELETE FROM questions WHERE _id % 10 = 0");
+        }
+        orderByRandom = connection.prepareStatement("SELECT _id FROM questions ORDER BY RANDOM() LIMIT " + K);
+        count = connection.prepareStatement("SELECT COUNT(*) FROM questions");
+        offset = connection.prepareStatement("SELECT _id FROM questions LIMIT 1 OFFSET ?");
+        minId = connection.prepareStatement("SELECT MIN(_id) FROM questions");
+        maxId = connection.prepareStatement("SELECT MAX(_id) FROM questions");
+        exact = connection.prepareStatement("SELECT _id FROM questions WHERE _id = ?");
+        ceiling = connection.prepareStatement("SELECT _id FROM questions WHERE _id >= ? ORDER BY _id LIMIT 1");
+        halfSeen = new QuestionBitSet(bankSize);
+        for (int id = 1; id <= bankSize; id += 2) halfSeen.set(id);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        for (PreparedStatement statement : new PreparedStatement[]{orderByRandom, count, offset, minId, maxId, exact, ceiling}) {
+            statement.close();
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int[] orderByRandom() throws SQLException {
+        int[] picked = new int[K];
+        int n = 0;
+        try (ResultSet rows = orderByRandom.executeQuery()) {
+            while (rows.next()) picked[n++] = rows.getInt(1);
+        }
+        return picked;
+    }
+
+    @Benchmark
+    public int[] randomOffset() throws SQLException {
+        long total = queryLong(count);
+        int[] picked = new int[K];
+        int n = 0;
+        while (n < K) {
+            offset.setLong(1, (long) (random.nextDouble() * total));
+            long id = queryLong(offset);
+            if (!contains(picked, n, (int) id)) picked[n++] = (int) id;
+        }
+        return picked;
+    }
+
+    @Benchmark
+    public int[] rowidProbe() throws SQLException {
+        return probe(null);
+    }
+
+    @Benchmark
+    public int[] rowidProbeSeen() throws SQLException {
+        return probe(halfSeen);
+    }
+
+    /** Запросы QuestionSampler.sample без фильтра, бюджета попыток и нового круга: банк здесь всегда больше k. */
+    private int[] probe(QuestionBitSet seen) throws SQLException {
+        long min = queryLong(minId);
+        long span = queryLong(maxId) - min + 1;
+        int[] picked = new int[K];
+        int n = 0;
+        while (n < K) {
+            long id = -1;
+            for (int probe = 0; probe < EXACT_PROBES_PER_PICK && id < 0; probe++) {
+                exact.setLong(1, min + Math.floorMod(random.nextLong(), span));
+                id = queryLong(exact);
+                if (id >= 0 && !available((int) id, seen, picked, n)) id = -1;
+            }
+            if (id < 0) id = nextAvailable(min + Math.floorMod(random.nextLong(), span), min, seen, picked, n);
+            picked[n++] = (int) id;
+        }
+        return picked;
+    }
+
+    private long nextAvailable(long candidate, long min, QuestionBitSet seen, int[] picked, int n) throws SQLException {
+        long from = candidate;
+        while (true) {
+            ceiling.setLong(1, from);
+            long id = queryLong(ceiling);
+            if (id < 0) {
+                from = min; // за концом диапазона — по кругу
+                continue;
+            }
+            if (available((int) id, seen, picked, n)) return id;
+            from = seen != null && seen.get((int) id) ? seen.nextClearBit((int) id + 1) : id + 1;
+        }
+    }
+
+    private static boolean available(int id, QuestionBitSet seen, int[] picked, int n) {
+        return (seen == null || !seen.get(id)) && !contains(picked, n, id);
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    /** Первая колонка первой строки; -1, если строк нет или значение NULL. */
+    private static long queryLong(PreparedStatement statement) throws SQLException {
+        try (ResultSet rows = statement.executeQuery()) {
+            if (!rows.next()) return -1;
+            long value = rows.getLong(1);
+            return rows.wasNull() ? -1 : value;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.quizapp.bench;
+
+import com.example.quizapp.data.Question;
+import com.example.quizapp.p2p.EmoteAction;
+import com.example.quizapp.p2p.GameDataModel;
+import com.example.quizapp.p2p.PlayerAnswer;
+import com.example.quizapp.p2p.WireCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SerializationBenchmark — GameDataModel через WireCodec и, для сравнения, через ObjectOutputStream/ObjectInputStream.
+ *
+ * Особенности:
+ * - сообщения матча: ответ, эмоция, START_GAME с вопросами целиком и с одними content_hash
+ * - на каждое сообщение — новый ObjectOutputStream, как при отправке по одному объекту:
+ *   в цену входит заголовок потока и описание классов
+ * - Encoder и Decoder живут всё соединение, поэтому в состоянии бенчмарка, а не создаются на сообщение
+ * - write — только запись, roundTrip — запись и чтение обратно; wire* — то же через WireCodec
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"ANSWER", "EMOTE", "START_GAME", "START_GAME_HASHES"})
+    public String message;
+
+    private Serializable model;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    private final WireCodec.Encoder encoder = new WireCodec.Encoder();
+    private final WireCodec.Decoder decoder = new WireCodec.Decoder();
+
+    @Setup
+    public void setUp() {
+        switch (message) {
+            case "ANSWER":
+                model = new GameDataModel(GameDataModel.DataType.ANSWER_SUBMITTED, new PlayerAnswer(3, 2, true, false));
+                break;
+            case "EMOTE":
+                model = new GameDataModel(GameDataModel.DataType.EMOTE_USED, new EmoteAction("emote_laugh"));
+                break;
+            case "START_GAME":
+                ArrayList<Question> questions = new ArrayList<>();
+                for (int i = 0; i < 5; i++) questions.add(BenchData.question(i + 1));
+                model = new GameDataModel(GameDataModel.DataType.START_GAME, questions);
+                break;
+            case "START_GAME_HASHES":
+                model = new GameDataModel(GameDataModel.DataType.START_GAME,
+                        new long[]{0x8f3a1c229e0177b4L, -17, 4242, 1L << 52, 0x123456789abcL});
+                break;
+            default:
+                throw new IllegalArgumentException(message);
+        }
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        bytes.reset();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(model);
+        }
+        return bytes.size();
+    }
+
+    @Benchmark
+    public Object roundTrip() throws IOException, ClassNotFoundException {
+        write();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public int wireWrite() {
+        return encoder.encode(model);
+    }
+
+    @Benchmark
+    public Object wireRoundTrip() throws IOException {
+        int length = encoder.encode(model);
+        return decoder.read(new DataInputStream(new ByteArrayInputStream(encoder.buffer(), 0, length)));
+    }
+}
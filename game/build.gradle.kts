@@ -0,0 +1,13 @@
+// Правила матча на чистой Java: без Android SDK, тесты и симуляции идут на обычной JVM
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,354 @@
+package com.example.quizapp.game;
+
+/**
+ * GameSession — правила матча без UI и Android: очерёдность, подсчёт очков, переход к следующему вопросу.
+ *
+ * Особенности:
+ * - на вход — события (ответ, таймер, сообщение соперника, обрыв, выход), на выход — эффекты через Effects:
+ *   что показать, что отправить, какой таймер завести; сама сессия ничего не ждёт и не планирует
+ * - режимы: одиночный, PvP по очереди (хост отвечает первым, клиент — после ответа хоста) и одновременный
+ *   (хост открывает раунд у обоих, закрывает по двум ответам или по дедлайну)
+ * - клиент узнаёт одновременный режим по первому onRoundOpened, отдельного согласования нет
+ * - ход или раунд, пришедший раньше вопросов (START_GAME по id ещё читается из базы), откладывается
+ *   до onQuestionsReceived
+ * - не потокобезопасна: все вызовы — из одного потока (главный в GameActivity, поток симуляции в тестах);
+ *   эффекты вызываются синхронно в том же потоке
+ */
+public final class GameSession {
+
+    public static final int SINGLE_CORRECT_POINTS = 20;
+    public static final int PVP_CORRECT_POINTS = 25;
+    /** Оставшемуся игроку, когда соперник отключился посреди матча. */
+    public static final int OPPONENT_LEFT_BONUS = 20;
+    /** Сопернику того, кто вышел из матча. */
+    public static final int QUIT_PENALTY = 20;
+    /** selectedOption, когда время вышло. */
+    public static final int NO_ANSWER = 0;
+
+    public enum Mode { SINGLE, TURN_BASED, SIMULTANEOUS }
+
+    /** Таймеры, которые заводит владелец сессии; по срабатыванию — onTimer. */
+    public enum Timer {
+        ANSWER,         // время на ответ; истекло — ответ NO_ANSWER
+        ADVANCE,        // пауза перед следующим вопросом
+        ROUND_DEADLINE  // одновременный режим, хост: закрыть раунд без ответа соперника
+    }
+
+    public enum Reason { COMPLETED, OPPONENT_LEFT, QUIT, ERROR }
+
+    public enum Outcome { WIN, DRAW, LOSS }
+
+    public static final class Config {
+        public static final Config DEFAULT = new Config(5, 15000, 2000, 800, 1500);
+
+        public final int totalQuestions;
+        public final long answerTimeMs;
+        /** Одновременный режим: сколько сверх answerTimeMs хост ждёт ответ клиента. */
+        public final long roundGraceMs;
+        public final long pvpAdvanceDelayMs;
+        public final long singleAdvanceDelayMs;
+
+        public Config(int totalQuestions, long answerTimeMs, long roundGraceMs, long pvpAdvanceDelayMs,
+                      long singleAdvanceDelayMs) {
+            this.totalQuestions = totalQuestions;
+            this.answerTimeMs = answerTimeMs;
+            this.roundGraceMs = roundGraceMs;
+            this.pvpAdvanceDelayMs = pvpAdvanceDelayMs;
+            this.singleAdvanceDelayMs = singleAdvanceDelayMs;
+        }
+    }
+
+    public static final class Result {
+        public final Reason reason;
+        public final Outcome outcome;
+        public final int localScore;
+        public final int opponentScore;
+
+        Result(Reason reason, int localScore, int opponentScore) {
+            this.reason = reason;
+            this.localScore = localScore;
+            this.opponentScore = opponentScore;
+            this.outcome = localScore > opponentScore ? Outcome.WIN
+                    : localScore == opponentScore ? Outcome.DRAW : Outcome.LOSS;
+        }
+
+        @Override
+        public String toString() {
+            return reason + " " + outcome + " " + localScore + ":" + opponentScore;
+        }
+    }
+
+    public interface Effects {
+        /** Показать вопрос index и принимать ответ. */
+        void showQuestion(int index);
+
+        /** Экран ожидания соперника. */
+        void showWaiting();
+
+        /** Свой ответ: подсветить выбранный и верный варианты, отметить индикатор. */
+        void showAnswer(int index, int selectedOption, int correctOption);
+
+        /** Индикатор соперника. */
+        void showOpponentAnswer(int index, boolean correct);
+
+        void sendAnswer(int index, int selectedOption, boolean correct);
+
+        /** Одновременный режим, хост: открыть вопрос index у клиента. */
+        void sendRoundOpened(int index);
+
+        void sendGameOver();
+
+        /** Завести таймер; заведённый ранее таймер того же вида заменяется. */
+        void schedule(Timer timer, long delayMs);
+
+        void cancel(Timer timer);
+
+        /** Матч окончен; вызывается один раз. */
+        void finished(Result result);
+    }
+
+    private final Config config;
+    private final boolean host;
+    private final Effects effects;
+    private Mode mode;
+    private long roundGraceMs;
+
+    private int[] answerKeys;
+    private int index;
+    private int localScore;
+    private int opponentScore;
+    private boolean accepting;
+    private boolean localAnswered;
+    private boolean remoteAnswered;
+    private boolean roundClosing;
+    private boolean pendingTurn;
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * @param mode для клиента PvP — TURN_BASED: одновременный режим включает хост
+     * @param host хост PvP или одиночная игра
+     */
+    public GameSession(Config config, Mode mode, boolean host, Effects effects) {
+        this.config = config;
+        this.mode = mode;
+        this.host = host || mode == Mode.SINGLE;
+        this.effects = effects;
+        this.roundGraceMs = config.roundGraceMs;
+    }
+
+    /** Запас на доставку ответа в одновременном режиме; на медленном канале — больше Config.roundGraceMs. */
+    public void setRoundGraceMs(long roundGraceMs) {
+        this.roundGraceMs = Math.max(config.roundGraceMs, roundGraceMs);
+    }
+
+    /**
+     * Одиночная игра или хост: вопросы готовы (у хоста — START_GAME уже отправлен).
+     * @param answerKeys номер верного варианта (1..4) для каждого вопроса матча
+     */
+    public void start(int[] answerKeys) {
+        if (started || finished) return;
+        if (answerKeys.length == 0) throw new IllegalArgumentException("Матч без вопросов");
+        this.answerKeys = answerKeys;
+        started = true;
+        if (mode == Mode.SIMULTANEOUS) openRound(0);
+        else showQuestion(0);
+    }
+
+    /** Клиент: набор вопросов получен (целиком или восстановлен по id). */
+    public void onQuestionsReceived(int[] answerKeys) {
+        if (host || finished) return;
+        this.answerKeys = answerKeys;
+        started = true;
+        if (pendingTurn) {
+            pendingTurn = false;
+            showQuestion(index);
+        } else {
+            effects.showWaiting();
+        }
+    }
+
+    /** Игрок выбрал вариант 1..4; вне своего хода игнорируется. */
+    public void onLocalAnswer(int selectedOption) {
+        if (!accepting || finished) return;
+        accepting = false;
+        effects.cancel(Timer.ANSWER);
+        int correctOption = answerKeys[index];
+        boolean correct = selectedOption != NO_ANSWER && selectedOption == correctOption;
+        if (correct) localScore += mode == Mode.SINGLE ? SINGLE_CORRECT_POINTS : PVP_CORRECT_POINTS;
+        effects.showAnswer(index, selectedOption, correctOption);
+
+        if (mode == Mode.SINGLE) {
+            effects.schedule(Timer.ADVANCE, config.singleAdvanceDelayMs);
+            return;
+        }
+        effects.sendAnswer(index, selectedOption, correct);
+        localAnswered = true;
+        effects.showWaiting();
+        if (mode == Mode.SIMULTANEOUS && host && remoteAnswered) closeRound();
+    }
+
+    public void onTimer(Timer timer) {
+        if (finished) return;
+        switch (timer) {
+            case ANSWER:
+                onLocalAnswer(NO_ANSWER);
+                break;
+            case ADVANCE:
+                advance();
+                break;
+            case ROUND_DEADLINE:
+                closeRound();
+                break;
+        }
+    }
+
+    /** ANSWER_SUBMITTED соперника. */
+    public void onRemoteAnswer(int questionIndex, boolean correct) {
+        if (finished || mode == Mode.SINGLE) return;
+        // Очки считаются и за опоздавший ответ — счёт у обоих сходится, даже если раунд уже закрыт
+        if (correct) opponentScore += PVP_CORRECT_POINTS;
+        effects.showOpponentAnswer(questionIndex, correct);
+
+        if (host) {
+            if (questionIndex != index) return;
+            remoteAnswered = true;
+            if (localAnswered) closeRound();
+        } else if (mode == Mode.TURN_BASED) {
+            // Хост ответил — очередь клиента на тот же вопрос
+            index = questionIndex;
+            beginClientTurn();
+        }
+    }
+
+    /** Клиент: QUESTION_INDEX хоста — одновременный раунд. */
+    public void onRoundOpened(int questionIndex) {
+        if (host || finished) return;
+        mode = Mode.SIMULTANEOUS;
+        index = questionIndex;
+        localAnswered = false;
+        remoteAnswered = false;
+        beginClientTurn();
+    }
+
+    /** GAME_OVER от соперника. */
+    public void onRemoteGameOver() {
+        if (finished) return;
+        finish(Reason.COMPLETED);
+    }
+
+    /** Соединение потеряно; до начала матча игнорируется. */
+    public void onDisconnected() {
+        if (finished || !started || mode == Mode.SINGLE) return;
+        localScore += OPPONENT_LEFT_BONUS;
+        finish(Reason.OPPONENT_LEFT);
+    }
+
+    /** Ошибка соединения или протокола: матч заканчивается с текущим счётом; до начала игнорируется. */
+    public void onConnectionFailed() {
+        if (finished || !started) return;
+        finish(Reason.ERROR);
+    }
+
+    /** Игрок вышел: свои очки сгорают, соперник получает QUIT_PENALTY. */
+    public void quit() {
+        if (finished) return;
+        localScore = 0;
+        opponentScore = mode == Mode.SINGLE ? 0 : QUIT_PENALTY;
+        finish(Reason.QUIT);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isHost() {
+        return host;
+    }
+
+    public int getQuestionIndex() {
+        return index;
+    }
+
+    public int getLocalScore() {
+        return localScore;
+    }
+
+    public int getOpponentScore() {
+        return opponentScore;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private void beginClientTurn() {
+        if (answerKeys == null) {
+            // Вопросы ещё достаются из базы по id — ход начнётся в onQuestionsReceived
+            pendingTurn = true;
+            return;
+        }
+        showQuestion(index);
+    }
+
+    private void showQuestion(int questionIndex) {
+        if (questionIndex >= total()) {
+            finish(Reason.COMPLETED);
+            return;
+        }
+        index = questionIndex;
+        accepting = true;
+        effects.showQuestion(questionIndex);
+        effects.schedule(Timer.ANSWER, config.answerTimeMs);
+    }
+
+    /** Хост, одновременный режим: вопрос открывается у обоих, раунд закрывается по двум ответам или дедлайну. */
+    private void openRound(int questionIndex) {
+        roundClosing = false;
+        localAnswered = false;
+        remoteAnswered = false;
+        effects.sendRoundOpened(questionIndex);
+        showQuestion(questionIndex);
+        if (!finished) effects.schedule(Timer.ROUND_DEADLINE, config.answerTimeMs + roundGraceMs);
+    }
+
+    private void closeRound() {
+        if (roundClosing) return;
+        roundClosing = true;
+        effects.cancel(Timer.ROUND_DEADLINE);
+        effects.schedule(Timer.ADVANCE, config.pvpAdvanceDelayMs);
+    }
+
+    /** Одиночная игра и хост: следующий вопрос; клиент идёт за хостом. */
+    private void advance() {
+        if (!host) return;
+        localAnswered = false;
+        remoteAnswered = false;
+        roundClosing = false;
+        int next = index + 1;
+        if (next >= total()) {
+            index = next;
+            finish(Reason.COMPLETED);
+        } else if (mode == Mode.SIMULTANEOUS) {
+            openRound(next);
+        } else {
+            showQuestion(next);
+        }
+    }
+
+    private int total() {
+        return Math.min(config.totalQuestions, answerKeys.length);
+    }
+
+    private void finish(Reason reason) {
+        finished = true;
+        accepting = false;
+        for (Timer timer : Timer.values()) effects.cancel(timer);
+        if (mode != Mode.SINGLE) effects.sendGameOver();
+        effects.finished(new Result(reason, localScore, opponentScore));
+    }
+}
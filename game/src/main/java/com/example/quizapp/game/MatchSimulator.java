@@ -0,0 +1,329 @@
+package com.example.quizapp.game;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * MatchSimulator — детерминированный прогон PvP-матчей между ботами в виртуальном времени.
+ *
+ * Особенности:
+ * - две GameSession соединены очередью сообщений вместо P2PManager: те же типы, что в GameDataModel
+ *   (START_GAME, ANSWER_SUBMITTED, QUESTION_INDEX, GAME_OVER), и те же правила доставки, что в GameActivity —
+ *   клиент получает вопросы по START_GAME не сразу, а после «чтения из базы»
+ * - время виртуальное (очередь событий по моменту и порядку постановки): таймеры ответа и дедлайны раунда
+ *   не ждут реальных секунд, тысячи матчей укладываются в секунду
+ * - каждый матч получает свой Random(seed + номер): любой матч из отчёта воспроизводится по его seed
+ * - канал: случайная задержка, доля сообщений с лишней задержкой (их обгоняют следующие — переупорядочивание)
+ *   и доля матчей с обрывом связи в случайный момент
+ * - отчёт: матчи в секунду, сообщения по типам, длительность матча в виртуальном времени,
+ *   расхождение итогового счёта хоста и клиента и незавершённые матчи
+ */
+public final class MatchSimulator {
+
+    /** Вероятность верного ответа бота. */
+    private static final double BOT_ACCURACY = 0.7;
+    private static final long BOT_MIN_THINK_MS = 500;
+    /** Больше времени на ответ: часть ответов уходит по таймеру. */
+    private static final long BOT_MAX_THINK_MS = 16000;
+    /** Клиент достаёт вопросы START_GAME по id из своей базы. */
+    private static final long MAX_QUESTION_LOAD_MS = 400;
+    private static final int MAX_EVENTS_PER_MATCH = 100_000;
+
+    public enum Kind { START_GAME, ANSWER_SUBMITTED, QUESTION_INDEX, GAME_OVER }
+
+    public static final class Config {
+        public final GameSession.Mode mode;
+        public final int matches;
+        public final long seed;
+        public final long minLatencyMs;
+        public final long maxLatencyMs;
+        /** Доля сообщений, задержанных настолько, что следующие их обгоняют. */
+        public final double reorderRate;
+        /** Доля матчей, в которых связь рвётся в случайный момент. */
+        public final double disconnectRate;
+
+        public Config(GameSession.Mode mode, int matches, long seed, long minLatencyMs, long maxLatencyMs,
+                      double reorderRate, double disconnectRate) {
+            if (mode == GameSession.Mode.SINGLE) throw new IllegalArgumentException("Симулируется только PvP");
+            this.mode = mode;
+            this.matches = matches;
+            this.seed = seed;
+            this.minLatencyMs = minLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+            this.reorderRate = reorderRate;
+            this.disconnectRate = disconnectRate;
+        }
+    }
+
+    public static final class Report {
+        public final int matches;
+        public final int completed;
+        public final int opponentLeft;
+        /** Матч не закончился ни у одной стороны или только у одной. */
+        public final int unfinished;
+        /**
+         * Матч закончился штатно, но счёт хоста и клиента не сходится. Протокол рассчитан на упорядоченный канал
+         * (FramedLink поверх TCP): при переупорядочивании GAME_OVER может обогнать последний ANSWER_SUBMITTED.
+         */
+        public final int divergent;
+        /** seed первого расходящегося или незавершённого матча; -1 — таких нет. */
+        public final long firstBadSeed;
+        public final long[] messages;
+        public final long events;
+        public final long virtualMs;
+        public final long wallNanos;
+
+        Report(int matches, int completed, int opponentLeft, int unfinished, int divergent, long firstBadSeed,
+               long[] messages, long events, long virtualMs, long wallNanos) {
+            this.matches = matches;
+            this.completed = completed;
+            this.opponentLeft = opponentLeft;
+            this.unfinished = unfinished;
+            this.divergent = divergent;
+            this.firstBadSeed = firstBadSeed;
+            this.messages = messages;
+            this.events = events;
+            this.virtualMs = virtualMs;
+            this.wallNanos = wallNanos;
+        }
+
+        public long matchesPerSecond() {
+            return wallNanos == 0 ? 0 : matches * 1_000_000_000L / wallNanos;
+        }
+
+        public long totalMessages() {
+            long total = 0;
+            for (long count : messages) total += count;
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder byKind = new StringBuilder();
+            for (Kind kind : Kind.values()) {
+                if (byKind.length() > 0) byKind.append(", ");
+                byKind.append(kind).append('=').append(messages[kind.ordinal()]);
+            }
+            return matches + " матчей за " + wallNanos / 1_000_000 + " мс (" + matchesPerSecond() + "/с): " +
+                    "завершено " + completed + ", обрыв " + opponentLeft + ", не завершено " + unfinished +
+                    ", расхождение счёта " + divergent + (firstBadSeed >= 0 ? " (seed " + firstBadSeed + ")" : "") +
+                    "; сообщений " + totalMessages() + " [" + byKind + "], " +
+                    "матч в среднем " + (matches == 0 ? 0 : virtualMs / matches) + " мс виртуального времени";
+        }
+    }
+
+    private MatchSimulator() {
+    }
+
+    public static Report run(Config config) {
+        long[] messages = new long[Kind.values().length];
+        int completed = 0;
+        int opponentLeft = 0;
+        int unfinished = 0;
+        int divergent = 0;
+        long firstBadSeed = -1;
+        long events = 0;
+        long virtualMs = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < config.matches; i++) {
+            long seed = config.seed + i;
+            Match match = new Match(config, seed, messages);
+            match.play();
+            events += match.processed;
+            virtualMs += match.now;
+
+            GameSession.Result host = match.host.result;
+            GameSession.Result client = match.client.result;
+            boolean bad = false;
+            if (endedByDisconnect(host, match.client.session) || endedByDisconnect(client, match.host.session)) {
+                // Обе стороны получают бонус за ушедшего соперника — счёт по правилам расходится;
+                // клиент без вопросов обрыв игнорирует, как и GameActivity до начала матча
+                opponentLeft++;
+            } else if (host == null || client == null) {
+                unfinished++;
+                bad = true;
+            } else {
+                completed++;
+                if (host.localScore != client.opponentScore || host.opponentScore != client.localScore) {
+                    divergent++;
+                    bad = true;
+                }
+            }
+            if (bad && firstBadSeed < 0) firstBadSeed = seed;
+        }
+        return new Report(config.matches, completed, opponentLeft, unfinished, divergent, firstBadSeed,
+                messages, events, virtualMs, System.nanoTime() - start);
+    }
+
+    private static boolean endedByDisconnect(GameSession.Result result, GameSession other) {
+        return result != null && result.reason == GameSession.Reason.OPPONENT_LEFT
+                && (other.isFinished() || !other.isStarted());
+    }
+
+    /** Один матч: очередь событий, канал и два бота. */
+    private static final class Match {
+        final Config config;
+        final Random random;
+        final long[] messages;
+        final PriorityQueue<Event> queue = new PriorityQueue<>();
+        final int[] keys = new int[GameSession.Config.DEFAULT.totalQuestions];
+        final Bot host;
+        final Bot client;
+        long now;
+        long sequence;
+        int processed;
+        boolean linkUp = true;
+
+        Match(Config config, long seed, long[] messages) {
+            this.config = config;
+            this.random = new Random(seed);
+            this.messages = messages;
+            for (int i = 0; i < keys.length; i++) keys[i] = 1 + random.nextInt(4);
+            host = new Bot(this, config.mode, true);
+            client = new Bot(this, GameSession.Mode.TURN_BASED, false);
+            host.peer = client;
+            client.peer = host;
+        }
+
+        void play() {
+            // Как GameActivity.maybeSendStartGame: сначала START_GAME, потом начало матча у хоста
+            send(host, Kind.START_GAME, c -> at(now + random.nextInt((int) MAX_QUESTION_LOAD_MS + 1),
+                    () -> c.session.onQuestionsReceived(keys)));
+            host.session.start(keys);
+            if (random.nextDouble() < config.disconnectRate) {
+                long matchLength = keys.length * GameSession.Config.DEFAULT.answerTimeMs;
+                at((long) (random.nextDouble() * matchLength), () -> {
+                    linkUp = false;
+                    host.session.onDisconnected();
+                    client.session.onDisconnected();
+                });
+            }
+            while (!queue.isEmpty() && processed < MAX_EVENTS_PER_MATCH) {
+                Event event = queue.poll();
+                now = event.time;
+                processed++;
+                event.action.run();
+            }
+        }
+
+        void at(long time, Runnable action) {
+            queue.add(new Event(time, sequence++, action));
+        }
+
+        void send(Bot from, Kind kind, java.util.function.Consumer<Bot> delivery) {
+            if (!linkUp) return;
+            messages[kind.ordinal()]++;
+            Bot to = from.peer;
+            long latency = config.minLatencyMs + (long) (random.nextDouble() * (config.maxLatencyMs - config.minLatencyMs));
+            long time;
+            if (config.reorderRate > 0 && random.nextDouble() < config.reorderRate) {
+                // Задержанное сообщение не сдвигает очередь: следующие придут раньше него
+                time = now + latency + (long) (random.nextDouble() * 3 * Math.max(1, config.maxLatencyMs));
+            } else {
+                time = Math.max(now + latency, from.lastDeliveryAt);
+                from.lastDeliveryAt = time;
+            }
+            at(time, () -> {
+                if (linkUp) delivery.accept(to);
+            });
+        }
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final long time;
+        final long sequence;
+        final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) return Long.compare(time, other.time);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /** Бот: отвечает через случайное время, верно с вероятностью BOT_ACCURACY; таймеры — события матча. */
+    private static final class Bot implements GameSession.Effects {
+        final Match match;
+        final GameSession session;
+        final long[] timerTokens = new long[GameSession.Timer.values().length];
+        Bot peer;
+        GameSession.Result result;
+        long lastDeliveryAt;
+        long tokens;
+        int shown;
+
+        Bot(Match match, GameSession.Mode mode, boolean host) {
+            this.match = match;
+            this.session = new GameSession(GameSession.Config.DEFAULT, mode, host, this);
+        }
+
+        @Override
+        public void showQuestion(int index) {
+            int shownNow = ++shown;
+            Random random = match.random;
+            long think = BOT_MIN_THINK_MS + (long) (random.nextDouble() * (BOT_MAX_THINK_MS - BOT_MIN_THINK_MS));
+            if (think >= GameSession.Config.DEFAULT.answerTimeMs) return; // ответит таймер
+            int option = random.nextDouble() < BOT_ACCURACY ? match.keys[index] : match.keys[index] % 4 + 1;
+            match.at(match.now + think, () -> {
+                if (shown == shownNow) session.onLocalAnswer(option);
+            });
+        }
+
+        @Override public void showWaiting() { }
+
+        @Override public void showAnswer(int index, int selectedOption, int correctOption) { }
+
+        @Override public void showOpponentAnswer(int index, boolean correct) { }
+
+        @Override
+        public void sendAnswer(int index, int selectedOption, boolean correct) {
+            match.send(this, Kind.ANSWER_SUBMITTED, to -> to.session.onRemoteAnswer(index, correct));
+        }
+
+        @Override
+        public void sendRoundOpened(int index) {
+            match.send(this, Kind.QUESTION_INDEX, to -> to.session.onRoundOpened(index));
+        }
+
+        @Override
+        public void sendGameOver() {
+            match.send(this, Kind.GAME_OVER, to -> to.session.onRemoteGameOver());
+        }
+
+        @Override
+        public void schedule(GameSession.Timer timer, long delayMs) {
+            long token = ++tokens;
+            timerTokens[timer.ordinal()] = token;
+            match.at(match.now + delayMs, () -> {
+                if (timerTokens[timer.ordinal()] != token) return;
+                timerTokens[timer.ordinal()] = 0;
+                session.onTimer(timer);
+            });
+        }
+
+        @Override
+        public void cancel(GameSession.Timer timer) {
+            timerTokens[timer.ordinal()] = 0;
+        }
+
+        @Override
+        public void finished(GameSession.Result result) {
+            this.result = result;
+        }
+    }
+
+    /** Прогон с консоли: оба режима на одинаковом канале. */
+    public static void main(String[] args) {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        for (GameSession.Mode mode : new GameSession.Mode[]{GameSession.Mode.TURN_BASED, GameSession.Mode.SIMULTANEOUS}) {
+            System.out.println(mode + ": " + run(new Config(mode, matches, 1, 20, 200, 0.05, 0.02)));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.quizapp.game;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * GameSession на обычной JVM: одиночная игра, оба PvP-режима на паре сессий, соединённых очередью,
+ * отложенный ход клиента, обрыв и выход.
+ */
+public class GameSessionTest {
+
+    private static final int[] KEYS = {1, 2, 3, 4, 1};
+    private static final GameSession.Config CONFIG = GameSession.Config.DEFAULT;
+
+    @Test
+    public void singlePlayerScoresCorrectAnswersAndAdvancesOnTimer() {
+        Player player = new Player(GameSession.Mode.SINGLE, true, null);
+        player.session.start(KEYS);
+
+        for (int i = 0; i < KEYS.length; i++) {
+            assertEquals(i, player.shown());
+            // Два верных ответа, остальные — мимо или по таймеру
+            if (i < 2) player.session.onLocalAnswer(KEYS[i]);
+            else if (i == 2) player.session.onLocalAnswer(KEYS[i] % 4 + 1);
+            else player.fire(GameSession.Timer.ANSWER);
+            player.session.onLocalAnswer(KEYS[i]); // повторный ответ игнорируется
+            assertEquals(CONFIG.singleAdvanceDelayMs, (long) player.timers.get(GameSession.Timer.ADVANCE));
+            player.fire(GameSession.Timer.ADVANCE);
+        }
+
+        assertNotNull(player.result);
+        assertEquals(2 * GameSession.SINGLE_CORRECT_POINTS, player.result.localScore);
+        assertEquals(GameSession.Reason.COMPLETED, player.result.reason);
+        assertEquals(0, player.gameOverSent);
+        assertTrue("таймеры остались заведены", player.timers.isEmpty());
+    }
+
+    @Test
+    public void turnBasedClientAnswersAfterHostAndScoresAgree() {
+        Wire wire = new Wire();
+        Player host = new Player(GameSession.Mode.TURN_BASED, true, wire);
+        Player client = new Player(GameSession.Mode.TURN_BASED, false, wire);
+        wire.connect(host, client);
+
+        client.session.onQuestionsReceived(KEYS);
+        host.session.start(KEYS);
+        assertTrue(client.waiting);
+
+        for (int i = 0; i < KEYS.length; i++) {
+            assertEquals(i, host.shown());
+            host.session.onLocalAnswer(KEYS[i]);
+            client.session.onLocalAnswer(KEYS[i]); // не его ход
+            wire.flush();
+            assertEquals("клиент отвечает на тот же вопрос", i, client.shown());
+            client.session.onLocalAnswer(i % 2 == 0 ? KEYS[i] : GameSession.NO_ANSWER);
+            wire.flush();
+            host.fire(GameSession.Timer.ADVANCE);
+            wire.flush();
+        }
+
+        assertNotNull(host.result);
+        assertNotNull(client.result);
+        assertEquals(5 * GameSession.PVP_CORRECT_POINTS, host.result.localScore);
+        assertEquals(3 * GameSession.PVP_CORRECT_POINTS, host.result.opponentScore);
+        assertEquals(host.result.localScore, client.result.opponentScore);
+        assertEquals(host.result.opponentScore, client.result.localScore);
+        assertEquals(GameSession.Outcome.WIN, host.result.outcome);
+        assertEquals(GameSession.Outcome.LOSS, client.result.outcome);
+    }
+
+    @Test
+    public void simultaneousRoundClosesOnBothAnswersOrDeadline() {
+        Wire wire = new Wire();
+        Player host = new Player(GameSession.Mode.SIMULTANEOUS, true, wire);
+        Player client = new Player(GameSession.Mode.TURN_BASED, false, wire);
+        wire.connect(host, client);
+        client.session.onQuestionsReceived(KEYS);
+        host.session.setRoundGraceMs(500); // меньше запаса по умолчанию — не уменьшает его
+        host.session.start(KEYS);
+        wire.flush();
+
+        // Оба видят вопрос 0 сразу; клиент отвечает первым
+        assertEquals(GameSession.Mode.SIMULTANEOUS, client.session.getMode());
+        assertEquals(0, client.shown());
+        assertEquals(CONFIG.answerTimeMs + CONFIG.roundGraceMs, (long) host.timers.get(GameSession.Timer.ROUND_DEADLINE));
+        client.session.onLocalAnswer(KEYS[0]);
+        wire.flush();
+        assertNull("раунд закрыт без ответа хоста", host.timers.get(GameSession.Timer.ADVANCE));
+        host.session.onLocalAnswer(KEYS[0]);
+        assertNull(host.timers.get(GameSession.Timer.ROUND_DEADLINE));
+        host.fire(GameSession.Timer.ADVANCE);
+        wire.flush();
+
+        // Вопрос 1: клиент молчит — раунд закрывает дедлайн, опоздавший ответ всё равно засчитывается
+        assertEquals(1, client.shown());
+        host.session.onLocalAnswer(KEYS[1]);
+        host.fire(GameSession.Timer.ROUND_DEADLINE);
+        host.fire(GameSession.Timer.ADVANCE);
+        client.session.onLocalAnswer(KEYS[1]);
+        wire.flush();
+        assertEquals(2, host.session.getQuestionIndex());
+        assertEquals(2, client.shown());
+        assertEquals(2 * GameSession.PVP_CORRECT_POINTS, host.session.getOpponentScore());
+
+        for (int i = 2; i < KEYS.length; i++) {
+            host.session.onLocalAnswer(GameSession.NO_ANSWER);
+            client.session.onLocalAnswer(KEYS[i]);
+            wire.flush();
+            host.fire(GameSession.Timer.ADVANCE);
+            wire.flush();
+        }
+        assertNotNull(client.result);
+        assertEquals(host.result.localScore, client.result.opponentScore);
+        assertEquals(host.result.opponentScore, client.result.localScore);
+        assertEquals(5 * GameSession.PVP_CORRECT_POINTS, client.result.localScore);
+    }
+
+    @Test
+    public void clientTurnArrivingBeforeQuestionsIsDeferred() {
+        Player client = new Player(GameSession.Mode.TURN_BASED, false, null);
+        client.session.onRemoteAnswer(0, true);
+        assertEquals(-1, client.shown());
+
+        client.session.onQuestionsReceived(KEYS);
+        assertEquals(0, client.shown());
+        assertEquals(GameSession.PVP_CORRECT_POINTS, client.session.getOpponentScore());
+    }
+
+    @Test
+    public void disconnectAndQuitScoring() {
+        Player early = new Player(GameSession.Mode.TURN_BASED, false, null);
+        early.session.onDisconnected();
+        assertFalse("обрыв до начала матча не завершает его", early.session.isFinished());
+
+        Player left = new Player(GameSession.Mode.TURN_BASED, true, null);
+        left.session.start(KEYS);
+        left.session.onLocalAnswer(KEYS[0]);
+        left.session.onDisconnected();
+        assertEquals(GameSession.Reason.OPPONENT_LEFT, left.result.reason);
+        assertEquals(GameSession.PVP_CORRECT_POINTS + GameSession.OPPONENT_LEFT_BONUS, left.result.localScore);
+        assertEquals(1, left.gameOverSent);
+
+        Player quitter = new Player(GameSession.Mode.SIMULTANEOUS, true, null);
+        quitter.session.start(KEYS);
+        quitter.session.onLocalAnswer(KEYS[0]);
+        quitter.session.quit();
+        quitter.session.quit();
+        assertEquals(GameSession.Reason.QUIT, quitter.result.reason);
+        assertEquals(0, quitter.result.localScore);
+        assertEquals(GameSession.QUIT_PENALTY, quitter.result.opponentScore);
+        assertEquals(1, quitter.finishedCount);
+        assertTrue(quitter.timers.isEmpty());
+    }
+
+    /** Сообщения между сессиями: копятся, пока тест не вызовет flush(). */
+    private static final class Wire {
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private Player host;
+        private Player client;
+
+        void connect(Player host, Player client) {
+            this.host = host;
+            this.client = client;
+        }
+
+        void send(Player from, java.util.function.Consumer<GameSession> delivery) {
+            Player to = from == host ? client : host;
+            queue.add(() -> delivery.accept(to.session));
+        }
+
+        void flush() {
+            while (!queue.isEmpty()) queue.poll().run();
+        }
+    }
+
+    private static final class Player implements GameSession.Effects {
+        final GameSession session;
+        final Wire wire;
+        final Map<GameSession.Timer, Long> timers = new EnumMap<>(GameSession.Timer.class);
+        final List<Integer> questions = new ArrayList<>();
+        boolean waiting;
+        int gameOverSent;
+        int finishedCount;
+        GameSession.Result result;
+
+        Player(GameSession.Mode mode, boolean host, Wire wire) {
+            this.wire = wire;
+            this.session = new GameSession(CONFIG, mode, host, this);
+        }
+
+        int shown() {
+            return questions.isEmpty() ? -1 : questions.get(questions.size() - 1);
+        }
+
+        void fire(GameSession.Timer timer) {
+            assertNotNull("таймер " + timer + " не заведён", timers.remove(timer));
+            session.onTimer(timer);
+        }
+
+        @Override public void showQuestion(int index) {
+            questions.add(index);
+            waiting = false;
+        }
+
+        @Override public void showWaiting() {
+            waiting = true;
+        }
+
+        @Override public void showAnswer(int index, int selectedOption, int correctOption) { }
+
+        @Override public void showOpponentAnswer(int index, boolean correct) { }
+
+        @Override public void sendAnswer(int index, int selectedOption, boolean correct) {
+            if (wire != null) wire.send(this, s -> s.onRemoteAnswer(index, correct));
+        }
+
+        @Override public void sendRoundOpened(int index) {
+            if (wire != null) wire.send(this, s -> s.onRoundOpened(index));
+        }
+
+        @Override public void sendGameOver() {
+            gameOverSent++;
+            if (wire != null) wire.send(this, GameSession::onRemoteGameOver);
+        }
+
+        @Override public void schedule(GameSession.Timer timer, long delayMs) {
+            timers.put(timer, delayMs);
+        }
+
+        @Override public void cancel(GameSession.Timer timer) {
+            timers.remove(timer);
+        }
+
+        @Override public void finished(GameSession.Result result) {
+            this.result = result;
+            finishedCount++;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.quizapp.game;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MatchSimulator: оба PvP-режима на задержке, переупорядочивании и обрывах; на упорядоченном канале счёт
+ * хоста и клиента сходится, матчи не зависают, прогон с тем же seed повторяется. Отчёты выводятся в stdout.
+ */
+public class MatchSimulatorTest {
+
+    private static final int MATCHES = 5000;
+
+    @Test
+    public void orderedLinkNeverDiverges() {
+        for (GameSession.Mode mode : new GameSession.Mode[]{GameSession.Mode.TURN_BASED, GameSession.Mode.SIMULTANEOUS}) {
+            MatchSimulator.Report report = MatchSimulator.run(new MatchSimulator.Config(mode, MATCHES, 1, 5, 150, 0, 0));
+            System.out.println(mode + ", упорядоченный канал: " + report);
+            assertEquals(MATCHES, report.completed);
+            assertEquals("расхождение, seed " + report.firstBadSeed, 0, report.divergent);
+            assertTrue(report.matchesPerSecond() > 1000);
+        }
+    }
+
+    @Test
+    public void reorderingAndDisconnectsFinishEveryMatch() {
+        for (GameSession.Mode mode : new GameSession.Mode[]{GameSession.Mode.TURN_BASED, GameSession.Mode.SIMULTANEOUS}) {
+            MatchSimulator.Report report = MatchSimulator.run(new MatchSimulator.Config(mode, MATCHES, 1000, 5, 300, 0.1, 0.05));
+            System.out.println(mode + ", переупорядочивание 10%, обрывы 5%: " + report);
+            assertEquals("матч завис, seed " + report.firstBadSeed, 0, report.unfinished);
+            assertTrue(report.opponentLeft > 0);
+        }
+    }
+
+    @Test
+    public void sameSeedReplaysIdentically() {
+        MatchSimulator.Config config = new MatchSimulator.Config(GameSession.Mode.SIMULTANEOUS, 500, 42, 5, 300, 0.2, 0.1);
+        MatchSimulator.Report first = MatchSimulator.run(config);
+        MatchSimulator.Report second = MatchSimulator.run(config);
+        assertArrayEquals(first.messages, second.messages);
+        assertEquals(first.events, second.events);
+        assertEquals(first.virtualMs, second.virtualMs);
+        assertEquals(first.opponentLeft, second.opponentLeft);
+    }
+}
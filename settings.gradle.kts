@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "quizapp"
 include(":app")
+include(":game")
+include(":benchmarks")
  
\ No newline at end of file